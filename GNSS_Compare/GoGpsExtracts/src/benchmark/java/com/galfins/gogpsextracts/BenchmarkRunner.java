@@ -0,0 +1,74 @@
+package com.galfins.gogpsextracts;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Locale;
+
+/**
+ * Runs the benchmarks given by their class names, and the helpers shared by the benchmarks.
+ *
+ * A benchmark is a class with a main method, which runs the compared implementations on the same
+ * data, checks that they give the same results and prints the timings. Timings are only
+ * reported, a benchmark fails only if the compared implementations disagree.
+ */
+public final class BenchmarkRunner {
+
+    /**
+     * Keeps the benchmark results alive, so that the measured code is not optimized away
+     */
+    private static volatile double sink;
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        for (String className : args) {
+            System.out.println("# " + className);
+            Method main = Class.forName(className).getMethod("main", String[].class);
+            try {
+                main.invoke(null, (Object) new String[0]);
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof Exception)
+                    throw (Exception) e.getCause();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Prints a formatted result line, with the same number format on every locale
+     */
+    public static void report(String format, Object... args) {
+        System.out.println(String.format(Locale.US, format, args));
+    }
+
+    /**
+     * Fails the benchmark if the compared implementations do not agree
+     */
+    public static void check(boolean condition, String message) {
+        if (!condition)
+            throw new IllegalStateException(message);
+    }
+
+    /**
+     * Consumes a result of the measured code
+     */
+    public static void consume(double value) {
+        sink += value;
+    }
+
+    /**
+     * @return bytes allocated by the current thread, -1 if the JVM does not report them
+     */
+    public static long getAllocatedBytes() {
+        try {
+            Object threadBean = ManagementFactory.getThreadMXBean();
+            Method allocatedBytes = Class.forName("com.sun.management.ThreadMXBean")
+                    .getMethod("getThreadAllocatedBytes", long.class);
+            return (Long) allocatedBytes.invoke(threadBean, Thread.currentThread().getId());
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+}
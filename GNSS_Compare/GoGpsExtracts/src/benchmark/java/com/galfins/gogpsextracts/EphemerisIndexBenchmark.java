@@ -0,0 +1,88 @@
+package com.galfins.gogpsextracts;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares findEph of the indexed navigation parser with the linear search it replaced, for one
+ * hour of 1 Hz epochs over a synthetic full day broadcast file
+ */
+public class EphemerisIndexBenchmark {
+
+    private static final long DAY_START = 1542326400000L; // 2018-11-16 00:00 UTC
+
+    private static final int SATELLITES = 36;
+
+    /**
+     * Galileo broadcast files contain a new set every 10 minutes
+     */
+    private static final long EPHEMERIS_INTERVAL = 600 * 1000L;
+
+    /**
+     * Full day of ephemeris sets, in the order of a broadcast file (by time, then satellite)
+     */
+    private static List<EphGalileo> createDay() {
+        List<EphGalileo> day = new ArrayList<>();
+        for (long time = DAY_START; time < DAY_START + 24 * 3600 * 1000L; time += EPHEMERIS_INTERVAL) {
+            for (int satId = 1; satId <= SATELLITES; satId++) {
+                EphGalileo eph = new EphGalileo();
+                eph.setSatID(satId);
+                eph.setSatType('E');
+                eph.setRefTime(new Time(time + satId * 1000L));
+                day.add(eph);
+            }
+        }
+        return day;
+    }
+
+    /**
+     * Linear search formerly done by findEph
+     */
+    private static EphGalileo findLinear(List<EphGalileo> ephemerides, long unixTime, int satID, char satType) {
+        long dtMin = 0;
+        EphGalileo refEph = null;
+        for (EphGalileo eph : ephemerides) {
+            if (eph.getSatID() == satID && eph.getSatType() == satType) {
+                long dt = Math.abs(eph.getRefTime().getMsec() - unixTime);
+                if (refEph == null || dt < dtMin) {
+                    dtMin = dt;
+                    refEph = eph;
+                }
+            }
+        }
+        if (refEph != null && dtMin / 1000 > 7200)
+            return null;
+        return refEph;
+    }
+
+    public static void main(String[] args) {
+        List<EphGalileo> day = createDay();
+        RinexNavigationParserGalileo parser = new RinexNavigationParserGalileo(day, null);
+
+        int lookups = 0;
+        int linearFound = 0;
+        long linearStart = System.nanoTime();
+        for (long time = DAY_START; time < DAY_START + 3600 * 1000L; time += 1000L) {
+            for (int satId = 1; satId <= SATELLITES; satId++, lookups++) {
+                if (findLinear(day, time, satId, 'E') != null)
+                    linearFound++;
+            }
+        }
+        long linearNanos = System.nanoTime() - linearStart;
+
+        int indexedFound = 0;
+        long indexedStart = System.nanoTime();
+        for (long time = DAY_START; time < DAY_START + 3600 * 1000L; time += 1000L) {
+            for (int satId = 1; satId <= SATELLITES; satId++) {
+                if (parser.findEph(time, satId, 'E') != null)
+                    indexedFound++;
+            }
+        }
+        long indexedNanos = System.nanoTime() - indexedStart;
+
+        BenchmarkRunner.check(linearFound == indexedFound, "indexed and linear search disagree");
+
+        BenchmarkRunner.report("findEph over %d sets: linear %.2f us, indexed %.3f us per lookup",
+                day.size(), linearNanos / 1e3 / lookups, indexedNanos / 1e3 / lookups);
+    }
+}
@@ -0,0 +1,80 @@
+package com.galfins.gogpsextracts;
+
+/**
+ * Compares the time and the allocations of the elevation of all satellites of an epoch, when
+ * reusing the coordinate objects as the weighted least squares does and when creating new ones
+ */
+public class EpochGeometryAllocationBenchmark {
+
+    private static final int SATELLITES = 12;
+    private static final int EPOCHS = 10000;
+
+    private static double computeEpochInPlace(double[][] satellites, Coordinates origin,
+                                              Coordinates target, TopocentricCoordinates topo) {
+        double elevationSum = 0;
+        for (double[] satellite : satellites) {
+            target.setXYZ(satellite[0], satellite[1], satellite[2]);
+            topo.computeTopocentric(origin, target);
+            elevationSum += topo.getElevation();
+        }
+        return elevationSum;
+    }
+
+    private static double computeEpochAllocating(double[][] satellites, Coordinates receiver) {
+        double elevationSum = 0;
+        for (double[] satellite : satellites) {
+            Coordinates origin = Coordinates.globalXYZInstance(receiver.getX(), receiver.getY(), receiver.getZ());
+            Coordinates target = Coordinates.globalXYZInstance(satellite[0], satellite[1], satellite[2]);
+            elevationSum += new TopocentricCoordinates(origin, target).getElevation();
+        }
+        return elevationSum;
+    }
+
+    public static void main(String[] args) {
+        double[][] satellites = new double[SATELLITES][];
+        for (int i = 0; i < SATELLITES; i++) {
+            double angle = 2 * Math.PI * i / SATELLITES;
+            satellites[i] = new double[]{26.5e6 * Math.cos(angle), 26.5e6 * Math.sin(angle), 5e6 * i};
+        }
+
+        Coordinates receiver = Coordinates.globalGeodInstance(52.0, 4.37, 10.0);
+        Coordinates origin = Coordinates.globalXYZInstance(receiver.getX(), receiver.getY(), receiver.getZ());
+        Coordinates target = Coordinates.globalXYZInstance(0, 0, 0);
+        TopocentricCoordinates topo = new TopocentricCoordinates();
+
+        // warm-up
+        double inPlaceSum = 0;
+        for (int epoch = 0; epoch < EPOCHS; epoch++)
+            inPlaceSum += computeEpochInPlace(satellites, origin, target, topo);
+        BenchmarkRunner.consume(inPlaceSum);
+
+        inPlaceSum = 0;
+        long startBytes = BenchmarkRunner.getAllocatedBytes();
+        long startNanos = System.nanoTime();
+        for (int epoch = 0; epoch < EPOCHS; epoch++)
+            inPlaceSum += computeEpochInPlace(satellites, origin, target, topo);
+        long inPlaceNanos = System.nanoTime() - startNanos;
+        long inPlaceBytes = BenchmarkRunner.getAllocatedBytes() - startBytes;
+
+        double allocatingSum = 0;
+        startBytes = BenchmarkRunner.getAllocatedBytes();
+        startNanos = System.nanoTime();
+        for (int epoch = 0; epoch < EPOCHS; epoch++)
+            allocatingSum += computeEpochAllocating(satellites, receiver);
+        long allocatingNanos = System.nanoTime() - startNanos;
+        long allocatingBytes = BenchmarkRunner.getAllocatedBytes() - startBytes;
+
+        BenchmarkRunner.check(Math.abs(inPlaceSum - allocatingSum) <= 1e-9 * EPOCHS,
+                "reused and new coordinate objects give different elevations");
+
+        if (startBytes < 0) {
+            BenchmarkRunner.report("Epoch geometry: in place %.2f us, new instances %.2f us per epoch"
+                            + " (allocations not reported by this JVM)",
+                    inPlaceNanos / 1e3 / EPOCHS, allocatingNanos / 1e3 / EPOCHS);
+        } else {
+            BenchmarkRunner.report("Epoch geometry: in place %.2f us / %d B, new instances %.2f us / %d B per epoch",
+                    inPlaceNanos / 1e3 / EPOCHS, inPlaceBytes / EPOCHS,
+                    allocatingNanos / 1e3 / EPOCHS, allocatingBytes / EPOCHS);
+        }
+    }
+}
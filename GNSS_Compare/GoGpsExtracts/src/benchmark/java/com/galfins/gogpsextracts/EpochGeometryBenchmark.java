@@ -0,0 +1,57 @@
+package com.galfins.gogpsextracts;
+
+import java.util.Random;
+
+/**
+ * Compares computing the geometry once per epoch with each correction computing its own
+ * topocentric coordinates
+ */
+public class EpochGeometryBenchmark {
+
+    private static final int SATELLITES = 12;
+    private static final int EPOCHS = 10000;
+
+    /**
+     * Number of corrections which each computed the topocentric coordinates of every satellite
+     */
+    private static final int CORRECTIONS = 3;
+
+    public static void main(String[] args) {
+        Random random = new Random(3);
+        Coordinates receiver = Coordinates.globalGeodInstance(52.0, 4.37, 10.0);
+        Coordinates[] satellites = new Coordinates[SATELLITES];
+        for (int i = 0; i < SATELLITES; i++) {
+            double lat = random.nextDouble() * 180 - 90;
+            double lon = random.nextDouble() * 360 - 180;
+            satellites[i] = Coordinates.globalGeodInstance(lat, lon, 20e6 + random.nextDouble() * 3e6);
+        }
+        EpochGeometry geometry = new EpochGeometry();
+
+        double geometrySum = 0;
+        double topocentricSum = 0;
+
+        long topocentricStart = System.nanoTime();
+        for (int epoch = 0; epoch < EPOCHS; epoch++)
+            for (Coordinates satellite : satellites)
+                for (int correction = 0; correction < CORRECTIONS; correction++)
+                    topocentricSum += new TopocentricCoordinates(receiver, satellite).getElevation();
+        long topocentricNanos = System.nanoTime() - topocentricStart;
+
+        long geometryStart = System.nanoTime();
+        for (int epoch = 0; epoch < EPOCHS; epoch++) {
+            geometry.reset(receiver);
+            for (Coordinates satellite : satellites) {
+                int index = geometry.add(satellite);
+                for (int correction = 0; correction < CORRECTIONS; correction++)
+                    geometrySum += geometry.getElevation(index);
+            }
+        }
+        long geometryNanos = System.nanoTime() - geometryStart;
+
+        BenchmarkRunner.check(Math.abs(topocentricSum - geometrySum) <= Math.abs(topocentricSum) * 1e-12,
+                "epoch geometry and topocentric coordinates disagree");
+
+        BenchmarkRunner.report("Geometry of %d corrections: topocentric %.2f us, epoch geometry %.2f us per epoch",
+                CORRECTIONS, topocentricNanos / 1e3 / EPOCHS, geometryNanos / 1e3 / EPOCHS);
+    }
+}
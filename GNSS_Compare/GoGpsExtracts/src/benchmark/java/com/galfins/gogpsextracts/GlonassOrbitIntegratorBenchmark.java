@@ -0,0 +1,136 @@
+package com.galfins.gogpsextracts;
+
+import org.ejml.simple.SimpleMatrix;
+
+import java.util.Arrays;
+
+/**
+ * Compares the GLONASS orbit integration of GlonassOrbitIntegrator with the previous SimpleMatrix
+ * implementation, for 15 minutes of 1 Hz epochs after the reference time. The integrator is run
+ * both from the reference time on every epoch and continued from the previous epoch.
+ */
+public class GlonassOrbitIntegratorBenchmark {
+
+    private static final int SATELLITES = 24;
+    private static final int EPOCHS = 900;
+
+    private static EphGps createGlonassEphemeris(int satId) {
+        double angle = 2 * Math.PI * satId / SATELLITES;
+        double radius = 25.51e6;
+        double x = radius * Math.cos(angle) * 0.9;
+        double y = radius * Math.sin(angle) * 0.9;
+        double z = radius * Math.sqrt(1 - 0.81) * (satId % 2 == 0 ? 1 : -1);
+
+        // velocity orthogonal to the position
+        double ax = 0.3, ay = 0.2, az = 1.0;
+        double vx = y * az - z * ay, vy = z * ax - x * az, vz = x * ay - y * ax;
+        double scale = 3900 / Math.sqrt(vx * vx + vy * vy + vz * vz);
+
+        EphGps eph = new EphGps();
+        eph.setSatID(satId);
+        eph.setSatType('R');
+        eph.setX(x);
+        eph.setY(y);
+        eph.setZ(z);
+        eph.setXv(vx * scale);
+        eph.setYv(vy * scale);
+        eph.setZv(vz * scale);
+        eph.setXa(1.9e-6);
+        eph.setYa(-2.8e-6);
+        eph.setZa(9.3e-7);
+        return eph;
+    }
+
+    /**
+     * Integration as previously done in EphemerisSystem, with SimpleMatrix objects for every
+     * Runge-Kutta stage
+     */
+    private static double integrateSimpleMatrixX(EphGps eph, double tk2) {
+        int intStep = 60;
+        int n = (int) Math.floor(Math.abs(tk2 / intStep));
+        double[] array = new double[n];
+        Arrays.fill(array, 1);
+        SimpleMatrix tkArray = new SimpleMatrix(n, 1, true, array);
+        tkArray = tkArray.scale(intStep);
+        tkArray = tkArray.scale(tk2 / Math.abs(tk2));
+        double intStepRes = tk2 % intStep;
+        if (intStepRes != 0) {
+            tkArray = tkArray.combine(n, 0, new SimpleMatrix(1, 1, false, new double[]{intStepRes}));
+            n = n + 1;
+        }
+
+        SimpleMatrix posArray = new SimpleMatrix(1, 3, true, new double[]{eph.getX(), eph.getY(), eph.getZ()});
+        SimpleMatrix velArray = new SimpleMatrix(1, 3, true, new double[]{eph.getXv(), eph.getYv(), eph.getZv()});
+        SimpleMatrix accArray = new SimpleMatrix(1, 3, true, new double[]{eph.getXa(), eph.getYa(), eph.getZa()});
+
+        for (int i = 0; i < n; i++) {
+            double h = tkArray.get(i);
+            SimpleMatrix pos1dot = velArray;
+            SimpleMatrix vel1dot = motion(posArray, velArray, accArray);
+            SimpleMatrix pos2 = posArray.plus(pos1dot.scale(h).divide(2));
+            SimpleMatrix vel2 = velArray.plus(vel1dot.scale(h).divide(2));
+            SimpleMatrix vel2dot = motion(pos2, vel2, accArray);
+            SimpleMatrix pos3 = posArray.plus(vel2.scale(h).divide(2));
+            SimpleMatrix vel3 = velArray.plus(vel2dot.scale(h).divide(2));
+            SimpleMatrix vel3dot = motion(pos3, vel3, accArray);
+            SimpleMatrix pos4 = posArray.plus(vel3.scale(h));
+            SimpleMatrix vel4 = velArray.plus(vel3dot.scale(h));
+            SimpleMatrix vel4dot = motion(pos4, vel4, accArray);
+
+            posArray = posArray.plus(pos1dot.plus(vel2.scale(2)).plus(vel3.scale(2)).plus(vel4).scale(h).divide(6));
+            velArray = velArray.plus(vel1dot.plus(vel2dot.scale(2)).plus(vel3dot.scale(2)).plus(vel4dot).scale(h).divide(6));
+        }
+        return posArray.get(0);
+    }
+
+    private static SimpleMatrix motion(SimpleMatrix pos, SimpleMatrix vel, SimpleMatrix acc) {
+        double X = pos.get(0), Y = pos.get(1), Z = pos.get(2);
+        double r = Math.sqrt(Math.pow(X, 2) + Math.pow(Y, 2) + Math.pow(Z, 2));
+        double g = -Constants.GM_GLO / Math.pow(r, 3);
+        double h = Constants.J2_GLO * 1.5 * Math.pow((Constants.ELL_A_GLO / r), 2);
+        double k = 5 * Math.pow(Z, 2) / Math.pow(r, 2);
+        double omega = Constants.OMEGAE_DOT_GLO;
+        return new SimpleMatrix(1, 3, true, new double[]{
+                g * X * (1 - h * (k - 1)) + acc.get(0) + Math.pow(omega, 2) * X + 2 * omega * vel.get(1),
+                g * Y * (1 - h * (k - 1)) + acc.get(1) + Math.pow(omega, 2) * Y - 2 * omega * vel.get(0),
+                g * Z * (1 - h * (k - 3)) + acc.get(2)});
+    }
+
+    public static void main(String[] args) {
+        EphGps eph = createGlonassEphemeris(3);
+        GlonassOrbitIntegrator integrator = new GlonassOrbitIntegrator();
+        double[] state = new double[6];
+
+        double matrixSum = 0;
+        long matrixStart = System.nanoTime();
+        for (int epoch = 0; epoch < EPOCHS; epoch++)
+            matrixSum += integrateSimpleMatrixX(eph, epoch);
+        long matrixNanos = System.nanoTime() - matrixStart;
+
+        double freshSum = 0;
+        long freshStart = System.nanoTime();
+        for (int epoch = 0; epoch < EPOCHS; epoch++) {
+            integrator.reset();
+            integrator.integrate(eph, epoch, state);
+            freshSum += state[0];
+        }
+        long freshNanos = System.nanoTime() - freshStart;
+
+        integrator.reset();
+        double continuedSum = 0;
+        long continuedStart = System.nanoTime();
+        for (int epoch = 0; epoch < EPOCHS; epoch++) {
+            integrator.integrate(eph, epoch, state);
+            continuedSum += state[0];
+        }
+        long continuedNanos = System.nanoTime() - continuedStart;
+
+        BenchmarkRunner.check(Math.abs(matrixSum - freshSum) <= EPOCHS * 1e-6
+                        && Math.abs(matrixSum - continuedSum) <= EPOCHS * 1e-3,
+                "primitive and SimpleMatrix integrations disagree");
+
+        BenchmarkRunner.report("GLONASS integration over 15 min: SimpleMatrix %.1f us, primitive %.1f us,"
+                        + " continued %.2f us per epoch",
+                matrixNanos / 1e3 / EPOCHS, freshNanos / 1e3 / EPOCHS, continuedNanos / 1e3 / EPOCHS);
+    }
+}
@@ -0,0 +1,37 @@
+package com.galfins.gogpsextracts;
+
+/**
+ * Compares the time conversions done for every satellite of every epoch with Time and with
+ * GnssTime
+ */
+public class GnssTimeBenchmark {
+
+    private static final int GPS_WEEK = 2027;
+    private static final double GPS_SOW = 432018.123456789;
+
+    private static final int ITERATIONS = 200000;
+
+    public static void main(String[] args) {
+        double timeSum = 0;
+        double gnssTimeSum = 0;
+
+        long timeStart = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            Time time = new Time(GPS_WEEK, GPS_SOW + i * 1e-3);
+            timeSum += new Time(time.getMsec()).getGpsTime() + time.getLeapSeconds();
+        }
+        long timeNanos = System.nanoTime() - timeStart;
+
+        long gnssTimeStart = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            long unixMillis = GnssTime.gpsToUnixMillis(GPS_WEEK, GPS_SOW + i * 1e-3);
+            gnssTimeSum += GnssTime.unixMillisToGpsTime(unixMillis) + GnssTime.getLeapSeconds(unixMillis);
+        }
+        long gnssTimeNanos = System.nanoTime() - gnssTimeStart;
+
+        BenchmarkRunner.check(timeSum == gnssTimeSum, "Time and GnssTime conversions disagree");
+
+        BenchmarkRunner.report("Time conversions: Time %.1f ns, GnssTime %.1f ns per satellite",
+                (double) timeNanos / ITERATIONS, (double) gnssTimeNanos / ITERATIONS);
+    }
+}
@@ -0,0 +1,107 @@
+package com.galfins.gogpsextracts;
+
+/**
+ * Compares propagating all satellites of an epoch with KeplerianOrbitBatch, either all slots at
+ * once or one slot at a time as the navigation parsers of RINEX files do, with computing them
+ * one at a time with EphemerisSystem
+ */
+public class KeplerianOrbitBatchBenchmark {
+
+    private static final int SATELLITES = 32;
+    private static final int EPOCHS = 3600;
+    private static final int WEEK = 2027;
+    private static final double TOE = 432000.0;
+
+    private static final EphemerisSystem GPS_SYSTEM = new EphemerisSystem() {};
+
+    private static EphGps createGpsEphemeris(int satId) {
+        EphGps eph = new EphGps();
+        eph.setSatID(satId);
+        eph.setSatType('G');
+        eph.setWeek(WEEK);
+        eph.setToe(TOE);
+        eph.setToc(TOE);
+        eph.setAf0(1e-5 * satId);
+        eph.setAf1(-3e-12);
+        eph.setTgd(-1.1e-8);
+        eph.setRootA(5153.6 + satId * 0.01);
+        eph.setE(0.002 + 0.0007 * satId);
+        eph.setI0(0.96 + 0.001 * satId);
+        eph.setiDot(2e-10);
+        eph.setOmega(-2.0 + 0.12 * satId);
+        eph.setOmega0(-3.0 + 0.19 * satId);
+        eph.setOmegaDot(-8.1e-9);
+        eph.setM0(-3.1 + 0.195 * satId);
+        eph.setDeltaN(4.5e-9);
+        eph.setCrc(230.0);
+        eph.setCrs(-20.0);
+        eph.setCuc(-1.1e-6);
+        eph.setCus(8.2e-6);
+        eph.setCic(1.3e-7);
+        eph.setCis(-5.6e-8);
+        return eph;
+    }
+
+    private static double pseudorange(int satId, int epoch) {
+        return 20.5e6 + satId * 1.5e5 + epoch * 120.0;
+    }
+
+    public static void main(String[] args) {
+        KeplerianOrbitBatch batch = new KeplerianOrbitBatch(SATELLITES);
+        KeplerianOrbitBatch slotBatch = new KeplerianOrbitBatch(SATELLITES);
+        EphGps[] ephemerides = new EphGps[SATELLITES];
+        double[] pseudoranges = new double[SATELLITES];
+        double[] x = new double[SATELLITES], y = new double[SATELLITES], z = new double[SATELLITES];
+        double[] vx = new double[SATELLITES], vy = new double[SATELLITES], vz = new double[SATELLITES];
+        double[] clockErrors = new double[SATELLITES];
+        for (int i = 0; i < SATELLITES; i++) {
+            ephemerides[i] = createGpsEphemeris(i + 1);
+            batch.setEphemeris(i, ephemerides[i]);
+            slotBatch.setEphemeris(i, ephemerides[i]);
+        }
+
+        double batchSum = 0;
+        long batchStart = System.nanoTime();
+        for (int epoch = 0; epoch < EPOCHS; epoch++) {
+            long unixTime = GnssTime.gpsToUnixMillis(WEEK, TOE + epoch);
+            for (int i = 0; i < SATELLITES; i++)
+                pseudoranges[i] = pseudorange(i + 1, epoch);
+            batch.propagate(unixTime, 0.0, pseudoranges, SATELLITES, x, y, z, vx, vy, vz, clockErrors);
+            batchSum += x[epoch % SATELLITES];
+        }
+        long batchNanos = System.nanoTime() - batchStart;
+
+        double slotSum = 0;
+        long slotStart = System.nanoTime();
+        for (int epoch = 0; epoch < EPOCHS; epoch++) {
+            long unixTime = GnssTime.gpsToUnixMillis(WEEK, TOE + epoch);
+            for (int i = 0; i < SATELLITES; i++) {
+                SatellitePosition position = slotBatch.propagate(i, unixTime, pseudorange(i + 1, epoch), i + 1, 'G', 0.0);
+                if (i == epoch % SATELLITES)
+                    slotSum += position.getX();
+            }
+        }
+        long slotNanos = System.nanoTime() - slotStart;
+
+        double singleSum = 0;
+        long singleStart = System.nanoTime();
+        for (int epoch = 0; epoch < EPOCHS; epoch++) {
+            long unixTime = GnssTime.gpsToUnixMillis(WEEK, TOE + epoch);
+            for (int i = 0; i < SATELLITES; i++) {
+                SatellitePosition position = GPS_SYSTEM.computeSatPositionAndVelocities(
+                        unixTime, pseudorange(i + 1, epoch), i + 1, 'G', ephemerides[i], 0.0);
+                if (i == epoch % SATELLITES)
+                    singleSum += position.getX();
+            }
+        }
+        long singleNanos = System.nanoTime() - singleStart;
+
+        BenchmarkRunner.check(Math.abs(singleSum - batchSum) <= EPOCHS * 1e-4
+                        && Math.abs(singleSum - slotSum) <= EPOCHS * 1e-4,
+                "batch and per satellite propagation disagree");
+
+        BenchmarkRunner.report("Orbit propagation of %d satellites: %.0f epochs/s one at a time,"
+                        + " %.0f epochs/s batch by slot, %.0f epochs/s batch",
+                SATELLITES, EPOCHS / (singleNanos / 1e9), EPOCHS / (slotNanos / 1e9), EPOCHS / (batchNanos / 1e9));
+    }
+}
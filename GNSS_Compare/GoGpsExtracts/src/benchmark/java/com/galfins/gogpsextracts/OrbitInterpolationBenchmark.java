@@ -0,0 +1,103 @@
+package com.galfins.gogpsextracts;
+
+/**
+ * Compares computing every satellite position from the ephemeris with interpolating it from an
+ * OrbitInterpolationCache, at the measurement rates of 1 Hz and 10 Hz
+ */
+public class OrbitInterpolationBenchmark {
+
+    private static final int SATELLITES = 32;
+    private static final int WEEK = 2027;
+    private static final double TOE = 432000.0;
+
+    private static final EphemerisSystem GPS_SYSTEM = new EphemerisSystem() {};
+
+    /**
+     * Cache counting the ephemeris evaluations
+     */
+    private static class CountingCache extends OrbitInterpolationCache<EphGps> {
+
+        private int computations = 0;
+
+        @Override
+        protected SatellitePosition compute(long unixTime, double range, int satID, char satType, EphGps eph, double receiverClockError) {
+            computations++;
+            return GPS_SYSTEM.computeSatPositionAndVelocities(unixTime, range, satID, satType, eph, receiverClockError);
+        }
+    }
+
+    private static EphGps createGpsEphemeris(int satId) {
+        EphGps eph = new EphGps();
+        eph.setSatID(satId);
+        eph.setSatType('G');
+        eph.setWeek(WEEK);
+        eph.setToe(TOE);
+        eph.setToc(TOE);
+        eph.setAf0(1e-5 * satId);
+        eph.setAf1(-3e-12);
+        eph.setTgd(-1.1e-8);
+        eph.setRootA(5153.6 + satId * 0.01);
+        eph.setE(0.002 + 0.0007 * satId);
+        eph.setI0(0.96 + 0.001 * satId);
+        eph.setiDot(2e-10);
+        eph.setOmega(-2.0 + 0.12 * satId);
+        eph.setOmega0(-3.0 + 0.19 * satId);
+        eph.setOmegaDot(-8.1e-9);
+        eph.setM0(-3.1 + 0.195 * satId);
+        eph.setDeltaN(4.5e-9);
+        eph.setCrc(230.0);
+        eph.setCrs(-20.0);
+        eph.setCuc(-1.1e-6);
+        eph.setCus(8.2e-6);
+        eph.setCic(1.3e-7);
+        eph.setCis(-5.6e-8);
+        return eph;
+    }
+
+    private static double pseudorange(int satId, long millis) {
+        return 20.5e6 + satId * 1.5e5 + millis * 0.12;
+    }
+
+    public static void main(String[] args) {
+        run(1000L, 1800);
+        run(100L, 6000);
+    }
+
+    private static void run(long intervalMillis, int epochs) {
+        EphGps[] ephemerides = new EphGps[SATELLITES + 1];
+        for (int satId = 1; satId <= SATELLITES; satId++)
+            ephemerides[satId] = createGpsEphemeris(satId);
+        long start = GnssTime.gpsToUnixMillis(WEEK, TOE);
+
+        double directSum = 0;
+        long directStart = System.nanoTime();
+        for (int epoch = 0; epoch < epochs; epoch++) {
+            long millis = epoch * intervalMillis;
+            for (int satId = 1; satId <= SATELLITES; satId++)
+                directSum += GPS_SYSTEM.computeSatPositionAndVelocities(
+                        start + millis, pseudorange(satId, millis), satId, 'G', ephemerides[satId], 0.0).getX();
+        }
+        long directNanos = System.nanoTime() - directStart;
+
+        CountingCache cache = new CountingCache();
+        double cachedSum = 0;
+        long cachedStart = System.nanoTime();
+        for (int epoch = 0; epoch < epochs; epoch++) {
+            long millis = epoch * intervalMillis;
+            for (int satId = 1; satId <= SATELLITES; satId++)
+                cachedSum += cache.getSatPositionAndVelocities(
+                        start + millis, pseudorange(satId, millis), satId, 'G', ephemerides[satId], 0.0).getX();
+        }
+        long cachedNanos = System.nanoTime() - cachedStart;
+
+        BenchmarkRunner.check(Math.abs(directSum - cachedSum)
+                        <= epochs * SATELLITES * OrbitInterpolationCache.POSITION_TOLERANCE,
+                "interpolated positions exceed the tolerance");
+
+        BenchmarkRunner.report("Orbit interpolation at %.0f Hz: direct %.2f us, cached %.2f us per satellite,"
+                        + " %.3f evaluations per request",
+                1000.0 / intervalMillis,
+                directNanos / 1e3 / epochs / SATELLITES, cachedNanos / 1e3 / epochs / SATELLITES,
+                (double) cache.computations / epochs / SATELLITES);
+    }
+}
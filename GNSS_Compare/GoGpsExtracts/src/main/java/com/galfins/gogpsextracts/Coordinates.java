@@ -35,19 +35,28 @@ import org.ejml.simple.SimpleMatrix;
 public class Coordinates implements Streamable{
 	private final static int STREAM_V = 1;
 
+	// WGS-84 ellipsoid, as used by computeECEF
+	private final static double WGS84_A = 6378137.0;
+	private final static double WGS84_FINV = 298.257223563d;
+	private final static double WGS84_E2 = (2 - 1 / WGS84_FINV) / WGS84_FINV;
+	private final static double WGS84_E4 = WGS84_E2 * WGS84_E2;
+
 	// Global systems
-	private SimpleMatrix ecef = null; /* Earth-Centered, Earth-Fixed (X, Y, Z) */
-	private SimpleMatrix geod = null; /* Longitude (lam), latitude (phi), height (h) */
+	private double x, y, z; /* Earth-Centered, Earth-Fixed (X, Y, Z) */
+	private double lon, lat, h; /* Longitude (lam), latitude (phi), height (h), degrees and meters */
 
 	// Local systems (require to specify an origin)
-	private SimpleMatrix enu; /* Local coordinates (East, North, Up) */
+	private double e, n, u; /* Local coordinates (East, North, Up) */
+
+	/* geodetic coordinates and the rotation to the local system are computed when first needed
+	 * after a change of the ECEF coordinates, and reused until the next change */
+	private boolean geodeticValid = false;
+	private boolean rotationValid = false;
+	private double sinLon, cosLon, sinLat, cosLat;
 
 	private Time refTime = null;
 
 	protected Coordinates(){
-		ecef = new SimpleMatrix(3, 1);
-		geod = new SimpleMatrix(3, 1);
-		enu = new SimpleMatrix(3, 1);
 	}
 	
 	public static Coordinates readFromStream(DataInputStream dai, boolean oldVersion) throws IOException{
@@ -56,11 +65,13 @@ public class Coordinates implements Streamable{
 		return c;
 	}
 
+	/**
+	 * The geodetic coordinates are computed when first requested. In loops, prefer reusing an
+	 * instance with setXYZ over creating new ones.
+	 */
 	public static Coordinates globalXYZInstance(double x, double y, double z){
 		Coordinates c = new Coordinates();
-		//c.ecef = new SimpleMatrix(3, 1);
 		c.setXYZ(x, y, z);
-		c.computeGeodetic();
 		return c;
 	}
 //	public static Coordinates globalXYZInstance(SimpleMatrix ecef){
@@ -70,7 +81,7 @@ public class Coordinates implements Streamable{
 //	}
 	public static Coordinates globalENUInstance(SimpleMatrix ecef){
 		Coordinates c = new Coordinates();
-		c.enu = ecef.copy();
+		c.setENU(ecef.get(0), ecef.get(1), ecef.get(2));
 		return c;
 	}
 
@@ -125,42 +136,52 @@ public class Coordinates implements Streamable{
 	}
 
 	public SimpleMatrix minusXYZ(Coordinates coord){
-		return this.ecef.minus(coord.ecef);
+		SimpleMatrix diff = new SimpleMatrix(3, 1);
+		diff.set(0, this.x - coord.x);
+		diff.set(1, this.y - coord.y);
+		diff.set(2, this.z - coord.z);
+		return diff;
 	}
+
 	/**
-	 *
+	 * @return Euclidean distance to coord, in meters
 	 */
-	public void computeGeodetic() {
-		double X = this.ecef.get(0);
-		double Y = this.ecef.get(1);
-		double Z = this.ecef.get(2);
-
-		//this.geod = new SimpleMatrix(3, 1);
-
-		double a = Constants.WGS84_SEMI_MAJOR_AXIS;
-		double e = Constants.WGS84_ECCENTRICITY;
-
-		// Radius computation
-		double r = Math.sqrt(Math.pow(X, 2) + Math.pow(Y, 2) + Math.pow(Z, 2));
+	public double distanceTo(Coordinates coord){
+		double dx = this.x - coord.x;
+		double dy = this.y - coord.y;
+		double dz = this.z - coord.z;
+		return Math.sqrt(dx * dx + dy * dy + dz * dz);
+	}
 
-		// Geocentric longitude
-		double lamGeoc = Math.atan2(Y, X);
+	/**
+	 * Computes the geodetic coordinates from the ECEF ones, with the closed-form solution of
+	 * Vermeille (2004). The solution is exact for all points further than ~50 km from the
+	 * center of the Earth.
+	 */
+	public void computeGeodetic() {
+		double p = (x * x + y * y) / (WGS84_A * WGS84_A);
+		double q = (1 - WGS84_E2) / (WGS84_A * WGS84_A) * z * z;
+		double r = (p + q - WGS84_E4) / 6;
+		double s = WGS84_E4 * p * q / (4 * r * r * r);
+		double t = Math.cbrt(1 + s + Math.sqrt(s * (2 + s)));
+		double uu = r * (1 + t + 1 / t);
+		double v = Math.sqrt(uu * uu + WGS84_E4 * q);
+		double w = WGS84_E2 * (uu + v - q) / (2 * v);
+		double k = Math.sqrt(uu + v + w * w) - w;
+		double d = k * Math.sqrt(x * x + y * y) / (k + WGS84_E2);
+		double dz = Math.sqrt(d * d + z * z);
 
-		// Geocentric latitude
-		double phiGeoc = Math.atan(Z / Math.sqrt(Math.pow(X, 2) + Math.pow(Y, 2)));
+		this.lon = Math.toDegrees(Math.atan2(y, x));
+		this.lat = Math.toDegrees(2 * Math.atan2(z, d + dz));
+		this.h = (k + WGS84_E2 - 1) / k * dz;
 
-		// Computation of geodetic coordinates
-		double psi = Math.atan(Math.tan(phiGeoc) / Math.sqrt(1 - Math.pow(e, 2)));
-		double phiGeod = Math.atan((r * Math.sin(phiGeoc) + Math.pow(e, 2) * a
-				/ Math.sqrt(1 - Math.pow(e, 2)) * Math.pow(Math.sin(psi), 3))
-				/ (r * Math.cos(phiGeoc) - Math.pow(e, 2) * a * Math.pow(Math.cos(psi), 3)));
-		double lamGeod = lamGeoc;
-		double N = a / Math.sqrt(1 - Math.pow(e, 2) * Math.pow(Math.sin(phiGeod), 2));
-		double h = r * Math.cos(phiGeoc) / Math.cos(phiGeod) - N;
+		geodeticValid = true;
+		rotationValid = false;
+	}
 
-		this.geod.set(0, 0, Math.toDegrees(lamGeod));
-		this.geod.set(1, 0, Math.toDegrees(phiGeod));
-		this.geod.set(2, 0, h);
+	private void ensureGeodetic() {
+		if (!geodeticValid)
+			computeGeodetic();
 	}
 
 	/*
@@ -180,119 +201,133 @@ public class Coordinates implements Streamable{
 	     % Kai Borre 03-03-96
 	 */
 	public void computeECEF() {
-		final long a = 6378137;
-		final double finv = 298.257223563d;
-
-		double dphi = this.geod.get(1);
-		double dlambda = this.geod.get(0);
-		double h = this.geod.get(2);
+		double dphi = this.lat;
+		double dlambda = this.lon;
+		double h = this.h;
 
 		// compute degree-to-radian factor
 		double dtr = Math.PI/180;
 
 		// compute square of eccentricity
-		double esq = (2-1/finv)/finv;
+		double esq = WGS84_E2;
 		double sinphi = Math.sin(dphi*dtr);
 		// compute radius of curvature in prime vertical
-		double N_phi = a/Math.sqrt(1-esq*sinphi*sinphi);
+		double N_phi = WGS84_A/Math.sqrt(1-esq*sinphi*sinphi);
 
 		// compute P and Z
 		// P is distance from Z axis
 		double P = (N_phi + h)*Math.cos(dphi*dtr);
-		double Z = (N_phi*(1-esq) + h) * sinphi;
-		double X = P*Math.cos(dlambda*dtr);
-		double Y = P*Math.sin(dlambda*dtr);
-
-		this.ecef.set(0, 0, X );
-		this.ecef.set(1, 0, Y );
-		this.ecef.set(2, 0, Z );
+		this.z = (N_phi*(1-esq) + h) * sinphi;
+		this.x = P*Math.cos(dlambda*dtr);
+		this.y = P*Math.sin(dlambda*dtr);
 	}
 
 	/**
+	 * Computes the local (ENU) coordinates of target, with this object as origin. The rotation
+	 * to the local system is reused as long as this object does not move.
 	 * @param target
-	 * @return Local (ENU) coordinates
 	 */
 	public void computeLocal(Coordinates target) {
-		if(this.geod==null) computeGeodetic();
-
-		SimpleMatrix R = rotationMatrix(this);
+		ensureRotation();
 
-		enu = R.mult(target.minusXYZ(this));
+		double dx = target.x - this.x;
+		double dy = target.y - this.y;
+		double dz = target.z - this.z;
 
+		this.e = -sinLon * dx + cosLon * dy;
+		this.n = -sinLat * cosLon * dx - sinLat * sinLon * dy + cosLat * dz;
+		this.u = cosLat * cosLon * dx + cosLat * sinLon * dy + sinLat * dz;
 	}
 	
 	public void computeLocalV2(Coordinates target) {
-		if(this.geod==null) computeGeodetic();
+		computeLocal(target);
+	}
+
+	private void ensureRotation() {
+		ensureGeodetic();
+		if (rotationValid)
+			return;
 
-		SimpleMatrix R = rotationMatrix(this);
+		double lam = Math.toRadians(lon);
+		double phi = Math.toRadians(lat);
 
-		enu = R.mult(target.minusXYZ(this));
+		sinLon = Math.sin(lam);
+		cosLon = Math.cos(lam);
+		sinLat = Math.sin(phi);
+		cosLat = Math.cos(phi);
 
+		rotationValid = true;
 	}
-	
 
 	public double getGeodeticLongitude(){
-		if(this.geod==null) computeGeodetic();
-		return this.geod.get(0);
+		ensureGeodetic();
+		return this.lon;
 	}
 	public double getGeodeticLatitude(){
-		if(this.geod==null) computeGeodetic();
-		return this.geod.get(1);
+		ensureGeodetic();
+		return this.lat;
 	}
 	public double getGeodeticHeight(){
-		if(this.geod==null) computeGeodetic();
-		return this.geod.get(2);
+		ensureGeodetic();
+		return this.h;
 	}
 	public double getX(){
-		return ecef.get(0);
+		return x;
 	}
 	public double getY(){
-		return ecef.get(1);
+		return y;
 	}
 	public double getZ(){
-		return ecef.get(2);
+		return z;
 	}
 
 	public void setENU(double e, double n, double u){
-		this.enu.set(0, 0, e);
-		this.enu.set(1, 0, n);
-		this.enu.set(2, 0, u);
+		this.e = e;
+		this.n = n;
+		this.u = u;
 	}
 	public double getE(){
-		return enu.get(0);
+		return e;
 	}
 	public double getN(){
-		return enu.get(1);
+		return n;
 	}
 	public double getU(){
-		return enu.get(2);
+		return u;
 	}
 
 
+	/**
+	 * Moves this object, the geodetic coordinates are recomputed when next needed
+	 */
 	public void setXYZ(double x, double y, double z){
-		//if(this.ecef==null) this.ecef = new SimpleMatrix(3, 1);
-		this.ecef.set(0, 0, x);
-		this.ecef.set(1, 0, y);
-		this.ecef.set(2, 0, z);
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		geodeticValid = false;
+		rotationValid = false;
 	}
 	public void setGeod( double lat, double lon, double alt ){
-		//if(this.ecef==null) this.ecef = new SimpleMatrix(3, 1);
-		this.geod.set(1, 0, lat);
-		this.geod.set(0, 0, lon);
-		this.geod.set(2, 0, alt);
+		this.lat = lat;
+		this.lon = lon;
+		this.h = alt;
+		geodeticValid = true;
+		rotationValid = false;
 	}
 	public void setPlusXYZ(SimpleMatrix sm){
-		this.ecef.set(ecef.plus(sm));
+		setXYZ(x + sm.get(0), y + sm.get(1), z + sm.get(2));
 	}
 	public void setSMMultXYZ(SimpleMatrix sm){
-		this.ecef = sm.mult(this.ecef);
+		setXYZ(sm.get(0, 0) * x + sm.get(0, 1) * y + sm.get(0, 2) * z,
+				sm.get(1, 0) * x + sm.get(1, 1) * y + sm.get(1, 2) * z,
+				sm.get(2, 0) * x + sm.get(2, 1) * y + sm.get(2, 2) * z);
 	}
 
 	public boolean isValidXYZ(){
-		return (this.ecef != null && this.ecef.elementSum() != 0 
-        && !Double.isNaN(this.ecef.get(0)) && !Double.isNaN(this.ecef.get(1)) && !Double.isNaN(this.ecef.get(2))
-        && !Double.isInfinite(this.ecef.get(0)) && !Double.isInfinite(this.ecef.get(1)) && !Double.isInfinite(this.ecef.get(2))
-        && ( ecef.get(0) != 0 && ecef.get(1)!=0 && ecef.get(2)!= 0 )
+		return (x + y + z != 0
+        && !Double.isNaN(x) && !Double.isNaN(y) && !Double.isNaN(z)
+        && !Double.isInfinite(x) && !Double.isInfinite(y) && !Double.isInfinite(z)
+        && ( x != 0 && y != 0 && z != 0 )
 		    );
 	}
 
@@ -303,9 +338,17 @@ public class Coordinates implements Streamable{
 	}
 
 	public void cloneInto(Coordinates c){
-		c.ecef = this.ecef.copy();
-		c.enu = this.enu.copy();
-		c.geod = this.geod.copy();
+		c.x = this.x;
+		c.y = this.y;
+		c.z = this.z;
+		c.e = this.e;
+		c.n = this.n;
+		c.u = this.u;
+		c.lon = this.lon;
+		c.lat = this.lat;
+		c.h = this.h;
+		c.geodeticValid = this.geodeticValid;
+		c.rotationValid = false;
 
 		if(refTime!=null) c.refTime = (Time)refTime.clone();
 	}
@@ -315,24 +358,18 @@ public class Coordinates implements Streamable{
 	 */
 	public static SimpleMatrix rotationMatrix(Coordinates origin) {
 
-		double lam = Math.toRadians(origin.getGeodeticLongitude());
-		double phi = Math.toRadians(origin.getGeodeticLatitude());
-
-		double cosLam = Math.cos(lam);
-		double cosPhi = Math.cos(phi);
-		double sinLam = Math.sin(lam);
-		double sinPhi = Math.sin(phi);
+		origin.ensureRotation();
 
 		double[][] data = new double[3][3];
-		data[0][0] = -sinLam;
-		data[0][1] = cosLam;
+		data[0][0] = -origin.sinLon;
+		data[0][1] = origin.cosLon;
 		data[0][2] = 0;
-		data[1][0] = -sinPhi * cosLam;
-		data[1][1] = -sinPhi * sinLam;
-		data[1][2] = cosPhi;
-		data[2][0] = cosPhi * cosLam;
-		data[2][1] = cosPhi * sinLam;
-		data[2][2] = sinPhi;
+		data[1][0] = -origin.sinLat * origin.cosLon;
+		data[1][1] = -origin.sinLat * origin.sinLon;
+		data[1][2] = origin.cosLat;
+		data[2][0] = origin.cosLat * origin.cosLon;
+		data[2][1] = origin.cosLat * origin.sinLon;
+		data[2][2] = origin.sinLat;
 
 		SimpleMatrix R = new SimpleMatrix(data);
 
@@ -360,15 +397,16 @@ public class Coordinates implements Streamable{
 
 		dos.writeLong(refTime==null?-1:refTime.getMsec()); size+=8; // 8
 
-		for(int i=0;i<3;i++){
-			dos.writeDouble(ecef.get(i));  size+=8;
-		}
-		for(int i=0;i<3;i++){
-			dos.writeDouble(enu.get(i));  size+=8;
-		}
-		for(int i=0;i<3;i++){
-			dos.writeDouble(geod.get(i));  size+=8;
-		}
+		ensureGeodetic();
+		dos.writeDouble(x);  size+=8;
+		dos.writeDouble(y);  size+=8;
+		dos.writeDouble(z);  size+=8;
+		dos.writeDouble(e);  size+=8;
+		dos.writeDouble(n);  size+=8;
+		dos.writeDouble(u);  size+=8;
+		dos.writeDouble(lon);  size+=8;
+		dos.writeDouble(lat);  size+=8;
+		dos.writeDouble(h);  size+=8;
 
 		return size;
 	}
@@ -383,15 +421,11 @@ public class Coordinates implements Streamable{
 		if(v == 1){
 			long l = dai.readLong();
 			refTime = l==-1?null:new Time(l);
-			for(int i=0;i<3;i++){
-				ecef.set(i, dai.readDouble());
-			}
-			for(int i=0;i<3;i++){
-				enu.set(i, dai.readDouble());
-			}
-			for(int i=0;i<3;i++){
-				geod.set(i, dai.readDouble());
-			}
+			setXYZ(dai.readDouble(), dai.readDouble(), dai.readDouble());
+			setENU(dai.readDouble(), dai.readDouble(), dai.readDouble());
+			double lon = dai.readDouble();
+			double lat = dai.readDouble();
+			setGeod(lat, lon, dai.readDouble());
 		}else{
 			throw new IOException("Unknown format version:"+v);
 		}
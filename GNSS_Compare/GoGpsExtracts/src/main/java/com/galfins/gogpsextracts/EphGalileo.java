@@ -36,7 +36,7 @@ import java.io.IOException;
  */
 
 public class EphGalileo implements Streamable {
-	private final static int STREAM_V = 1;
+	private final static int STREAM_V = 2;
 
 	private Time refTime; /* Reference time of the dataset */
 	private char satType; /* Satellite Type */
@@ -576,7 +576,11 @@ public class EphGalileo implements Streamable {
 		dos.writeDouble(cic); size +=8;
 		dos.writeDouble(cis); size +=8;
 
-		dos.writeDouble(fitInt); size +=8;
+		dos.writeLong(fitInt); size +=8;
+
+		// since version 2
+		dos.writeChar(satType); size +=2;
+		dos.writeDouble(refTime==null?0:refTime.getFraction()); size +=8;
 
 		return size;
 	}
@@ -588,7 +592,7 @@ public class EphGalileo implements Streamable {
 		int v=1;
 		if(!oldVersion) v=dai.readInt();
 
-		if(v==1){
+		if(v==1 || v==2){
 			long l = dai.readLong();
 			refTime = new Time(l>0?l:System.currentTimeMillis());
 			satID = dai.read();
@@ -620,7 +624,16 @@ public class EphGalileo implements Streamable {
 			cus = dai.readDouble();
 			cic = dai.readDouble();
 			cis = dai.readDouble();
-			fitInt = dai.readLong();
+			if(v==1){
+				// version 1 wrote the fit interval as a double
+				fitInt = (long) dai.readDouble();
+				satType = 'E';
+			}else{
+				fitInt = dai.readLong();
+				satType = dai.readChar();
+				double fraction = dai.readDouble();
+				refTime = new Time(l>0?l:System.currentTimeMillis(), fraction);
+			}
 		}else{
 			throw new IOException("Unknown format version:"+v);
 		}
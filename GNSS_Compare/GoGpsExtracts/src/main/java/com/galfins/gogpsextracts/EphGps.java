@@ -35,7 +35,7 @@ import java.io.IOException;
  */
 
 public class EphGps implements Streamable {
-	private final static int STREAM_V = 1;
+	private final static int STREAM_V = 2;
 
 	private Time refTime; /* Reference time of the dataset */
 	private char satType; /* Satellite Type */
@@ -716,7 +716,11 @@ public class EphGps implements Streamable {
 		dos.writeDouble(cic); size +=8;
 		dos.writeDouble(cis); size +=8;
 
-		dos.writeDouble(fitInt); size +=8;
+		dos.writeLong(fitInt); size +=8;
+
+		// since version 2
+		dos.writeChar(satType); size +=2;
+		dos.writeDouble(refTime==null?0:refTime.getFraction()); size +=8;
 
 		return size;
 	}
@@ -728,7 +732,7 @@ public class EphGps implements Streamable {
 		int v=1;
 		if(!oldVersion) v=dai.readInt();
 
-		if(v==1){
+		if(v==1 || v==2){
 			long l = dai.readLong();
 			refTime = new Time(l>0?l:System.currentTimeMillis());
 			satID = dai.read();
@@ -760,7 +764,16 @@ public class EphGps implements Streamable {
 			cus = dai.readDouble();
 			cic = dai.readDouble();
 			cis = dai.readDouble();
-			fitInt = dai.readLong();
+			if(v==1){
+				// version 1 wrote the fit interval as a double
+				fitInt = (long) dai.readDouble();
+				satType = 'G';
+			}else{
+				fitInt = dai.readLong();
+				satType = dai.readChar();
+				double fraction = dai.readDouble();
+				refTime = new Time(l>0?l:System.currentTimeMillis(), fraction);
+			}
 		}else{
 			throw new IOException("Unknown format version:"+v);
 		}
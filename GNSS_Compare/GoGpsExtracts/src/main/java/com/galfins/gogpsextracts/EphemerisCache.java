@@ -0,0 +1,240 @@
+package com.galfins.gogpsextracts;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Persistent store of the navigation data received from SUPL, so that after a restart the
+ * positioning can start without waiting for the server, or without a network connection.
+ *
+ * One file is kept per constellation. Files are written to a temporary file and renamed, so a
+ * crash during writing never leaves a partial cache behind. The file starts with a magic number
+ * and a format version, followed by the constellation identifier, the ionospheric parameters
+ * and the ephemerides, all serialized with their Streamable implementations.
+ *
+ * Ephemerides are only loaded if they are still within their fit interval for the requested time.
+ */
+public class EphemerisCache {
+
+    private static final String TAG = "EphemerisCache";
+
+    private static final int MAGIC = 0x474E5343; // "GNSC"
+
+    /**
+     * Version of the file layout, files with a different version are ignored
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    /**
+     * Validity of an ephemeris with an unknown fit interval, in seconds from its reference time,
+     * same as in the findEph methods of the parsers
+     */
+    private static final long DEFAULT_VALIDITY_SECONDS = 7200;
+
+    private static File cacheDirectory = null;
+
+    /**
+     * Sets the directory in which the cache files are stored, null disables the cache
+     */
+    public static synchronized void setCacheDirectory(File directory) {
+        cacheDirectory = directory;
+    }
+
+    public static synchronized File getCacheDirectory() {
+        return cacheDirectory;
+    }
+
+    private static synchronized File getCacheFile(char constellation) {
+        if (cacheDirectory == null)
+            return null;
+        return new File(cacheDirectory, "ephemeris_" + constellation + ".bin");
+    }
+
+    /**
+     * Stores the GPS navigation data
+     * @param rnp navigation data received from the server
+     */
+    public static void saveGps(RinexNavigationParserGps rnp) {
+        save(NavigationProviders.GPS, rnp.getIono(0, null), rnp.getEphemerides());
+    }
+
+    /**
+     * Stores the Galileo navigation data
+     * @param rnp navigation data received from the server
+     */
+    public static void saveGalileo(RinexNavigationParserGalileo rnp) {
+        save(NavigationProviders.GALILEO, rnp.getIonoNeQuick(0, null), rnp.getEphemerides());
+    }
+
+    /**
+     * @param unixTime time for which the navigation data is needed, in milliseconds
+     * @return stored GPS navigation data, null if none of it is valid at unixTime
+     */
+    public static RinexNavigationParserGps loadGps(long unixTime) {
+
+        File file = getCacheFile(NavigationProviders.GPS);
+        if (file == null || !file.exists())
+            return null;
+
+        try (DataInputStream dis = open(file, NavigationProviders.GPS)) {
+
+            IonoGps iono = null;
+            if (dis.readBoolean()) {
+                checkMessage(dis, Streamable.MESSAGE_IONO);
+                iono = new IonoGps(dis, false);
+            }
+
+            List<EphGps> ephemerides = new ArrayList<>();
+            int count = dis.readInt();
+            for (int i = 0; i < count; i++) {
+                checkMessage(dis, Streamable.MESSAGE_EPHEMERIS);
+                EphGps eph = new EphGps(dis, false);
+                if (isValid(eph.getRefTime(), eph.getFitInt(), unixTime))
+                    ephemerides.add(eph);
+            }
+
+            Log.i(TAG, "loadGps: " + ephemerides.size() + " of " + count + " ephemerides valid");
+            return ephemerides.isEmpty() ? null : new RinexNavigationParserGps(ephemerides, iono);
+
+        } catch (IOException e) {
+            Log.w(TAG, "loadGps: ignoring cache file " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * @param unixTime time for which the navigation data is needed, in milliseconds
+     * @return stored Galileo navigation data, null if none of it is valid at unixTime
+     */
+    public static RinexNavigationParserGalileo loadGalileo(long unixTime) {
+
+        File file = getCacheFile(NavigationProviders.GALILEO);
+        if (file == null || !file.exists())
+            return null;
+
+        try (DataInputStream dis = open(file, NavigationProviders.GALILEO)) {
+
+            IonoGalileo iono = null;
+            if (dis.readBoolean()) {
+                checkMessage(dis, Streamable.MESSAGE_IONO);
+                iono = new IonoGalileo(dis, false);
+            }
+
+            List<EphGalileo> ephemerides = new ArrayList<>();
+            int count = dis.readInt();
+            for (int i = 0; i < count; i++) {
+                checkMessage(dis, Streamable.MESSAGE_EPHEMERIS);
+                EphGalileo eph = new EphGalileo(dis, false);
+                if (isValid(eph.getRefTime(), eph.getFitInt(), unixTime))
+                    ephemerides.add(eph);
+            }
+
+            Log.i(TAG, "loadGalileo: " + ephemerides.size() + " of " + count + " ephemerides valid");
+            return ephemerides.isEmpty() ? null : new RinexNavigationParserGalileo(ephemerides, iono);
+
+        } catch (IOException e) {
+            Log.w(TAG, "loadGalileo: ignoring cache file " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Checks if the ephemeris can be used at the given time, with the same fit interval rules
+     * as the findEph methods of the parsers
+     */
+    static boolean isValid(Time refTime, long fitInterval, long unixTime) {
+        if (refTime == null)
+            return false;
+
+        return Math.abs(refTime.getMsec() - unixTime) / 1000 <= getValidityMillis(fitInterval) / 1000;
+    }
+
+    /**
+     * @param fitInterval fit interval of an ephemeris in hours, 0 if unknown
+     * @return time from the reference time of the ephemeris during which it can be used,
+     * milliseconds
+     */
+    static long getValidityMillis(long fitInterval) {
+        long validitySeconds = fitInterval != 0 ? fitInterval * 3600 / 2 : DEFAULT_VALIDITY_SECONDS;
+        return validitySeconds * 1000;
+    }
+
+    private static void save(char constellation, Streamable iono, List<? extends Streamable> ephemerides) {
+
+        File file = getCacheFile(constellation);
+        if (file == null)
+            return;
+
+        File directory = file.getParentFile();
+        if (!directory.exists() && !directory.mkdirs()) {
+            Log.w(TAG, "save: could not create " + directory);
+            return;
+        }
+
+        File temporaryFile = new File(directory, file.getName() + ".tmp");
+
+        try {
+            try (DataOutputStream dos = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temporaryFile)))) {
+
+                dos.writeInt(MAGIC);
+                dos.writeInt(FORMAT_VERSION);
+                dos.writeChar(constellation);
+
+                dos.writeBoolean(iono != null);
+                if (iono != null)
+                    iono.write(dos);
+
+                dos.writeInt(ephemerides.size());
+                for (Streamable eph : ephemerides)
+                    eph.write(dos);
+            }
+
+            if (!temporaryFile.renameTo(file))
+                throw new IOException("Could not rename " + temporaryFile + " to " + file);
+
+            Log.i(TAG, "save: stored " + ephemerides.size() + " ephemerides in " + file);
+
+        } catch (IOException e) {
+            Log.e(TAG, "save: could not write " + file, e);
+            temporaryFile.delete();
+        }
+    }
+
+    private static DataInputStream open(File file, char constellation) throws IOException {
+
+        DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+        try {
+            if (dis.readInt() != MAGIC)
+                throw new IOException("Not an ephemeris cache file");
+
+            int version = dis.readInt();
+            if (version != FORMAT_VERSION)
+                throw new IOException("Unsupported cache version " + version);
+
+            if (dis.readChar() != constellation)
+                throw new IOException("Cache file of a different constellation");
+
+        } catch (IOException e) {
+            dis.close();
+            throw e;
+        }
+
+        return dis;
+    }
+
+    private static void checkMessage(DataInputStream dis, String expected) throws IOException {
+        String message = dis.readUTF();
+        if (!expected.equals(message))
+            throw new IOException("Unexpected message " + message + ", expected " + expected);
+    }
+}
@@ -0,0 +1,182 @@
+package com.galfins.gogpsextracts;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Index of ephemeris sets per satellite, sorted by reference time, used by the findEph methods
+ * of the navigation parsers instead of scanning all ephemeris sets.
+ *
+ * The closest ephemeris set is found with a binary search over the reference times of the
+ * satellite. The last selected set of each satellite is remembered, and as consecutive epochs
+ * usually select the same set, most lookups only compare the requested time with its neighbours.
+ *
+ * Ephemeris sets are indexed lazily on the next lookup, because the RINEX parsers add the sets
+ * before their fields (including the reference time) are read. Of several sets with the same
+ * reference time only the first one added is indexed, the same one the linear search selected.
+ *
+ * @param <E> ephemeris type
+ */
+public abstract class EphemerisIndex<E> {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final ArrayList<E> pending = new ArrayList<>();
+    private final ArrayList<SatTypeTable> tables = new ArrayList<>();
+    private int size = 0;
+
+    protected abstract int getSatID(E eph);
+
+    protected abstract char getSatType(E eph);
+
+    protected abstract Time getRefTime(E eph);
+
+    /**
+     * Adds an ephemeris set, it is indexed on the next lookup
+     */
+    public synchronized void add(E eph) {
+        pending.add(eph);
+    }
+
+    /**
+     * @param unixTime requested time in milliseconds
+     * @param satID satellite id
+     * @param satType satellite system
+     * @return ephemeris set of the satellite with the reference time closest to unixTime
+     * (the earlier one if two are equally close), null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized E findClosest(long unixTime, int satID, char satType) {
+        if (!pending.isEmpty())
+            indexPending();
+
+        Series series = getSeries(satType, satID, false);
+        if (series == null)
+            return null;
+
+        return (E) series.findClosest(unixTime);
+    }
+
+    /**
+     * @return number of indexed ephemeris sets
+     */
+    public synchronized int size() {
+        if (!pending.isEmpty())
+            indexPending();
+        return size;
+    }
+
+    private void indexPending() {
+        for (E eph : pending) {
+            Time refTime = getRefTime(eph);
+            Series series = getSeries(getSatType(eph), getSatID(eph), true);
+            if (refTime != null && series != null && series.insert(eph, refTime.getMsec()))
+                size++;
+        }
+        pending.clear();
+    }
+
+    private Series getSeries(char satType, int satID, boolean create) {
+        if (satID < 0)
+            return null;
+
+        SatTypeTable table = null;
+        for (int i = 0; i < tables.size(); i++) {
+            if (tables.get(i).satType == satType) {
+                table = tables.get(i);
+                break;
+            }
+        }
+
+        if (table == null) {
+            if (!create)
+                return null;
+            table = new SatTypeTable(satType);
+            tables.add(table);
+        }
+
+        if (satID >= table.series.length) {
+            if (!create)
+                return null;
+            table.series = Arrays.copyOf(table.series, satID + 1);
+        }
+
+        if (table.series[satID] == null && create)
+            table.series[satID] = new Series();
+
+        return table.series[satID];
+    }
+
+    /**
+     * Series of all satellites of one satellite system, by satellite id
+     */
+    private static class SatTypeTable {
+
+        private final char satType;
+        private Series[] series = new Series[0];
+
+        private SatTypeTable(char satType) {
+            this.satType = satType;
+        }
+    }
+
+    /**
+     * Ephemeris sets of a single satellite, sorted by reference time
+     */
+    private static class Series {
+
+        private Object[] entries = new Object[INITIAL_CAPACITY];
+        private long[] refTimes = new long[INITIAL_CAPACITY];
+        private int size = 0;
+        private int lastHit = -1;
+
+        /**
+         * @return false if a set with the same reference time is already indexed
+         */
+        private boolean insert(Object eph, long refTime) {
+            int index = Arrays.binarySearch(refTimes, 0, size, refTime);
+            if (index >= 0)
+                return false;
+
+            index = -index - 1;
+
+            if (size == entries.length) {
+                entries = Arrays.copyOf(entries, 2 * size);
+                refTimes = Arrays.copyOf(refTimes, 2 * size);
+            }
+
+            System.arraycopy(entries, index, entries, index + 1, size - index);
+            System.arraycopy(refTimes, index, refTimes, index + 1, size - index);
+            entries[index] = eph;
+            refTimes[index] = refTime;
+            size++;
+            lastHit = -1;
+
+            return true;
+        }
+
+        private Object findClosest(long time) {
+            if (size == 0)
+                return null;
+
+            if (lastHit >= 0 && isClosest(lastHit, time))
+                return entries[lastHit];
+
+            int index = Arrays.binarySearch(refTimes, 0, size, time);
+            if (index < 0) {
+                // first set after the requested time, or the previous one if it is not further away
+                index = -index - 1;
+                if (index == size || (index > 0 && time - refTimes[index - 1] <= refTimes[index] - time))
+                    index--;
+            }
+
+            lastHit = index;
+            return entries[index];
+        }
+
+        private boolean isClosest(int index, long time) {
+            return (index == 0 || time - refTimes[index - 1] > refTimes[index] - time)
+                    && (index == size - 1 || refTimes[index + 1] - time >= time - refTimes[index]);
+        }
+    }
+}
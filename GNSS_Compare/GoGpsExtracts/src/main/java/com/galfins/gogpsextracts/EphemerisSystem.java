@@ -19,8 +19,6 @@
  */
 package com.galfins.gogpsextracts;
 
-import java.util.Arrays;
-
 import org.ejml.simple.SimpleMatrix;
 
 /**
@@ -33,6 +31,8 @@ import org.ejml.simple.SimpleMatrix;
 
 public abstract class EphemerisSystem {
 
+    private final GlonassOrbitIntegrator glonassIntegrator = new GlonassOrbitIntegrator();
+
     /**
      * @param time      (GPS time in seconds)
      * @param satID
@@ -230,9 +230,6 @@ public abstract class EphemerisSystem {
 //					System.out.println("En: " + En);
 //					System.out.println("					");
 					
-					/* integration step */
-            int int_step = 60; // [s]
-					
 					/* Compute satellite clock error */
             double satelliteClockError = computeSatelliteClockError(unixTime, eph, obsPseudorange);
 //				    System.out.println("satelliteClockError: " + satelliteClockError);
@@ -242,164 +239,23 @@ public abstract class EphemerisSystem {
 //				    System.out.println("tGPS: " + tGPS);
 					
 				    /* Time from the ephemerides reference epoch */
-            Time reftime = new Time(eph.getWeek(), tGPS);
-            double tk2 = checkGpsTime(tGPS - toe - reftime.getLeapSeconds());
+            int leapSeconds = GnssTime.getLeapSeconds(GnssTime.gpsToUnixMillis(eph.getWeek(), tGPS));
+            double tk2 = checkGpsTime(tGPS - toe - leapSeconds);
 //					System.out.println("tk2: " + tk2);
 				    
-				    /* number of iterations on "full" steps */
-            int n = (int) Math.floor(Math.abs(tk2 / int_step));
-//					System.out.println("Number of iterations: " + n);
-					
-					/* array containing integration steps (same sign as tk) */
-            double[] array = new double[n];
-            Arrays.fill(array, 1);
-            SimpleMatrix tkArray = new SimpleMatrix(n, 1, true, array);
-
-//					SimpleMatrix tkArray2  = tkArray.scale(2);
-            tkArray = tkArray.scale(int_step);
-            tkArray = tkArray.scale(tk2 / Math.abs(tk2));
-//					tkArray.print();
-            //double ii = tkArray * int_step * (tk2/Math.abs(tk2));
-					
-					/* check residual iteration step (i.e. remaining fraction of int_step) */
-            double int_step_res = tk2 % int_step;
-//				    System.out.println("int_step_res: " + int_step_res);
+            /* numerical integration from toe to tk, or from the last integrated state */
+            double[] state = new double[6];
+            glonassIntegrator.integrate(eph, tk2, state);
 
-            double[] intStepRes = new double[]{int_step_res};
-            SimpleMatrix int_stepArray = new SimpleMatrix(1, 1, false, intStepRes);
-//					int_stepArray.print();
-					
-					/* adjust the total number of iterations and the array of iteration steps */
-            if (int_step_res != 0) {
-                tkArray = tkArray.combine(n, 0, int_stepArray);
-//				        tkArray.print();
-                n = n + 1;
-                // tkArray = [ii; int_step_res];
-            }
-//				    System.out.println("n: " + n);				
-
-            // numerical integration steps (i.e. re-calculation of satellite positions from toe to tk)
-            double[] pos = {X, Y, Z};
-            double[] vel = {Xv, Yv, Zv};
-            double[] acc = {Xa, Ya, Za};
-            double[] pos1;
-            double[] vel1;
-
-            SimpleMatrix posArray = new SimpleMatrix(1, 3, true, pos);
-            SimpleMatrix velArray = new SimpleMatrix(1, 3, true, vel);
-            SimpleMatrix accArray = new SimpleMatrix(1, 3, true, acc);
-            SimpleMatrix pos1Array;
-            SimpleMatrix vel1Array;
-            SimpleMatrix pos2Array;
-            SimpleMatrix vel2Array;
-            SimpleMatrix pos3Array;
-            SimpleMatrix vel3Array;
-            SimpleMatrix pos4Array;
-            SimpleMatrix vel4Array;
-            SimpleMatrix pos1dotArray;
-            SimpleMatrix vel1dotArray;
-            SimpleMatrix pos2dotArray;
-            SimpleMatrix vel2dotArray;
-            SimpleMatrix pos3dotArray;
-            SimpleMatrix vel3dotArray;
-            SimpleMatrix pos4dotArray;
-            SimpleMatrix vel4dotArray;
-            SimpleMatrix subPosArray;
-            SimpleMatrix subVelArray;
-
-            for (int i = 0; i < n; i++) {
-						
-							/* Runge-Kutta numerical integration algorithm */
-                // step 1
-                pos1Array = posArray;
-                //pos1 = pos;
-                vel1Array = velArray;
-                //vel1 = vel;
-
-                // differential position
-                pos1dotArray = velArray;
-                //double[] pos1_dot = vel;
-                vel1dotArray = satellite_motion_diff_eq(pos1Array, vel1Array, accArray, Constants.ELL_A_GLO, Constants.GM_GLO, Constants.J2_GLO, Constants.OMEGAE_DOT_GLO);
-                //double[] vel1_dot = satellite_motion_diff_eq(pos1, vel1, acc, Constants.ELL_A_GLO, Constants.GM_GLO, Constants.J2_GLO, Constants.OMEGAE_DOT_GLO);
-//							vel1dotArray.print();
-
-                // step 2
-                pos2Array = pos1dotArray.scale(tkArray.get(i)).divide(2);
-                pos2Array = posArray.plus(pos2Array);
-                //double[] pos2 = pos + pos1_dot*ii(i)/2;
-//							System.out.println("## pos2Array: " ); pos2Array.print();
-
-                vel2Array = vel1dotArray.scale(tkArray.get(i)).divide(2);
-                vel2Array = velArray.plus(vel2Array);
-                //double[] vel2 = vel + vel1_dot * tkArray.get(i)/2;
-//							System.out.println("## vel2Array: " ); vel2Array.print();
-
-                pos2dotArray = vel2Array;
-                //double[] pos2_dot = vel2;
-                vel2dotArray = satellite_motion_diff_eq(pos2Array, vel2Array, accArray, Constants.ELL_A_GLO, Constants.GM_GLO, Constants.J2_GLO, Constants.OMEGAE_DOT_GLO);
-                //double[] vel2_dot = satellite_motion_diff_eq(pos2, vel2, acc, Constants.ELL_A_GLO, Constants.GM_GLO, Constants.J2_GLO, Constants.OMEGAE_DOT_GLO);
-//							System.out.println("## vel2dotArray: " ); vel2dotArray.print();																			
-
-                // step 3
-                pos3Array = pos2dotArray.scale(tkArray.get(i)).divide(2);
-                pos3Array = posArray.plus(pos3Array);
-//							double[] pos3 = pos + pos2_dot * tkArray.get(i)/2;
-//							System.out.println("## pos3Array: " ); pos3Array.print();
-
-                vel3Array = vel2dotArray.scale(tkArray.get(i)).divide(2);
-                vel3Array = velArray.plus(vel3Array);
-//					        double[] vel3 = vel + vel2_dot * tkArray.get(i)/2;
-//							System.out.println("## vel3Array: " ); vel3Array.print();
-
-                pos3dotArray = vel3Array;
-                //double[] pos3_dot = vel3;
-                vel3dotArray = satellite_motion_diff_eq(pos3Array, vel3Array, accArray, Constants.ELL_A_GLO, Constants.GM_GLO, Constants.J2_GLO, Constants.OMEGAE_DOT_GLO);
-                //double[] vel3_dot = satellite_motion_diff_eq(pos3, vel3, acc, Constants.ELL_A_GLO, Constants.GM_GLO, Constants.J2_GLO, Constants.OMEGAE_DOT_GLO);
-//							System.out.println("## vel3dotArray: " ); vel3dotArray.print();	
-
-                // step 4
-                pos4Array = pos3dotArray.scale(tkArray.get(i));
-                pos4Array = posArray.plus(pos4Array);
-                //double[] pos4 = pos + pos3_dot * tkArray.get(i);
-//							System.out.println("## pos4Array: " ); pos4Array.print();
-
-                vel4Array = vel3dotArray.scale(tkArray.get(i));
-                vel4Array = velArray.plus(vel4Array);
-                //double[] vel4 = vel + vel3_dot * tkArray.get(i);
-//							System.out.println("## vel4Array: " ); vel4Array.print();
-
-                pos4dotArray = vel4Array;
-                //double[] pos4_dot = vel4;
-                vel4dotArray = satellite_motion_diff_eq(pos4Array, vel4Array, accArray, Constants.ELL_A_GLO, Constants.GM_GLO, Constants.J2_GLO, Constants.OMEGAE_DOT_GLO);
-                //double[] vel4_dot = satellite_motion_diff_eq(pos4, vel4, acc, Constants.ELL_A_GLO, Constants.GM_GLO, Constants.J2_GLO, Constants.OMEGAE_DOT_GLO);
-//							System.out.println("## vel4dotArray: " ); vel4dotArray.print();																			
-
-                // final position and velocity
-                subPosArray = pos1dotArray.plus(pos2dotArray.scale(2)).plus(pos3dotArray.scale(2)).plus(pos4dotArray);
-                subPosArray = subPosArray.scale(tkArray.get(i)).divide(6);
-                posArray = posArray.plus(subPosArray);
-                //pos = pos + (pos1_dot + 2*pos2_dot + 2*pos3_dot + pos4_dot)*ii(s)/6;
-//							System.out.println("## posArray: " ); posArray.print();	
-
-                subVelArray = vel1dotArray.plus(vel2dotArray.scale(2)).plus(vel3dotArray.scale(2)).plus(vel4dotArray);
-                subVelArray = subVelArray.scale(tkArray.get(i)).divide(6);
-                velArray = velArray.plus(subVelArray);
-                //vel = vel + (vel1_dot + 2*vel2_dot + 2*vel3_dot + vel4_dot)*ii(s)/6;
-//							System.out.println("## velArray: " ); velArray.print();	
-//							System.out.println(" " );
-
-
-            }
-																		
 					/* transformation from PZ-90.02 to WGS-84 (G1150) */
-            double x1 = posArray.get(0) - 0.36;
-            double y1 = posArray.get(1) + 0.08;
-            double z1 = posArray.get(2) + 0.18;
-					
+            double x1 = state[0] - 0.36;
+            double y1 = state[1] + 0.08;
+            double z1 = state[2] + 0.18;
+
 					/* satellite velocity */
-            double Xv1 = velArray.get(0);
-            double Yv1 = velArray.get(1);
-            double Zv1 = velArray.get(2);
+            double Xv1 = state[3];
+            double Yv1 = state[4];
+            double Zv1 = state[5];
 					
 					/* Fill in the satellite position matrix */
             SatellitePosition sp = new SatellitePosition(unixTime, satID, satType, x1, y1, z1);
@@ -557,9 +413,6 @@ public abstract class EphemerisSystem {
 //					System.out.println("En: " + En);
 //					System.out.println("					");
 					
-					/* integration step */
-            int int_step = 60; // [s]
-					
 					/* Compute satellite clock error */
             double satelliteClockError = computeSatelliteClockError(unixTime, eph, obsPseudorange);
 //				    System.out.println("satelliteClockError: " + satelliteClockError);
@@ -569,164 +422,23 @@ public abstract class EphemerisSystem {
 //				    System.out.println("tGPS: " + tGPS);
 					
 				    /* Time from the ephemerides reference epoch */
-            Time reftime = new Time(eph.getWeek(), tGPS);
-            double tk2 = checkGpsTime(tGPS - toe - reftime.getLeapSeconds());
+            int leapSeconds = GnssTime.getLeapSeconds(GnssTime.gpsToUnixMillis(eph.getWeek(), tGPS));
+            double tk2 = checkGpsTime(tGPS - toe - leapSeconds);
 //					System.out.println("tk2: " + tk2);
 				    
-				    /* number of iterations on "full" steps */
-            int n = (int) Math.floor(Math.abs(tk2 / int_step));
-//					System.out.println("Number of iterations: " + n);
-					
-					/* array containing integration steps (same sign as tk) */
-            double[] array = new double[n];
-            Arrays.fill(array, 1);
-            SimpleMatrix tkArray = new SimpleMatrix(n, 1, true, array);
-
-//					SimpleMatrix tkArray2  = tkArray.scale(2);
-            tkArray = tkArray.scale(int_step);
-            tkArray = tkArray.scale(tk2 / Math.abs(tk2));
-//					tkArray.print();
-            //double ii = tkArray * int_step * (tk2/Math.abs(tk2));
-					
-					/* check residual iteration step (i.e. remaining fraction of int_step) */
-            double int_step_res = tk2 % int_step;
-//				    System.out.println("int_step_res: " + int_step_res);
+            /* numerical integration from toe to tk, or from the last integrated state */
+            double[] state = new double[6];
+            glonassIntegrator.integrate(eph, tk2, state);
 
-            double[] intStepRes = new double[]{int_step_res};
-            SimpleMatrix int_stepArray = new SimpleMatrix(1, 1, false, intStepRes);
-//					int_stepArray.print();
-					
-					/* adjust the total number of iterations and the array of iteration steps */
-            if (int_step_res != 0) {
-                tkArray = tkArray.combine(n, 0, int_stepArray);
-//				        tkArray.print();
-                n = n + 1;
-                // tkArray = [ii; int_step_res];
-            }
-//				    System.out.println("n: " + n);				
-
-            // numerical integration steps (i.e. re-calculation of satellite positions from toe to tk)
-            double[] pos = {X, Y, Z};
-            double[] vel = {Xv, Yv, Zv};
-            double[] acc = {Xa, Ya, Za};
-            double[] pos1;
-            double[] vel1;
-
-            SimpleMatrix posArray = new SimpleMatrix(1, 3, true, pos);
-            SimpleMatrix velArray = new SimpleMatrix(1, 3, true, vel);
-            SimpleMatrix accArray = new SimpleMatrix(1, 3, true, acc);
-            SimpleMatrix pos1Array;
-            SimpleMatrix vel1Array;
-            SimpleMatrix pos2Array;
-            SimpleMatrix vel2Array;
-            SimpleMatrix pos3Array;
-            SimpleMatrix vel3Array;
-            SimpleMatrix pos4Array;
-            SimpleMatrix vel4Array;
-            SimpleMatrix pos1dotArray;
-            SimpleMatrix vel1dotArray;
-            SimpleMatrix pos2dotArray;
-            SimpleMatrix vel2dotArray;
-            SimpleMatrix pos3dotArray;
-            SimpleMatrix vel3dotArray;
-            SimpleMatrix pos4dotArray;
-            SimpleMatrix vel4dotArray;
-            SimpleMatrix subPosArray;
-            SimpleMatrix subVelArray;
-
-            for (int i = 0; i < n; i++) {
-						
-							/* Runge-Kutta numerical integration algorithm */
-                // step 1
-                pos1Array = posArray;
-                //pos1 = pos;
-                vel1Array = velArray;
-                //vel1 = vel;
-
-                // differential position
-                pos1dotArray = velArray;
-                //double[] pos1_dot = vel;
-                vel1dotArray = satellite_motion_diff_eq(pos1Array, vel1Array, accArray, Constants.ELL_A_GLO, Constants.GM_GLO, Constants.J2_GLO, Constants.OMEGAE_DOT_GLO);
-                //double[] vel1_dot = satellite_motion_diff_eq(pos1, vel1, acc, Constants.ELL_A_GLO, Constants.GM_GLO, Constants.J2_GLO, Constants.OMEGAE_DOT_GLO);
-//							vel1dotArray.print();
-
-                // step 2
-                pos2Array = pos1dotArray.scale(tkArray.get(i)).divide(2);
-                pos2Array = posArray.plus(pos2Array);
-                //double[] pos2 = pos + pos1_dot*ii(i)/2;
-//							System.out.println("## pos2Array: " ); pos2Array.print();
-
-                vel2Array = vel1dotArray.scale(tkArray.get(i)).divide(2);
-                vel2Array = velArray.plus(vel2Array);
-                //double[] vel2 = vel + vel1_dot * tkArray.get(i)/2;
-//							System.out.println("## vel2Array: " ); vel2Array.print();
-
-                pos2dotArray = vel2Array;
-                //double[] pos2_dot = vel2;
-                vel2dotArray = satellite_motion_diff_eq(pos2Array, vel2Array, accArray, Constants.ELL_A_GLO, Constants.GM_GLO, Constants.J2_GLO, Constants.OMEGAE_DOT_GLO);
-                //double[] vel2_dot = satellite_motion_diff_eq(pos2, vel2, acc, Constants.ELL_A_GLO, Constants.GM_GLO, Constants.J2_GLO, Constants.OMEGAE_DOT_GLO);
-//							System.out.println("## vel2dotArray: " ); vel2dotArray.print();																			
-
-                // step 3
-                pos3Array = pos2dotArray.scale(tkArray.get(i)).divide(2);
-                pos3Array = posArray.plus(pos3Array);
-//							double[] pos3 = pos + pos2_dot * tkArray.get(i)/2;
-//							System.out.println("## pos3Array: " ); pos3Array.print();
-
-                vel3Array = vel2dotArray.scale(tkArray.get(i)).divide(2);
-                vel3Array = velArray.plus(vel3Array);
-//					        double[] vel3 = vel + vel2_dot * tkArray.get(i)/2;
-//							System.out.println("## vel3Array: " ); vel3Array.print();
-
-                pos3dotArray = vel3Array;
-                //double[] pos3_dot = vel3;
-                vel3dotArray = satellite_motion_diff_eq(pos3Array, vel3Array, accArray, Constants.ELL_A_GLO, Constants.GM_GLO, Constants.J2_GLO, Constants.OMEGAE_DOT_GLO);
-                //double[] vel3_dot = satellite_motion_diff_eq(pos3, vel3, acc, Constants.ELL_A_GLO, Constants.GM_GLO, Constants.J2_GLO, Constants.OMEGAE_DOT_GLO);
-//							System.out.println("## vel3dotArray: " ); vel3dotArray.print();	
-
-                // step 4
-                pos4Array = pos3dotArray.scale(tkArray.get(i));
-                pos4Array = posArray.plus(pos4Array);
-                //double[] pos4 = pos + pos3_dot * tkArray.get(i);
-//							System.out.println("## pos4Array: " ); pos4Array.print();
-
-                vel4Array = vel3dotArray.scale(tkArray.get(i));
-                vel4Array = velArray.plus(vel4Array);
-                //double[] vel4 = vel + vel3_dot * tkArray.get(i);
-//							System.out.println("## vel4Array: " ); vel4Array.print();
-
-                pos4dotArray = vel4Array;
-                //double[] pos4_dot = vel4;
-                vel4dotArray = satellite_motion_diff_eq(pos4Array, vel4Array, accArray, Constants.ELL_A_GLO, Constants.GM_GLO, Constants.J2_GLO, Constants.OMEGAE_DOT_GLO);
-                //double[] vel4_dot = satellite_motion_diff_eq(pos4, vel4, acc, Constants.ELL_A_GLO, Constants.GM_GLO, Constants.J2_GLO, Constants.OMEGAE_DOT_GLO);
-//							System.out.println("## vel4dotArray: " ); vel4dotArray.print();																			
-
-                // final position and velocity
-                subPosArray = pos1dotArray.plus(pos2dotArray.scale(2)).plus(pos3dotArray.scale(2)).plus(pos4dotArray);
-                subPosArray = subPosArray.scale(tkArray.get(i)).divide(6);
-                posArray = posArray.plus(subPosArray);
-                //pos = pos + (pos1_dot + 2*pos2_dot + 2*pos3_dot + pos4_dot)*ii(s)/6;
-//							System.out.println("## posArray: " ); posArray.print();	
-
-                subVelArray = vel1dotArray.plus(vel2dotArray.scale(2)).plus(vel3dotArray.scale(2)).plus(vel4dotArray);
-                subVelArray = subVelArray.scale(tkArray.get(i)).divide(6);
-                velArray = velArray.plus(subVelArray);
-                //vel = vel + (vel1_dot + 2*vel2_dot + 2*vel3_dot + vel4_dot)*ii(s)/6;
-//							System.out.println("## velArray: " ); velArray.print();	
-//							System.out.println(" " );
-
-
-            }
-																		
 					/* transformation from PZ-90.02 to WGS-84 (G1150) */
-            double x1 = posArray.get(0) - 0.36;
-            double y1 = posArray.get(1) + 0.08;
-            double z1 = posArray.get(2) + 0.18;
-					
+            double x1 = state[0] - 0.36;
+            double y1 = state[1] + 0.08;
+            double z1 = state[2] + 0.18;
+
 					/* satellite velocity */
-            double Xv1 = velArray.get(0);
-            double Yv1 = velArray.get(1);
-            double Zv1 = velArray.get(2);
+            double Xv1 = state[3];
+            double Yv1 = state[4];
+            double Zv1 = state[5];
 					
 					/* Fill in the satellite position matrix */
             SatellitePosition sp = new SatellitePosition(unixTime, satID, satType, x1, y1, z1);
@@ -971,65 +683,6 @@ public abstract class EphemerisSystem {
         return sp;
     }
 
-    private SimpleMatrix satellite_motion_diff_eq(SimpleMatrix pos1Array,
-                                                  SimpleMatrix vel1Array, SimpleMatrix accArray, long ellAGlo,
-                                                  double gmGlo, double j2Glo, double omegaeDotGlo) {
-        // TODO Auto-generated method stub
-		
-		/* renaming variables for better readability position */
-        double X = pos1Array.get(0);
-        double Y = pos1Array.get(1);
-        double Z = pos1Array.get(2);
-
-//		System.out.println("X: " + X);
-//		System.out.println("Y: " + Y);
-//		System.out.println("Z: " + Z);
-		
-		/* velocity */
-        double Xv = vel1Array.get(0);
-        double Yv = vel1Array.get(1);
-
-//		System.out.println("Xv: " + Xv);
-//		System.out.println("Yv: " + Yv);
-		
-		/* acceleration (i.e. perturbation) */
-        double Xa = accArray.get(0);
-        double Ya = accArray.get(1);
-        double Za = accArray.get(2);
-
-//		System.out.println("Xa: " + Xa);
-//		System.out.println("Ya: " + Ya);
-//		System.out.println("Za: " + Za);
-		
-		/* parameters */
-        double r = Math.sqrt(Math.pow(X, 2) + Math.pow(Y, 2) + Math.pow(Z, 2));
-        double g = -gmGlo / Math.pow(r, 3);
-        double h = j2Glo * 1.5 * Math.pow((ellAGlo / r), 2);
-        double k = 5 * Math.pow(Z, 2) / Math.pow(r, 2);
-
-//		System.out.println("r: " + r);
-//		System.out.println("g: " + g);
-//		System.out.println("h: " + h);
-//		System.out.println("k: " + k);
-		
-		/* differential velocity */
-        double[] vel_dot = new double[3];
-        vel_dot[0] = g * X * (1 - h * (k - 1)) + Xa + Math.pow(omegaeDotGlo, 2) * X + 2 * omegaeDotGlo * Yv;
-//		System.out.println("vel1: " + vel_dot[0]);
-
-        vel_dot[1] = g * Y * (1 - h * (k - 1)) + Ya + Math.pow(omegaeDotGlo, 2) * Y - 2 * omegaeDotGlo * Xv;
-//		System.out.println("vel2: " + vel_dot[1]);
-
-        vel_dot[2] = g * Z * (1 - h * (k - 3)) + Za;
-//		System.out.println("vel3: " + vel_dot[2]);
-
-        SimpleMatrix velDotArray = new SimpleMatrix(1, 3, true, vel_dot);
-//		velDotArray.print();
-
-        return velDotArray;
-    }
-
-
     /**
      * @param time (Uncorrected GPS time)
      * @return GPS time accounting for beginning or end of week crossover
@@ -1055,7 +708,7 @@ public abstract class EphemerisSystem {
         // double rho2 = Math.pow(diff.get(0), 2) + Math.pow(diff.get(1), 2)
         // 		+ Math.pow(diff.get(2), 2);
         // double traveltime = Math.sqrt(rho2) / Constants.SPEED_OF_LIGHT;
-        double receptionTime = (new Time(unixTime)).getGpsTime();
+        double receptionTime = GnssTime.unixMillisToGpsTime(unixTime);
         double traveltime = receptionTime + receiverClockError - transmissionTime;
 
         // Compute rotation angle
@@ -1088,7 +741,7 @@ public abstract class EphemerisSystem {
      */
     protected double computeClockCorrectedTransmissionTime(long unixTime, double satelliteClockError, double obsPseudorange) {
 
-        double gpsTime = (new Time(unixTime)).getGpsTime();
+        double gpsTime = GnssTime.unixMillisToGpsTime(unixTime);
 
         // Remove signal travel time from observation time
         double tRaw = (gpsTime - obsPseudorange /*this.range*/ / Constants.SPEED_OF_LIGHT);
@@ -1104,7 +757,7 @@ public abstract class EphemerisSystem {
 
         if (eph.getSatType() == 'R') {   // In case of GLONASS
 
-            double gpsTime = (new Time(unixTime)).getGpsTime();
+            double gpsTime = GnssTime.unixMillisToGpsTime(unixTime);
 //				System.out.println("gpsTime: " + gpsTime);
 //				System.out.println("obsPseudorange: " + obsPseudorange);
 
@@ -1122,7 +775,7 @@ public abstract class EphemerisSystem {
             return timeCorrection;
 
         } else {        // other than GLONASS
-            double gpsTime = (new Time(unixTime)).getGpsTime();
+            double gpsTime = GnssTime.unixMillisToGpsTime(unixTime);
             // Remove signal travel time from observation time
             double tRaw = (gpsTime - obsPseudorange /*this.range*/ / Constants.SPEED_OF_LIGHT);
 
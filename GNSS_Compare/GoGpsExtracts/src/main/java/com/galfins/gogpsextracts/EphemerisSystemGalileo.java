@@ -394,7 +394,7 @@ public abstract class EphemerisSystemGalileo {
 		// double rho2 = Math.pow(diff.get(0), 2) + Math.pow(diff.get(1), 2)
 		// + Math.pow(diff.get(2), 2);
 		// double traveltime = Math.sqrt(rho2) / Constants.SPEED_OF_LIGHT;
-		double receptionTime = (new Time(unixTime)).getGpsTime();
+		double receptionTime = GnssTime.unixMillisToGpsTime(unixTime);
 		double traveltime = receptionTime + receiverClockError - transmissionTime;
 
 		// Compute rotation angle
@@ -431,7 +431,7 @@ public abstract class EphemerisSystemGalileo {
 	protected double computeClockCorrectedTransmissionTime(long unixTime, double satelliteClockError,
 			double obsPseudorange) {
 
-		double gpsTime = (new Time(unixTime)).getGpsTime();
+		double gpsTime = GnssTime.unixMillisToGpsTime(unixTime);
 
 		// Remove signal travel time from observation time
 		double tRaw = (gpsTime - obsPseudorange /* this.range */ / Constants.SPEED_OF_LIGHT);
@@ -447,7 +447,7 @@ public abstract class EphemerisSystemGalileo {
 	 */
 	protected double computeSatelliteClockError(long unixTime, EphGalileo eph, double obsPseudorange) {
 
-			double gpsTime = (new Time(unixTime)).getGpsTime();
+			double gpsTime = GnssTime.unixMillisToGpsTime(unixTime);
 			// Remove signal travel time from observation time
 			double tRaw = (gpsTime - obsPseudorange /* this.range */ / Constants.SPEED_OF_LIGHT);
 
@@ -197,8 +197,8 @@ public abstract class EphemerisSystemGps {
 //				    System.out.println("tGPS: " + tGPS);
 					
 				    /* Time from the ephemerides reference epoch */
-					Time reftime = new Time(eph.getWeek(), tGPS);
-					double tk2 = checkGpsTime(tGPS - toe - reftime.getLeapSeconds());
+					int leapSeconds = GnssTime.getLeapSeconds(GnssTime.gpsToUnixMillis(eph.getWeek(), tGPS));
+					double tk2 = checkGpsTime(tGPS - toe - leapSeconds);
 //					System.out.println("tk2: " + tk2);
 				    
 				    /* number of iterations on "full" steps */
@@ -571,7 +571,7 @@ public abstract class EphemerisSystemGps {
 		// double rho2 = Math.pow(diff.get(0), 2) + Math.pow(diff.get(1), 2)
 		// 		+ Math.pow(diff.get(2), 2);
 		// double traveltime = Math.sqrt(rho2) / Constants.SPEED_OF_LIGHT;
-		double receptionTime = (new Time(unixTime)).getGpsTime();
+		double receptionTime = GnssTime.unixMillisToGpsTime(unixTime);
 		double traveltime = receptionTime + receiverClockError - transmissionTime;
 
 		// Compute rotation angle
@@ -604,7 +604,7 @@ public abstract class EphemerisSystemGps {
 	 */
 	protected double computeClockCorrectedTransmissionTime(long unixTime, double satelliteClockError, double obsPseudorange) {
 
-		double gpsTime = (new Time(unixTime)).getGpsTime();
+		double gpsTime = GnssTime.unixMillisToGpsTime(unixTime);
 
 		// Remove signal travel time from observation time
 		double tRaw = (gpsTime - obsPseudorange /*this.range*/ / Constants.SPEED_OF_LIGHT);
@@ -620,7 +620,7 @@ public abstract class EphemerisSystemGps {
 		
 		if (eph.getSatType() == 'R'){   // In case of GLONASS
 			
-				double gpsTime = (new Time(unixTime)).getGpsTime();
+				double gpsTime = GnssTime.unixMillisToGpsTime(unixTime);
 //				System.out.println("gpsTime: " + gpsTime);
 //				System.out.println("obsPseudorange: " + obsPseudorange);
 
@@ -638,7 +638,7 @@ public abstract class EphemerisSystemGps {
 				return timeCorrection;
 			
 		}else{		// other than GLONASS
-				double gpsTime = (new Time(unixTime)).getGpsTime();
+				double gpsTime = GnssTime.unixMillisToGpsTime(unixTime);
 				// Remove signal travel time from observation time
 				double tRaw = (gpsTime - obsPseudorange /*this.range*/ / Constants.SPEED_OF_LIGHT);
 		
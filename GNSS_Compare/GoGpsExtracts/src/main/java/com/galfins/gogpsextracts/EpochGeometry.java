@@ -0,0 +1,178 @@
+package com.galfins.gogpsextracts;
+
+import java.util.Arrays;
+
+/**
+ * Receiver to satellite geometry of one epoch, computed once per satellite and shared by the
+ * elevation mask, the corrections and the PVT methods.
+ *
+ * The receiver ENU rotation and geodetic coordinates are computed once in {@link #reset}, then
+ * {@link #add} stores for each satellite the line of sight unit vector (ECEF, from the receiver
+ * to the satellite), the range, the elevation and the azimuth in primitive arrays. The arrays
+ * grow as needed and are reused by the following epochs, so after the first epochs no objects
+ * are allocated.
+ *
+ * Elevation and azimuth are in degrees, as in {@link TopocentricCoordinates}, which they match.
+ * The values of an index remain valid until the next {@link #reset}.
+ */
+public class EpochGeometry {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private double receiverX, receiverY, receiverZ;
+    private double receiverLatitude, receiverLongitude, receiverHeight;
+    private double sinLat, cosLat, sinLon, cosLon;
+
+    private int size = 0;
+
+    private double[] lineOfSightX = new double[INITIAL_CAPACITY];
+    private double[] lineOfSightY = new double[INITIAL_CAPACITY];
+    private double[] lineOfSightZ = new double[INITIAL_CAPACITY];
+    private double[] range = new double[INITIAL_CAPACITY];
+    private double[] elevation = new double[INITIAL_CAPACITY];
+    private double[] azimuth = new double[INITIAL_CAPACITY];
+
+    /**
+     * Starts a new epoch: clears all satellites and computes the rotation of the receiver
+     * @param receiver receiver position, only read during this call
+     */
+    public void reset(Coordinates receiver) {
+        receiverX = receiver.getX();
+        receiverY = receiver.getY();
+        receiverZ = receiver.getZ();
+        receiverLatitude = receiver.getGeodeticLatitude();
+        receiverLongitude = receiver.getGeodeticLongitude();
+        receiverHeight = receiver.getGeodeticHeight();
+
+        double lam = Math.toRadians(receiverLongitude);
+        double phi = Math.toRadians(receiverLatitude);
+        sinLon = Math.sin(lam);
+        cosLon = Math.cos(lam);
+        sinLat = Math.sin(phi);
+        cosLat = Math.cos(phi);
+
+        size = 0;
+    }
+
+    /**
+     * Computes the geometry of a satellite with respect to the receiver of the current epoch
+     * @param satellite satellite position
+     * @return index of the satellite in this epoch
+     */
+    public int add(Coordinates satellite) {
+        if (size == range.length)
+            grow();
+
+        double dx = satellite.getX() - receiverX;
+        double dy = satellite.getY() - receiverY;
+        double dz = satellite.getZ() - receiverZ;
+
+        double e = -sinLon * dx + cosLon * dy;
+        double n = -sinLat * cosLon * dx - sinLat * sinLon * dy + cosLat * dz;
+        double u = cosLat * cosLon * dx + cosLat * sinLon * dy + sinLat * dz;
+
+        double horizontalDistance = Math.sqrt(e * e + n * n);
+        double distance = Math.sqrt(e * e + n * n + u * u);
+
+        int index = size++;
+
+        if (horizontalDistance < 1e-20) {
+            azimuth[index] = 0;
+            elevation[index] = 90;
+        } else {
+            double az = Math.toDegrees(Math.atan2(e, n));
+            azimuth[index] = az < 0 ? az + 360 : az;
+            elevation[index] = Math.toDegrees(Math.atan2(u, horizontalDistance));
+        }
+
+        range[index] = distance;
+        lineOfSightX[index] = dx / distance;
+        lineOfSightY[index] = dy / distance;
+        lineOfSightZ[index] = dz / distance;
+
+        return index;
+    }
+
+    private void grow() {
+        int capacity = 2 * range.length;
+        lineOfSightX = Arrays.copyOf(lineOfSightX, capacity);
+        lineOfSightY = Arrays.copyOf(lineOfSightY, capacity);
+        lineOfSightZ = Arrays.copyOf(lineOfSightZ, capacity);
+        range = Arrays.copyOf(range, capacity);
+        elevation = Arrays.copyOf(elevation, capacity);
+        azimuth = Arrays.copyOf(azimuth, capacity);
+    }
+
+    /**
+     * @return number of satellites added in the current epoch
+     */
+    public int size() {
+        return size;
+    }
+
+    public double getReceiverX() {
+        return receiverX;
+    }
+
+    public double getReceiverY() {
+        return receiverY;
+    }
+
+    public double getReceiverZ() {
+        return receiverZ;
+    }
+
+    /**
+     * @return geodetic latitude of the receiver, degrees
+     */
+    public double getReceiverLatitude() {
+        return receiverLatitude;
+    }
+
+    /**
+     * @return geodetic longitude of the receiver, degrees
+     */
+    public double getReceiverLongitude() {
+        return receiverLongitude;
+    }
+
+    /**
+     * @return ellipsoidal height of the receiver, meters
+     */
+    public double getReceiverHeight() {
+        return receiverHeight;
+    }
+
+    public double getLineOfSightX(int index) {
+        return lineOfSightX[index];
+    }
+
+    public double getLineOfSightY(int index) {
+        return lineOfSightY[index];
+    }
+
+    public double getLineOfSightZ(int index) {
+        return lineOfSightZ[index];
+    }
+
+    /**
+     * @return geometric distance between the receiver and the satellite, meters
+     */
+    public double getRange(int index) {
+        return range[index];
+    }
+
+    /**
+     * @return elevation of the satellite, degrees
+     */
+    public double getElevation(int index) {
+        return elevation[index];
+    }
+
+    /**
+     * @return azimuth of the satellite, degrees from north in [0, 360)
+     */
+    public double getAzimuth(int index) {
+        return azimuth[index];
+    }
+}
@@ -0,0 +1,205 @@
+package com.galfins.gogpsextracts;
+
+import java.util.Arrays;
+
+/**
+ * Runge-Kutta 4 integration of the GLONASS equations of motion (PZ-90, J2 and the broadcast
+ * lunar-solar accelerations) from the state vector of an ephemeris set.
+ *
+ * The integration works on primitive arrays with reusable scratch buffers. The last integrated
+ * state of each satellite is kept, so that consecutive epochs continue from it instead of
+ * integrating again from the reference time of the ephemeris.
+ *
+ * With a positive tolerance, the step is adapted by step doubling: a step is accepted when
+ * integrating it at once and in two halves differs by less than the tolerance in position.
+ */
+public class GlonassOrbitIntegrator {
+
+    /**
+     * Integration step of the goGPS implementation, seconds
+     */
+    public static final double DEFAULT_STEP = 60;
+
+    private static final double MIN_STEP = 1e-3;
+
+    private final double step;
+    private final double tolerance;
+
+    // scratch buffers of a step
+    private final double[] k1 = new double[6];
+    private final double[] k2 = new double[6];
+    private final double[] k3 = new double[6];
+    private final double[] k4 = new double[6];
+    private final double[] stage = new double[6];
+    private final double[] full = new double[6];
+    private final double[] half = new double[6];
+
+    private final double[] acceleration = new double[3];
+
+    // last integrated state per satellite id
+    private EphGps[] cachedEphemerides = new EphGps[0];
+    private double[] cachedTimes = new double[0];
+    private double[][] cachedStates = new double[0][];
+
+    /**
+     * Fixed step integration with the DEFAULT_STEP
+     */
+    public GlonassOrbitIntegrator() {
+        this(DEFAULT_STEP, 0);
+    }
+
+    /**
+     * @param step integration step, maximum step when adaptive, seconds
+     * @param tolerance position error of a step, meters; steps are fixed when not positive
+     */
+    public GlonassOrbitIntegrator(double step, double tolerance) {
+        this.step = step;
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Integrates the orbit from the reference time of the ephemeris, or from the last state
+     * integrated for it when that is closer
+     *
+     * @param eph GLONASS ephemeris set
+     * @param tk time from the ephemeris reference time, seconds
+     * @param state output position and velocity, PZ-90 meters and meters per second
+     */
+    public synchronized void integrate(EphGps eph, double tk, double[] state) {
+        int satID = eph.getSatID();
+        if (satID >= cachedEphemerides.length)
+            grow(satID + 1);
+
+        double[] cached = cachedStates[satID];
+        double t;
+        if (cachedEphemerides[satID] == eph && Math.abs(tk - cachedTimes[satID]) < Math.abs(tk)) {
+            System.arraycopy(cached, 0, state, 0, 6);
+            t = cachedTimes[satID];
+        } else {
+            state[0] = eph.getX();
+            state[1] = eph.getY();
+            state[2] = eph.getZ();
+            state[3] = eph.getXv();
+            state[4] = eph.getYv();
+            state[5] = eph.getZv();
+            t = 0;
+        }
+        acceleration[0] = eph.getXa();
+        acceleration[1] = eph.getYa();
+        acceleration[2] = eph.getZa();
+
+        if (tolerance > 0)
+            integrateAdaptive(state, tk - t);
+        else
+            integrateFixed(state, tk - t);
+
+        System.arraycopy(state, 0, cached, 0, 6);
+        cachedTimes[satID] = tk;
+        cachedEphemerides[satID] = eph;
+    }
+
+    /**
+     * Drops the integrated states, e.g. when the ephemerides were reloaded
+     */
+    public synchronized void reset() {
+        Arrays.fill(cachedEphemerides, null);
+    }
+
+    private void grow(int length) {
+        EphGps[] ephemerides = new EphGps[length];
+        double[] times = new double[length];
+        double[][] states = new double[length][];
+        System.arraycopy(cachedEphemerides, 0, ephemerides, 0, cachedEphemerides.length);
+        System.arraycopy(cachedTimes, 0, times, 0, cachedTimes.length);
+        System.arraycopy(cachedStates, 0, states, 0, cachedStates.length);
+        for (int i = cachedStates.length; i < length; i++)
+            states[i] = new double[6];
+        cachedEphemerides = ephemerides;
+        cachedTimes = times;
+        cachedStates = states;
+    }
+
+    /**
+     * Full steps towards the end time, then the remaining fraction of a step
+     */
+    private void integrateFixed(double[] state, double interval) {
+        int n = (int) Math.floor(Math.abs(interval / step));
+        double h = interval < 0 ? -step : step;
+        for (int i = 0; i < n; i++)
+            rungeKuttaStep(state, h, state);
+
+        double remainder = interval % step;
+        if (remainder != 0)
+            rungeKuttaStep(state, remainder, state);
+    }
+
+    private void integrateAdaptive(double[] state, double interval) {
+        double direction = interval < 0 ? -1 : 1;
+        double remaining = Math.abs(interval);
+        double h = Math.min(step, remaining);
+
+        while (remaining > 0) {
+            h = Math.min(h, remaining);
+
+            rungeKuttaStep(state, direction * h, full);
+            rungeKuttaStep(state, direction * h / 2, half);
+            rungeKuttaStep(half, direction * h / 2, half);
+
+            double error = Math.max(Math.abs(full[0] - half[0]),
+                    Math.max(Math.abs(full[1] - half[1]), Math.abs(full[2] - half[2])));
+
+            if (error > tolerance && h > MIN_STEP) {
+                h /= 2;
+                continue;
+            }
+
+            System.arraycopy(half, 0, state, 0, 6);
+            remaining -= h;
+
+            // the error of RK4 scales with the fifth power of the step
+            if (error < tolerance / 32)
+                h = Math.min(2 * h, step);
+        }
+    }
+
+    /**
+     * One RK4 step, result may be the input array
+     */
+    private void rungeKuttaStep(double[] state, double h, double[] result) {
+        derivatives(state, k1);
+        for (int i = 0; i < 6; i++)
+            stage[i] = state[i] + k1[i] * h / 2;
+        derivatives(stage, k2);
+        for (int i = 0; i < 6; i++)
+            stage[i] = state[i] + k2[i] * h / 2;
+        derivatives(stage, k3);
+        for (int i = 0; i < 6; i++)
+            stage[i] = state[i] + k3[i] * h;
+        derivatives(stage, k4);
+        for (int i = 0; i < 6; i++)
+            result[i] = state[i] + (k1[i] + 2 * k2[i] + 2 * k3[i] + k4[i]) * h / 6;
+    }
+
+    /**
+     * Equations of motion in the rotating PZ-90 frame
+     */
+    private void derivatives(double[] state, double[] derivatives) {
+        double x = state[0];
+        double y = state[1];
+        double z = state[2];
+
+        double r2 = x * x + y * y + z * z;
+        double r = Math.sqrt(r2);
+        double g = -Constants.GM_GLO / (r2 * r);
+        double h = Constants.J2_GLO * 1.5 * ((double) Constants.ELL_A_GLO * Constants.ELL_A_GLO / r2);
+        double k = 5 * z * z / r2;
+        double omega = Constants.OMEGAE_DOT_GLO;
+
+        derivatives[0] = state[3];
+        derivatives[1] = state[4];
+        derivatives[2] = state[5];
+        derivatives[3] = g * x * (1 - h * (k - 1)) + acceleration[0] + omega * omega * x + 2 * omega * state[4];
+        derivatives[4] = g * y * (1 - h * (k - 1)) + acceleration[1] + omega * omega * y - 2 * omega * state[3];
+        derivatives[5] = g * z * (1 - h * (k - 3)) + acceleration[2];
+    }
+}
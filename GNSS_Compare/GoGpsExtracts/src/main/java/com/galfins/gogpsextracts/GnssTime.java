@@ -0,0 +1,251 @@
+package com.galfins.gogpsextracts;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Immutable GNSS time, stored as nanoseconds of GPS time since the GPS epoch (January 6, 1980).
+ *
+ * Lightweight replacement of {@link Time} for the processing of the measurements: it holds a
+ * single long, and the static conversion methods work on primitives only, so they can be used
+ * for every satellite of every epoch without allocating. The leap second table is computed once.
+ *
+ * As in {@link Time}, "unix milliseconds" are the GPS time counted in milliseconds from
+ * January 1, 1970, without leap seconds. Only the UTC conversions take leap seconds into account.
+ * Galileo System Time is aligned with GPS time, only its week numbering differs.
+ */
+public final class GnssTime implements Comparable<GnssTime> {
+
+    public static final long NANOS_IN_MILLISECOND = 1000000L;
+    public static final long NANOS_IN_SECOND = 1000000000L;
+    public static final long NANOS_IN_WEEK = Constants.NUMBER_NANO_SECONDS_PER_WEEK;
+
+    private static final long SEC_IN_WEEK = Constants.DAYS_IN_WEEK * Constants.SEC_IN_DAY;
+
+    /**
+     * Unix milliseconds of the GPS and Galileo epochs
+     */
+    private static final long GPS_EPOCH_UNIX_MILLIS =
+            Constants.UNIX_GPS_DAYS_DIFF * Constants.SEC_IN_DAY * Constants.MILLISEC_IN_SEC;
+    private static final long GST_EPOCH_UNIX_MILLIS =
+            Constants.UNIX_GST_DAYS_DIFF * Constants.SEC_IN_DAY * Constants.MILLISEC_IN_SEC;
+
+    /**
+     * Dates (year, month, day) from which the number of leap seconds since the GPS epoch
+     * increased by one, the first entry is the GPS epoch itself
+     */
+    private static final int[][] LEAP_DATES = {
+            {1980, 1, 6},
+            {1981, 7, 1},
+            {1982, 7, 1},
+            {1983, 7, 1},
+            {1985, 7, 1},
+            {1988, 1, 1},
+            {1990, 1, 1},
+            {1991, 1, 1},
+            {1992, 7, 1},
+            {1993, 7, 1},
+            {1994, 7, 1},
+            {1996, 1, 1},
+            {1997, 7, 1},
+            {1999, 1, 1},
+            {2006, 1, 1},
+            {2009, 1, 1},
+            {2012, 7, 1},
+            {2015, 7, 1},
+            {2017, 1, 1}
+    };
+
+    private static final long[] LEAP_DATES_UNIX_MILLIS = new long[LEAP_DATES.length];
+
+    static {
+        for (int i = 0; i < LEAP_DATES.length; i++)
+            LEAP_DATES_UNIX_MILLIS[i] = daysFromCivil(LEAP_DATES[i][0], LEAP_DATES[i][1], LEAP_DATES[i][2])
+                    * Constants.SEC_IN_DAY * Constants.MILLISEC_IN_SEC;
+    }
+
+    private final long gpsNanos;
+
+    private GnssTime(long gpsNanos) {
+        this.gpsNanos = gpsNanos;
+    }
+
+    /**
+     * @param gpsNanos nanoseconds of GPS time since the GPS epoch
+     */
+    public static GnssTime fromGpsNanos(long gpsNanos) {
+        return new GnssTime(gpsNanos);
+    }
+
+    public static GnssTime fromGpsWeekSeconds(int week, double secondsOfWeek) {
+        return new GnssTime(week * NANOS_IN_WEEK + Math.round(secondsOfWeek * NANOS_IN_SECOND));
+    }
+
+    public static GnssTime fromGalileoWeekSeconds(int week, double secondsOfWeek) {
+        return new GnssTime((GST_EPOCH_UNIX_MILLIS - GPS_EPOCH_UNIX_MILLIS) * NANOS_IN_MILLISECOND
+                + week * NANOS_IN_WEEK + Math.round(secondsOfWeek * NANOS_IN_SECOND));
+    }
+
+    /**
+     * @param unixMillis GPS time in milliseconds since January 1, 1970
+     */
+    public static GnssTime fromUnixMillis(long unixMillis) {
+        return new GnssTime((unixMillis - GPS_EPOCH_UNIX_MILLIS) * NANOS_IN_MILLISECOND);
+    }
+
+    /**
+     * @param utcMillis UTC in milliseconds since January 1, 1970, e.g. System.currentTimeMillis()
+     */
+    public static GnssTime fromUtcMillis(long utcMillis) {
+        return fromUnixMillis(utcMillis + getLeapSeconds(utcMillis) * Constants.MILLISEC_IN_SEC);
+    }
+
+    public long getGpsNanos() {
+        return gpsNanos;
+    }
+
+    public int getGpsWeek() {
+        return (int) floorDiv(gpsNanos, NANOS_IN_WEEK);
+    }
+
+    public double getGpsSecondsOfWeek() {
+        return (gpsNanos - floorDiv(gpsNanos, NANOS_IN_WEEK) * NANOS_IN_WEEK) / (double) NANOS_IN_SECOND;
+    }
+
+    public int getGalileoWeek() {
+        return (int) floorDiv(getGalileoNanos(), NANOS_IN_WEEK);
+    }
+
+    public double getGalileoSecondsOfWeek() {
+        long galileoNanos = getGalileoNanos();
+        return (galileoNanos - floorDiv(galileoNanos, NANOS_IN_WEEK) * NANOS_IN_WEEK) / (double) NANOS_IN_SECOND;
+    }
+
+    /**
+     * @return GPS time in milliseconds since January 1, 1970, as returned by {@link Time#getMsec()}
+     */
+    public long getUnixMillis() {
+        return GPS_EPOCH_UNIX_MILLIS + floorDiv(gpsNanos, NANOS_IN_MILLISECOND);
+    }
+
+    /**
+     * @return UTC in milliseconds since January 1, 1970
+     */
+    public long getUtcMillis() {
+        long unixMillis = getUnixMillis();
+        long utcMillis = unixMillis - getLeapSeconds(unixMillis) * Constants.MILLISEC_IN_SEC;
+        return unixMillis - getLeapSeconds(utcMillis) * Constants.MILLISEC_IN_SEC;
+    }
+
+    /**
+     * @return number of leap seconds between GPS time and UTC at this time
+     */
+    public int getLeapSeconds() {
+        long unixMillis = getUnixMillis();
+        return getLeapSeconds(unixMillis - getLeapSeconds(unixMillis) * Constants.MILLISEC_IN_SEC);
+    }
+
+    /**
+     * @param nanos nanoseconds to add, may be negative
+     */
+    public GnssTime plusNanos(long nanos) {
+        return new GnssTime(gpsNanos + nanos);
+    }
+
+    /**
+     * @return difference to other in seconds
+     */
+    public double secondsSince(GnssTime other) {
+        return (gpsNanos - other.gpsNanos) / (double) NANOS_IN_SECOND;
+    }
+
+    /**
+     * @return equivalent {@link Time}, for the interfaces which still require it
+     */
+    public Time toTime() {
+        long unixMillis = getUnixMillis();
+        long remainderNanos = gpsNanos - floorDiv(gpsNanos, NANOS_IN_MILLISECOND) * NANOS_IN_MILLISECOND;
+        return new Time(unixMillis, remainderNanos / (double) NANOS_IN_MILLISECOND);
+    }
+
+    private long getGalileoNanos() {
+        return gpsNanos - (GST_EPOCH_UNIX_MILLIS - GPS_EPOCH_UNIX_MILLIS) * NANOS_IN_MILLISECOND;
+    }
+
+    @Override
+    public int compareTo(GnssTime other) {
+        return gpsNanos < other.gpsNanos ? -1 : (gpsNanos == other.gpsNanos ? 0 : 1);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof GnssTime && ((GnssTime) other).gpsNanos == gpsNanos;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (gpsNanos ^ (gpsNanos >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "GPS week %d, %.9f s", getGpsWeek(), getGpsSecondsOfWeek());
+    }
+
+    /**
+     * Same as {@code new Time(week, secondsOfWeek).getMsec()}, without allocating
+     * @return GPS time in milliseconds since January 1, 1970
+     */
+    public static long gpsToUnixMillis(int week, double secondsOfWeek) {
+        return (long) ((Constants.UNIX_GPS_DAYS_DIFF * Constants.SEC_IN_DAY + week * SEC_IN_WEEK + secondsOfWeek)
+                * Constants.MILLISEC_IN_SEC);
+    }
+
+    /**
+     * Same as {@code new Time(week, secondsOfWeek, 'E').getMsec()}, without allocating
+     * @return GPS time in milliseconds since January 1, 1970
+     */
+    public static long galileoToUnixMillis(int week, double secondsOfWeek) {
+        return (long) ((Constants.UNIX_GST_DAYS_DIFF * Constants.SEC_IN_DAY + week * SEC_IN_WEEK + secondsOfWeek)
+                * Constants.MILLISEC_IN_SEC);
+    }
+
+    /**
+     * Same as {@code new Time(unixMillis).getGpsTime()}, without allocating
+     * @return GPS seconds of the week
+     */
+    public static double unixMillisToGpsTime(long unixMillis) {
+        double time = (double) unixMillis / Constants.MILLISEC_IN_SEC - Constants.UNIX_GPS_DAYS_DIFF * Constants.SEC_IN_DAY;
+        return time % SEC_IN_WEEK;
+    }
+
+    /**
+     * Same as {@code new Time(unixMillis).getLeapSeconds()}, without allocating
+     * @param unixMillis UTC in milliseconds since January 1, 1970
+     * @return number of leap seconds between GPS time and UTC, -1 before the GPS epoch
+     */
+    public static int getLeapSeconds(long unixMillis) {
+        int index = Arrays.binarySearch(LEAP_DATES_UNIX_MILLIS, unixMillis);
+        int passedDates = index >= 0 ? index + 1 : -index - 1;
+        return passedDates - 1;
+    }
+
+    private static long floorDiv(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        if ((dividend % divisor != 0) && ((dividend ^ divisor) < 0))
+            quotient--;
+        return quotient;
+    }
+
+    /**
+     * @return days since January 1, 1970 of the given date of the proleptic Gregorian calendar
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        long era = (year >= 0 ? year : year - 399) / 400;
+        long yearOfEra = year - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+}
@@ -0,0 +1,382 @@
+package com.galfins.gogpsextracts;
+
+import java.util.Arrays;
+
+/**
+ * Propagation of the broadcast Keplerian orbits (GPS, Galileo, BeiDou) of many satellites at
+ * once, for the reprocessing of long recordings.
+ *
+ * The ephemeris parameters are kept in primitive arrays, one slot per satellite (e.g. the
+ * satellite id). The constants derived from an ephemeris set (semi-major axis, mean motion,
+ * sqrt(1 - e^2), relativistic clock factor) are computed once, when the set is loaded into its
+ * slot, and kept until another set is loaded. The eccentric anomaly of each slot is solved with
+ * Newton iterations, started from the solution of the previous epoch, which usually converge in
+ * one or two steps.
+ *
+ * The computations are the same as in {@link EphemerisSystem#computeSatPositionAndVelocities}
+ * and {@link EphemerisSystemGalileo#computePositionSpeedGalileo}: satellite clock error,
+ * clock corrected transmission time, position corrected for the Earth rotation during the signal
+ * travel time, and velocity. Results are written to arrays owned by the caller, nothing is
+ * allocated per epoch. A single slot can also be propagated on its own, which is how the
+ * navigation parsers of RINEX files use it. GLONASS orbits are not Keplerian and are not
+ * supported.
+ *
+ * Instances are not thread safe.
+ */
+public class KeplerianOrbitBatch {
+
+    private static final int MAX_ITERATIONS = 12;
+    private static final double CONVERGENCE_THRESHOLD = 1e-12;
+
+    private static final double RELATIVISTIC_FACTOR = -2.0 * Math.sqrt(Constants.EARTH_GRAVITATIONAL_CONSTANT)
+            / (Constants.SPEED_OF_LIGHT * Constants.SPEED_OF_LIGHT);
+
+    private int capacity;
+
+    /**
+     * Ephemeris set loaded in each slot, null for empty slots
+     */
+    private Object[] ephemerides;
+
+    private double[] toe, toc, af0, af1, af2, tgd;
+    private double[] a, e, sqrtOneMinusE2, meanMotion, m0;
+    private double[] omega, omega0, omegaDot, i0, iDot;
+    private double[] cuc, cus, crc, crs, cic, cis;
+    private double[] relativisticClock;
+
+    /**
+     * Last solution of the Kepler equation of each slot, as offset of the eccentric anomaly
+     * from the mean anomaly, NaN if there is none
+     */
+    private double[] lastAnomalyOffset;
+
+    /**
+     * Outputs of the single slot propagation
+     */
+    private final double[] singleX = new double[1], singleY = new double[1], singleZ = new double[1];
+    private final double[] singleVx = new double[1], singleVy = new double[1], singleVz = new double[1];
+    private final double[] singleClockError = new double[1];
+
+    public KeplerianOrbitBatch(int capacity) {
+        allocate(Math.max(capacity, 1));
+    }
+
+    private void allocate(int newCapacity) {
+        ephemerides = ephemerides == null ? new Object[newCapacity] : Arrays.copyOf(ephemerides, newCapacity);
+        toe = grow(toe, newCapacity);
+        toc = grow(toc, newCapacity);
+        af0 = grow(af0, newCapacity);
+        af1 = grow(af1, newCapacity);
+        af2 = grow(af2, newCapacity);
+        tgd = grow(tgd, newCapacity);
+        a = grow(a, newCapacity);
+        e = grow(e, newCapacity);
+        sqrtOneMinusE2 = grow(sqrtOneMinusE2, newCapacity);
+        meanMotion = grow(meanMotion, newCapacity);
+        m0 = grow(m0, newCapacity);
+        omega = grow(omega, newCapacity);
+        omega0 = grow(omega0, newCapacity);
+        omegaDot = grow(omegaDot, newCapacity);
+        i0 = grow(i0, newCapacity);
+        iDot = grow(iDot, newCapacity);
+        cuc = grow(cuc, newCapacity);
+        cus = grow(cus, newCapacity);
+        crc = grow(crc, newCapacity);
+        crs = grow(crs, newCapacity);
+        cic = grow(cic, newCapacity);
+        cis = grow(cis, newCapacity);
+        relativisticClock = grow(relativisticClock, newCapacity);
+
+        int oldCapacity = lastAnomalyOffset == null ? 0 : capacity;
+        lastAnomalyOffset = grow(lastAnomalyOffset, newCapacity);
+        Arrays.fill(lastAnomalyOffset, oldCapacity, newCapacity, Double.NaN);
+
+        capacity = newCapacity;
+    }
+
+    private static double[] grow(double[] array, int newCapacity) {
+        return array == null ? new double[newCapacity] : Arrays.copyOf(array, newCapacity);
+    }
+
+    /**
+     * @return number of slots
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Loads a GPS or BeiDou ephemeris set into a slot. Nothing is done if the same set is
+     * already loaded.
+     * @param slot slot of the satellite, the batch grows if needed
+     * @param eph ephemeris set, null to empty the slot
+     */
+    public void setEphemeris(int slot, EphGps eph) {
+        if (!prepareSlot(slot, eph))
+            return;
+
+        load(slot, eph.getToe(), eph.getToc(), eph.getAf0(), eph.getAf1(), eph.getAf2(), eph.getTgd(),
+                eph.getRootA(), eph.getE(), eph.getDeltaN(), eph.getM0(),
+                eph.getOmega(), eph.getOmega0(), eph.getOmegaDot(), eph.getI0(), eph.getiDot(),
+                eph.getCuc(), eph.getCus(), eph.getCrc(), eph.getCrs(), eph.getCic(), eph.getCis());
+    }
+
+    /**
+     * Loads a Galileo ephemeris set into a slot. Nothing is done if the same set is already
+     * loaded.
+     * @param slot slot of the satellite, the batch grows if needed
+     * @param eph ephemeris set, null to empty the slot
+     */
+    public void setEphemeris(int slot, EphGalileo eph) {
+        if (!prepareSlot(slot, eph))
+            return;
+
+        load(slot, eph.getToe(), eph.getToc(), eph.getAf0(), eph.getAf1(), eph.getAf2(), eph.getTgd(),
+                eph.getRootA(), eph.getE(), eph.getDeltaN(), eph.getM0(),
+                eph.getOmega(), eph.getOmega0(), eph.getOmegaDot(), eph.getI0(), eph.getiDot(),
+                eph.getCuc(), eph.getCus(), eph.getCrc(), eph.getCrs(), eph.getCic(), eph.getCis());
+    }
+
+    /**
+     * @return ephemeris set loaded in the slot, null if there is none
+     */
+    public Object getEphemeris(int slot) {
+        return slot < capacity ? ephemerides[slot] : null;
+    }
+
+    /**
+     * @return true if eph has to be loaded into the slot
+     */
+    private boolean prepareSlot(int slot, Object eph) {
+        if (slot >= capacity)
+            allocate(Math.max(slot + 1, 2 * capacity));
+
+        if (ephemerides[slot] == eph)
+            return false;
+
+        ephemerides[slot] = eph;
+        lastAnomalyOffset[slot] = Double.NaN;
+        return eph != null;
+    }
+
+    private void load(int slot, double toe, double toc, double af0, double af1, double af2, double tgd,
+                      double rootA, double e, double deltaN, double m0,
+                      double omega, double omega0, double omegaDot, double i0, double iDot,
+                      double cuc, double cus, double crc, double crs, double cic, double cis) {
+        double a = rootA * rootA;
+
+        this.toe[slot] = toe;
+        this.toc[slot] = toc;
+        this.af0[slot] = af0;
+        this.af1[slot] = af1;
+        this.af2[slot] = af2;
+        this.tgd[slot] = tgd;
+        this.a[slot] = a;
+        this.e[slot] = e;
+        this.sqrtOneMinusE2[slot] = Math.sqrt(1 - e * e);
+        this.meanMotion[slot] = Math.sqrt(Constants.EARTH_GRAVITATIONAL_CONSTANT / (a * a * a)) + deltaN;
+        this.m0[slot] = m0;
+        this.omega[slot] = omega;
+        this.omega0[slot] = omega0;
+        this.omegaDot[slot] = omegaDot;
+        this.i0[slot] = i0;
+        this.iDot[slot] = iDot;
+        this.cuc[slot] = cuc;
+        this.cus[slot] = cus;
+        this.crc[slot] = crc;
+        this.crs[slot] = crs;
+        this.cic[slot] = cic;
+        this.cis[slot] = cis;
+        this.relativisticClock[slot] = RELATIVISTIC_FACTOR * rootA * e;
+    }
+
+    /**
+     * Computes the positions, velocities and clock errors of the satellites of an epoch. Slots
+     * without ephemeris set or with a NaN pseudorange are skipped and their outputs set to NaN.
+     * @param unixTime time of reception, GPS time in milliseconds since January 1, 1970
+     * @param receiverClockError receiver clock error, seconds
+     * @param pseudoranges pseudorange of each slot, meters
+     * @param count number of slots to compute, from slot 0
+     * @param x output ECEF position, meters, corrected for the Earth rotation
+     * @param y output ECEF position, meters
+     * @param z output ECEF position, meters
+     * @param vx output ECEF velocity, meters per second, may be null
+     * @param vy output ECEF velocity, meters per second, may be null
+     * @param vz output ECEF velocity, meters per second, may be null
+     * @param clockErrors output satellite clock errors, seconds, may be null
+     */
+    public void propagate(long unixTime, double receiverClockError, double[] pseudoranges, int count,
+                          double[] x, double[] y, double[] z,
+                          double[] vx, double[] vy, double[] vz,
+                          double[] clockErrors) {
+
+        double receptionTime = GnssTime.unixMillisToGpsTime(unixTime);
+        int slots = Math.min(count, capacity);
+
+        for (int i = 0; i < count; i++) {
+            if (i >= slots || ephemerides[i] == null || Double.isNaN(pseudoranges[i])) {
+                x[i] = y[i] = z[i] = Double.NaN;
+                if (vx != null)
+                    vx[i] = vy[i] = vz[i] = Double.NaN;
+                if (clockErrors != null)
+                    clockErrors[i] = Double.NaN;
+                continue;
+            }
+
+            propagateSlot(i, receptionTime, receiverClockError, pseudoranges[i], i, x, y, z, vx, vy, vz, clockErrors);
+        }
+    }
+
+    /**
+     * Computes the position, velocity and clock error of the satellite of a single slot, e.g.
+     * for the orbit evaluations of a navigation parser, which are requested one satellite at a
+     * time
+     * @param slot slot of the satellite
+     * @param unixTime time of reception, GPS time in milliseconds since January 1, 1970
+     * @param range pseudorange, meters
+     * @param satID satellite id of the returned position
+     * @param satType satellite system of the returned position
+     * @param receiverClockError receiver clock error, seconds
+     * @return position (corrected for the Earth rotation), velocity and clock error of the
+     * satellite, null if the slot has no ephemeris set or the pseudorange is NaN
+     */
+    public SatellitePosition propagate(int slot, long unixTime, double range, int satID, char satType,
+                                       double receiverClockError) {
+        if (slot >= capacity || ephemerides[slot] == null || Double.isNaN(range))
+            return null;
+
+        propagateSlot(slot, GnssTime.unixMillisToGpsTime(unixTime), receiverClockError, range, 0,
+                singleX, singleY, singleZ, singleVx, singleVy, singleVz, singleClockError);
+
+        SatellitePosition sp = new SatellitePosition(unixTime, satID, satType, singleX[0], singleY[0], singleZ[0]);
+        sp.setSatelliteClockError(singleClockError[0]);
+        sp.setSpeed(singleVx[0], singleVy[0], singleVz[0]);
+        return sp;
+    }
+
+    /**
+     * Propagates the orbit of a slot, the results are written at index {@code out} of the
+     * output arrays
+     */
+    private void propagateSlot(int i, double receptionTime, double receiverClockError, double pseudorange, int out,
+                               double[] x, double[] y, double[] z,
+                               double[] vx, double[] vy, double[] vz,
+                               double[] clockErrors) {
+
+        // Satellite clock error, at the uncorrected transmission time
+        double tRaw = receptionTime - pseudorange / Constants.SPEED_OF_LIGHT;
+        double dtr = relativisticClock[i] * Math.sin(solveKepler(i, tRaw));
+        double dt = checkGpsTime(tRaw - toc[i]);
+        double clockError = (af2[i] * dt + af1[i]) * dt + af0[i] + dtr - tgd[i];
+        dt = checkGpsTime(tRaw - clockError - toc[i]);
+        clockError = (af2[i] * dt + af1[i]) * dt + af0[i] + dtr - tgd[i];
+
+        // Clock corrected transmission time
+        double tGPS = tRaw - clockError;
+        double ek = solveKepler(i, tGPS);
+        double tk = checkGpsTime(tGPS - toe[i]);
+
+        double sinEk = Math.sin(ek);
+        double cosEk = Math.cos(ek);
+        double ecc = e[i];
+
+        // Position
+        double fk = Math.atan2(sqrtOneMinusE2[i] * sinEk, cosEk - ecc);
+        double phi = Math.IEEEremainder(fk + omega[i], 2 * Math.PI);
+        double sin2Phi = Math.sin(2 * phi);
+        double cos2Phi = Math.cos(2 * phi);
+        double u = phi + cuc[i] * cos2Phi + cus[i] * sin2Phi;
+        double r = a[i] * (1 - ecc * cosEk) + crc[i] * cos2Phi + crs[i] * sin2Phi;
+        double ik = i0[i] + iDot[i] * tk + cic[i] * cos2Phi + cis[i] * sin2Phi;
+        double omegaDotk = omegaDot[i] - Constants.EARTH_ANGULAR_VELOCITY;
+        double bigOmega = Math.IEEEremainder(omega0[i] + omegaDotk * tk
+                - Constants.EARTH_ANGULAR_VELOCITY * toe[i] + 2 * Math.PI, 2 * Math.PI);
+
+        double sinU = Math.sin(u);
+        double cosU = Math.cos(u);
+        double sinIk = Math.sin(ik);
+        double cosIk = Math.cos(ik);
+        double sinOmega = Math.sin(bigOmega);
+        double cosOmega = Math.cos(bigOmega);
+
+        double x1 = cosU * r;
+        double y1 = sinU * r;
+        double xs = x1 * cosOmega - y1 * cosIk * sinOmega;
+        double ys = x1 * sinOmega + y1 * cosIk * cosOmega;
+
+        // Earth rotation during the signal travel time
+        double omegaTau = Constants.EARTH_ANGULAR_VELOCITY * (receptionTime + receiverClockError - tGPS);
+        double sinOmegaTau = Math.sin(omegaTau);
+        double cosOmegaTau = Math.cos(omegaTau);
+
+        x[out] = cosOmegaTau * xs + sinOmegaTau * ys;
+        y[out] = -sinOmegaTau * xs + cosOmegaTau * ys;
+        z[out] = y1 * sinIk;
+
+        if (clockErrors != null)
+            clockErrors[out] = clockError;
+
+        if (vx == null)
+            return;
+
+        // Velocity, as in bc_velo.c (Remondi, GPS Solutions, 2004)
+        double n = meanMotion[i];
+        double oneMinusECosEk = 1.0 - ecc * cosEk;
+        double ekdot = n / oneMinusECosEk;
+        double takdot = sinEk * ekdot * (1.0 + ecc * Math.cos(fk)) / (Math.sin(fk) * oneMinusECosEk);
+
+        // the corrected argument of latitude and radius are u and r
+        double sin2U = Math.sin(2.0 * u);
+        double cos2U = Math.cos(2.0 * u);
+
+        double ukdot = takdot + 2.0 * (cus[i] * cos2U - cuc[i] * sin2U) * takdot;
+        double rkdot = a[i] * ecc * sinEk * n / oneMinusECosEk + 2.0 * (crs[i] * cos2U - crc[i] * sin2U) * takdot;
+        double ikdot = iDot[i] + (cis[i] * cos2U - cic[i] * sin2U) * 2.0 * takdot;
+
+        double xpkdot = rkdot * cosU - y1 * ukdot;
+        double ypkdot = rkdot * sinU + x1 * ukdot;
+
+        double inPlane = xpkdot - y1 * cosIk * omegaDotk;
+        double outOfPlane = x1 * omegaDotk + ypkdot * cosIk - y1 * sinIk * ikdot;
+
+        vx[out] = inPlane * cosOmega - outOfPlane * sinOmega;
+        vy[out] = inPlane * sinOmega + outOfPlane * cosOmega;
+        vz[out] = ypkdot * sinIk + y1 * cosIk * ikdot;
+    }
+
+    /**
+     * Solves the Kepler equation of a slot with Newton iterations, starting from the solution of
+     * the previous call
+     * @param time GPS seconds of the week
+     * @return eccentric anomaly
+     */
+    private double solveKepler(int slot, double time) {
+        double tk = checkGpsTime(time - toe[slot]);
+        double mk = Math.IEEEremainder(m0[slot] + meanMotion[slot] * tk + 2 * Math.PI, 2 * Math.PI);
+        double ecc = e[slot];
+
+        // the offset of the eccentric anomaly from the mean anomaly changes slowly
+        double ek = Double.isNaN(lastAnomalyOffset[slot]) ? mk : mk + lastAnomalyOffset[slot];
+
+        for (int i = 0; i < MAX_ITERATIONS; i++) {
+            double delta = (ek - ecc * Math.sin(ek) - mk) / (1 - ecc * Math.cos(ek));
+            ek -= delta;
+            if (Math.abs(delta) < CONVERGENCE_THRESHOLD)
+                break;
+        }
+
+        lastAnomalyOffset[slot] = ek - mk;
+        return ek;
+    }
+
+    /**
+     * @return time accounting for beginning or end of week crossover
+     */
+    private static double checkGpsTime(double time) {
+        if (time > Constants.SEC_IN_HALF_WEEK)
+            return time - 2 * Constants.SEC_IN_HALF_WEEK;
+        else if (time < -Constants.SEC_IN_HALF_WEEK)
+            return time + 2 * Constants.SEC_IN_HALF_WEEK;
+        return time;
+    }
+}
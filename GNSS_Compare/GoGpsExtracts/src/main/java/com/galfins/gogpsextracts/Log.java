@@ -0,0 +1,113 @@
+package com.galfins.gogpsextracts;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Logging used by the processing code, with the same calls as {@code android.util.Log}, so that
+ * the code does not depend on the Android SDK.
+ *
+ * Messages are passed to a single sink. By default they go to {@code java.util.logging}, the
+ * Android application installs a sink which forwards them to the system log.
+ */
+public final class Log {
+
+    /**
+     * Priorities, same values as in {@code android.util.Log}
+     */
+    public static final int VERBOSE = 2;
+    public static final int DEBUG = 3;
+    public static final int INFO = 4;
+    public static final int WARN = 5;
+    public static final int ERROR = 6;
+
+    /**
+     * Receives the logged messages
+     */
+    public interface Sink {
+        /**
+         * @param priority priority of the message, one of VERBOSE to ERROR
+         * @param tag tag of the source of the message
+         * @param msg message
+         * @param tr logged exception, or null
+         */
+        void println(int priority, String tag, String msg, Throwable tr);
+    }
+
+    /**
+     * Sink writing to java.util.logging, with one logger per tag
+     */
+    public static final Sink JAVA_LOGGING = new Sink() {
+        @Override
+        public void println(int priority, String tag, String msg, Throwable tr) {
+            Level level;
+            if (priority >= ERROR)
+                level = Level.SEVERE;
+            else if (priority == WARN)
+                level = Level.WARNING;
+            else if (priority == INFO)
+                level = Level.INFO;
+            else if (priority == DEBUG)
+                level = Level.FINE;
+            else
+                level = Level.FINER;
+
+            Logger logger = Logger.getLogger(tag);
+            if (logger.isLoggable(level))
+                logger.log(level, msg, tr);
+        }
+    };
+
+    private static volatile Sink sink = JAVA_LOGGING;
+
+    private Log() {
+    }
+
+    /**
+     * Sets the sink receiving all messages
+     * @param newSink sink, null restores the default one
+     */
+    public static void setSink(Sink newSink) {
+        sink = newSink != null ? newSink : JAVA_LOGGING;
+    }
+
+    public static Sink getSink() {
+        return sink;
+    }
+
+    public static void v(String tag, String msg) {
+        sink.println(VERBOSE, tag, msg, null);
+    }
+
+    public static void d(String tag, String msg) {
+        sink.println(DEBUG, tag, msg, null);
+    }
+
+    public static void d(String tag, String msg, Throwable tr) {
+        sink.println(DEBUG, tag, msg, tr);
+    }
+
+    public static void i(String tag, String msg) {
+        sink.println(INFO, tag, msg, null);
+    }
+
+    public static void i(String tag, String msg, Throwable tr) {
+        sink.println(INFO, tag, msg, tr);
+    }
+
+    public static void w(String tag, String msg) {
+        sink.println(WARN, tag, msg, null);
+    }
+
+    public static void w(String tag, String msg, Throwable tr) {
+        sink.println(WARN, tag, msg, tr);
+    }
+
+    public static void e(String tag, String msg) {
+        sink.println(ERROR, tag, msg, null);
+    }
+
+    public static void e(String tag, String msg, Throwable tr) {
+        sink.println(ERROR, tag, msg, tr);
+    }
+}
@@ -20,8 +20,6 @@
  */
 package com.galfins.gogpsextracts;
 
-import android.location.Location;
-
 import com.galfins.gogpsextracts.StreamResource;
 
 /**
@@ -35,6 +33,6 @@ public interface NavigationProducer extends StreamResource {
 
 	public SatellitePosition getGpsSatPosition(Observations obs, int satID, char satType, double receiverClockError);
 
-	public IonoGps getIono(long unixTime, Location initialLocation);
-	public IonoGalileo getIonoNeQuick(long unixTime, Location initialLocation);
+	public IonoGps getIono(long unixTime, Coordinates initialLocation);
+	public IonoGalileo getIonoNeQuick(long unixTime, Coordinates initialLocation);
 }
@@ -0,0 +1,119 @@
+package com.galfins.gogpsextracts;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Process-wide registry of navigation data providers, one per constellation.
+ *
+ * All constellation objects of all calculation modules share the same provider, so the
+ * navigation data is requested once and a single copy of the ephemerides is kept in memory.
+ * Requests made while a fetch is ongoing do not start their own, they get the data the
+ * provider already has, or null, until the fetch completes. The providers request the data
+ * again once their newest ephemeris is older than the refresh age, and drop it once no
+ * ephemeris is within its fit interval.
+ * The ephemeris sets handed out by the providers are shared and must be treated as read-only.
+ */
+public class NavigationProviders {
+
+    private static final String TAG = "NavigationProviders";
+
+    public static final char GPS = 'G';
+    public static final char GALILEO = 'E';
+
+    /**
+     * URL templates used by the providers
+     */
+    public static final String GPS_URL_TEMPLATE = RinexNavigationGps.BKG_HOURLY_SUPER_SEVER;
+    public static final String GALILEO_URL_TEMPLATE =
+            "ftp://igs.bkg.bund.de/IGS/BRDC/${yyyy}/${ddd}/BRDC00WRD_R_${yyyy}${ddd}0000_01D_EN.rnx.gz";
+
+    private static final HashMap<Character, NavigationProducer> providers = new HashMap<>();
+
+    /**
+     * @param constellation constellation identifier, GPS or GALILEO
+     * @return shared provider of the navigation data of the constellation, created on first use
+     */
+    public static synchronized NavigationProducer get(char constellation) {
+
+        NavigationProducer provider = providers.get(constellation);
+
+        if (provider == null) {
+            switch (constellation) {
+                case GPS:
+                    provider = new RinexNavigationGps(GPS_URL_TEMPLATE);
+                    break;
+                case GALILEO:
+                    provider = new RinexNavigationGalileo(GALILEO_URL_TEMPLATE);
+                    break;
+                default:
+                    throw new IllegalArgumentException("No navigation provider for constellation " + constellation);
+            }
+            providers.put(constellation, provider);
+        }
+
+        return provider;
+    }
+
+    /**
+     * @return shared GPS navigation data provider
+     */
+    public static RinexNavigationGps getGps() {
+        return (RinexNavigationGps) get(GPS);
+    }
+
+    /**
+     * @return shared Galileo navigation data provider
+     */
+    public static RinexNavigationGalileo getGalileo() {
+        return (RinexNavigationGalileo) get(GALILEO);
+    }
+
+    /**
+     * Replaces the providers by ones reading RINEX navigation files, for processing recorded
+     * sessions. Constellations keep the provider they were created with, so this has to be called
+     * before the calculation modules are created. {@link #clear()} restores the SUPL providers.
+     * @param gpsFiles GPS navigation files, null or empty to keep the current GPS provider
+     * @param galileoFiles Galileo navigation files, null or empty to keep the current Galileo
+     *                     provider
+     * @throws IOException if any of the files can't be read
+     */
+    public static void useRinexFiles(List<File> gpsFiles, List<File> galileoFiles) throws IOException {
+
+        // files are parsed before any provider is replaced
+        NavigationProducer gpsProvider = gpsFiles == null || gpsFiles.isEmpty() ?
+                null : new RinexFileNavigationGps(gpsFiles);
+        NavigationProducer galileoProvider = galileoFiles == null || galileoFiles.isEmpty() ?
+                null : new RinexFileNavigationGalileo(galileoFiles);
+
+        synchronized (NavigationProviders.class) {
+            if (gpsProvider != null)
+                providers.put(GPS, gpsProvider);
+            if (galileoProvider != null)
+                providers.put(GALILEO, galileoProvider);
+        }
+    }
+
+    /**
+     * Loads the navigation data stored in the EphemerisCache into the providers, so that the
+     * positioning starts from the first epoch without waiting for SUPL. Called when the
+     * processing is started, after the cache directory is set.
+     * @param unixTime current time, milliseconds
+     */
+    public static void loadCaches(long unixTime) {
+        if (!getGps().loadCache(unixTime))
+            Log.i(TAG, "loadCaches: no valid GPS navigation data in the cache");
+        if (!getGalileo().loadCache(unixTime))
+            Log.i(TAG, "loadCaches: no valid Galileo navigation data in the cache");
+    }
+
+    /**
+     * Removes all providers, the navigation data is requested again on the next use. Called
+     * when the processing is stopped.
+     */
+    public static synchronized void clear() {
+        providers.clear();
+    }
+}
@@ -0,0 +1,278 @@
+package com.galfins.gogpsextracts;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of satellite positions, velocities and clock errors, interpolated with Lagrange
+ * polynomials instead of evaluating the broadcast ephemeris for every request.
+ *
+ * For each satellite and ephemeris set, the time is divided in windows of
+ * {@link #WINDOW_MILLIS}. On the first request in a window, the ephemeris is evaluated at
+ * {@link #NODES} equally spaced times with {@link #compute}. The positions, with the Earth
+ * rotation correction removed, and the velocities are interpolated over the transmission time,
+ * the clock error over the uncorrected transmission time. Requests are then answered the way
+ * the ephemeris systems compute them: clock error, clock corrected transmission time, position
+ * and velocity, Earth rotation during the signal travel time.
+ *
+ * Each window is verified against the ephemeris between its first nodes, where the
+ * interpolation error is the largest, and in its middle. Windows exceeding
+ * {@link #POSITION_TOLERANCE} are not interpolated, their requests are computed directly.
+ *
+ * A window is rebuilt when a request comes with another ephemeris set than the one it was built
+ * with, e.g. after an ephemeris update. The least recently used windows are evicted.
+ *
+ * @param <E> ephemeris type
+ */
+public abstract class OrbitInterpolationCache<E> {
+
+    public static final long WINDOW_MILLIS = 120 * 1000L;
+    public static final int NODES = 7;
+
+    /**
+     * Maximum difference between the interpolated and the computed positions, meters
+     */
+    public static final double POSITION_TOLERANCE = 1e-3;
+
+    private static final long NODE_SPACING_MILLIS = WINDOW_MILLIS / (NODES - 1);
+
+    private static final int DEFAULT_MAX_WINDOWS = 256;
+
+    /**
+     * Barycentric weights of the equally spaced nodes
+     */
+    private static final double[] UNIFORM_WEIGHTS = new double[NODES];
+
+    static {
+        for (int j = 0; j < NODES; j++) {
+            double weight = 1;
+            for (int k = 0; k < NODES; k++)
+                if (k != j)
+                    weight /= (j - k) * NODE_SPACING_MILLIS / 1000.0;
+            UNIFORM_WEIGHTS[j] = weight;
+        }
+    }
+
+    private final LinkedHashMap<Long, Window> windows;
+
+    public OrbitInterpolationCache() {
+        this(DEFAULT_MAX_WINDOWS);
+    }
+
+    /**
+     * @param maxWindows number of windows kept, of all satellites
+     */
+    public OrbitInterpolationCache(final int maxWindows) {
+        windows = new LinkedHashMap<Long, Window>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Window> eldest) {
+                return size() > maxWindows;
+            }
+        };
+    }
+
+    /**
+     * Computes the position of a satellite from its ephemeris, as the ephemeris systems do
+     */
+    protected abstract SatellitePosition compute(long unixTime, double range, int satID, char satType,
+                                                 E eph, double receiverClockError);
+
+    /**
+     * @param unixTime time of reception, milliseconds
+     * @param range pseudorange, meters
+     * @param satID satellite id
+     * @param satType satellite system, GLONASS satellites are always computed directly
+     * @param eph ephemeris set of the satellite
+     * @param receiverClockError receiver clock error, seconds
+     * @return position (corrected for the Earth rotation), velocity and clock error of the
+     * satellite, within POSITION_TOLERANCE of compute()
+     */
+    public SatellitePosition getSatPositionAndVelocities(long unixTime, double range, int satID, char satType,
+                                                         E eph, double receiverClockError) {
+        if (satType == 'R')
+            return compute(unixTime, range, satID, satType, eph, receiverClockError);
+
+        double rangeMillis = range / Constants.SPEED_OF_LIGHT * Constants.MILLISEC_IN_SEC;
+        long windowIndex = floorDiv(unixTime - (long) Math.ceil(rangeMillis), WINDOW_MILLIS);
+
+        Window window = getWindow(windowIndex, satID, satType, eph);
+        if (!window.valid)
+            return compute(unixTime, range, satID, satType, eph, receiverClockError);
+
+        return window.evaluate(unixTime, range, satID, satType, receiverClockError);
+    }
+
+    private synchronized Window getWindow(long windowIndex, int satID, char satType, E eph) {
+        Long key = (((long) satType & 0xFF) << 56) | (((long) satID & 0xFFFF) << 40) | (windowIndex & 0xFFFFFFFFFFL);
+
+        Window window = windows.get(key);
+        if (window == null || window.eph != eph) {
+            window = new Window(eph, windowIndex * WINDOW_MILLIS, satID, satType);
+            windows.put(key, window);
+        }
+        return window;
+    }
+
+    /**
+     * Removes all windows of a satellite, e.g. when a new ephemeris set was received
+     */
+    public synchronized void invalidate(int satID, char satType) {
+        Iterator<Window> iterator = windows.values().iterator();
+        while (iterator.hasNext()) {
+            Window window = iterator.next();
+            if (window.satID == satID && window.satType == satType)
+                iterator.remove();
+        }
+    }
+
+    public synchronized void clear() {
+        windows.clear();
+    }
+
+    /**
+     * @return number of cached windows
+     */
+    public synchronized int size() {
+        return windows.size();
+    }
+
+    /**
+     * Interpolation polynomials of one satellite over one window. Times are in seconds from
+     * the start of the window.
+     */
+    private class Window {
+
+        private final E eph;
+        private final long startMillis;
+        private final int satID;
+        private final char satType;
+
+        private final double[] clockErrors = new double[NODES];
+
+        private final double[] transmissionTimes = new double[NODES];
+        private final double[] weights = new double[NODES];
+        private final double[] x = new double[NODES], y = new double[NODES], z = new double[NODES];
+        private final double[] vx = new double[NODES], vy = new double[NODES], vz = new double[NODES];
+
+        private final boolean valid;
+
+        private Window(E eph, long startMillis, int satID, char satType) {
+            this.eph = eph;
+            this.startMillis = startMillis;
+            this.satID = satID;
+            this.satType = satType;
+
+            for (int k = 0; k < NODES; k++) {
+                // with a zero range and receiver clock error, the travel time is the clock error
+                SatellitePosition sample = compute(startMillis + k * NODE_SPACING_MILLIS, 0.0, satID, satType, eph, 0.0);
+                if (sample == null || sample.getSpeed() == null) {
+                    valid = false;
+                    return;
+                }
+
+                double clockError = sample.getSatelliteClockError();
+                double omegaTau = Constants.EARTH_ANGULAR_VELOCITY * clockError;
+                double sinOmegaTau = Math.sin(omegaTau);
+                double cosOmegaTau = Math.cos(omegaTau);
+
+                clockErrors[k] = clockError;
+                transmissionTimes[k] = k * NODE_SPACING_MILLIS / 1000.0 - clockError;
+                x[k] = cosOmegaTau * sample.getX() - sinOmegaTau * sample.getY();
+                y[k] = sinOmegaTau * sample.getX() + cosOmegaTau * sample.getY();
+                z[k] = sample.getZ();
+                vx[k] = sample.getSpeed().get(0);
+                vy[k] = sample.getSpeed().get(1);
+                vz[k] = sample.getSpeed().get(2);
+            }
+
+            for (int j = 0; j < NODES; j++) {
+                double weight = 1;
+                for (int k = 0; k < NODES; k++)
+                    if (k != j)
+                        weight /= transmissionTimes[j] - transmissionTimes[k];
+                weights[j] = weight;
+            }
+
+            valid = verify(NODE_SPACING_MILLIS / 2) && verify(WINDOW_MILLIS / 2 + NODE_SPACING_MILLIS / 2);
+        }
+
+        private boolean verify(long offsetMillis) {
+            long unixTime = startMillis + offsetMillis;
+            SatellitePosition expected = compute(unixTime, 0.0, satID, satType, eph, 0.0);
+            if (expected == null)
+                return false;
+
+            SatellitePosition interpolated = evaluate(unixTime, 0.0, satID, satType, 0.0);
+            return expected.distanceTo(interpolated) < POSITION_TOLERANCE;
+        }
+
+        private SatellitePosition evaluate(long unixTime, double range, int satID, char satType, double receiverClockError) {
+            double receptionTime = (unixTime - startMillis) / 1000.0;
+            double rawTransmissionTime = receptionTime - range / Constants.SPEED_OF_LIGHT;
+
+            double clockError = interpolateClockError(rawTransmissionTime);
+            double transmissionTime = rawTransmissionTime - clockError;
+
+            // barycentric Lagrange interpolation over the transmission times of the nodes
+            double xs = 0, ys = 0, zs = 0, vxs = 0, vys = 0, vzs = 0, sum = 0;
+            for (int j = 0; j < NODES; j++) {
+                double dt = transmissionTime - transmissionTimes[j];
+                if (dt == 0) {
+                    // exactly on a node, only its values are used
+                    xs = ys = zs = vxs = vys = vzs = sum = 0;
+                }
+                double coefficient = dt == 0 ? 1 : weights[j] / dt;
+                xs += coefficient * x[j];
+                ys += coefficient * y[j];
+                zs += coefficient * z[j];
+                vxs += coefficient * vx[j];
+                vys += coefficient * vy[j];
+                vzs += coefficient * vz[j];
+                sum += coefficient;
+                if (dt == 0)
+                    break;
+            }
+            xs /= sum;
+            ys /= sum;
+
+            // Earth rotation during the signal travel time
+            double omegaTau = Constants.EARTH_ANGULAR_VELOCITY * (receptionTime + receiverClockError - transmissionTime);
+            double sinOmegaTau = Math.sin(omegaTau);
+            double cosOmegaTau = Math.cos(omegaTau);
+
+            SatellitePosition sp = new SatellitePosition(unixTime, satID, satType,
+                    cosOmegaTau * xs + sinOmegaTau * ys,
+                    -sinOmegaTau * xs + cosOmegaTau * ys,
+                    zs / sum);
+            sp.setSatelliteClockError(clockError);
+            sp.setSpeed(vxs / sum, vys / sum, vzs / sum);
+
+            return sp;
+        }
+
+        /**
+         * Barycentric Lagrange interpolation over the equally spaced nodes
+         */
+        private double interpolateClockError(double t) {
+            double numerator = 0;
+            double denominator = 0;
+            for (int j = 0; j < NODES; j++) {
+                double dt = t - j * NODE_SPACING_MILLIS / 1000.0;
+                if (dt == 0)
+                    return clockErrors[j];
+                double coefficient = UNIFORM_WEIGHTS[j] / dt;
+                numerator += coefficient * clockErrors[j];
+                denominator += coefficient;
+            }
+            return numerator / denominator;
+        }
+    }
+
+    private static long floorDiv(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        if ((dividend % divisor != 0) && ((dividend ^ divisor) < 0))
+            quotient--;
+        return quotient;
+    }
+}
@@ -0,0 +1,112 @@
+package com.galfins.gogpsextracts;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Galileo navigation data read from RINEX broadcast navigation files instead of SUPL, for the
+ * processing of recorded sessions of any age without a network connection.
+ *
+ * Each file is parsed once, on creation. Daily files (e.g. BRDC00WRD files) of several days
+ * can be given, the file whose ephemerides cover the requested time is used. Files compressed
+ * with gzip (.gz) or Unix compress (.Z) are uncompressed while read. The orbits are propagated
+ * with a KeplerianOrbitBatch per file.
+ */
+public class RinexFileNavigationGalileo extends RinexNavigationGalileo {
+
+    private final RinexNavigationParserGalileo[] parsers;
+
+    /**
+     * Time span covered by the fit intervals of the ephemerides of each file, milliseconds
+     */
+    private final long[] coverageStart;
+    private final long[] coverageEnd;
+
+    /**
+     * @param files RINEX navigation files
+     * @throws IOException if any of the files can't be read or holds no Galileo ephemerides
+     */
+    public RinexFileNavigationGalileo(List<File> files) throws IOException {
+        super(null);
+
+        parsers = new RinexNavigationParserGalileo[files.size()];
+        coverageStart = new long[files.size()];
+        coverageEnd = new long[files.size()];
+
+        for (int i = 0; i < files.size(); i++) {
+            File file = files.get(i);
+            parsers[i] = parse(file);
+
+            coverageStart[i] = Long.MAX_VALUE;
+            coverageEnd[i] = Long.MIN_VALUE;
+            for (EphGalileo eph : parsers[i].getEphemerides()) {
+                if (eph.getRefTime() == null)
+                    continue;
+                long validity = EphemerisCache.getValidityMillis(eph.getFitInt());
+                coverageStart[i] = Math.min(coverageStart[i], eph.getRefTime().getMsec() - validity);
+                coverageEnd[i] = Math.max(coverageEnd[i], eph.getRefTime().getMsec() + validity);
+            }
+
+            if (coverageStart[i] > coverageEnd[i])
+                throw new IOException("No Galileo ephemerides in " + file);
+        }
+    }
+
+    /**
+     * Creates a provider of the same navigation data for another processing. The parsed
+     * ephemerides are shared, the propagation of the orbits and its state are not.
+     * @param other provider whose files are used
+     */
+    public RinexFileNavigationGalileo(RinexFileNavigationGalileo other) {
+        super(null);
+
+        parsers = new RinexNavigationParserGalileo[other.parsers.length];
+        for (int i = 0; i < parsers.length; i++) {
+            parsers[i] = new RinexNavigationParserGalileo(
+                    other.parsers[i].getEphemerides(), other.parsers[i].getIonoNeQuick(0, null));
+            parsers[i].useOrbitBatch();
+        }
+
+        coverageStart = other.coverageStart;
+        coverageEnd = other.coverageEnd;
+    }
+
+    private static RinexNavigationParserGalileo parse(File file) throws IOException {
+
+        if (!file.isFile())
+            throw new FileNotFoundException(file.toString());
+
+        try (InputStream stream = RinexFileNavigationGps.openUncompressed(file)) {
+            RinexNavigationParserGalileo rnp = new RinexNavigationParserGalileo(stream, null);
+            rnp.init();
+            rnp.useOrbitBatch();
+            return rnp;
+        } catch (RuntimeException e) {
+            throw new IOException("Invalid RINEX navigation file " + file, e);
+        }
+    }
+
+    /**
+     * The files hold all the navigation data, nothing is loaded from the persistent cache
+     * @return false
+     */
+    @Override
+    public boolean loadCache(long unixTime) {
+        return false;
+    }
+
+    /**
+     * @return navigation data of the first file covering {@code unixTime}, null if none does
+     */
+    @Override
+    protected RinexNavigationParserGalileo getRNPByTimestamp(long unixTime, Coordinates initialLocation) {
+        for (int i = 0; i < parsers.length; i++) {
+            if (unixTime >= coverageStart[i] && unixTime <= coverageEnd[i])
+                return parsers[i];
+        }
+        return null;
+    }
+}
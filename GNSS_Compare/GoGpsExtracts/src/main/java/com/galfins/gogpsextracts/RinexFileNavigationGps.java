@@ -0,0 +1,128 @@
+package com.galfins.gogpsextracts;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * GPS navigation data read from RINEX broadcast navigation files instead of SUPL, for the
+ * processing of recorded sessions of any age without a network connection.
+ *
+ * Each file is parsed once, on creation. Daily files (e.g. brdc files) of several days can be
+ * given, the file whose ephemerides cover the requested time is used. Files compressed with
+ * gzip (.gz) or Unix compress (.Z) are uncompressed while read. The orbits are propagated with
+ * a KeplerianOrbitBatch per file.
+ */
+public class RinexFileNavigationGps extends RinexNavigationGps {
+
+    private final RinexNavigationParserGps[] parsers;
+
+    /**
+     * Time span covered by the fit intervals of the ephemerides of each file, milliseconds
+     */
+    private final long[] coverageStart;
+    private final long[] coverageEnd;
+
+    /**
+     * @param files RINEX navigation files
+     * @throws IOException if any of the files can't be read or holds no GPS ephemerides
+     */
+    public RinexFileNavigationGps(List<File> files) throws IOException {
+        super(null);
+
+        parsers = new RinexNavigationParserGps[files.size()];
+        coverageStart = new long[files.size()];
+        coverageEnd = new long[files.size()];
+
+        for (int i = 0; i < files.size(); i++) {
+            File file = files.get(i);
+            parsers[i] = parse(file);
+
+            coverageStart[i] = Long.MAX_VALUE;
+            coverageEnd[i] = Long.MIN_VALUE;
+            for (EphGps eph : parsers[i].getEphemerides()) {
+                if (eph.getRefTime() == null)
+                    continue;
+                long validity = EphemerisCache.getValidityMillis(eph.getFitInt());
+                coverageStart[i] = Math.min(coverageStart[i], eph.getRefTime().getMsec() - validity);
+                coverageEnd[i] = Math.max(coverageEnd[i], eph.getRefTime().getMsec() + validity);
+            }
+
+            if (coverageStart[i] > coverageEnd[i])
+                throw new IOException("No GPS ephemerides in " + file);
+        }
+    }
+
+    /**
+     * Creates a provider of the same navigation data for another processing. The parsed
+     * ephemerides are shared, the propagation of the orbits and its state are not.
+     * @param other provider whose files are used
+     */
+    public RinexFileNavigationGps(RinexFileNavigationGps other) {
+        super(null);
+
+        parsers = new RinexNavigationParserGps[other.parsers.length];
+        for (int i = 0; i < parsers.length; i++) {
+            parsers[i] = new RinexNavigationParserGps(
+                    other.parsers[i].getEphemerides(), other.parsers[i].getIono(0, null));
+            parsers[i].useOrbitBatch();
+        }
+
+        coverageStart = other.coverageStart;
+        coverageEnd = other.coverageEnd;
+    }
+
+    private static RinexNavigationParserGps parse(File file) throws IOException {
+
+        if (!file.isFile())
+            throw new FileNotFoundException(file.toString());
+
+        try (InputStream stream = openUncompressed(file)) {
+            RinexNavigationParserGps rnp = new RinexNavigationParserGps(stream, null);
+            rnp.init();
+            rnp.useOrbitBatch();
+            return rnp;
+        } catch (RuntimeException e) {
+            throw new IOException("Invalid RINEX navigation file " + file, e);
+        }
+    }
+
+    static InputStream openUncompressed(File file) throws IOException {
+        InputStream stream = new FileInputStream(file);
+        try {
+            if (file.getName().endsWith(".gz"))
+                return new GZIPInputStream(stream);
+            if (file.getName().endsWith(".Z"))
+                return new UncompressInputStream(stream);
+            return stream;
+        } catch (IOException e) {
+            stream.close();
+            throw e;
+        }
+    }
+
+    /**
+     * The files hold all the navigation data, nothing is loaded from the persistent cache
+     * @return false
+     */
+    @Override
+    public boolean loadCache(long unixTime) {
+        return false;
+    }
+
+    /**
+     * @return navigation data of the first file covering {@code unixTime}, null if none does
+     */
+    @Override
+    protected RinexNavigationParserGps getRNPByTimestamp(long unixTime, Coordinates initialLocation) {
+        for (int i = 0; i < parsers.length; i++) {
+            if (unixTime >= coverageStart[i] && unixTime <= coverageEnd[i])
+                return parsers[i];
+        }
+        return null;
+    }
+}
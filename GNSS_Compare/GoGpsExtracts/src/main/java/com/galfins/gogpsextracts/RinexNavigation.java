@@ -19,8 +19,6 @@
  */
 package com.galfins.gogpsextracts;
 
-import android.location.Location;
-
 import com.galfins.gogpsextracts.NavigationProducer;
 
 import java.io.File;
@@ -391,14 +389,14 @@ public class RinexNavigation implements NavigationProducer {
 	 * @see org.gogpsproject.NavigationProducer#getIono(int)
 	 */
 	@Override
-	public IonoGps getIono(long unixTime, Location initialLocation) {
+	public IonoGps getIono(long unixTime, Coordinates initialLocation) {
 		RinexNavigationParserGps rnp = getRNPByTimestamp(unixTime);
 		if(rnp!=null) return rnp.getIono(unixTime, initialLocation);
 		return null;
 	}
 
 	@Override
-	public IonoGalileo getIonoNeQuick(long unixTime, Location initialLocation) {
+	public IonoGalileo getIonoNeQuick(long unixTime, Coordinates initialLocation) {
 		return null;
 	}
 
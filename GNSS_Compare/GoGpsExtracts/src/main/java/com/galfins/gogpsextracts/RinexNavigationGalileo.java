@@ -19,16 +19,10 @@
  */
 package com.galfins.gogpsextracts;
 
-import android.location.Location;
-import android.util.ArraySet;
-import android.util.Base64;
-import android.util.Log;
-import android.util.Pair;
-import android.widget.Toast;
-
 import org.apache.commons.net.ftp.FTP;
 import org.apache.commons.net.ftp.FTPClient;
 import org.apache.commons.net.ftp.FTPReply;
+import org.apache.commons.net.util.Base64;
 
 import com.google.location.suplclient.ephemeris.EphemerisResponse;
 import com.google.location.suplclient.supl.SuplConnectionRequest;
@@ -43,6 +37,7 @@ import java.net.URL;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.TimeZone;
 import java.util.zip.GZIPInputStream;
@@ -144,7 +139,7 @@ public class RinexNavigationGalileo implements NavigationProducer {
 	/* (non-Javadoc)
 	 * @see org.gogpsproject.NavigationProducer#getGpsSatPosition(long, int, double)
 	 */
-	public SatellitePosition getGalileoSatPosition(long unixTime,double range,int satID, char satType, double receiverClockError, Location initialLocation) {
+	public SatellitePosition getGalileoSatPosition(long unixTime,double range,int satID, char satType, double receiverClockError, Coordinates initialLocation) {
 
 		RinexNavigationParserGalileo rnp = getRNPByTimestamp(unixTime, initialLocation);
 		if(rnp!=null){
@@ -158,7 +153,7 @@ public class RinexNavigationGalileo implements NavigationProducer {
 		return null;
 	}
 	
-	public SatellitePosition getGalileoSatVelocities(long unixTime,double range,int satID, char satType, double receiverClockError, Location initialLocation) {
+	public SatellitePosition getGalileoSatVelocities(long unixTime,double range,int satID, char satType, double receiverClockError, Coordinates initialLocation) {
 
 		RinexNavigationParserGalileo rnp = getRNPByTimestamp(unixTime, initialLocation);
 		if(rnp!=null){
@@ -175,23 +170,27 @@ public class RinexNavigationGalileo implements NavigationProducer {
 	}
 	
 	
-	private RinexNavigationParserGalileo rnp;
+	/**
+	 * Parser of the last ephemeris lookup, its GGTO parameters are returned by getRnpGgto
+	 */
+	private volatile RinexNavigationParserGalileo rnp;
 	
 	public BroadcastGGTO getRnpGgto(){
 		return rnp.ggto;
 	}
 	
-	public EphGalileo findEph(long unixTime, int satID, char satType, Location initialLocation) {
+	public EphGalileo findEph(long unixTime, int satID, char satType, Coordinates initialLocation) {
 		long requestedTime = unixTime;
 		EphGalileo eph = null;
 		int maxBack = 12;
 		while(eph==null && (maxBack--)>0){
 
-			rnp = getRNPByTimestamp(requestedTime, initialLocation);
+			RinexNavigationParserGalileo requestedRnp = getRNPByTimestamp(requestedTime, initialLocation);
 
-            if (rnp != null) {
-                if (rnp.isTimestampInEpocsRange(unixTime)) {
-                    eph = rnp.findEph(unixTime, satID, satType);
+            if (requestedRnp != null) {
+                rnp = requestedRnp;
+                if (requestedRnp.isTimestampInEpocsRange(unixTime)) {
+                    eph = requestedRnp.findEph(unixTime, satID, satType);
                 }
             }
             if (eph == null)
@@ -202,65 +201,137 @@ public class RinexNavigationGalileo implements NavigationProducer {
 	}
 	
 	/* Convenience method for adding an rnp to memory cache*/
-  public void put(long reqTime, RinexNavigationParserGalileo rnp) {
+  public synchronized void put(long reqTime, RinexNavigationParserGalileo rnp) {
     Time t = new Time(reqTime);
      String url = t.formatTemplate(urltemplate);
      if(!pool.containsKey(url))
        pool.put(url, rnp);
    }
 
-    ArraySet<String> retrievingFromServer = new ArraySet<>();
+    /**
+     * Navigation data which is currently being retrieved, used to start only a single request
+     * at a time, however many constellations share this object
+     */
+    private final HashSet<String> retrievingFromServer = new HashSet<>();
 
-    protected RinexNavigationParserGalileo getRNPByTimestamp(long unixTime, final Location initialLocation) {
-        RinexNavigationParserGalileo rnp = null;
-        long reqTime = unixTime;
+    /**
+     * Minimum time between two SUPL requests, after a request has failed
+     */
+    public static final long SUPL_RETRY_INTERVAL_MILLIS = 10000;
+
+    /**
+     * Age of the newest ephemeris after which the navigation data is requested again. Broadcast
+     * ephemerides are updated every two hours.
+     */
+    public static final long REFRESH_AGE_MILLIS = 2 * 3600 * 1000L;
+
+    /**
+     * Minimum time between two requests refreshing valid navigation data, so that a server which
+     * has no newer data is not queried on every epoch
+     */
+    public static final long REFRESH_INTERVAL_MILLIS = 5 * 60 * 1000L;
+
+    /**
+     * Key of the SUPL navigation data in the pools
+     */
+    private static final String SUPL_URL = "supl.google.com";
+
+    /**
+     * Navigation data loaded from the persistent cache, used only until the server responds.
+     * It is kept apart from {@code pool}, so that it never prevents a new request.
+     */
+    private final HashMap<String, RinexNavigationParserGalileo> cachedPool = new HashMap<>();
+
+    /**
+     * Earliest time of the next request to the server, milliseconds
+     */
+    private final HashMap<String, Long> nextRequestTime = new HashMap<>();
 
- //       do {
-            // found none, retrieve from urltemplate
-            Time t = new Time(reqTime);
-            //System.out.println("request: "+unixTime+" "+(new Date(t.getMsec()))+" week:"+t.getGpsWeek()+" "+t.getGpsWeekDay());
+    /**
+     * Loads the navigation data of the persistent cache, served from the first epoch on until
+     * the server responds. Called when the processing is started, before the first epoch.
+     * @param unixTime current time, milliseconds
+     * @return true if navigation data valid at {@code unixTime} was loaded
+     */
+    public boolean loadCache(long unixTime) {
+        RinexNavigationParserGalileo cachedRnp = EphemerisCache.loadGalileo(unixTime);
+        if (cachedRnp == null)
+            return false;
+
+        synchronized (this) {
+            if (!pool.containsKey(SUPL_URL))
+                cachedPool.put(SUPL_URL, cachedRnp);
+        }
+        return true;
+    }
 
-            //String url = t.formatTemplate(urltemplate);
-            final String url = "supl.google.com";
+    protected RinexNavigationParserGalileo getRNPByTimestamp(final long unixTime, final Coordinates initialLocation) {
 
-        if (pool.containsKey(url)) {
-            synchronized (this) {
-                rnp = pool.get(url);
+        //final String url = new Time(unixTime).formatTemplate(urltemplate);
+        final String url = SUPL_URL;
+
+        final RinexNavigationParserGalileo servedRnp;
+
+        synchronized (this) {
+            RinexNavigationParserGalileo rnp = pool.get(url);
+            if (rnp != null && isExpired(rnp, unixTime)) {
+                Log.i(TAG, "getRNPByTimestamp: navigation data expired");
+                pool.remove(url);
+                rnp = null;
             }
-        } else {
-            if(!retrievingFromServer.contains(url)) {
-                retrievingFromServer.add(url);
-                (new Thread(new Runnable() {
-                    @Override
-                    public void run() {
-                        RinexNavigationParserGalileo rnp = null;
-
-                        try {
-                            try {
-                                rnp = getFromSUPL(url, initialLocation);
-                            } catch (IndexOutOfBoundsException e){
-//                                try {
-//                                    MainActivity.makeNotification("SUPL client exception...");
-//                                } catch (Exception e1){
-//                                    e1.printStackTrace();
-//                                }
-                                e.printStackTrace();
-                            }
-                            synchronized (RinexNavigationGalileo.this) {
-                                if (rnp != null) {
-                                    pool.put(url, rnp);
-                                }
-                                retrievingFromServer.remove(url);
-                            }
-                        } catch (IOException e) {
-                            Log.e(TAG, "Supl Client error:", e);
-                        }
-                    }
-                })).start();
+
+            if (rnp == null) {
+                rnp = cachedPool.get(url);
+                if (rnp != null && isExpired(rnp, unixTime)) {
+                    Log.i(TAG, "getRNPByTimestamp: cached navigation data expired");
+                    cachedPool.remove(url);
+                    rnp = null;
+                }
+            } else if (!isStale(rnp, unixTime)) {
+                return rnp;
             }
-            return null;
+
+            // stale data is served while the newer data is requested
+            Long requestTime = nextRequestTime.get(url);
+            if (retrievingFromServer.contains(url)
+                    || (requestTime != null && System.currentTimeMillis() < requestTime))
+                return rnp;
+            retrievingFromServer.add(url);
+            servedRnp = rnp;
         }
-        return rnp;
+
+        (new Thread(new Runnable() {
+            @Override
+            public void run() {
+                RinexNavigationParserGalileo rnp = null;
+
+                try {
+                    rnp = getFromSUPL(url, initialLocation);
+                } catch (IndexOutOfBoundsException e) {
+                    e.printStackTrace();
+                } catch (IOException e) {
+                    Log.e(TAG, "Supl Client error:", e);
+                }
+
+                if (rnp != null)
+                    EphemerisCache.saveGalileo(rnp);
+
+                synchronized (RinexNavigationGalileo.this) {
+                    if (rnp != null) {
+                        pool.put(url, rnp);
+                        cachedPool.remove(url);
+                        nextRequestTime.put(url, System.currentTimeMillis() + REFRESH_INTERVAL_MILLIS);
+                    } else {
+                        Log.w(TAG, "getRNPByTimestamp: no data from " + url + ", retrying in "
+                                + SUPL_RETRY_INTERVAL_MILLIS + " ms");
+                        nextRequestTime.put(url, System.currentTimeMillis() + SUPL_RETRY_INTERVAL_MILLIS);
+                    }
+                    retrievingFromServer.remove(url);
+                }
+            }
+        })).start();
+
+        return servedRnp;
 //            try {
 //                if (pool.containsKey(url)) {
 //                    rnp = pool.get(url);
@@ -279,7 +350,30 @@ public class RinexNavigationGalileo implements NavigationProducer {
 //        } while (waitForData && rnp == null);
     }
 
-    private RinexNavigationParserGalileo getFromSUPL(String url, Location initialLocation) throws IOException {
+    /**
+     * @return true if none of the ephemerides of {@code rnp} can be used at {@code unixTime}
+     */
+    private static boolean isExpired(RinexNavigationParserGalileo rnp, long unixTime) {
+        for (EphGalileo eph : rnp.getEphemerides()) {
+            if (EphemerisCache.isValid(eph.getRefTime(), eph.getFitInt(), unixTime))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the newest ephemeris of {@code rnp} is older than {@link #REFRESH_AGE_MILLIS}
+     * at {@code unixTime}
+     */
+    private static boolean isStale(RinexNavigationParserGalileo rnp, long unixTime) {
+        for (EphGalileo eph : rnp.getEphemerides()) {
+            if (eph.getRefTime() != null && unixTime - eph.getRefTime().getMsec() < REFRESH_AGE_MILLIS)
+                return false;
+        }
+        return true;
+    }
+
+    private RinexNavigationParserGalileo getFromSUPL(String url, Coordinates initialLocation) throws IOException {
         RinexNavigationParserGalileo rnp = null;
 
         String suplName = url;
@@ -287,22 +381,11 @@ public class RinexNavigationGalileo implements NavigationProducer {
         final boolean sslEnabled = true;
         final boolean messageLoggingEnabled = true;
         final boolean loggingEnabled = true;
-        File rnf = new File(RNP_CACHE, suplName);
 
         TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
         Calendar c = Calendar.getInstance();
         Time t = new Time(c.getTimeInMillis());
 
-        if (rnf.exists()) {
-            System.out.println("Supl from cache file " + rnf);
-            try {
-                rnp = SuplFileToRnpParserGal(rnf);
-                return rnp;
-            } catch (Exception e) {
-                rnf.delete();
-            }
-        }
-
         try {
             Log.w(TAG, "getFromSUPL: Getting data using SUPL client..." );
             SuplConnectionRequest request =
@@ -316,8 +399,8 @@ public class RinexNavigationGalileo implements NavigationProducer {
 
             SuplController mSuplController = new SuplController(request);
 
-            mSuplController.sendSuplRequest((long) (initialLocation.getLatitude()*1e7), (long) (initialLocation.getLongitude()*1e7));
-            EphemerisResponse ephResponse = mSuplController.generateEphResponse((long) (initialLocation.getLatitude()*1e7), (long) (initialLocation.getLongitude()*1e7));
+            mSuplController.sendSuplRequest((long) (initialLocation.getGeodeticLatitude()*1e7), (long) (initialLocation.getGeodeticLongitude()*1e7));
+            EphemerisResponse ephResponse = mSuplController.generateEphResponse((long) (initialLocation.getGeodeticLatitude()*1e7), (long) (initialLocation.getGeodeticLongitude()*1e7));
 
             if (ephResponse != null) {
                 rnp = new RinexNavigationParserGalileo(ephResponse);
@@ -334,12 +417,6 @@ public class RinexNavigationGalileo implements NavigationProducer {
         return rnp;
     }
 
-    private RinexNavigationParserGalileo SuplFileToRnpParserGal(File rnf) {
-        RinexNavigationParserGalileo rnp = null;
-
-        return rnp;
-    }
-
     private RinexNavigationParserGalileo getFromFTP(String url) throws IOException{
 		RinexNavigationParserGalileo rnp = null;
 
@@ -480,7 +557,7 @@ public class RinexNavigationGalileo implements NavigationProducer {
             URL url = new URL("http://" + tUrl);
             HttpURLConnection con = (HttpURLConnection) url.openConnection();
             con.setRequestMethod("GET");
-            con.setRequestProperty("Authorization", "Basic " + new String(Base64.encode(("anonymous:info@eriadne.org").getBytes(), Base64.DEFAULT)));
+            con.setRequestProperty("Authorization", "Basic " + new String(Base64.encodeBase64(("anonymous:info@eriadne.org").getBytes())));
 //      con.setRequestProperty("Authorization", "Basic "+ new String(Base64.getEncoder().encode((new String("anonymous:info@eriadne.org").getBytes()))));
 
             int reply = con.getResponseCode();
@@ -535,14 +612,14 @@ public class RinexNavigationGalileo implements NavigationProducer {
 	 * @see org.gogpsproject.NavigationProducer#getIono(int)
 	 */
 	@Override
-	public IonoGps getIono(long unixTime, Location initialLocation) {
+	public IonoGps getIono(long unixTime, Coordinates initialLocation) {
 		RinexNavigationParserGalileo rnp = getRNPByTimestamp(unixTime, initialLocation);
 		if(rnp!=null) return rnp.getIono(unixTime, initialLocation);
 		return null;
 	}
 
     @Override
-    public IonoGalileo getIonoNeQuick(long unixTime, Location initialLocation) {
+    public IonoGalileo getIonoNeQuick(long unixTime, Coordinates initialLocation) {
         RinexNavigationParserGalileo rnp = getRNPByTimestamp(unixTime, initialLocation);
         if(rnp!=null) return rnp.getIonoNeQuick(unixTime, initialLocation);
         return null;
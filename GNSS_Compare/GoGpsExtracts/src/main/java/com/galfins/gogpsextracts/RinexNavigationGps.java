@@ -1,14 +1,9 @@
 package com.galfins.gogpsextracts;
 
-import android.location.Location;
-import android.util.ArraySet;
-import android.util.Base64;
-import android.util.Log;
-import android.util.Pair;
-
 import org.apache.commons.net.ftp.FTP;
 import org.apache.commons.net.ftp.FTPClient;
 import org.apache.commons.net.ftp.FTPReply;
+import org.apache.commons.net.util.Base64;
 
 import com.google.location.suplclient.ephemeris.EphemerisResponse;
 import com.google.location.suplclient.ephemeris.GpsEphemeris;
@@ -24,6 +19,7 @@ import java.net.URL;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.TimeZone;
 import java.util.zip.GZIPInputStream;
@@ -135,7 +131,7 @@ public class RinexNavigationGps implements NavigationProducer {
                             G: GPS)
       @param receiverClockError = 0.0
     */
-    public SatellitePosition getSatPositionAndVelocities(long unixTime, double range, int satID, char satType, double receiverClockError, Location initialLocation) {
+    public SatellitePosition getSatPositionAndVelocities(long unixTime, double range, int satID, char satType, double receiverClockError, Coordinates initialLocation) {
 
         //long unixTime = obs.getRefTime().getMsec();
         //double range = obs.getSatByIDType(satID, satType).getPseudorange(0);
@@ -153,7 +149,7 @@ public class RinexNavigationGps implements NavigationProducer {
         return null;
     }
 
-    public EphGps findEph(long unixTime, int satID, char satType, Location initialLocation) {
+    public EphGps findEph(long unixTime, int satID, char satType, Coordinates initialLocation) {
         long requestedTime = unixTime;
         EphGps eph = null;
         int maxBack = 12;
@@ -174,62 +170,163 @@ public class RinexNavigationGps implements NavigationProducer {
     }
 
     /* Convenience method for adding an rnp to memory cache*/
-    public void put(long reqTime, RinexNavigationParserGps rnp) {
+    public synchronized void put(long reqTime, RinexNavigationParserGps rnp) {
         Time t = new Time(reqTime);
         String url = t.formatTemplate(urltemplate);
         if (!pool.containsKey(url))
             pool.put(url, rnp);
     }
 
-    ArraySet<String> retrievingFromServer = new ArraySet<>();
+    /**
+     * Navigation data which is currently being retrieved, used to start only a single request
+     * at a time, however many constellations share this object
+     */
+    private final HashSet<String> retrievingFromServer = new HashSet<>();
 
-    protected RinexNavigationParserGps getRNPByTimestamp(long unixTime, final Location initialLocation) {
+    /**
+     * Minimum time between two SUPL requests, after a request has failed
+     */
+    public static final long SUPL_RETRY_INTERVAL_MILLIS = 10000;
 
-        RinexNavigationParserGps rnp = null;
-        long reqTime = unixTime;
+    /**
+     * Age of the newest ephemeris after which the navigation data is requested again. Broadcast
+     * ephemerides are updated every two hours.
+     */
+    public static final long REFRESH_AGE_MILLIS = 2 * 3600 * 1000L;
 
-//        do {
-            // found none, retrieve from urltemplate
-            Time t = new Time(reqTime);
-            //System.out.println("request: "+unixTime+" "+(new Date(t.getMsec()))+" week:"+t.getGpsWeek()+" "+t.getGpsWeekDay());
+    /**
+     * Minimum time between two requests refreshing valid navigation data, so that a server which
+     * has no newer data is not queried on every epoch
+     */
+    public static final long REFRESH_INTERVAL_MILLIS = 5 * 60 * 1000L;
+
+    /**
+     * Key of the SUPL navigation data in the pools
+     */
+    private static final String SUPL_URL = "supl.google.com";
 
-            //final String url = t.formatTemplate(urltemplate);
-            final String url = "supl.google.com";
+    /**
+     * Navigation data loaded from the persistent cache, used only until the server responds.
+     * It is kept apart from {@code pool}, so that it never prevents a new request.
+     */
+    private final HashMap<String, RinexNavigationParserGps> cachedPool = new HashMap<>();
 
-            if (pool.containsKey(url)) {
-                synchronized (this) {
-                    rnp = pool.get(url);
+    /**
+     * Earliest time of the next request to the server, milliseconds
+     */
+    private final HashMap<String, Long> nextRequestTime = new HashMap<>();
+
+    /**
+     * Loads the navigation data of the persistent cache, served from the first epoch on until
+     * the server responds. Called when the processing is started, before the first epoch.
+     * @param unixTime current time, milliseconds
+     * @return true if navigation data valid at {@code unixTime} was loaded
+     */
+    public boolean loadCache(long unixTime) {
+        RinexNavigationParserGps cachedRnp = EphemerisCache.loadGps(unixTime);
+        if (cachedRnp == null)
+            return false;
+
+        synchronized (this) {
+            if (!pool.containsKey(SUPL_URL))
+                cachedPool.put(SUPL_URL, cachedRnp);
+        }
+        return true;
+    }
+
+    protected RinexNavigationParserGps getRNPByTimestamp(final long unixTime, final Coordinates initialLocation) {
+
+        //final String url = new Time(unixTime).formatTemplate(urltemplate);
+        final String url = SUPL_URL;
+
+        final RinexNavigationParserGps servedRnp;
+
+        synchronized (this) {
+            RinexNavigationParserGps rnp = pool.get(url);
+            if (rnp != null && isExpired(rnp, unixTime)) {
+                Log.i(TAG, "getRNPByTimestamp: navigation data expired");
+                pool.remove(url);
+                rnp = null;
+            }
+
+            if (rnp == null) {
+                rnp = cachedPool.get(url);
+                if (rnp != null && isExpired(rnp, unixTime)) {
+                    Log.i(TAG, "getRNPByTimestamp: cached navigation data expired");
+                    cachedPool.remove(url);
+                    rnp = null;
                 }
-            } else {
-                if(!retrievingFromServer.contains(url)) {
-                    retrievingFromServer.add(url);
-                    (new Thread(new Runnable() {
-                        @Override
-                        public void run() {
-                            RinexNavigationParserGps rnp;
-
-                            try {
-                                rnp = getFromSUPL(url, initialLocation);
-                                synchronized (RinexNavigationGps.this) {
-                                    if (rnp != null) {
-                                        pool.put(url, rnp);
-                                    }
-                                    retrievingFromServer.remove(url);
-                                }
-                            } catch (IOException e) {
-                                System.out.println(e.getClass().getName() + " url: " + url);
-                            }
-                        }
-                    })).start();
+            } else if (!isStale(rnp, unixTime)) {
+                return rnp;
+            }
+
+            // stale data is served while the newer data is requested
+            Long requestTime = nextRequestTime.get(url);
+            if (retrievingFromServer.contains(url)
+                    || (requestTime != null && System.currentTimeMillis() < requestTime))
+                return rnp;
+            retrievingFromServer.add(url);
+            servedRnp = rnp;
+        }
+
+        (new Thread(new Runnable() {
+            @Override
+            public void run() {
+                RinexNavigationParserGps rnp = null;
+
+                try {
+                    rnp = getFromSUPL(url, initialLocation);
+                } catch (IOException e) {
+                    System.out.println(e.getClass().getName() + " url: " + url);
+                }
+
+                if (rnp != null)
+                    EphemerisCache.saveGps(rnp);
+
+                synchronized (RinexNavigationGps.this) {
+                    if (rnp != null) {
+                        pool.put(url, rnp);
+                        cachedPool.remove(url);
+                        nextRequestTime.put(url, System.currentTimeMillis() + REFRESH_INTERVAL_MILLIS);
+                    } else {
+                        Log.w(TAG, "getRNPByTimestamp: no data from " + url + ", retrying in "
+                                + SUPL_RETRY_INTERVAL_MILLIS + " ms");
+                        nextRequestTime.put(url, System.currentTimeMillis() + SUPL_RETRY_INTERVAL_MILLIS);
+                    }
+                    retrievingFromServer.remove(url);
                 }
-                return null;
             }
-            return rnp;
+        })).start();
+
+        return servedRnp;
 
 //        } while (waitForData && rnp == null);
     }
 
-    private RinexNavigationParserGps getFromSUPL(String url, Location initialLocation) throws IOException {
+    /**
+     * @return true if none of the ephemerides of {@code rnp} can be used at {@code unixTime}
+     */
+    private static boolean isExpired(RinexNavigationParserGps rnp, long unixTime) {
+        for (EphGps eph : rnp.getEphemerides()) {
+            if (EphemerisCache.isValid(eph.getRefTime(), eph.getFitInt(), unixTime))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the newest ephemeris of {@code rnp} is older than {@link #REFRESH_AGE_MILLIS}
+     * at {@code unixTime}
+     */
+    private static boolean isStale(RinexNavigationParserGps rnp, long unixTime) {
+        for (EphGps eph : rnp.getEphemerides()) {
+            if (eph.getRefTime() != null && unixTime - eph.getRefTime().getMsec() < REFRESH_AGE_MILLIS)
+                return false;
+        }
+        return true;
+    }
+
+    private RinexNavigationParserGps getFromSUPL(String url, Coordinates initialLocation) throws IOException {
         RinexNavigationParserGps rnp = null;
 
         String suplName = url;
@@ -237,17 +334,6 @@ public class RinexNavigationGps implements NavigationProducer {
         final boolean sslEnabled = true;
         final boolean messageLoggingEnabled = true;
         final boolean loggingEnabled = true;
-        File rnf = new File(RNP_CACHE, suplName);
-
-        if (rnf.exists()) {
-            System.out.println("Supl from cache file " + rnf);
-            try {
-                rnp = SuplFileToRnpParserGps(rnf);
-                return rnp;
-            } catch (Exception e) {
-                rnf.delete();
-            }
-        }
 
         try {
 
@@ -263,8 +349,8 @@ public class RinexNavigationGps implements NavigationProducer {
 
             SuplController mSuplController = new SuplController(request);
 
-            mSuplController.sendSuplRequest((long) (initialLocation.getLatitude()*1e7), (long) (initialLocation.getLongitude()*1e7));
-            EphemerisResponse ephResponse = mSuplController.generateEphResponse((long) (initialLocation.getLatitude()*1e7), (long) (initialLocation.getLongitude()*1e7));
+            mSuplController.sendSuplRequest((long) (initialLocation.getGeodeticLatitude()*1e7), (long) (initialLocation.getGeodeticLongitude()*1e7));
+            EphemerisResponse ephResponse = mSuplController.generateEphResponse((long) (initialLocation.getGeodeticLatitude()*1e7), (long) (initialLocation.getGeodeticLongitude()*1e7));
 
             if (ephResponse != null) {
                 rnp = new RinexNavigationParserGps(ephResponse);
@@ -282,13 +368,6 @@ public class RinexNavigationGps implements NavigationProducer {
         return rnp;
     }
 
-    private RinexNavigationParserGps SuplFileToRnpParserGps(File rnf) {
-        RinexNavigationParserGps rnp = null;
-
-
-        return rnp;
-    }
-
     private RinexNavigationParserGps getFromFTP(String url) throws IOException {
         RinexNavigationParserGps rnp = null;
 
@@ -423,7 +502,7 @@ public class RinexNavigationGps implements NavigationProducer {
             URL url = new URL("http://" + tUrl);
             HttpURLConnection con = (HttpURLConnection) url.openConnection();
             con.setRequestMethod("GET");
-            con.setRequestProperty("Authorization", "Basic "+ new String(Base64.encode(("anonymous:info@eriadne.org").getBytes(), Base64.DEFAULT)));
+            con.setRequestProperty("Authorization", "Basic "+ new String(Base64.encodeBase64(("anonymous:info@eriadne.org").getBytes())));
 //            con.setRequestProperty("Authorization", "Basic " + new String(Base64.getEncoder().encode((new String("anonymous:info@eriadne.org").getBytes()))));
 
             int reply = con.getResponseCode();
@@ -475,14 +554,14 @@ public class RinexNavigationGps implements NavigationProducer {
      * @see org.gogpsproject.NavigationProducer#getIono(int)
      */
     @Override
-    public IonoGps getIono(long unixTime, Location initialLocation) {
+    public IonoGps getIono(long unixTime, Coordinates initialLocation) {
         RinexNavigationParserGps rnp = getRNPByTimestamp(unixTime, initialLocation);
         if (rnp != null) return rnp.getIono(unixTime, initialLocation);
         return null;
     }
 
     @Override
-    public IonoGalileo getIonoNeQuick(long unixTime, Location initialLocation) {
+    public IonoGalileo getIonoNeQuick(long unixTime, Coordinates initialLocation) {
         return null;
     }
 
@@ -1,8 +1,5 @@
 package com.galfins.gogpsextracts;
 
-import android.location.Location;
-import android.util.Log;
-
 import com.galfins.gogpsextracts.EphemerisSystemGalileo;
 import com.google.location.suplclient.ephemeris.EphemerisResponse;
 import com.google.location.suplclient.ephemeris.GalEphemeris;
@@ -19,6 +16,8 @@ import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 
 
@@ -49,6 +48,32 @@ public class RinexNavigationParserGalileo extends EphemerisSystemGalileo impleme
 	public BroadcastGGTO ggto;
 
 	private ArrayList<EphGalileo> eph = new ArrayList<EphGalileo>(); /* GPS broadcast ephemerides */
+	/* ephemerides by satellite and reference time, used by findEph */
+	private final EphemerisIndex<EphGalileo> ephIndex = new EphemerisIndex<EphGalileo>() {
+		@Override
+		protected int getSatID(EphGalileo eph) {
+			return eph.getSatID();
+		}
+
+		@Override
+		protected char getSatType(EphGalileo eph) {
+			return eph.getSatType();
+		}
+
+		@Override
+		protected Time getRefTime(EphGalileo eph) {
+			return eph.getRefTime();
+		}
+	};
+	/* interpolated satellite positions, shared by all modules using this parser */
+	private final OrbitInterpolationCache<EphGalileo> orbitCache = new OrbitInterpolationCache<EphGalileo>() {
+		@Override
+		protected SatellitePosition compute(long unixTime, double range, int satID, char satType, EphGalileo eph, double receiverClockError) {
+			return computeOrbit(unixTime, range, satID, satType, eph, receiverClockError);
+		}
+	};
+	/* orbit propagation by satellite, null to compute each position with computePositionGalileo */
+	private volatile KeplerianOrbitBatch orbitBatch = null;
 	//private double[] iono = new double[8]; /* Ionosphere model parameters */
 	private IonoGalileo iono = null; /* Ionosphere model parameters */
 	//	private double A0; /* Delta-UTC parameters: A0 */
@@ -79,10 +104,19 @@ public class RinexNavigationParserGalileo extends EphemerisSystemGalileo impleme
 		}
 	}
 
+	/**
+	 * Creates a parser holding already decoded navigation data, e.g. read from EphemerisCache
+	 */
+	public RinexNavigationParserGalileo(List<EphGalileo> eph, IonoGalileo iono) {
+		for (EphGalileo e : eph)
+			addEph(e);
+		this.iono = iono;
+	}
+
 	public RinexNavigationParserGalileo(EphemerisResponse ephResponse) {
 		for (GnssEphemeris eph : ephResponse.ephList) {
 			if (eph instanceof GalEphemeris) {
-				this.eph.add(new EphGalileo((GalEphemeris)eph));
+				addEph(new EphGalileo((GalEphemeris)eph));
 			}
 		}
 		this.iono = new IonoGalileo(ephResponse.ionoProto2);
@@ -892,37 +926,22 @@ public class RinexNavigationParserGalileo extends EphemerisSystemGalileo impleme
 	 */
 	public EphGalileo findEph(long unixTime, int satID, char satType) {
 
-		long dt = 0;
 		long dtMin = 0;
 		long dtMax = 0;
-		long delta = 0;
-		EphGalileo refEph = null;
-
-		//long gpsTime = (new Time(unixTime)).getGpsTime();
-
-		for (int i = 0; i < eph.size(); i++) {
-			// Find ephemeris sets for given satellite
-			if (eph.get(i).getSatID() == satID && eph.get(i).getSatType() == satType) {
-				// Consider BeiDou time (BDT) for BeiDou satellites (14 sec difference wrt GPS time)
-				if (satType == 'C') {
-					delta = 14000;
-					unixTime = unixTime - delta;
-				}
-				// Compare current time and ephemeris reference time
-				dt = Math.abs(eph.get(i).getRefTime().getMsec() - unixTime /*getGpsTime() - gpsTime*/)/1000;
-				// If it's the first round, set the minimum time difference and
-				// select the first ephemeris set candidate; if the current ephemeris set
-				// is closer in time than the previous candidate, select new candidate
-				if (refEph == null || dt < dtMin) {
-					dtMin = dt;
-					refEph = eph.get(i);
-				}
-			}
+
+		// Consider BeiDou time (BDT) for BeiDou satellites (14 sec difference wrt GPS time)
+		if (satType == 'C') {
+			unixTime = unixTime - 14000;
 		}
 
+		// Select the ephemeris set of the satellite closest in time to the requested one
+		EphGalileo refEph = ephIndex.findClosest(unixTime, satID, satType);
+
     if( refEph == null )
       return null;
 
+		dtMin = Math.abs(refEph.getRefTime().getMsec() - unixTime) / 1000;
+
 		if( refEph.getSvHealth() != 0) {
 		  return EphGalileo.UnhealthyEph;
 		}
@@ -952,17 +971,25 @@ public class RinexNavigationParserGalileo extends EphemerisSystemGalileo impleme
 
 	public void addEph(EphGalileo eph){
 		this.eph.add(eph);
+		this.ephIndex.add(eph);
+	}
+
+	/**
+	 * @return read-only view of the ephemerides
+	 */
+	public List<EphGalileo> getEphemerides() {
+		return Collections.unmodifiableList(eph);
 	}
 
 	//	public void setIono(int i, double val){
 	//		this.iono[i] = val;
 	//	}
-	public IonoGps getIono(long unixTime, Location initialLocation){
+	public IonoGps getIono(long unixTime, Coordinates initialLocation){
 		return null;
 	}
 
 	@Override
-	public IonoGalileo getIonoNeQuick(long unixTime, Location initialLocation) {
+	public IonoGalileo getIonoNeQuick(long unixTime, Coordinates initialLocation) {
 		return iono;
 	}
 	//	/**
@@ -1079,7 +1106,7 @@ public class RinexNavigationParserGalileo extends EphemerisSystemGalileo impleme
 
         //			char satType = eph.getSatType();
 
-        SatellitePosition sp = computePositionGalileo(unixTime, range, satID, satType, eph, receiverClockError);
+        SatellitePosition sp = orbitCache.getSatPositionAndVelocities(unixTime, range, satID, satType, eph, receiverClockError);
         //			SatellitePosition sp = computePositionGps(unixTime, satType, satID, eph, range, receiverClockError);
         //if(receiverPosition!=null) earthRotationCorrection(receiverPosition, sp);
 
@@ -1087,6 +1114,27 @@ public class RinexNavigationParserGalileo extends EphemerisSystemGalileo impleme
 
 	}
 	
+	/**
+	 * Propagates the orbits with a KeplerianOrbitBatch, one slot per satellite, instead of
+	 * computing each position from scratch. Used for the RINEX files of recorded sessions,
+	 * whose ephemeris sets are evaluated for every epoch of hours of measurements.
+	 */
+	public void useOrbitBatch() {
+		orbitBatch = new KeplerianOrbitBatch(40);
+	}
+
+	private SatellitePosition computeOrbit(long unixTime, double range, int satID, char satType, EphGalileo eph, double receiverClockError) {
+		KeplerianOrbitBatch batch = orbitBatch;
+		if (batch == null)
+			return computePositionGalileo(unixTime, range, satID, satType, eph, receiverClockError);
+
+		// the parser is shared by all modules, the batch is not thread safe
+		synchronized (batch) {
+			batch.setEphemeris(satID, eph);
+			return batch.propagate(satID, unixTime, range, satID, satType, receiverClockError);
+		}
+	}
+
 	public SatellitePosition getGalileoSatVelocities(long unixTime,double range, int satID, char satType, double receiverClockError) {
 		//long unixTime = obs.getRefTime().getMsec();
 		//double range = obs.getSatByIDType(satID, satType).getPseudorange(0);
@@ -1100,7 +1148,7 @@ public class RinexNavigationParserGalileo extends EphemerisSystemGalileo impleme
 		
 		if (eph != null) {
 
-			SatellitePosition sv = computePositionSpeedGalileo(unixTime, range, satID, satType, eph, receiverClockError);
+			SatellitePosition sv = orbitCache.getSatPositionAndVelocities(unixTime, range, satID, satType, eph, receiverClockError);
 	
 			
 			return sv;
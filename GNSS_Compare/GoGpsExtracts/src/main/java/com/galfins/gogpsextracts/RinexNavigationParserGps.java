@@ -1,8 +1,5 @@
 package com.galfins.gogpsextracts;
 
-import android.location.Location;
-import android.util.Log;
-
 import com.galfins.gogpsextracts.EphemerisSystem;
 import com.google.location.suplclient.ephemeris.EphemerisResponse;
 import com.google.location.suplclient.ephemeris.GnssEphemeris;
@@ -19,6 +16,8 @@ import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * <p>
@@ -42,6 +41,32 @@ public class RinexNavigationParserGps extends EphemerisSystem implements Navigat
     private final String TAG = this.getClass().getSimpleName();
 
     private ArrayList<EphGps> eph = new ArrayList<EphGps>(); /* GPS broadcast ephemerides */
+    /* ephemerides by satellite and reference time, used by findEph */
+    private final EphemerisIndex<EphGps> ephIndex = new EphemerisIndex<EphGps>() {
+        @Override
+        protected int getSatID(EphGps eph) {
+            return eph.getSatID();
+        }
+
+        @Override
+        protected char getSatType(EphGps eph) {
+            return eph.getSatType();
+        }
+
+        @Override
+        protected Time getRefTime(EphGps eph) {
+            return eph.getRefTime();
+        }
+    };
+    /* interpolated satellite positions, shared by all modules using this parser */
+    private final OrbitInterpolationCache<EphGps> orbitCache = new OrbitInterpolationCache<EphGps>() {
+        @Override
+        protected SatellitePosition compute(long unixTime, double range, int satID, char satType, EphGps eph, double receiverClockError) {
+            return computeOrbit(unixTime, range, satID, satType, eph, receiverClockError);
+        }
+    };
+    /* orbit propagation by satellite, null to compute each position with computeSatPositionAndVelocities */
+    private volatile KeplerianOrbitBatch orbitBatch = null;
     //private double[] iono = new double[8]; /* Ionosphere model parameters */
     private IonoGps iono = null; /* Ionosphere model parameters */
     //	private double A0; /* Delta-UTC parameters: A0 */
@@ -59,12 +84,21 @@ public class RinexNavigationParserGps extends EphemerisSystem implements Navigat
     public RinexNavigationParserGps(EphemerisResponse ephResponse){
         for (GnssEphemeris eph : ephResponse.ephList) {
             if (eph instanceof GpsEphemeris) {
-                this.eph.add(new EphGps((GpsEphemeris)eph));
+                addEph(new EphGps((GpsEphemeris)eph));
             }
         }
         this.iono = new IonoGps(ephResponse.ionoProto);
     }
 
+    /**
+     * Creates a parser holding already decoded navigation data, e.g. read from EphemerisCache
+     */
+    public RinexNavigationParserGps(List<EphGps> eph, IonoGps iono) {
+        for (EphGps e : eph)
+            addEph(e);
+        this.iono = iono;
+    }
+
     // RINEX Read constructors
     public RinexNavigationParserGps(InputStream is, File cache) {
 
@@ -1102,37 +1136,22 @@ public class RinexNavigationParserGps extends EphemerisSystem implements Navigat
      */
     public EphGps findEph(long unixTime, int satID, char satType) {
 
-        long dt = 0;
         long dtMin = 0;
         long dtMax = 0;
-        long delta = 0;
-        EphGps refEph = null;
-
-        //long gpsTime = (new Time(unixTime)).getGpsTime();
-
-        for (int i = 0; i < eph.size(); i++) {
-            // Find ephemeris sets for given satellite
-            if (eph.get(i).getSatID() == satID && eph.get(i).getSatType() == satType) {
-                // Consider BeiDou time (BDT) for BeiDou satellites (14 sec difference wrt GPS time)
-                if (satType == 'C') {
-                    delta = 14000;
-                    unixTime = unixTime - delta;
-                }
-                // Compare current time and ephemeris reference time
-                dt = Math.abs(eph.get(i).getRefTime().getMsec() - unixTime /*getGpsTime() - gpsTime*/) / 1000;
-                // If it's the first round, set the minimum time difference and
-                // select the first ephemeris set candidate; if the current ephemeris set
-                // is closer in time than the previous candidate, select new candidate
-                if (refEph == null || dt < dtMin) {
-                    dtMin = dt;
-                    refEph = eph.get(i);
-                }
-            }
+
+        // Consider BeiDou time (BDT) for BeiDou satellites (14 sec difference wrt GPS time)
+        if (satType == 'C') {
+            unixTime = unixTime - 14000;
         }
 
+        // Select the ephemeris set of the satellite closest in time to the requested one
+        EphGps refEph = ephIndex.findClosest(unixTime, satID, satType);
+
         if (refEph == null)
             return null;
 
+        dtMin = Math.abs(refEph.getRefTime().getMsec() - unixTime) / 1000;
+
         if (refEph.getSvHealth() != 0) {
             return EphGps.UnhealthyEph;
         }
@@ -1165,17 +1184,25 @@ public class RinexNavigationParserGps extends EphemerisSystem implements Navigat
 
     public void addEph(EphGps eph) {
         this.eph.add(eph);
+        this.ephIndex.add(eph);
+    }
+
+    /**
+     * @return read-only view of the ephemerides
+     */
+    public List<EphGps> getEphemerides() {
+        return Collections.unmodifiableList(eph);
     }
 
     //	public void setIono(int i, double val){
     //		this.iono[i] = val;
     //	}
-    public IonoGps getIono(long unixTime, Location initialLocation) {
+    public IonoGps getIono(long unixTime, Coordinates initialLocation) {
         return iono;
     }
 
     @Override
-    public IonoGalileo getIonoNeQuick(long unixTime, Location initialLocation) {
+    public IonoGalileo getIonoNeQuick(long unixTime, Coordinates initialLocation) {
         return null;
     }
     //	/**
@@ -1274,6 +1301,27 @@ public class RinexNavigationParserGps extends EphemerisSystem implements Navigat
     }
 
 
+    /**
+     * Propagates the orbits with a KeplerianOrbitBatch, one slot per satellite, instead of
+     * computing each position from scratch. Used for the RINEX files of recorded sessions,
+     * whose ephemeris sets are evaluated for every epoch of hours of measurements.
+     */
+    public void useOrbitBatch() {
+        orbitBatch = new KeplerianOrbitBatch(40);
+    }
+
+    private SatellitePosition computeOrbit(long unixTime, double range, int satID, char satType, EphGps eph, double receiverClockError) {
+        KeplerianOrbitBatch batch = orbitBatch;
+        if (batch == null || satType == 'R')
+            return computeSatPositionAndVelocities(unixTime, range, satID, satType, eph, receiverClockError);
+
+        // the parser is shared by all modules, the batch is not thread safe
+        synchronized (batch) {
+            batch.setEphemeris(satID, eph);
+            return batch.propagate(satID, unixTime, range, satID, satType, receiverClockError);
+        }
+    }
+
     public SatellitePosition getSatPositionAndVelocities(long unixTime, double range, int satID, char satType, double receiverClockError) {
         //long unixTime = obs.getRefTime().getMsec();
         //double range = obs.getSatByIDType(satID, satType).getPseudorange(0);
@@ -1293,7 +1341,7 @@ public class RinexNavigationParserGps extends EphemerisSystem implements Navigat
 
         //			char satType = eph.getSatType();
 
-        SatellitePosition sp = computeSatPositionAndVelocities(unixTime, range, satID, satType, eph, receiverClockError);
+        SatellitePosition sp = orbitCache.getSatPositionAndVelocities(unixTime, range, satID, satType, eph, receiverClockError);
         //			SatellitePosition sp = computePositionGps(unixTime, satType, satID, eph, range, receiverClockError);
         //if(receiverPosition!=null) earthRotationCorrection(receiverPosition, sp);
         return sp;// new SatellitePosition(eph, unixTime, satID, range);
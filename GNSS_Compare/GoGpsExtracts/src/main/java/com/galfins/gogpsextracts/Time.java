@@ -39,82 +39,58 @@ public class Time {
 	private long msec; /* time in milliseconds since January 1, 1970 (UNIX standard) */
 	private double fraction; /* fraction of millisecond */
 
-	private Date[] leapDates;
-	private Calendar gc =  GregorianCalendar.getInstance();
-	TimeZone zone = TimeZone.getTimeZone("GMT Time");
-	DateFormat df = new SimpleDateFormat("yyyy MM dd HH mm ss.SSS");
-	DateFormat logTime = new SimpleDateFormat("HHmmss.SSS");
-
-	void initleapDates() throws ParseException{
-		leapDates = new Date[19];
-		leapDates[0]  = df.parse("1980 01 06 00 00 00.0");
-		leapDates[1]  = df.parse("1981 07 01 00 00 00.0");
-		leapDates[2]  = df.parse("1982 07 01 00 00 00.0");
-		leapDates[3]  = df.parse("1983 07 01 00 00 00.0");
-		leapDates[4]  = df.parse("1985 07 01 00 00 00.0");
-		leapDates[5]  = df.parse("1988 01 01 00 00 00.0");
-		leapDates[6]  = df.parse("1990 01 01 00 00 00.0");
-		leapDates[7]  = df.parse("1991 01 01 00 00 00.0");
-		leapDates[8]  = df.parse("1992 07 01 00 00 00.0");
-		leapDates[9]  = df.parse("1993 07 01 00 00 00.0");
-		leapDates[10] = df.parse("1994 07 01 00 00 00.0");
-		leapDates[11] = df.parse("1996 01 01 00 00 00.0");
-		leapDates[12] = df.parse("1997 07 01 00 00 00.0");
-		leapDates[13] = df.parse("1999 01 01 00 00 00.0");
-		leapDates[14] = df.parse("2006 01 01 00 00 00.0");
-		leapDates[15] = df.parse("2009 01 01 00 00 00.0");
-		leapDates[16] = df.parse("2012 07 01 00 00 00.0");
-		leapDates[17] = df.parse("2015 07 01 00 00 00.0");
-		leapDates[18] = df.parse("2017 01 01 00 00 00.0");
-	}
+	/* calendar and formats are only created when needed, most instances only hold the time */
+	private Calendar gc = null;
+	private DateFormat df = null;
+	private DateFormat logTime = null;
+	private static final TimeZone zone = TimeZone.getTimeZone("GMT Time");
 
 	public Time(long msec){
-		df.setTimeZone(zone);
-		gc.setTimeZone(zone);
-		this.gc.setTimeInMillis(msec);
 		this.msec = msec;
 		this.fraction = 0;
 	}
 	public Time(long msec, double fraction){
-		df.setTimeZone(zone);
-		gc.setTimeZone(zone);
 		this.msec = msec;
-		this.gc.setTimeInMillis(msec);
 		this.fraction = fraction;
 	}
 	public Time(String dateStr) throws ParseException{
-		df.setTimeZone(zone);
-		gc.setTimeZone(zone);
 		this.msec = dateStringToTime(dateStr);
-		this.gc.setTimeInMillis(this.msec);
 		this.fraction = 0;
 	}
 	public Time(int gpsWeek, double weekSec){
-		df.setTimeZone(zone);
-		gc.setTimeZone(zone);
 		double fullTime = (Constants.UNIX_GPS_DAYS_DIFF * Constants.SEC_IN_DAY + gpsWeek*Constants.DAYS_IN_WEEK*Constants.SEC_IN_DAY + weekSec) * 1000L;
 		this.msec = (long) (fullTime);
 		this.fraction = fullTime - this.msec;
-		this.gc.setTimeInMillis(this.msec);
 	}
 
 	public Time(int week, double weekSec, char satID){
-		if (satID == 'E') {
-			df.setTimeZone(zone);
+		long daysDiff = satID == 'E' ? Constants.UNIX_GST_DAYS_DIFF : Constants.UNIX_GPS_DAYS_DIFF;
+		double fullTime = (daysDiff * Constants.SEC_IN_DAY + week * Constants.DAYS_IN_WEEK * Constants.SEC_IN_DAY + weekSec) * 1000L;
+		this.msec = (long) (fullTime);
+		this.fraction = fullTime - this.msec;
+	}
+
+	private Calendar getCalendar(){
+		if(gc == null){
+			gc = GregorianCalendar.getInstance();
 			gc.setTimeZone(zone);
-			double fullTime = (Constants.UNIX_GST_DAYS_DIFF * Constants.SEC_IN_DAY + week * Constants.DAYS_IN_WEEK * Constants.SEC_IN_DAY + weekSec) * 1000L;
-			this.msec = (long) (fullTime);
-			this.fraction = fullTime - this.msec;
-			this.gc.setTimeInMillis(this.msec);
 		}
-		else {
+		gc.setTimeInMillis(msec);
+		return gc;
+	}
+
+	private DateFormat getDateFormat(){
+		if(df == null){
+			df = new SimpleDateFormat("yyyy MM dd HH mm ss.SSS");
 			df.setTimeZone(zone);
-			gc.setTimeZone(zone);
-			double fullTime = (Constants.UNIX_GPS_DAYS_DIFF * Constants.SEC_IN_DAY + week * Constants.DAYS_IN_WEEK * Constants.SEC_IN_DAY + weekSec) * 1000L;
-			this.msec = (long) (fullTime);
-			this.fraction = fullTime - this.msec;
-			this.gc.setTimeInMillis(this.msec);
 		}
+		return df;
+	}
+
+	private DateFormat getLogTimeFormat(){
+		if(logTime == null)
+			logTime = new SimpleDateFormat("HHmmss.SSS");
+		return logTime;
 	}
 
 	/**
@@ -127,7 +103,7 @@ public class Time {
 		long dateTime = 0;
 
 		try {
-			Date dateObj = df.parse(dateStr);
+			Date dateObj = getDateFormat().parse(dateStr);
 			dateTime = dateObj.getTime();
 		} catch (ParseException e) {
 			throw e;
@@ -196,13 +172,13 @@ public class Time {
 		return (int)((time%(Constants.SEC_IN_DAY))/Constants.SEC_IN_HOUR);
 	}
 	public int getYear(){
-		return gc.get(Calendar.YEAR);
+		return getCalendar().get(Calendar.YEAR);
 	}
 	public int getYear2c(){
-		return gc.get(Calendar.YEAR)-2000;
+		return getCalendar().get(Calendar.YEAR)-2000;
 	}
 	public int getDayOfYear(){
-		return gc.get(Calendar.DAY_OF_YEAR);
+		return getCalendar().get(Calendar.DAY_OF_YEAR);
 	}
 	public String getHourOfDayLetter(){
 		char c = (char)('a'+getGpsHourInDay());
@@ -250,24 +226,7 @@ public class Time {
 	}
 
 	public int getLeapSeconds(){
-		if( leapDates == null )
-			try {
-				initleapDates();
-			} catch (Exception e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			}
-
-		int leapSeconds = leapDates.length - 1;
-		double delta;
-		for (int d = 0; d < leapDates.length; d++) {
-			delta = leapDates[d].getTime() - msec;
-			if (delta > 0) {
-				leapSeconds = d - 1;
-				break;
-			}
-		}
-		return leapSeconds;
+		return GnssTime.getLeapSeconds(msec);
 	}
 
 	//
@@ -321,23 +280,24 @@ public class Time {
 	}
 
 	public String toString(){
-		return df.format(gc.getTime())+" "+gc.getTime();
+		Date date = getCalendar().getTime();
+		return getDateFormat().format(date)+" "+date;
 	}
 
 	public String toLogString(){
-		return logTime.format(gc.getTime());
+		return getLogTimeFormat().format(getCalendar().getTime());
 	}
 
 	public int getMonth() {
 
-		return df.getCalendar().get(Calendar.MONTH);
+		return getDateFormat().getCalendar().get(Calendar.MONTH);
 
 
 	}
 
 	public int getHourUTC() {
 
-		return df.getCalendar().get(Calendar.HOUR_OF_DAY);
+		return getDateFormat().getCalendar().get(Calendar.HOUR_OF_DAY);
 
 
 	}
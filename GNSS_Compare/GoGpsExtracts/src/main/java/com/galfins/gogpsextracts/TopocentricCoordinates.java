@@ -20,7 +20,6 @@
  */
 package com.galfins.gogpsextracts;
 
-import org.ejml.simple.SimpleMatrix;
 /**
  * <p>
  * Class for
@@ -30,7 +29,10 @@ import org.ejml.simple.SimpleMatrix;
  */
 public class TopocentricCoordinates {
 
-	private SimpleMatrix topocentric = new SimpleMatrix(3, 1); /* Azimuth (az), elevation (el), distance (d) */
+	/* Azimuth (az), elevation (el), distance (d) */
+	private double azimuth;
+	private double elevation;
+	private double distance;
 
     public TopocentricCoordinates(){
 
@@ -59,42 +61,42 @@ public class TopocentricCoordinates {
 		double U = origin.getU();//enu.get(2);
 
 		// Compute horizontal distance from origin to this object
-		double hDist = Math.sqrt(Math.pow(E, 2) + Math.pow(N, 2));
+		double hDist = Math.sqrt(E * E + N * N);
 
 		// If this object is at zenith ...
 		if (hDist < 1e-20) {
 			// ... set azimuth = 0 and elevation = 90, ...
-			topocentric.set(0, 0, 0);
-			topocentric.set(1, 0, 90);
+			azimuth = 0;
+			elevation = 90;
 
 		} else {
 
 			// ... otherwise compute azimuth ...
-			topocentric.set(0, 0, Math.toDegrees(Math.atan2(E, N)));
+			azimuth = Math.toDegrees(Math.atan2(E, N));
 
 			// ... and elevation
-			topocentric.set(1, 0, Math.toDegrees(Math.atan2(U, hDist)));
+			elevation = Math.toDegrees(Math.atan2(U, hDist));
 
-			if (topocentric.get(0) < 0)
-				topocentric.set(0, 0, topocentric.get(0) + 360);
+			if (azimuth < 0)
+				azimuth = azimuth + 360;
 		}
 
 		// Compute distance
-		topocentric.set( 2, 0, Math.sqrt(Math.pow(E, 2) + Math.pow(N, 2) + Math.pow(U, 2)));
+		distance = Math.sqrt(E * E + N * N + U * U);
 		
 		return this;
 	}
 
 	public double getAzimuth(){
-		return topocentric.get(0);
+		return azimuth;
 	}
 	
 	public double getElevation(){
-		return topocentric.get(1);
+		return elevation;
 	}
 	
 	public double getDistance(){
-		return topocentric.get(2);
+		return distance;
 	}
 
 //	/**
@@ -0,0 +1,126 @@
+package com.galfins.gogpsextracts;
+
+import org.ejml.simple.SimpleMatrix;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the coordinate conversions and of the per epoch geometry
+ */
+public class CoordinatesTest {
+
+    private static final int SATELLITES = 12;
+    private static final int EPOCHS = 10;
+
+    @Test
+    public void GeodeticRoundTripTest() {
+        Random random = new Random(42);
+
+        for (int i = 0; i < 10000; i++) {
+            double lat = random.nextDouble() * 180 - 90;
+            double lon = random.nextDouble() * 360 - 180;
+            double height = i % 2 == 0 ? random.nextDouble() * 10000 - 500 : random.nextDouble() * 3e7;
+
+            Coordinates geodetic = Coordinates.globalGeodInstance(lat, lon, height);
+            Coordinates ecef = Coordinates.globalXYZInstance(geodetic.getX(), geodetic.getY(), geodetic.getZ());
+
+            assertEquals(lat, ecef.getGeodeticLatitude(), 1e-9);
+            assertEquals(height, ecef.getGeodeticHeight(), 1e-5);
+            if (Math.abs(lat) < 89.9)
+                assertEquals(lon, ecef.getGeodeticLongitude(), 1e-9);
+        }
+    }
+
+    @Test
+    public void LocalCoordinatesTest() {
+        Coordinates origin = Coordinates.globalGeodInstance(52.0, 4.37, 10.0);
+        Coordinates target = Coordinates.globalXYZInstance(15600e3, 7540e3, 20140e3);
+
+        origin.computeLocal(target);
+
+        SimpleMatrix enu = Coordinates.rotationMatrix(origin).mult(target.minusXYZ(origin));
+        assertEquals(enu.get(0), origin.getE(), 1e-6);
+        assertEquals(enu.get(1), origin.getN(), 1e-6);
+        assertEquals(enu.get(2), origin.getU(), 1e-6);
+
+        // moving the origin invalidates the cached rotation
+        origin.setXYZ(target.getX() * 0.3, target.getY() * 0.3, target.getZ() * 0.3);
+        origin.computeLocal(target);
+        enu = Coordinates.rotationMatrix(origin).mult(target.minusXYZ(origin));
+        assertEquals(enu.get(2), origin.getU(), 1e-6);
+
+        TopocentricCoordinates topo = new TopocentricCoordinates(origin, target);
+        assertEquals(target.distanceTo(origin), topo.getDistance(), 1e-6);
+    }
+
+    @Test
+    public void StreamRoundTripTest() throws Exception {
+        Coordinates coordinates = Coordinates.globalGeodInstance(46.5, 6.6, 400.0);
+        coordinates.setENU(1, 2, 3);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        coordinates.write(new DataOutputStream(bytes));
+
+        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(Streamable.MESSAGE_COORDINATES, dis.readUTF());
+        Coordinates read = Coordinates.readFromStream(dis, false);
+
+        assertEquals(coordinates.getX(), read.getX(), 0.0);
+        assertEquals(coordinates.getZ(), read.getZ(), 0.0);
+        assertEquals(3.0, read.getU(), 0.0);
+        assertEquals(46.5, read.getGeodeticLatitude(), 1e-12);
+    }
+
+    /**
+     * Elevation of all satellites of an epoch, reusing the coordinate objects as the
+     * weighted least squares does, matches the one computed with new instances
+     */
+    @Test
+    public void InPlaceEpochGeometryTest() {
+        double[][] satellites = new double[SATELLITES][];
+        for (int i = 0; i < SATELLITES; i++) {
+            double angle = 2 * Math.PI * i / SATELLITES;
+            satellites[i] = new double[]{26.5e6 * Math.cos(angle), 26.5e6 * Math.sin(angle), 5e6 * i};
+        }
+
+        Coordinates receiver = Coordinates.globalGeodInstance(52.0, 4.37, 10.0);
+        Coordinates origin = Coordinates.globalXYZInstance(receiver.getX(), receiver.getY(), receiver.getZ());
+        Coordinates target = Coordinates.globalXYZInstance(0, 0, 0);
+        TopocentricCoordinates topo = new TopocentricCoordinates();
+
+        // the reused objects give the same result in every epoch
+        for (int epoch = 0; epoch < EPOCHS; epoch++) {
+            double elevationSum = computeEpochInPlace(satellites, origin, target, topo);
+            assertFalse(Double.isNaN(elevationSum));
+            assertEquals(computeEpochAllocating(satellites, receiver), elevationSum, 1e-9);
+        }
+    }
+
+    private static double computeEpochInPlace(double[][] satellites, Coordinates origin,
+                                              Coordinates target, TopocentricCoordinates topo) {
+        double elevationSum = 0;
+        for (double[] satellite : satellites) {
+            target.setXYZ(satellite[0], satellite[1], satellite[2]);
+            topo.computeTopocentric(origin, target);
+            elevationSum += topo.getElevation();
+        }
+        return elevationSum;
+    }
+
+    private static double computeEpochAllocating(double[][] satellites, Coordinates receiver) {
+        double elevationSum = 0;
+        for (double[] satellite : satellites) {
+            Coordinates origin = Coordinates.globalXYZInstance(receiver.getX(), receiver.getY(), receiver.getZ());
+            Coordinates target = Coordinates.globalXYZInstance(satellite[0], satellite[1], satellite[2]);
+            elevationSum += new TopocentricCoordinates(origin, target).getElevation();
+        }
+        return elevationSum;
+    }
+}
@@ -0,0 +1,122 @@
+package com.galfins.gogpsextracts;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the on-disk ephemeris cache
+ */
+public class EphemerisCacheTest {
+
+    private static final long REFERENCE_TIME = 1542357299000L;
+
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = File.createTempFile("ephemeris", "");
+        assertTrue(directory.delete());
+        assertTrue(directory.mkdirs());
+        EphemerisCache.setCacheDirectory(directory);
+    }
+
+    @After
+    public void tearDown() {
+        EphemerisCache.setCacheDirectory(null);
+        File[] files = directory.listFiles();
+        if (files != null)
+            for (File file : files)
+                file.delete();
+        directory.delete();
+    }
+
+    private static EphGps createEphemeris(int satId, long refTime) {
+        EphGps eph = new EphGps();
+        eph.setSatID(satId);
+        eph.setSatType('G');
+        eph.setRefTime(new Time(refTime));
+        eph.setFitInt(4);
+        eph.setRootA(5153.7);
+        eph.setE(0.01);
+        return eph;
+    }
+
+    @Test
+    public void StreamRoundTripTest() throws Exception {
+        EphGps eph = createEphemeris(12, REFERENCE_TIME);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        eph.write(new DataOutputStream(bytes));
+
+        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(Streamable.MESSAGE_EPHEMERIS, dis.readUTF());
+        EphGps read = new EphGps(dis, false);
+
+        assertEquals(12, read.getSatID());
+        assertEquals('G', read.getSatType());
+        assertEquals(4, read.getFitInt());
+        assertEquals(REFERENCE_TIME, read.getRefTime().getMsec());
+        assertEquals(5153.7, read.getRootA(), 0.0);
+    }
+
+    @Test
+    public void SaveAndLoadTest() {
+        List<EphGps> ephemerides = new ArrayList<>();
+        ephemerides.add(createEphemeris(3, REFERENCE_TIME));
+        ephemerides.add(createEphemeris(7, REFERENCE_TIME - 24 * 3600 * 1000L));
+
+        EphemerisCache.saveGps(new RinexNavigationParserGps(ephemerides, new IonoGps()));
+
+        RinexNavigationParserGps loaded = EphemerisCache.loadGps(REFERENCE_TIME + 3600 * 1000L);
+
+        assertNotNull(loaded);
+        assertEquals(1, loaded.getEphemerides().size());
+        assertEquals(3, loaded.getEphemerides().get(0).getSatID());
+        assertNotNull(loaded.getIono(0, null));
+
+        assertNull(EphemerisCache.loadGps(REFERENCE_TIME + 3 * 3600 * 1000L));
+        assertNull(EphemerisCache.loadGalileo(REFERENCE_TIME));
+    }
+
+    /**
+     * The provider serves the stored navigation data from the first request on
+     */
+    @Test
+    public void ProviderLoadTest() {
+        List<EphGps> ephemerides = new ArrayList<>();
+        ephemerides.add(createEphemeris(3, REFERENCE_TIME));
+        EphemerisCache.saveGps(new RinexNavigationParserGps(ephemerides, new IonoGps()));
+
+        RinexNavigationGps expired = new RinexNavigationGps(NavigationProviders.GPS_URL_TEMPLATE);
+        assertFalse(expired.loadCache(REFERENCE_TIME + 3 * 3600 * 1000L));
+
+        long unixTime = REFERENCE_TIME + 3600 * 1000L;
+        RinexNavigationGps provider = new RinexNavigationGps(NavigationProviders.GPS_URL_TEMPLATE);
+        assertTrue(provider.loadCache(unixTime));
+
+        EphGps eph = provider.findEph(unixTime, 3, 'G', null);
+        assertNotNull(eph);
+        assertEquals(3, eph.getSatID());
+    }
+
+    @Test
+    public void ValidityTest() {
+        Time refTime = new Time(REFERENCE_TIME);
+
+        assertTrue(EphemerisCache.isValid(refTime, 4, REFERENCE_TIME + 2 * 3600 * 1000L));
+        assertFalse(EphemerisCache.isValid(refTime, 4, REFERENCE_TIME + 2 * 3600 * 1000L + 1000L));
+        assertTrue(EphemerisCache.isValid(refTime, 0, REFERENCE_TIME - 7200 * 1000L));
+        assertFalse(EphemerisCache.isValid(null, 4, REFERENCE_TIME));
+    }
+}
@@ -0,0 +1,96 @@
+package com.galfins.gogpsextracts;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the ephemeris index and a comparison of findEph against the linear search it
+ * replaced, over a synthetic full day broadcast file
+ */
+public class EphemerisIndexTest {
+
+    private static final long DAY_START = 1542326400000L; // 2018-11-16 00:00 UTC
+
+    private static final int SATELLITES = 36;
+
+    /**
+     * Galileo broadcast files contain a new set every 10 minutes
+     */
+    private static final long EPHEMERIS_INTERVAL = 600 * 1000L;
+
+    private static EphGalileo createEphemeris(int satId, long refTime) {
+        EphGalileo eph = new EphGalileo();
+        eph.setSatID(satId);
+        eph.setSatType('E');
+        eph.setRefTime(new Time(refTime));
+        return eph;
+    }
+
+    /**
+     * Full day of ephemeris sets, in the order of a broadcast file (by time, then satellite)
+     */
+    private static List<EphGalileo> createDay() {
+        List<EphGalileo> day = new ArrayList<>();
+        for (long time = DAY_START; time < DAY_START + 24 * 3600 * 1000L; time += EPHEMERIS_INTERVAL)
+            for (int satId = 1; satId <= SATELLITES; satId++)
+                day.add(createEphemeris(satId, time + satId * 1000L));
+        return day;
+    }
+
+    /**
+     * Linear search formerly done by findEph
+     */
+    private static EphGalileo findLinear(List<EphGalileo> ephemerides, long unixTime, int satID, char satType) {
+        long dtMin = 0;
+        EphGalileo refEph = null;
+        for (EphGalileo eph : ephemerides) {
+            if (eph.getSatID() == satID && eph.getSatType() == satType) {
+                long dt = Math.abs(eph.getRefTime().getMsec() - unixTime);
+                if (refEph == null || dt < dtMin) {
+                    dtMin = dt;
+                    refEph = eph;
+                }
+            }
+        }
+        if (refEph != null && dtMin / 1000 > 7200)
+            return null;
+        return refEph;
+    }
+
+    @Test
+    public void ClosestEphemerisTest() {
+        List<EphGalileo> day = createDay();
+        RinexNavigationParserGalileo parser = new RinexNavigationParserGalileo(day, null);
+
+        for (long time = DAY_START - 3 * 3600 * 1000L; time < DAY_START + 27 * 3600 * 1000L; time += 7000L)
+            for (int satId = 0; satId <= SATELLITES + 1; satId += 5)
+                assertSame(findLinear(day, time, satId, 'E'), parser.findEph(time, satId, 'E'));
+
+        assertNull(parser.findEph(DAY_START, 1, 'G'));
+    }
+
+    @Test
+    public void IncrementalInsertionTest() {
+        RinexNavigationParserGalileo parser = new RinexNavigationParserGalileo(new ArrayList<EphGalileo>(), null);
+
+        EphGalileo first = createEphemeris(11, DAY_START);
+        parser.addEph(first);
+        assertSame(first, parser.findEph(DAY_START + 3000 * 1000L, 11, 'E'));
+
+        // set added out of order, between the requested time and the first set
+        EphGalileo second = createEphemeris(11, DAY_START + 3600 * 1000L);
+        parser.addEph(second);
+        assertSame(second, parser.findEph(DAY_START + 3000 * 1000L, 11, 'E'));
+
+        // duplicate reference time, the set added first is kept
+        parser.addEph(createEphemeris(11, DAY_START));
+        assertSame(first, parser.findEph(DAY_START + 60 * 1000L, 11, 'E'));
+
+        // equally close sets, the earlier one is selected
+        assertSame(first, parser.findEph(DAY_START + 1800 * 1000L, 11, 'E'));
+    }
+}
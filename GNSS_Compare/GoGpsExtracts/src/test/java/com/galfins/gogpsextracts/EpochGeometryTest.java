@@ -0,0 +1,79 @@
+package com.galfins.gogpsextracts;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the epoch geometry against TopocentricCoordinates
+ */
+public class EpochGeometryTest {
+
+    private static final int SATELLITES = 40;
+
+    private static Coordinates[] createSatellites(Random random, int count) {
+        Coordinates[] satellites = new Coordinates[count];
+        for (int i = 0; i < count; i++) {
+            double lat = random.nextDouble() * 180 - 90;
+            double lon = random.nextDouble() * 360 - 180;
+            satellites[i] = Coordinates.globalGeodInstance(lat, lon, 20e6 + random.nextDouble() * 3e6);
+        }
+        return satellites;
+    }
+
+    @Test
+    public void MatchesTopocentricCoordinatesTest() {
+        Random random = new Random(7);
+        EpochGeometry geometry = new EpochGeometry();
+
+        for (int epoch = 0; epoch < 20; epoch++) {
+            Coordinates receiver = Coordinates.globalGeodInstance(
+                    random.nextDouble() * 170 - 85, random.nextDouble() * 360 - 180, random.nextDouble() * 3000);
+            Coordinates[] satellites = createSatellites(random, SATELLITES);
+
+            geometry.reset(receiver);
+            assertEquals(0, geometry.size());
+            assertEquals(receiver.getGeodeticHeight(), geometry.getReceiverHeight(), 0.0);
+
+            for (int i = 0; i < SATELLITES; i++) {
+                assertEquals(i, geometry.add(satellites[i]));
+
+                TopocentricCoordinates topo = new TopocentricCoordinates(receiver, satellites[i]);
+                assertEquals(topo.getElevation(), geometry.getElevation(i), 1e-9);
+                assertEquals(topo.getAzimuth(), geometry.getAzimuth(i), 1e-9);
+                assertEquals(topo.getDistance(), geometry.getRange(i), 1e-6);
+
+                double range = geometry.getRange(i);
+                assertEquals(satellites[i].getX(), receiver.getX() + range * geometry.getLineOfSightX(i), 1e-6);
+                assertEquals(satellites[i].getY(), receiver.getY() + range * geometry.getLineOfSightY(i), 1e-6);
+                assertEquals(satellites[i].getZ(), receiver.getZ() + range * geometry.getLineOfSightZ(i), 1e-6);
+            }
+
+            // values of the epoch are kept after the arrays grew
+            assertEquals(SATELLITES, geometry.size());
+            assertEquals(new TopocentricCoordinates(receiver, satellites[0]).getElevation(),
+                    geometry.getElevation(0), 1e-9);
+        }
+    }
+
+    @Test
+    public void ZenithTest() {
+        Coordinates receiver = Coordinates.globalGeodInstance(30, 45, 100);
+        EpochGeometry geometry = new EpochGeometry();
+        geometry.reset(receiver);
+
+        double upX = Math.cos(Math.toRadians(30)) * Math.cos(Math.toRadians(45));
+        double upY = Math.cos(Math.toRadians(30)) * Math.sin(Math.toRadians(45));
+        double upZ = Math.sin(Math.toRadians(30));
+        int index = geometry.add(Coordinates.globalXYZInstance(
+                receiver.getX() + 20e6 * upX, receiver.getY() + 20e6 * upY, receiver.getZ() + 20e6 * upZ));
+
+        assertEquals(90, geometry.getElevation(index), 1e-6);
+        assertEquals(20e6, geometry.getRange(index), 1e-6);
+        assertEquals(upX, geometry.getLineOfSightX(index), 1e-12);
+        assertEquals(upY, geometry.getLineOfSightY(index), 1e-12);
+        assertEquals(upZ, geometry.getLineOfSightZ(index), 1e-12);
+    }
+}
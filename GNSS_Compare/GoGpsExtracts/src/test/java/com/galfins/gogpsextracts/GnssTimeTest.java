@@ -0,0 +1,64 @@
+package com.galfins.gogpsextracts;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of GnssTime and of its equivalence with Time
+ */
+public class GnssTimeTest {
+
+    private static final int GPS_WEEK = 2027;
+    private static final double GPS_SOW = 432018.123456789;
+
+    @Test
+    public void ConversionsMatchTimeTest() {
+        for (double sow = 0.0; sow < 604800.0; sow += 3599.987654321) {
+            Time time = new Time(GPS_WEEK, sow);
+            assertEquals(time.getMsec(), GnssTime.gpsToUnixMillis(GPS_WEEK, sow));
+            assertEquals(new Time(GPS_WEEK - 1024, sow, 'E').getMsec(),
+                    GnssTime.galileoToUnixMillis(GPS_WEEK - 1024, sow));
+
+            Time unixTime = new Time(time.getMsec());
+            assertEquals(unixTime.getGpsTime(), GnssTime.unixMillisToGpsTime(time.getMsec()), 0.0);
+            assertEquals(unixTime.getLeapSeconds(), GnssTime.getLeapSeconds(time.getMsec()));
+        }
+    }
+
+    @Test
+    public void LeapSecondsTest() {
+        long utc2016 = 1451606400000L; // 2016-01-01 00:00 UTC
+        long utc2017 = 1483228800000L; // 2017-01-01 00:00 UTC
+
+        assertEquals(17, GnssTime.getLeapSeconds(utc2016));
+        assertEquals(17, GnssTime.getLeapSeconds(utc2017 - 1));
+        assertEquals(18, GnssTime.getLeapSeconds(utc2017));
+        assertEquals(0, GnssTime.getLeapSeconds(315964800000L)); // GPS epoch
+        assertEquals(-1, GnssTime.getLeapSeconds(0));
+
+        GnssTime time = GnssTime.fromUtcMillis(utc2017 + 1000);
+        assertEquals(18, time.getLeapSeconds());
+        assertEquals(utc2017 + 1000, time.getUtcMillis());
+        assertEquals(utc2017 + 19000, time.getUnixMillis());
+    }
+
+    @Test
+    public void WeekSecondsTest() {
+        GnssTime time = GnssTime.fromGpsWeekSeconds(GPS_WEEK, GPS_SOW);
+
+        assertEquals(GPS_WEEK, time.getGpsWeek());
+        assertEquals(GPS_SOW, time.getGpsSecondsOfWeek(), 1e-9);
+        assertEquals(GPS_WEEK - 1024, time.getGalileoWeek());
+        assertEquals(GPS_SOW, time.getGalileoSecondsOfWeek(), 1e-9);
+        assertEquals(time, GnssTime.fromGalileoWeekSeconds(GPS_WEEK - 1024, GPS_SOW));
+
+        assertEquals(new Time(GPS_WEEK, GPS_SOW).getMsec(), time.getUnixMillis());
+        assertEquals(time, GnssTime.fromUnixMillis(time.getUnixMillis()).plusNanos(time.getGpsNanos() % 1000000L));
+        assertEquals(time.getUnixMillis(), time.toTime().getMsec());
+
+        GnssTime later = time.plusNanos(1500000000L);
+        assertEquals(1.5, later.secondsSince(time), 1e-12);
+        assertTrue(later.compareTo(time) > 0);
+    }
+}
@@ -0,0 +1,232 @@
+package com.galfins.gogpsextracts;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the batch orbit propagation against the per satellite computations of
+ * EphemerisSystem and EphemerisSystemGalileo
+ */
+public class KeplerianOrbitBatchTest {
+
+    private static final int SATELLITES = 32;
+    private static final int WEEK = 2027;
+    private static final double TOE = 432000.0;
+
+    private static final EphemerisSystem GPS_SYSTEM = new EphemerisSystem() {};
+    private static final EphemerisSystemGalileo GALILEO_SYSTEM = new EphemerisSystemGalileo() {};
+
+    private static EphGps createGpsEphemeris(int satId) {
+        EphGps eph = new EphGps();
+        eph.setSatID(satId);
+        eph.setSatType('G');
+        eph.setWeek(WEEK);
+        eph.setToe(TOE);
+        eph.setToc(TOE);
+        eph.setAf0(1e-5 * satId);
+        eph.setAf1(-3e-12);
+        eph.setAf2(0);
+        eph.setTgd(-1.1e-8);
+        eph.setRootA(5153.6 + satId * 0.01);
+        eph.setE(0.002 + 0.0007 * satId);
+        eph.setI0(0.96 + 0.001 * satId);
+        eph.setiDot(2e-10);
+        eph.setOmega(-2.0 + 0.12 * satId);
+        eph.setOmega0(-3.0 + 0.19 * satId);
+        eph.setOmegaDot(-8.1e-9);
+        eph.setM0(-3.1 + 0.195 * satId);
+        eph.setDeltaN(4.5e-9);
+        eph.setCrc(230.0);
+        eph.setCrs(-20.0);
+        eph.setCuc(-1.1e-6);
+        eph.setCus(8.2e-6);
+        eph.setCic(1.3e-7);
+        eph.setCis(-5.6e-8);
+        return eph;
+    }
+
+    private static EphGalileo createGalileoEphemeris(int satId) {
+        EphGps gps = createGpsEphemeris(satId);
+        EphGalileo eph = new EphGalileo();
+        eph.setSatID(satId);
+        eph.setSatType('E');
+        eph.setWeek(WEEK - 1024);
+        eph.setToe(gps.getToe());
+        eph.setToc(gps.getToc());
+        eph.setAf0(gps.getAf0());
+        eph.setAf1(gps.getAf1());
+        eph.setAf2(gps.getAf2());
+        eph.setTgd(gps.getTgd());
+        eph.setRootA(5440.6 + satId * 0.01);
+        eph.setE(gps.getE() / 10);
+        eph.setI0(gps.getI0());
+        eph.setiDot(gps.getiDot());
+        eph.setOmega(gps.getOmega());
+        eph.setOmega0(gps.getOmega0());
+        eph.setOmegaDot(gps.getOmegaDot());
+        eph.setM0(gps.getM0());
+        eph.setDeltaN(3.1e-9);
+        eph.setCrc(gps.getCrc());
+        eph.setCrs(gps.getCrs());
+        eph.setCuc(gps.getCuc());
+        eph.setCus(gps.getCus());
+        eph.setCic(gps.getCic());
+        eph.setCis(gps.getCis());
+        return eph;
+    }
+
+    private static double pseudorange(int satId, int epoch) {
+        return 20.5e6 + satId * 1.5e5 + epoch * 120.0;
+    }
+
+    @Test
+    public void MatchesEphemerisSystemGpsTest() {
+        KeplerianOrbitBatch batch = new KeplerianOrbitBatch(4);
+        EphGps[] ephemerides = new EphGps[SATELLITES + 1];
+        for (int satId = 1; satId <= SATELLITES; satId++) {
+            ephemerides[satId] = createGpsEphemeris(satId);
+            batch.setEphemeris(satId, ephemerides[satId]);
+        }
+        assertTrue(batch.getCapacity() > SATELLITES);
+
+        int count = SATELLITES + 1;
+        double[] pseudoranges = new double[count];
+        double[] x = new double[count], y = new double[count], z = new double[count];
+        double[] vx = new double[count], vy = new double[count], vz = new double[count];
+        double[] clockErrors = new double[count];
+        pseudoranges[0] = Double.NaN;
+
+        // two hours around the reference time, across the end of the week
+        for (int epoch = 0; epoch < 7200; epoch += 7) {
+            double sow = TOE - 3600 + epoch;
+            long unixTime = GnssTime.gpsToUnixMillis(WEEK, sow);
+            for (int satId = 1; satId <= SATELLITES; satId++)
+                pseudoranges[satId] = pseudorange(satId, epoch);
+
+            batch.propagate(unixTime, 1e-4, pseudoranges, count, x, y, z, vx, vy, vz, clockErrors);
+
+            assertTrue(Double.isNaN(x[0]));
+            for (int satId = 1; satId <= SATELLITES; satId++) {
+                SatellitePosition expected = GPS_SYSTEM.computeSatPositionAndVelocities(
+                        unixTime, pseudoranges[satId], satId, 'G', ephemerides[satId], 1e-4);
+
+                assertEquals(expected.getX(), x[satId], 1e-4);
+                assertEquals(expected.getY(), y[satId], 1e-4);
+                assertEquals(expected.getZ(), z[satId], 1e-4);
+                assertEquals(expected.getSpeed().get(0), vx[satId], 1e-7);
+                assertEquals(expected.getSpeed().get(1), vy[satId], 1e-7);
+                assertEquals(expected.getSpeed().get(2), vz[satId], 1e-7);
+                assertEquals(expected.getSatelliteClockError(), clockErrors[satId], 1e-15);
+            }
+        }
+    }
+
+    @Test
+    public void MatchesEphemerisSystemGalileoTest() {
+        KeplerianOrbitBatch batch = new KeplerianOrbitBatch(SATELLITES + 1);
+        double[] pseudoranges = new double[SATELLITES + 1];
+        double[] x = new double[SATELLITES + 1], y = new double[SATELLITES + 1], z = new double[SATELLITES + 1];
+        double[] clockErrors = new double[SATELLITES + 1];
+
+        for (int satId = 1; satId <= SATELLITES; satId++) {
+            EphGalileo eph = createGalileoEphemeris(satId);
+            batch.setEphemeris(satId, eph);
+
+            for (int epoch = 0; epoch < 600; epoch += 60) {
+                long unixTime = GnssTime.gpsToUnixMillis(WEEK, TOE + epoch);
+                pseudoranges[satId] = pseudorange(satId, epoch);
+                batch.propagate(unixTime, 0.0, pseudoranges, SATELLITES + 1, x, y, z, null, null, null, clockErrors);
+
+                SatellitePosition expected = GALILEO_SYSTEM.computePositionSpeedGalileo(
+                        unixTime, pseudoranges[satId], satId, 'E', eph, 0.0);
+                assertEquals(expected.getX(), x[satId], 1e-4);
+                assertEquals(expected.getY(), y[satId], 1e-4);
+                assertEquals(expected.getZ(), z[satId], 1e-4);
+                assertEquals(expected.getSatelliteClockError(), clockErrors[satId], 1e-15);
+            }
+        }
+    }
+
+    @Test
+    public void SingleSlotTest() {
+        KeplerianOrbitBatch batch = new KeplerianOrbitBatch(1);
+        EphGps eph = createGpsEphemeris(7);
+        batch.setEphemeris(7, eph);
+
+        for (int epoch = 0; epoch < 600; epoch += 30) {
+            long unixTime = GnssTime.gpsToUnixMillis(WEEK, TOE + epoch);
+            SatellitePosition expected = GPS_SYSTEM.computeSatPositionAndVelocities(
+                    unixTime, pseudorange(7, epoch), 7, 'G', eph, 1e-4);
+            SatellitePosition position = batch.propagate(7, unixTime, pseudorange(7, epoch), 7, 'G', 1e-4);
+
+            assertEquals(7, position.getSatID());
+            assertEquals('G', position.getSatType());
+            assertEquals(expected.getX(), position.getX(), 1e-4);
+            assertEquals(expected.getY(), position.getY(), 1e-4);
+            assertEquals(expected.getZ(), position.getZ(), 1e-4);
+            assertEquals(expected.getSpeed().get(0), position.getSpeed().get(0), 1e-7);
+            assertEquals(expected.getSatelliteClockError(), position.getSatelliteClockError(), 1e-15);
+        }
+
+        assertNull(batch.propagate(3, GnssTime.gpsToUnixMillis(WEEK, TOE), pseudorange(3, 0), 3, 'G', 0.0));
+        assertNull(batch.propagate(7, GnssTime.gpsToUnixMillis(WEEK, TOE), Double.NaN, 7, 'G', 0.0));
+    }
+
+    /**
+     * The parsers of RINEX files propagate the orbits with the batch
+     */
+    @Test
+    public void ParserOrbitBatchTest() {
+        List<EphGps> ephemerides = new ArrayList<>();
+        for (int satId = 1; satId <= 4; satId++) {
+            EphGps eph = createGpsEphemeris(satId);
+            eph.setRefTime(new Time(WEEK, TOE));
+            ephemerides.add(eph);
+        }
+        RinexNavigationParserGps direct = new RinexNavigationParserGps(ephemerides, null);
+        RinexNavigationParserGps batched = new RinexNavigationParserGps(ephemerides, null);
+        batched.useOrbitBatch();
+
+        for (int epoch = 0; epoch < 900; epoch += 13) {
+            long unixTime = GnssTime.gpsToUnixMillis(WEEK, TOE + epoch);
+            for (int satId = 1; satId <= 4; satId++) {
+                SatellitePosition expected = direct.getSatPositionAndVelocities(
+                        unixTime, pseudorange(satId, epoch), satId, 'G', 0.0);
+                SatellitePosition position = batched.getSatPositionAndVelocities(
+                        unixTime, pseudorange(satId, epoch), satId, 'G', 0.0);
+                assertEquals(expected.getX(), position.getX(), 1e-3);
+                assertEquals(expected.getY(), position.getY(), 1e-3);
+                assertEquals(expected.getZ(), position.getZ(), 1e-3);
+            }
+        }
+    }
+
+    @Test
+    public void EphemerisChangeTest() {
+        KeplerianOrbitBatch batch = new KeplerianOrbitBatch(1);
+        EphGps first = createGpsEphemeris(3);
+        EphGps second = createGpsEphemeris(4);
+        long unixTime = GnssTime.gpsToUnixMillis(WEEK, TOE);
+        double[] pseudoranges = {pseudorange(3, 0)};
+        double[] x = new double[1], y = new double[1], z = new double[1];
+
+        batch.setEphemeris(0, first);
+        batch.propagate(unixTime, 0.0, pseudoranges, 1, x, y, z, null, null, null, null);
+        assertSame(first, batch.getEphemeris(0));
+
+        // a new set resets the warm start and the precomputed constants of the slot
+        batch.setEphemeris(0, second);
+        batch.propagate(unixTime, 0.0, pseudoranges, 1, x, y, z, null, null, null, null);
+        SatellitePosition expected = GPS_SYSTEM.computeSatPositionAndVelocities(
+                unixTime, pseudoranges[0], 4, 'G', second, 0.0);
+        assertEquals(expected.getX(), x[0], 1e-4);
+
+        batch.setEphemeris(0, (EphGps) null);
+        batch.propagate(unixTime, 0.0, pseudoranges, 1, x, y, z, null, null, null, null);
+        assertTrue(Double.isNaN(x[0]));
+    }
+}
@@ -0,0 +1,31 @@
+package com.galfins.gogpsextracts;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the shared navigation data providers
+ */
+public class NavigationProvidersTest {
+
+    @Test
+    public void SharedProviderTest() {
+        NavigationProviders.clear();
+
+        RinexNavigationGps gps = NavigationProviders.getGps();
+        RinexNavigationGalileo galileo = NavigationProviders.getGalileo();
+
+        assertSame(gps, NavigationProviders.getGps());
+        assertSame(gps, NavigationProviders.get(NavigationProviders.GPS));
+        assertSame(galileo, NavigationProviders.getGalileo());
+
+        NavigationProviders.clear();
+        assertNotSame(gps, NavigationProviders.getGps());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void UnknownConstellationTest() {
+        NavigationProviders.get('R');
+    }
+}
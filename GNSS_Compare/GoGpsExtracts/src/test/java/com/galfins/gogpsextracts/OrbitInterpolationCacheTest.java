@@ -0,0 +1,175 @@
+package com.galfins.gogpsextracts;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the interpolated satellite positions against the ephemeris computations
+ */
+public class OrbitInterpolationCacheTest {
+
+    private static final int SATELLITES = 32;
+    private static final int WEEK = 2027;
+    private static final double TOE = 432000.0;
+
+    private static final EphemerisSystem GPS_SYSTEM = new EphemerisSystem() {};
+
+    /**
+     * Cache counting the ephemeris evaluations
+     */
+    private static class CountingCache extends OrbitInterpolationCache<EphGps> {
+
+        private int computations = 0;
+
+        private CountingCache(int maxWindows) {
+            super(maxWindows);
+        }
+
+        @Override
+        protected SatellitePosition compute(long unixTime, double range, int satID, char satType, EphGps eph, double receiverClockError) {
+            computations++;
+            return GPS_SYSTEM.computeSatPositionAndVelocities(unixTime, range, satID, satType, eph, receiverClockError);
+        }
+    }
+
+    private static EphGps createGpsEphemeris(int satId) {
+        EphGps eph = new EphGps();
+        eph.setSatID(satId);
+        eph.setSatType('G');
+        eph.setWeek(WEEK);
+        eph.setToe(TOE);
+        eph.setToc(TOE);
+        eph.setAf0(1e-5 * satId);
+        eph.setAf1(-3e-12);
+        eph.setTgd(-1.1e-8);
+        eph.setRootA(5153.6 + satId * 0.01);
+        eph.setE(0.002 + 0.0007 * satId);
+        eph.setI0(0.96 + 0.001 * satId);
+        eph.setiDot(2e-10);
+        eph.setOmega(-2.0 + 0.12 * satId);
+        eph.setOmega0(-3.0 + 0.19 * satId);
+        eph.setOmegaDot(-8.1e-9);
+        eph.setM0(-3.1 + 0.195 * satId);
+        eph.setDeltaN(4.5e-9);
+        eph.setCrc(230.0);
+        eph.setCrs(-20.0);
+        eph.setCuc(-1.1e-6);
+        eph.setCus(8.2e-6);
+        eph.setCic(1.3e-7);
+        eph.setCis(-5.6e-8);
+        return eph;
+    }
+
+    private static double pseudorange(int satId, long millis) {
+        return 20.5e6 + satId * 1.5e5 + millis * 0.12;
+    }
+
+    @Test
+    public void MatchesEphemerisSystemTest() {
+        CountingCache cache = new CountingCache(1024);
+        EphGps[] ephemerides = new EphGps[SATELLITES + 1];
+        for (int satId = 1; satId <= SATELLITES; satId++)
+            ephemerides[satId] = createGpsEphemeris(satId);
+
+        long start = GnssTime.gpsToUnixMillis(WEEK, TOE - 1800);
+        for (long millis = 0; millis < 3600 * 1000L; millis += 1700) {
+            double receiverClockError = 1e-4 * Math.sin(millis * 1e-5);
+            for (int satId = 1; satId <= SATELLITES; satId += 3) {
+                SatellitePosition expected = GPS_SYSTEM.computeSatPositionAndVelocities(
+                        start + millis, pseudorange(satId, millis), satId, 'G', ephemerides[satId], receiverClockError);
+                SatellitePosition interpolated = cache.getSatPositionAndVelocities(
+                        start + millis, pseudorange(satId, millis), satId, 'G', ephemerides[satId], receiverClockError);
+
+                assertEquals(0.0, expected.distanceTo(interpolated), OrbitInterpolationCache.POSITION_TOLERANCE);
+                assertEquals(expected.getSatelliteClockError(), interpolated.getSatelliteClockError(), 1e-13);
+                assertEquals(expected.getSpeed().get(0), interpolated.getSpeed().get(0), 1e-6);
+                assertEquals(expected.getSpeed().get(1), interpolated.getSpeed().get(1), 1e-6);
+                assertEquals(expected.getSpeed().get(2), interpolated.getSpeed().get(2), 1e-6);
+                assertEquals(satId, interpolated.getSatID());
+            }
+        }
+    }
+
+    @Test
+    public void EphemerisUpdateTest() {
+        CountingCache cache = new CountingCache(16);
+        EphGps first = createGpsEphemeris(5);
+        EphGps update = createGpsEphemeris(5);
+        update.setAf0(first.getAf0() + 1e-6);
+
+        long time = GnssTime.gpsToUnixMillis(WEEK, TOE + 10);
+        cache.getSatPositionAndVelocities(time, 2e7, 5, 'G', first, 0.0);
+        int windowComputations = cache.computations;
+        cache.getSatPositionAndVelocities(time + 1000, 2e7, 5, 'G', first, 0.0);
+        assertEquals(windowComputations, cache.computations);
+        assertEquals(1, cache.size());
+
+        // a new ephemeris set rebuilds the window
+        SatellitePosition updated = cache.getSatPositionAndVelocities(time + 2000, 2e7, 5, 'G', update, 0.0);
+        assertEquals(2 * windowComputations, cache.computations);
+        assertEquals(1, cache.size());
+        assertEquals(GPS_SYSTEM.computeSatPositionAndVelocities(time + 2000, 2e7, 5, 'G', update, 0.0)
+                .getSatelliteClockError(), updated.getSatelliteClockError(), 1e-13);
+
+        cache.invalidate(5, 'G');
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void LruEvictionTest() {
+        CountingCache cache = new CountingCache(2);
+        long time = GnssTime.gpsToUnixMillis(WEEK, TOE);
+        EphGps[] ephemerides = new EphGps[4];
+        for (int satId = 1; satId <= 3; satId++) {
+            ephemerides[satId] = createGpsEphemeris(satId);
+            cache.getSatPositionAndVelocities(time, 2e7, satId, 'G', ephemerides[satId], 0.0);
+        }
+        assertEquals(2, cache.size());
+
+        // satellite 1 was evicted, satellite 2 is cached
+        int computations = cache.computations;
+        cache.getSatPositionAndVelocities(time, 2e7, 2, 'G', ephemerides[2], 0.0);
+        assertEquals(computations, cache.computations);
+        cache.getSatPositionAndVelocities(time, 2e7, 1, 'G', ephemerides[1], 0.0);
+        assertTrue(cache.computations > computations);
+
+        // satellite 3 was the least recently used
+        computations = cache.computations;
+        cache.getSatPositionAndVelocities(time, 2e7, 2, 'G', ephemerides[2], 0.0);
+        assertEquals(computations, cache.computations);
+        cache.getSatPositionAndVelocities(time, 2e7, 3, 'G', ephemerides[3], 0.0);
+        assertTrue(cache.computations > computations);
+    }
+
+    /**
+     * Positions requested at the rate of the measurements, all within the interpolation
+     * tolerance, with fewer ephemeris evaluations than requests
+     */
+    @Test
+    public void MeasurementRateTest() {
+        checkMeasurementRate(1000L, 300);
+        checkMeasurementRate(100L, 600);
+    }
+
+    private static void checkMeasurementRate(long intervalMillis, int epochs) {
+        EphGps[] ephemerides = new EphGps[SATELLITES + 1];
+        for (int satId = 1; satId <= SATELLITES; satId++)
+            ephemerides[satId] = createGpsEphemeris(satId);
+        long start = GnssTime.gpsToUnixMillis(WEEK, TOE);
+
+        CountingCache cache = new CountingCache(256);
+        for (int epoch = 0; epoch < epochs; epoch++) {
+            long millis = epoch * intervalMillis;
+            for (int satId = 1; satId <= SATELLITES; satId++) {
+                SatellitePosition expected = GPS_SYSTEM.computeSatPositionAndVelocities(
+                        start + millis, pseudorange(satId, millis), satId, 'G', ephemerides[satId], 0.0);
+                SatellitePosition cached = cache.getSatPositionAndVelocities(
+                        start + millis, pseudorange(satId, millis), satId, 'G', ephemerides[satId], 0.0);
+                assertEquals(expected.getX(), cached.getX(), OrbitInterpolationCache.POSITION_TOLERANCE);
+            }
+        }
+
+        assertTrue(cache.computations < epochs * SATELLITES);
+    }
+}
@@ -0,0 +1,123 @@
+package com.galfins.gogpsextracts;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the navigation data read from RINEX files
+ */
+public class RinexFileNavigationTest {
+
+    /**
+     * GPS navigation file with a single ephemeris, based on the example of the RINEX 2.11
+     * specification with the time of the ephemeris moved to 2018
+     */
+    private static final String GPS_NAVIGATION =
+            "     2.11           N: GPS NAV DATA                         RINEX VERSION / TYPE\n"
+                    + "XXRINEXN V2.10      AIUB                19-FEB-98 10:42     PGM / RUN BY / DATE\n"
+                    + "    .1676D-07   .2235D-07  -.1192D-06  -.1192D-06          ION ALPHA\n"
+                    + "    .1208D+06   .1310D+06  -.1310D+06  -.1966D+06          ION BETA\n"
+                    + "    .133179128170D-06  .107469588780D-12   552960     1025 DELTA-UTC: A0,A1,T,W\n"
+                    + "    13                                                      LEAP SECONDS\n"
+                    + "                                                            END OF HEADER\n"
+                    + " 6 18 11 16  8  0  0.0 -.839701388031D-03 -.165982783074D-10  .000000000000D+00\n"
+                    + "     .910000000000D+02  .934062500000D+02  .116040547840D-08  .162092304801D+00\n"
+                    + "     .484101474285D-05  .626740418375D-02  .652112066746D-05  .515365489006D+04\n"
+                    + "     .460800000000D+06 -.242143869400D-07  .329237003460D+00 -.596046447754D-07\n"
+                    + "     .111541663136D+01  .326593750000D+03  .206958726335D+01 -.638312302555D-08\n"
+                    + "     .307155651409D-09  .000000000000D+00  .202700000000D+04  .000000000000D+00\n"
+                    + "     .000000000000D+00  .000000000000D+00  .000000000000D+00  .910000000000D+02\n"
+                    + "     .460200000000D+06  .000000000000D+00\n";
+
+    private static final int GPS_WEEK = 2027;
+    private static final double TOE = 460800;
+
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = File.createTempFile("navigation", "");
+        assertTrue(directory.delete());
+        assertTrue(directory.mkdirs());
+    }
+
+    @After
+    public void tearDown() {
+        NavigationProviders.clear();
+        File[] files = directory.listFiles();
+        if (files != null)
+            for (File file : files)
+                file.delete();
+        directory.delete();
+    }
+
+    private File write(String name, String content) throws IOException {
+        File file = new File(directory, name);
+        OutputStream stream = new FileOutputStream(file);
+        if (name.endsWith(".gz"))
+            stream = new GZIPOutputStream(stream);
+        try (Writer writer = new OutputStreamWriter(stream, "US-ASCII")) {
+            writer.write(content);
+        }
+        return file;
+    }
+
+    @Test
+    public void GpsFileTest() throws Exception {
+        RinexFileNavigationGps navigation = new RinexFileNavigationGps(
+                Collections.singletonList(write("brdc3200.18n.gz", GPS_NAVIGATION)));
+
+        EphGps eph = navigation.findEph(new Time(GPS_WEEK, TOE + 600).getMsec(), 6, 'G', null);
+        assertNotNull(eph);
+        assertEquals(6, eph.getSatID());
+        assertNotNull(navigation.getIono(eph.getRefTime().getMsec(), null));
+
+        // a day later, no ephemeris of the file is valid
+        assertNull(navigation.findEph(new Time(GPS_WEEK, TOE + 86400).getMsec(), 6, 'G', null));
+    }
+
+    /**
+     * Copies of a provider serve the same navigation data
+     */
+    @Test
+    public void CopyTest() throws Exception {
+        RinexFileNavigationGps navigation = new RinexFileNavigationGps(
+                Collections.singletonList(write("brdc3200.18n", GPS_NAVIGATION)));
+        RinexFileNavigationGps copy = new RinexFileNavigationGps(navigation);
+
+        long unixTime = new Time(GPS_WEEK, TOE + 600).getMsec();
+        assertSame(navigation.findEph(unixTime, 6, 'G', null), copy.findEph(unixTime, 6, 'G', null));
+        assertSame(navigation.getIono(unixTime, null), copy.getIono(unixTime, null));
+        assertNull(copy.findEph(new Time(GPS_WEEK, TOE + 86400).getMsec(), 6, 'G', null));
+    }
+
+    @Test
+    public void ProvidersTest() throws Exception {
+        File file = write("brdc3200.18n", GPS_NAVIGATION);
+
+        NavigationProviders.useRinexFiles(Arrays.asList(file), null);
+        assertTrue(NavigationProviders.getGps() instanceof RinexFileNavigationGps);
+        assertFalse(NavigationProviders.getGalileo() instanceof RinexFileNavigationGalileo);
+
+        NavigationProviders.clear();
+        assertFalse(NavigationProviders.getGps() instanceof RinexFileNavigationGps);
+    }
+
+    @Test(expected = IOException.class)
+    public void InvalidFileTest() throws Exception {
+        new RinexFileNavigationGps(Collections.singletonList(write("invalid.18n", "not a RINEX file\n")));
+    }
+}
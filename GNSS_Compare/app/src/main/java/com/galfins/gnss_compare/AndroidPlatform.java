@@ -0,0 +1,83 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare;
+
+import android.os.Debug;
+import android.os.Environment;
+import android.util.Log;
+
+import com.galfins.gnss_compare.FileLoggers.FileLogger;
+
+import java.io.File;
+
+/**
+ * Connects the processing core, which does not depend on the Android SDK, to the platform:
+ * the core messages go to the system log, the file loggers write to the external storage and
+ * the pipeline metrics count the allocations with {@link Debug}.
+ */
+public class AndroidPlatform {
+
+    private static boolean installed = false;
+
+    /**
+     * Forwards the messages of the core to android.util.Log
+     */
+    private static final com.galfins.gogpsextracts.Log.Sink LOG_SINK = new com.galfins.gogpsextracts.Log.Sink() {
+        @Override
+        public void println(int priority, String tag, String msg, Throwable tr) {
+            if (tr != null)
+                msg = msg + '\n' + Log.getStackTraceString(tr);
+            Log.println(priority, tag, msg);
+        }
+    };
+
+    /*
+     * The allocation counters of Debug are deprecated because accurate counting slows down the
+     * runtime, but they are the only per-thread allocation counters of the platform. They are
+     * only used while the tracking is enabled, which is meant for investigations only.
+     */
+    private static final PipelineMetrics.AllocationCounter ALLOCATION_COUNTER = new PipelineMetrics.AllocationCounter() {
+        @Override
+        @SuppressWarnings("deprecation")
+        public void setCounting(boolean counting) {
+            if (counting)
+                Debug.startAllocCounting();
+            else
+                Debug.stopAllocCounting();
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public long getThreadAllocatedBytes() {
+            return Debug.getThreadAllocSize();
+        }
+    };
+
+    /**
+     * Installs the platform implementations used by the core, can be called more than once
+     */
+    public static synchronized void install() {
+        if (installed)
+            return;
+
+        com.galfins.gogpsextracts.Log.setSink(LOG_SINK);
+        FileLogger.setBaseDirectory(new File(Environment.getExternalStorageDirectory(), "GNSS Compare"));
+        PipelineMetrics.setAllocationCounter(ALLOCATION_COUNTER);
+
+        installed = true;
+    }
+}
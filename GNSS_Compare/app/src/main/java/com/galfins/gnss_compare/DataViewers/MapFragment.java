@@ -316,7 +316,7 @@ public class MapFragment extends Fragment implements DataViewer, OnMapReadyCallb
             }
 
             if (updatedSeries.mListener != null && mapInActivity) {
-                updatedSeries.mListener.onLocationChanged(calculationModule.getLocationFromGoogleServices());
+                updatedSeries.mListener.onLocationChanged(MainActivity.getLocationFromGoogleServices());
             }
         } else {
             Log.w(TAG, "updateMapSeries: Map not yet initialized...");
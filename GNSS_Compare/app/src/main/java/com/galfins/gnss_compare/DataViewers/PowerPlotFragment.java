@@ -44,17 +44,15 @@ import com.androidplot.xy.XYSeriesFormatter;
 import java.text.FieldPosition;
 import java.text.Format;
 import java.text.ParsePosition;
-import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Observable;
 import java.util.Observer;
 import java.util.Set;
 
 import com.galfins.gnss_compare.CalculationModule;
 import com.galfins.gnss_compare.CalculationModulesArrayList;
-import com.galfins.gnss_compare.Constellations.SatelliteParameters;
+import com.galfins.gnss_compare.Constellations.ConstellationSnapshot;
 import com.galfins.gnss_compare.MainActivity;
 import com.galfins.gnss_compare.R;
 import com.google.common.collect.Sets;
@@ -210,8 +208,8 @@ public class PowerPlotFragment extends Fragment implements DataViewer {
             @Override
             public StringBuffer format(Object obj, @NonNull StringBuffer toAppendTo, @NonNull FieldPosition pos) {
                 int i = Math.round(((Number) obj).intValue());
-                if((i-1)<data.satellites.size() && i>0)
-                    return toAppendTo.append(Html.fromHtml(data.satellites.get(i-1).getUniqueSatId(), Html.FROM_HTML_MODE_LEGACY));
+                if((i-1)<data.satelliteCount && i>0)
+                    return toAppendTo.append(Html.fromHtml(data.satelliteIds[i-1], Html.FROM_HTML_MODE_LEGACY));
                 else
                     return toAppendTo.append("");
             }
@@ -257,7 +255,15 @@ public class PowerPlotFragment extends Fragment implements DataViewer {
          * reference to the calculation module
          */
         private Set<CalculationModule> registeredCalculationModules = new ArraySet<>();
-        private List<SatelliteParameters> satellites = new ArrayList<>();
+
+        /**
+         * signal strengths of the displayed satellites, copied from the constellation snapshots
+         */
+        private final int[] satelliteKeys = new int[DATA_LENGTH];
+        private final String[] satelliteIds = new String[DATA_LENGTH];
+        private final double[] signalStrengths = new double[DATA_LENGTH];
+        private final int[] constellationTypes = new int[DATA_LENGTH];
+        private int satelliteCount = 0;
 
         /**
          *
@@ -297,8 +303,8 @@ public class PowerPlotFragment extends Fragment implements DataViewer {
         public Number getY(int index) {
             if (index >= size())
                 throw new IllegalArgumentException();
-            else if (index < satellites.size())
-                return satellites.get(index).getSignalStrength();
+            else if (index < satelliteCount)
+                return signalStrengths[index];
             else
                 return 0;
         }
@@ -306,8 +312,8 @@ public class PowerPlotFragment extends Fragment implements DataViewer {
         public int getType(int index){
             if (index >= size())
                 throw new IllegalArgumentException();
-            else if (index < satellites.size())
-                return satellites.get(index).getConstellationType();
+            else if (index < satelliteCount)
+                return constellationTypes[index];
             else
                 return CONSTELLATION_UNKNOWN;
         }
@@ -318,10 +324,11 @@ public class PowerPlotFragment extends Fragment implements DataViewer {
         }
 
         public void update() {
-            satellites.clear();
+            satelliteCount = 0;
 
             for(CalculationModule calculationModule : registeredCalculationModules){
-                for (int i=0; i<calculationModule.getConstellation().getUsedConstellationSize(); i++){
+                ConstellationSnapshot snapshot = calculationModule.getConstellation().getSnapshot();
+                for (int i=0; i<snapshot.size() && satelliteCount<DATA_LENGTH; i++){
 
                     // not adding satellites already registered (this is a cross check if a
                     // satellite can be selected from multiple constellations (e.g. a Galileo satellite
@@ -331,17 +338,19 @@ public class PowerPlotFragment extends Fragment implements DataViewer {
                     // todo: not displayed
                     boolean satelliteFound = false;
 
-                    for(SatelliteParameters sat : satellites){
-
-                        if(sat.getUniqueSatId() != null) {
-                            if (sat.getUniqueSatId().equals(calculationModule.getConstellation().getSatellite(i).getUniqueSatId())) {
-                                satelliteFound = true;
-                                break;
-                            }
+                    for(int j=0; j<satelliteCount; j++){
+                        if (satelliteKeys[j] == snapshot.getKey(i)) {
+                            satelliteFound = true;
+                            break;
                         }
                     }
-                    if(!satelliteFound)
-                        satellites.add(calculationModule.getConstellation().getSatellite(i));
+                    if(!satelliteFound) {
+                        satelliteKeys[satelliteCount] = snapshot.getKey(i);
+                        satelliteIds[satelliteCount] = snapshot.getUniqueSatId(i);
+                        signalStrengths[satelliteCount] = snapshot.getSignalStrength(i);
+                        constellationTypes[satelliteCount] = snapshot.getConstellationType(i);
+                        satelliteCount++;
+                    }
                 }
             }
         }
@@ -130,7 +130,6 @@ public class RawMeasurementsFileLogger extends FileLogger{
         }
     }
 
-    @Override
     public void onGnssMeasurementsReceived(GnssMeasurementsEvent event) {
         synchronized (mFileLock) {
             if (mFileWriter == null) {
@@ -24,8 +24,10 @@ import android.location.LocationManager;
 import android.os.Binder;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Environment;
 import android.os.IBinder;
 import android.support.annotation.Nullable;
+import android.support.design.widget.Snackbar;
 import android.support.v4.content.ContextCompat;
 import android.util.Log;
 
@@ -34,16 +36,23 @@ import com.galfins.gnss_compare.Constellations.GalileoConstellation;
 import com.galfins.gnss_compare.Constellations.GalileoGpsConstellation;
 import com.galfins.gnss_compare.Constellations.GpsConstellation;
 import com.galfins.gnss_compare.Corrections.Correction;
+import com.galfins.gnss_compare.Corrections.NeQuickData;
 import com.galfins.gnss_compare.Corrections.ShapiroCorrection;
 import com.galfins.gnss_compare.Corrections.TropoCorrection;
 import com.galfins.gnss_compare.FileLoggers.FileLogger;
 import com.galfins.gnss_compare.FileLoggers.NmeaFileLogger;
 import com.galfins.gnss_compare.PvtMethods.DynamicExtendedKalmanFilter;
 import com.galfins.gnss_compare.PvtMethods.PvtMethod;
+import com.galfins.gogpsextracts.EphemerisCache;
+import com.galfins.gogpsextracts.NavigationProviders;
 import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.LocationServices;
 
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 import java.util.Observable;
 import java.util.Observer;
@@ -65,6 +74,8 @@ public class GnssCoreService extends Service {
 
     CalculationModulesArrayList calculationModules = new CalculationModulesArrayList();
 
+    GnssMeasurementsReceiver gnssReceiver = new GnssMeasurementsReceiver(calculationModules);
+
     Observable gnssCoreObservable = new Observable(){
         @Override
         public void notifyObservers() {
@@ -82,6 +93,16 @@ public class GnssCoreService extends Service {
 
     private static final String TAG = GnssCoreService.class.getSimpleName();
 
+    /**
+     * Forwards messages from the processing core to the user notifier
+     */
+    private static final Constellation.UserMessageListener constellationMessageListener = new Constellation.UserMessageListener() {
+        @Override
+        public void onUserMessage(String text, String id) {
+            notifyUser(text, Snackbar.LENGTH_SHORT, id);
+        }
+    };
+
     public class GnssCoreBinder extends Binder{
 
         public void addObserver(Observer observer){
@@ -111,6 +132,40 @@ public class GnssCoreService extends Service {
         public void assignUserNotifier(UserNotifier notifier) {
             userNotifier = notifier;
         }
+
+        /**
+         * Enables or disables the collection of the pipeline latency metrics
+         */
+        public void setMetricsEnabled(boolean enabled) {
+            PipelineMetrics.setEnabled(enabled);
+        }
+
+        /**
+         * @return table of the latencies of all pipeline stages, per module
+         */
+        public String getPipelineMetrics() {
+            return PipelineMetrics.dump();
+        }
+
+        /**
+         * Writes the pipeline metrics to the external storage
+         * @return created file, or null if it could not be written
+         */
+        public File dumpPipelineMetrics() {
+            File baseDirectory = new File(Environment.getExternalStorageDirectory(), "GNSS Compare/Metrics");
+            baseDirectory.mkdirs();
+
+            SimpleDateFormat formatter = new SimpleDateFormat("yyy_MM_dd_HH_mm_ss");
+            File metricsFile = new File(baseDirectory, "metrics_" + formatter.format(new Date()) + ".txt");
+
+            try {
+                PipelineMetrics.dumpToFile(metricsFile);
+            } catch (IOException e) {
+                Log.e(TAG, "dumpPipelineMetrics: could not write " + metricsFile, e);
+                return null;
+            }
+            return metricsFile;
+        }
     }
 
     private IBinder binder = new GnssCoreBinder();
@@ -131,11 +186,21 @@ public class GnssCoreService extends Service {
     public void onCreate() {
         super.onCreate();
 
+        AndroidPlatform.install();
+
+        EphemerisCache.setCacheDirectory(new File(getFilesDir(), "ephemeris"));
+        // the stored ephemerides are served from the first epoch, while SUPL is requested
+        NavigationProviders.loadCaches(System.currentTimeMillis());
+        // before the corrections, NeQuick-G is only registered when its maps are installed
+        NeQuickData.setDataDirectory(new File(getFilesDir(), "nequick"));
+
         Constellation.initialize();
         Correction.initialize();
         PvtMethod.initialize();
         FileLogger.initialize();
 
+        Constellation.setUserMessageListener(constellationMessageListener);
+
         if(calculationModules.size() == 0){
             if(savedModulesBundle==null)
                 createInitialCalculationModules();
@@ -151,6 +216,8 @@ public class GnssCoreService extends Service {
                 }
             }
 
+            calculationModules.setParallelism(Runtime.getRuntime().availableProcessors());
+
             try {
                 while (!tryRegisterForGnssUpdates())
                     Thread.sleep(500);
@@ -176,11 +243,11 @@ public class GnssCoreService extends Service {
             FusedLocationProviderClient fusedLocationClient = LocationServices.getFusedLocationProviderClient(this);
             LocationManager locationManager = (LocationManager) getApplicationContext().getSystemService(LOCATION_SERVICE);
             try {
-                calculationModules.registerForGnssUpdates(fusedLocationClient, locationManager);
+                gnssReceiver.registerForGnssUpdates(fusedLocationClient, locationManager);
                 calculationModules.assignPoseUpdatedListener(poseListener);
             } catch (IllegalStateException e){
                 e.printStackTrace();
-                calculationModules.unregisterFromGnssUpdates();
+                gnssReceiver.unregisterFromGnssUpdates();
                 return false;
             }
             return true;
@@ -228,9 +295,11 @@ public class GnssCoreService extends Service {
 
         saveModulesDescriptionToBundle();
 
-        calculationModules.unregisterFromGnssUpdates();
+        gnssReceiver.unregisterFromGnssUpdates();
+        calculationModules.setParallelism(1);
         calculationModules.clear();
         CalculationModule.clear();
+        NavigationProviders.clear();
 
         serviceStarted = false;
 
@@ -251,10 +320,8 @@ public class GnssCoreService extends Service {
 
         savedModulesBundle.putStringArrayList(MODULE_NAMES_BUNDLE_TAG, modulesNames);
 
-        for (CalculationModule module : calculationModules){
-            Bundle moduleDescription = module.getConstructorBundle();
-            savedModulesBundle.putBundle(module.getName(), moduleDescription);
-        }
+        for (CalculationModule module : calculationModules)
+            savedModulesBundle.putStringArrayList(module.getName(), module.getConstructorArrayList());
     }
 
     /**
@@ -270,9 +337,9 @@ public class GnssCoreService extends Service {
             if (modulesNames != null) {
                 for (String name : modulesNames) {
                     try {
-                        Bundle constructorBundle = savedModulesBundle.getBundle(name);
-                        if (constructorBundle != null)
-                            calculationModules.add(CalculationModule.fromConstructorBundle(constructorBundle));
+                        ArrayList<String> moduleDescription = savedModulesBundle.getStringArrayList(name);
+                        if (moduleDescription != null)
+                            calculationModules.add(CalculationModule.fromConstructorArrayList(moduleDescription));
                     } catch (CalculationModule.NameAlreadyRegisteredException | CalculationModule.NumberOfSeriesExceededLimitException e) {
                         e.printStackTrace();
                     }
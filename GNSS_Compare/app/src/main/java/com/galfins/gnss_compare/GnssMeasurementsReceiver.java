@@ -0,0 +1,183 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare;
+
+import android.location.GnssClock;
+import android.location.GnssMeasurement;
+import android.location.GnssMeasurementsEvent;
+import android.location.Location;
+import android.location.LocationManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+import com.galfins.gnss_compare.Constellations.GnssMeasurementsEpoch;
+import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.LocationCallback;
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationResult;
+
+/**
+ * Receives the GNSS measurements and the fused locations from the platform and feeds them to
+ * the calculation modules. Each GNSS event is decoded once on the receiver thread, the
+ * resulting epoch is processed by the modules on their processing thread.
+ */
+public class GnssMeasurementsReceiver {
+
+    private static final String TAG = "GnssMeasurementsReceiver";
+
+    private final CalculationModulesArrayList calculationModules;
+
+    /**
+     * Decodes each GNSS event once, the resulting epoch is shared by all modules
+     */
+    private final GnssMeasurementsEpoch.Decoder epochDecoder = new GnssMeasurementsEpoch.Decoder(Build.VERSION.SDK_INT);
+
+    private final PipelineMetrics.Stage decodeStage =
+            PipelineMetrics.getModule(PipelineMetrics.PIPELINE).getStage(PipelineMetrics.STAGE_DECODE);
+
+    private final GnssMeasurementsEvent.Callback gnssCallback;
+    private final LocationCallback locationCallback;
+    private final LocationRequest locationRequest;
+    private FusedLocationProviderClient fusedLocationProviderClientReference = null;
+    private LocationManager locationManagerReference = null;
+
+    /**
+     * Thread on which GNSS events and locations are received
+     */
+    private HandlerThread receiverThread = null;
+
+    public GnssMeasurementsReceiver(CalculationModulesArrayList calculationModules) {
+        this.calculationModules = calculationModules;
+
+        gnssCallback = new GnssMeasurementsEvent.Callback() {
+            @Override
+            public void onGnssMeasurementsReceived(GnssMeasurementsEvent eventArgs) {
+                super.onGnssMeasurementsReceived(eventArgs);
+
+                Log.d(TAG, "onGnssMeasurementsReceived: invoked!");
+
+                long decodeStartNanos = PipelineMetrics.startTimer();
+                GnssMeasurementsEpoch epoch = decode(epochDecoder, eventArgs);
+                decodeStage.record(decodeStartNanos);
+
+                GnssMeasurementsReceiver.this.calculationModules.enqueueEpoch(epoch);
+            }
+        };
+
+        locationRequest = new LocationRequest();
+
+        locationRequest.setPriority(LocationRequest.PRIORITY_HIGH_ACCURACY);
+        locationRequest.setMaxWaitTime(500);
+        locationRequest.setInterval(1000);
+        locationRequest.setFastestInterval(100);
+
+        locationCallback = new LocationCallback() {
+            @Override
+            public void onLocationResult(LocationResult locationResult) {
+
+                final Location lastLocation = locationResult.getLocations().get(locationResult.getLocations().size() - 1);
+
+                if (lastLocation != null)
+                    GnssMeasurementsReceiver.this.calculationModules.updateLocationFromGoogleServices(
+                            lastLocation.getLatitude(),
+                            lastLocation.getLongitude(),
+                            lastLocation.getAltitude());
+            }
+        };
+    }
+
+    /**
+     * Decodes the whole event in a single pass
+     * @param decoder decoder created with the API level of the device
+     * @param event GNSS event
+     * @return decoded epoch
+     */
+    public static GnssMeasurementsEpoch decode(GnssMeasurementsEpoch.Decoder decoder, GnssMeasurementsEvent event) {
+        GnssClock gnssClock = event.getClock();
+
+        decoder.startEpoch(
+                System.currentTimeMillis(),
+                gnssClock.getTimeNanos(),
+                gnssClock.getFullBiasNanos(),
+                gnssClock.getBiasNanos(),
+                gnssClock.getHardwareClockDiscontinuityCount());
+
+        for (GnssMeasurement measurement : event.getMeasurements()) {
+            decoder.addMeasurement(
+                    measurement.getSvid(),
+                    measurement.getConstellationType(),
+                    measurement.hasCarrierFrequencyHz() ? measurement.getCarrierFrequencyHz() : Double.NaN,
+                    measurement.getReceivedSvTimeNanos(),
+                    measurement.getReceivedSvTimeUncertaintyNanos(),
+                    measurement.getTimeOffsetNanos(),
+                    measurement.getState(),
+                    measurement.getCn0DbHz(),
+                    measurement.getAccumulatedDeltaRangeState(),
+                    measurement.getAccumulatedDeltaRangeMeters(),
+                    measurement.getPseudorangeRateMetersPerSecond());
+        }
+
+        return decoder.finishEpoch();
+    }
+
+    public void registerForGnssUpdates(FusedLocationProviderClient fusedLocationClient, LocationManager locationManager){
+        try {
+
+            fusedLocationProviderClientReference = fusedLocationClient;
+            locationManagerReference = locationManager;
+
+            calculationModules.startProcessing();
+
+            synchronized (this) {
+                if (receiverThread == null) {
+                    receiverThread = new HandlerThread("GnssReceiver");
+                    receiverThread.start();
+                }
+            }
+
+            fusedLocationClient.requestLocationUpdates(
+                    locationRequest,
+                    locationCallback,
+                    receiverThread.getLooper());
+
+            locationManager.registerGnssMeasurementsCallback(
+                    gnssCallback,
+                    new Handler(receiverThread.getLooper()));
+
+        } catch (SecurityException e){
+            e.printStackTrace();
+        }
+    }
+
+    public void unregisterFromGnssUpdates(){
+        if (fusedLocationProviderClientReference!=null)
+            fusedLocationProviderClientReference.removeLocationUpdates(locationCallback);
+        if(locationManagerReference!=null)
+            locationManagerReference.unregisterGnssMeasurementsCallback(gnssCallback);
+
+        synchronized (this) {
+            if (receiverThread != null) {
+                receiverThread.quitSafely();
+                receiverThread = null;
+            }
+        }
+
+        calculationModules.stopProcessing();
+    }
+}
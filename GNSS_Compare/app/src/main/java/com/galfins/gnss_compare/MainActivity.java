@@ -355,6 +355,8 @@ public class MainActivity extends AppCompatActivity {
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
+        AndroidPlatform.install();
+
         initializeGnssCompareMainActivity();
 
         if (hasGnssAndLogPermissions()) {
@@ -0,0 +1,316 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare;
+
+import com.galfins.gnss_compare.Corrections.NeQuickCorrection;
+import com.galfins.gnss_compare.Corrections.NeQuickData;
+import com.galfins.gnss_compare.Corrections.NeQuickG;
+import com.galfins.gogpsextracts.BenchmarkRunner;
+import com.galfins.gogpsextracts.Coordinates;
+import com.galfins.gogpsextracts.EpochGeometry;
+import com.galfins.gogpsextracts.IonoGalileo;
+import com.galfins.gogpsextracts.IonoGps;
+import com.galfins.gogpsextracts.NavigationProducer;
+import com.galfins.gogpsextracts.Observations;
+import com.galfins.gogpsextracts.SatellitePosition;
+import com.galfins.gogpsextracts.Time;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Measures whether the NeQuick-G rays of an epoch gain from being integrated on a pool of
+ * threads, as NeQuickCorrection first did:
+ *  - the integration of all the rays of an epoch, on the module thread and on a ray pool, for
+ *    one module and for modules running in parallel as with CalculationModulesArrayList,
+ *  - the number of rays NeQuickCorrection integrates per epoch once the TECs are reused, with
+ *    satellites moving over the receiver.
+ */
+public class NeQuickRayBenchmark {
+
+    private static final int MODULES = 4;
+    private static final int REPETITIONS = 10;
+
+    private static final int SATELLITES = 24;
+    private static final double ORBIT_RADIUS = 29600e3;
+    private static final double ORBIT_PERIOD = 50680;
+    private static final int EPOCHS = 600;
+
+    private static final long START_MSEC = 1520000000000L;
+
+    private static final Coordinates RECEIVER = Coordinates.globalXYZInstance(3904174.0, 301788.0, 5017699.0);
+
+    /**
+     * Navigation producer returning fixed NeQuick-G coefficients
+     */
+    private static class NeQuickProducer implements NavigationProducer {
+        final IonoGalileo iono = new IonoGalileo();
+
+        NeQuickProducer() {
+            iono.setAlpha(new float[]{80.0f, 0.0f, 0.0f});
+        }
+
+        @Override
+        public SatellitePosition getGpsSatPosition(Observations obs, int satID, char satType, double receiverClockError) {
+            return null;
+        }
+
+        @Override
+        public IonoGps getIono(long unixTime, Coordinates initialLocation) {
+            return null;
+        }
+
+        @Override
+        public IonoGalileo getIonoNeQuick(long unixTime, Coordinates initialLocation) {
+            return iono;
+        }
+
+        @Override
+        public void init() {
+        }
+
+        @Override
+        public void release(boolean waitForThread, long timeoutMs) {
+        }
+    }
+
+    /**
+     * Writes maps with a constant foF2 of 8 and 12 MHz for the low and high solar activity, a
+     * constant M(3000)F2 of 3 and a MODIP equal to the latitude
+     */
+    private static File writeData() throws IOException {
+        File directory = File.createTempFile("nequick", "");
+        if (!directory.delete() || !directory.mkdir())
+            throw new IOException("Cannot create " + directory);
+
+        int values = 2 * NeQuickData.F2_COEFFICIENTS * NeQuickData.F2_HARMONICS
+                + 2 * NeQuickData.FM3_COEFFICIENTS * NeQuickData.FM3_HARMONICS;
+        int fm3Start = 2 * NeQuickData.F2_COEFFICIENTS * NeQuickData.F2_HARMONICS;
+        int highActivityStart = NeQuickData.F2_COEFFICIENTS * NeQuickData.F2_HARMONICS;
+
+        for (int month = 1; month <= NeQuickData.MONTHS; month++) {
+            PrintWriter writer = new PrintWriter(new FileWriter(new File(directory, "ccir" + (month + 10) + ".asc")));
+            try {
+                for (int i = 0; i < values; i++) {
+                    double value = 0;
+                    if (i == 0)
+                        value = 8.0;
+                    else if (i == highActivityStart)
+                        value = 12.0;
+                    else if (i == fm3Start || i == fm3Start + NeQuickData.FM3_COEFFICIENTS * NeQuickData.FM3_HARMONICS)
+                        value = 3.0;
+                    writer.println(value);
+                }
+            } finally {
+                writer.close();
+            }
+        }
+
+        PrintWriter writer = new PrintWriter(new FileWriter(new File(directory, "modipNeQG_wrapped.asc")));
+        try {
+            for (int row = 0; row < NeQuickData.MODIP_ROWS; row++) {
+                for (int column = 0; column < NeQuickData.MODIP_COLUMNS; column++)
+                    writer.print(Math.max(-90, Math.min(90, -95 + 5 * row)) + " ");
+                writer.println();
+            }
+        } finally {
+            writer.close();
+        }
+
+        return directory;
+    }
+
+    private static void deleteData(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null)
+            for (File file : files)
+                file.delete();
+        directory.delete();
+    }
+
+    /**
+     * Satellites on circular orbits inclined by 56 degrees, in three planes
+     */
+    private static SatellitePosition[] getSatellites(double seconds) {
+        SatellitePosition[] satellites = new SatellitePosition[SATELLITES];
+        double inclination = Math.toRadians(56);
+        for (int i = 0; i < SATELLITES; i++) {
+            double node = 2 * Math.PI * (i % 3) / 3;
+            double angle = 2 * Math.PI * (i / 3) / (SATELLITES / 3) + 2 * Math.PI * seconds / ORBIT_PERIOD;
+            double xOrbit = ORBIT_RADIUS * Math.cos(angle);
+            double yOrbit = ORBIT_RADIUS * Math.sin(angle) * Math.cos(inclination);
+            double z = ORBIT_RADIUS * Math.sin(angle) * Math.sin(inclination);
+            satellites[i] = new SatellitePosition(
+                    START_MSEC, i + 1, 'E',
+                    xOrbit * Math.cos(node) - yOrbit * Math.sin(node),
+                    xOrbit * Math.sin(node) + yOrbit * Math.cos(node),
+                    z);
+            satellites[i].computeGeodetic();
+        }
+        return satellites;
+    }
+
+    /**
+     * Fills the geometry with the satellites above 5 degrees
+     * @return the satellites of the geometry
+     */
+    private static SatellitePosition[] getVisibleSatellites(double seconds, EpochGeometry geometry) {
+        SatellitePosition[] satellites = getSatellites(seconds);
+        geometry.reset(RECEIVER);
+        for (SatellitePosition satellite : satellites)
+            geometry.add(satellite);
+
+        List<SatellitePosition> visible = new ArrayList<>();
+        for (int i = 0; i < satellites.length; i++)
+            if (geometry.getElevation(i) > 5)
+                visible.add(satellites[i]);
+
+        geometry.reset(RECEIVER);
+        for (SatellitePosition satellite : visible)
+            geometry.add(satellite);
+        return visible.toArray(new SatellitePosition[visible.size()]);
+    }
+
+    private static double[] integrateSerially(NeQuickG model, SatellitePosition[] satellites) {
+        double[] tec = new double[satellites.length];
+        for (int i = 0; i < satellites.length; i++)
+            tec[i] = integrate(model, satellites[i]);
+        return tec;
+    }
+
+    private static double[] integrateOnPool(final NeQuickG model, SatellitePosition[] satellites, ExecutorService pool) throws Exception {
+        List<Future<Double>> futures = new ArrayList<>();
+        for (final SatellitePosition satellite : satellites) {
+            futures.add(pool.submit(new Callable<Double>() {
+                @Override
+                public Double call() {
+                    return integrate(model, satellite);
+                }
+            }));
+        }
+
+        double[] tec = new double[satellites.length];
+        for (int i = 0; i < tec.length; i++)
+            tec[i] = futures.get(i).get();
+        return tec;
+    }
+
+    private static double integrate(NeQuickG model, SatellitePosition satellite) {
+        return model.getSlantTec(
+                RECEIVER.getGeodeticLatitude(),
+                RECEIVER.getGeodeticLongitude(),
+                RECEIVER.getGeodeticHeight(),
+                satellite.getGeodeticLatitude(),
+                satellite.getGeodeticLongitude(),
+                satellite.getGeodeticHeight());
+    }
+
+    /**
+     * Integrates the rays of an epoch on every module thread at the same time
+     * @param rayPool pool of the rays, null to integrate them on the module threads
+     * @return wall time of the epoch, milliseconds
+     */
+    private static double measureEpochMillis(final NeQuickG[] models, final SatellitePosition[] satellites, ExecutorService moduleThreads, final ExecutorService rayPool, final double[] expected) throws Exception {
+        long start = System.nanoTime();
+        for (int repetition = 0; repetition < REPETITIONS; repetition++) {
+            List<Future<double[]>> futures = new ArrayList<>();
+            for (final NeQuickG model : models) {
+                futures.add(moduleThreads.submit(new Callable<double[]>() {
+                    @Override
+                    public double[] call() throws Exception {
+                        if (rayPool == null)
+                            return integrateSerially(model, satellites);
+                        return integrateOnPool(model, satellites, rayPool);
+                    }
+                }));
+            }
+            for (Future<double[]> future : futures) {
+                double[] tec = future.get();
+                for (int i = 0; i < tec.length; i++)
+                    BenchmarkRunner.check(tec[i] == expected[i], "serial and pooled integrations disagree");
+            }
+        }
+        return (System.nanoTime() - start) / 1e6 / REPETITIONS;
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        File directory = writeData();
+        int processors = Runtime.getRuntime().availableProcessors();
+        ExecutorService rayPool = Executors.newFixedThreadPool(processors);
+        ExecutorService moduleThreads = Executors.newFixedThreadPool(MODULES);
+
+        try {
+            NeQuickData data = NeQuickData.load(directory);
+            EpochGeometry geometry = new EpochGeometry();
+            SatellitePosition[] satellites = getVisibleSatellites(0, geometry);
+
+            NeQuickG[] models = new NeQuickG[MODULES];
+            for (int i = 0; i < MODULES; i++) {
+                models[i] = new NeQuickG(data);
+                models[i].prepare(3, 12.0, 80.0, 0.0, 0.0, RECEIVER.getGeodeticLatitude(), RECEIVER.getGeodeticLongitude());
+            }
+            double[] expected = integrateSerially(models[0], satellites);
+
+            // warm up
+            measureEpochMillis(models, satellites, moduleThreads, null, expected);
+            measureEpochMillis(models, satellites, moduleThreads, rayPool, expected);
+
+            NeQuickG[] oneModel = {models[0]};
+            BenchmarkRunner.report("NeQuick-G, %d rays, %d processors, 1 module: module thread %.2f ms, ray pool %.2f ms per epoch",
+                    satellites.length, processors,
+                    measureEpochMillis(oneModel, satellites, moduleThreads, null, expected),
+                    measureEpochMillis(oneModel, satellites, moduleThreads, rayPool, expected));
+            BenchmarkRunner.report("NeQuick-G, %d rays, %d processors, %d modules: module threads %.2f ms, ray pool %.2f ms per epoch",
+                    satellites.length, processors, MODULES,
+                    measureEpochMillis(models, satellites, moduleThreads, null, expected),
+                    measureEpochMillis(models, satellites, moduleThreads, rayPool, expected));
+
+            // rays integrated once the TECs are reused, satellites moving at 1 Hz epochs
+            NeQuickData.setDataDirectory(directory);
+            NeQuickCorrection correction = new NeQuickCorrection();
+            NeQuickProducer producer = new NeQuickProducer();
+            double[] corrections = new double[SATELLITES];
+            int rays = 0;
+
+            long start = System.nanoTime();
+            for (int epoch = 0; epoch < EPOCHS; epoch++) {
+                SatellitePosition[] visible = getVisibleSatellites(epoch, geometry);
+                rays += visible.length;
+                correction.calculateCorrections(new Time(START_MSEC + epoch * 1000L), RECEIVER, producer, RECEIVER, geometry, visible, corrections);
+            }
+            double correctionMillis = (System.nanoTime() - start) / 1e6 / EPOCHS;
+
+            BenchmarkRunner.check(correction.getIntegrationCount() <= rays, "more integrations than rays");
+            BenchmarkRunner.report("NeQuick-G over %d epochs: %.2f of %.2f rays integrated, %.2f ms per epoch",
+                    EPOCHS, (double) correction.getIntegrationCount() / EPOCHS, (double) rays / EPOCHS, correctionMillis);
+        } finally {
+            NeQuickData.setDataDirectory(null);
+            rayPool.shutdown();
+            moduleThreads.shutdown();
+            deleteData(directory);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare;
+
+import com.galfins.gnss_compare.Constellations.Constellation;
+import com.galfins.gnss_compare.Constellations.GnssConstants;
+import com.galfins.gnss_compare.Constellations.GnssMeasurementsEpoch;
+import com.galfins.gnss_compare.Constellations.GpsConstellation;
+import com.galfins.gogpsextracts.BenchmarkRunner;
+import com.galfins.gogpsextracts.Constants;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the per-epoch cost of decoding the measurements once for all modules with decoding
+ * them separately for each module, for a growing number of modules.
+ */
+public class PerEpochCostBenchmark {
+
+    private static final long TIME_NANOS = 123456789000L;
+    private static final long FULL_BIAS_NANOS = -1234567890123456789L;
+    private static final double BIAS_NANOS = 0.25;
+
+    private static final int NUMBER_OF_SATELLITES = 12;
+
+    private static final int WARMUP_EPOCHS = 200;
+    private static final int EPOCHS = 1000;
+
+    private static void fillEpoch(GnssMeasurementsEpoch.Decoder decoder, int epochIndex) {
+
+        decoder.startEpoch(
+                System.currentTimeMillis(),
+                TIME_NANOS + epochIndex * 1000000000L,
+                FULL_BIAS_NANOS,
+                BIAS_NANOS);
+
+        double gpsTime = TIME_NANOS + epochIndex * 1000000000L - (FULL_BIAS_NANOS + BIAS_NANOS);
+        double weekNumberNanos = Math.floor((-1. * FULL_BIAS_NANOS) / Constants.NUMBER_NANO_SECONDS_PER_WEEK)
+                * Constants.NUMBER_NANO_SECONDS_PER_WEEK;
+
+        for (int svid = 1; svid <= NUMBER_OF_SATELLITES; svid++) {
+            long receivedSvTimeNanos = (long) (gpsTime - weekNumberNanos) - 70000000L - svid * 100000L;
+
+            decoder.addMeasurement(
+                    svid,
+                    GnssConstants.CONSTELLATION_GPS,
+                    1.57542e9,
+                    receivedSvTimeNanos,
+                    10,
+                    0.0,
+                    GnssConstants.STATE_CODE_LOCK | GnssConstants.STATE_TOW_DECODED,
+                    40.0,
+                    0,
+                    0.0,
+                    100.0);
+
+            decoder.addMeasurement(
+                    svid,
+                    GnssConstants.CONSTELLATION_GALILEO,
+                    1.17645e9,
+                    receivedSvTimeNanos,
+                    10,
+                    0.0,
+                    0,
+                    35.0,
+                    0,
+                    0.0,
+                    100.0);
+        }
+    }
+
+    public static void main(String[] args) {
+
+        for (int numberOfModules : new int[]{1, 2, 4, 8, 10}) {
+
+            List<Constellation> constellations = new ArrayList<>();
+            for (int i = 0; i < numberOfModules; i++)
+                constellations.add(new GpsConstellation());
+
+            GnssMeasurementsEpoch.Decoder decoder =
+                    new GnssMeasurementsEpoch.Decoder(GnssMeasurementsEpoch.Decoder.TOW_KNOWN_API_LEVEL);
+
+            long sharedNanos = 0;
+            long perModuleNanos = 0;
+
+            for (int epochIndex = 0; epochIndex < WARMUP_EPOCHS + EPOCHS; epochIndex++) {
+
+                long start = System.nanoTime();
+                fillEpoch(decoder, epochIndex);
+                GnssMeasurementsEpoch epoch = decoder.finishEpoch();
+                for (Constellation constellation : constellations)
+                    constellation.updateMeasurements(epoch);
+                long shared = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                for (Constellation constellation : constellations) {
+                    fillEpoch(decoder, epochIndex);
+                    constellation.updateMeasurements(decoder.finishEpoch());
+                }
+                long perModule = System.nanoTime() - start;
+
+                if (epochIndex >= WARMUP_EPOCHS) {
+                    sharedNanos += shared;
+                    perModuleNanos += perModule;
+                }
+            }
+
+            BenchmarkRunner.check(constellations.get(0).getUsedConstellationSize() == NUMBER_OF_SATELLITES,
+                    "unexpected number of used satellites");
+
+            BenchmarkRunner.report(
+                    "modules: %2d, shared decoding: %8.2f us/epoch, per-module decoding: %8.2f us/epoch",
+                    numberOfModules,
+                    sharedNanos / 1e3 / EPOCHS,
+                    perModuleNanos / 1e3 / EPOCHS);
+        }
+    }
+}
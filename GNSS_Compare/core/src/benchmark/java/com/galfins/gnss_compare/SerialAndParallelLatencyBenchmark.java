@@ -0,0 +1,100 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare;
+
+import com.galfins.gnss_compare.Constellations.GnssMeasurementsEpoch;
+import com.galfins.gnss_compare.Constellations.GpsConstellation;
+import com.galfins.gnss_compare.Corrections.Correction;
+import com.galfins.gnss_compare.FileLoggers.SimpleFileLogger;
+import com.galfins.gnss_compare.PvtMethods.WeightedLeastSquares;
+import com.galfins.gogpsextracts.BenchmarkRunner;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares the epoch latency of the serial and parallel execution modes of
+ * CalculationModulesArrayList, with modules which take a fixed time to process an epoch.
+ */
+public class SerialAndParallelLatencyBenchmark {
+
+    private static final int NUMBER_OF_MODULES = 8;
+    private static final long MODULE_MILLIS = 10;
+    private static final int EPOCHS = 20;
+
+    /**
+     * Module which only sleeps for a fixed time on every epoch
+     */
+    private static class SlowModule extends CalculationModule {
+
+        private final AtomicInteger updates;
+
+        SlowModule(String name, AtomicInteger updates) throws Exception {
+            super(name, GpsConstellation.class, new ArrayList<Class<? extends Correction>>(),
+                    WeightedLeastSquares.class, SimpleFileLogger.class);
+            this.updates = updates;
+        }
+
+        @Override
+        public void updateMeasurements(GnssMeasurementsEpoch epoch) {
+            try {
+                Thread.sleep(MODULE_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            updates.incrementAndGet();
+        }
+    }
+
+    private static GnssMeasurementsEpoch emptyEpoch() {
+        GnssMeasurementsEpoch.Decoder decoder =
+                new GnssMeasurementsEpoch.Decoder(GnssMeasurementsEpoch.Decoder.TOW_KNOWN_API_LEVEL);
+        decoder.startEpoch(0, 0, 0, 0);
+        return decoder.finishEpoch();
+    }
+
+    private static double measureLatencyMillis(CalculationModulesArrayList modules) {
+        long total = 0;
+        for (int i = 0; i < EPOCHS; i++) {
+            modules.processEpoch(emptyEpoch());
+            total += modules.getLastEpochProcessingNanos();
+        }
+        return total / 1e6 / EPOCHS;
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        AtomicInteger updates = new AtomicInteger();
+        CalculationModulesArrayList modules = new CalculationModulesArrayList();
+        for (int i = 0; i < NUMBER_OF_MODULES; i++)
+            modules.add(new SlowModule("Latency benchmark " + i, updates));
+
+        double serialLatency = measureLatencyMillis(modules);
+        BenchmarkRunner.check(updates.get() == EPOCHS * NUMBER_OF_MODULES, "serial mode skipped modules");
+
+        modules.setParallelism(NUMBER_OF_MODULES);
+        double parallelLatency = measureLatencyMillis(modules);
+        modules.setParallelism(1);
+        BenchmarkRunner.check(updates.get() == 2 * EPOCHS * NUMBER_OF_MODULES, "parallel mode skipped modules");
+
+        CalculationModule.clear();
+
+        BenchmarkRunner.report(
+                "modules: %d of %d ms, serial: %.2f ms/epoch, parallel: %.2f ms/epoch",
+                NUMBER_OF_MODULES, MODULE_MILLIS, serialLatency, parallelLatency);
+    }
+}
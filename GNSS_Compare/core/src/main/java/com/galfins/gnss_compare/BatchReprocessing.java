@@ -0,0 +1,511 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare;
+
+import com.galfins.gogpsextracts.Log;
+
+import com.galfins.gnss_compare.Constellations.Constellation;
+import com.galfins.gnss_compare.Constellations.GnssMeasurementsEpoch;
+import com.galfins.gnss_compare.Corrections.Correction;
+import com.galfins.gnss_compare.FileLoggers.SimpleFileLogger;
+import com.galfins.gnss_compare.PvtMethods.PvtMethod;
+import com.galfins.gogpsextracts.Coordinates;
+import com.galfins.gogpsextracts.NavigationProviders;
+import com.galfins.gogpsextracts.RinexFileNavigationGalileo;
+import com.galfins.gogpsextracts.RinexFileNavigationGps;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a campaign of recorded sessions (RawMeasurementsFileLogger format) through a set of
+ * module configurations, off-device. Every (session, configuration) pair is an independent job
+ * executed on a work-stealing pool. The computed poses of each job are streamed to a separate
+ * file, and the errors with respect to the {@code Fix} lines are merged into per-configuration
+ * statistics.
+ *
+ * Memory use does not depend on the size of the campaign: only a bounded number of jobs is
+ * scheduled at once, and the statistics are kept in fixed size histograms.
+ *
+ * Recorded sessions are usually older than the ephemerides provided by SUPL, so the navigation
+ * data is read from RINEX broadcast navigation files, set with {@link #setNavigationFiles}. The
+ * orbits of these files are propagated with a KeplerianOrbitBatch, which keeps the constants
+ * of each ephemeris set and the last solution of the Kepler equation of each satellite from
+ * one epoch to the next.
+ *
+ * Each job runs in its own ProcessingContext: it has its own correction cache, metrics and
+ * copies of the RINEX navigation providers, so that concurrent jobs don't evict each other's
+ * cached corrections, mix their latencies or contend for the orbit propagation. Without
+ * navigation files, the jobs use the shared SUPL providers.
+ */
+public class BatchReprocessing {
+
+    private static final String TAG = "BatchReprocessing";
+
+    /**
+     * Fixes older than this are not used as the reference of an epoch
+     */
+    private static final long MAX_FIX_AGE_MILLIS = 1500;
+
+    /**
+     * Number of scheduled jobs per worker thread
+     */
+    private static final int JOBS_PER_THREAD = 2;
+
+    /**
+     * Configuration of the modules used to process the sessions
+     */
+    public static class Configuration {
+
+        private final String name;
+        private final Class<? extends Constellation> constellationClass;
+        private final List<Class<? extends Correction>> correctionClasses;
+        private final Class<? extends PvtMethod> pvtMethodClass;
+
+        /**
+         * @param name name of the configuration, used in the names of the result files
+         * @param constellationClass class used to create the constellation object
+         * @param correctionClasses classes used to create the correction objects
+         * @param pvtMethodClass class used to create the pvt method object
+         */
+        public Configuration(
+                String name,
+                Class<? extends Constellation> constellationClass,
+                List<Class<? extends Correction>> correctionClasses,
+                Class<? extends PvtMethod> pvtMethodClass) {
+            this.name = name;
+            this.constellationClass = constellationClass;
+            this.correctionClasses = correctionClasses;
+            this.pvtMethodClass = pvtMethodClass;
+        }
+
+        /**
+         * Creates a configuration from the registered names of the classes
+         * @param name name of the configuration
+         * @param constellationName registered name of the constellation
+         * @param correctionNames registered names of the corrections
+         * @param pvtMethodName registered name of the pvt method
+         * @return new configuration
+         * @throws CalculationModule.CalculationSettingsIncompleteException when any of the names
+         *                          is not registered
+         */
+        public static Configuration fromDescriptions(
+                String name,
+                String constellationName,
+                Set<String> correctionNames,
+                String pvtMethodName) throws CalculationModule.CalculationSettingsIncompleteException {
+
+            Class<? extends Constellation> constellationClass = Constellation.getClassByName(constellationName);
+            Class<? extends PvtMethod> pvtMethodClass = PvtMethod.getClassByName(pvtMethodName);
+
+            List<Class<? extends Correction>> correctionClasses = new ArrayList<>();
+            for (String correctionName : correctionNames) {
+                Class<? extends Correction> correctionClass = Correction.getClassByName(correctionName);
+                if (correctionClass == null)
+                    throw new CalculationModule.CalculationSettingsIncompleteException(
+                            "Unknown correction: " + correctionName);
+                correctionClasses.add(correctionClass);
+            }
+
+            if (constellationClass == null || pvtMethodClass == null)
+                throw new CalculationModule.CalculationSettingsIncompleteException(
+                        "Unknown constellation or pvt method in " + name);
+
+            return new Configuration(name, constellationClass, correctionClasses, pvtMethodClass);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        CalculationModule createModule(ProcessingContext processingContext) {
+            return CalculationModule.createUnregistered(
+                    name,
+                    constellationClass,
+                    correctionClasses,
+                    pvtMethodClass,
+                    SimpleFileLogger.class,
+                    processingContext);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * Position error statistics. Percentiles are computed from a histogram of the horizontal
+     * errors, so that the memory use doesn't grow with the number of epochs.
+     */
+    public static class ErrorStatistics {
+
+        /**
+         * Resolution of the horizontal error histogram, in meters
+         */
+        public static final double HISTOGRAM_BIN_METERS = 0.05;
+        private static final int HISTOGRAM_BINS = 4000;
+
+        /**
+         * Last bin holds all errors above HISTOGRAM_BINS * HISTOGRAM_BIN_METERS
+         */
+        private final long[] horizontalHistogram = new long[HISTOGRAM_BINS + 1];
+
+        private long count = 0;
+        private long invalidCount = 0;
+        private double sumHorizontal = 0;
+        private double sumSquaredHorizontal = 0;
+        private double sumVertical = 0;
+        private double sumSquaredVertical = 0;
+
+        /**
+         * Adds the error of a single epoch. Errors which are not finite are only counted with
+         * {@link #getInvalidCount()}.
+         * @param horizontal horizontal error in meters
+         * @param vertical vertical error in meters
+         */
+        public void add(double horizontal, double vertical) {
+            if (Double.isNaN(horizontal) || Double.isInfinite(horizontal)
+                    || Double.isNaN(vertical) || Double.isInfinite(vertical)) {
+                invalidCount++;
+                return;
+            }
+
+            count++;
+            sumHorizontal += horizontal;
+            sumSquaredHorizontal += horizontal * horizontal;
+            sumVertical += vertical;
+            sumSquaredVertical += vertical * vertical;
+
+            int bin = (int) (horizontal / HISTOGRAM_BIN_METERS);
+            horizontalHistogram[bin < HISTOGRAM_BINS ? bin : HISTOGRAM_BINS]++;
+        }
+
+        /**
+         * Adds all errors collected by other statistics
+         */
+        public void merge(ErrorStatistics other) {
+            count += other.count;
+            invalidCount += other.invalidCount;
+            sumHorizontal += other.sumHorizontal;
+            sumSquaredHorizontal += other.sumSquaredHorizontal;
+            sumVertical += other.sumVertical;
+            sumSquaredVertical += other.sumSquaredVertical;
+            for (int i = 0; i < horizontalHistogram.length; i++)
+                horizontalHistogram[i] += other.horizontalHistogram[i];
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return number of epochs whose error was not finite, not part of the statistics
+         */
+        public long getInvalidCount() {
+            return invalidCount;
+        }
+
+        public double getMeanHorizontalError() {
+            return count == 0 ? Double.NaN : sumHorizontal / count;
+        }
+
+        public double getRmsHorizontalError() {
+            return count == 0 ? Double.NaN : Math.sqrt(sumSquaredHorizontal / count);
+        }
+
+        public double getMeanVerticalError() {
+            return count == 0 ? Double.NaN : sumVertical / count;
+        }
+
+        public double getRmsVerticalError() {
+            return count == 0 ? Double.NaN : Math.sqrt(sumSquaredVertical / count);
+        }
+
+        /**
+         * @param fraction fraction of the epochs, from 0 to 1
+         * @return radius containing the given fraction of horizontal errors, with the resolution
+         * of HISTOGRAM_BIN_METERS. Infinity if it is above the histogram range.
+         */
+        public double getHorizontalErrorPercentile(double fraction) {
+            if (count == 0)
+                return Double.NaN;
+
+            long required = (long) Math.ceil(fraction * count);
+            long accumulated = 0;
+            for (int i = 0; i < HISTOGRAM_BINS; i++) {
+                accumulated += horizontalHistogram[i];
+                if (accumulated >= required)
+                    return (i + 1) * HISTOGRAM_BIN_METERS;
+            }
+            return Double.POSITIVE_INFINITY;
+        }
+
+        public double getCep50() {
+            return getHorizontalErrorPercentile(0.50);
+        }
+
+        public double getCep95() {
+            return getHorizontalErrorPercentile(0.95);
+        }
+    }
+
+    private final List<Configuration> configurations;
+
+    private final File outputDirectory;
+
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Navigation data read from the files, copied to the context of each job. Null when the
+     * jobs use SUPL.
+     */
+    private RinexFileNavigationGps gpsNavigation = null;
+    private RinexFileNavigationGalileo galileoNavigation = null;
+
+    private final Map<Configuration, ErrorStatistics> statistics = new LinkedHashMap<>();
+
+    private final AtomicInteger completedJobs = new AtomicInteger();
+    private final AtomicInteger failedJobs = new AtomicInteger();
+
+    /**
+     * @param configurations configurations with which each session is processed
+     * @param outputDirectory directory to which the results are written
+     */
+    public BatchReprocessing(List<Configuration> configurations, File outputDirectory) {
+        this.configurations = configurations;
+        this.outputDirectory = outputDirectory;
+
+        for (Configuration configuration : configurations)
+            statistics.put(configuration, new ErrorStatistics());
+    }
+
+    /**
+     * Makes the processed sessions use the navigation data of RINEX broadcast navigation files,
+     * e.g. the daily brdc files of the days of the sessions, instead of SUPL
+     * @param gpsFiles GPS navigation files, null or empty to use SUPL
+     * @param galileoFiles Galileo navigation files, null or empty to use SUPL
+     * @throws IOException if any of the files can't be read
+     */
+    public void setNavigationFiles(List<File> gpsFiles, List<File> galileoFiles) throws IOException {
+        // each file is parsed once, the jobs get copies of the providers
+        gpsNavigation = gpsFiles == null || gpsFiles.isEmpty() ? null : new RinexFileNavigationGps(gpsFiles);
+        galileoNavigation = galileoFiles == null || galileoFiles.isEmpty()
+                ? null : new RinexFileNavigationGalileo(galileoFiles);
+    }
+
+    /**
+     * @param parallelism number of worker threads, defaults to the number of processors
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public int getCompletedJobs() {
+        return completedJobs.get();
+    }
+
+    public int getFailedJobs() {
+        return failedJobs.get();
+    }
+
+    /**
+     * @return merged error statistics of the configuration
+     */
+    public ErrorStatistics getStatistics(Configuration configuration) {
+        synchronized (statistics) {
+            return statistics.get(configuration);
+        }
+    }
+
+    /**
+     * Processes all sessions with all configurations and blocks until done
+     * @param sessions recorded session files
+     * @throws InterruptedException if interrupted while waiting for the jobs
+     */
+    public void run(List<File> sessions) throws InterruptedException {
+
+        outputDirectory.mkdirs();
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        final Semaphore scheduledJobs = new Semaphore(parallelism * JOBS_PER_THREAD);
+
+        long startNanos = System.nanoTime();
+
+        try {
+            for (final File session : sessions) {
+                for (final Configuration configuration : configurations) {
+                    scheduledJobs.acquire();
+                    pool.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                processJob(session, configuration);
+                            } finally {
+                                scheduledJobs.release();
+                            }
+                        }
+                    });
+                }
+            }
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+
+        Log.i(TAG, "run: " + completedJobs.get() + " jobs completed, " + failedJobs.get()
+                + " failed in " + (System.nanoTime() - startNanos) / 1e9 + " s");
+    }
+
+    /**
+     * Processes a single session with a single configuration
+     */
+    private void processJob(File session, Configuration configuration) {
+
+        ProcessingContext processingContext = new ProcessingContext();
+        if (gpsNavigation != null)
+            processingContext.setNavigationProvider(
+                    NavigationProviders.GPS, new RinexFileNavigationGps(gpsNavigation));
+        if (galileoNavigation != null)
+            processingContext.setNavigationProvider(
+                    NavigationProviders.GALILEO, new RinexFileNavigationGalileo(galileoNavigation));
+
+        final CalculationModule module = configuration.createModule(processingContext);
+        final ErrorStatistics jobStatistics = new ErrorStatistics();
+
+        File resultFile = new File(outputDirectory,
+                getBaseName(session) + "_" + getSafeName(configuration.getName()) + ".csv");
+
+        try (final BufferedWriter writer = new BufferedWriter(new FileWriter(resultFile))) {
+
+            writer.write("UtcTimeMillis,Latitude,Longitude,Height,HorizontalError,VerticalError");
+            writer.newLine();
+
+            RawMeasurementsReplay replay = new RawMeasurementsReplay(new RawMeasurementsReplay.ReplayListener() {
+
+                private Coordinates reference = null;
+                private long referenceTimeMillis = 0;
+
+                @Override
+                public void onFix(double latitude, double longitude, double altitude, long timeMillis) {
+                    module.updateReferencePosition(latitude, longitude, altitude);
+                    reference = Coordinates.globalGeodInstance(latitude, longitude, altitude);
+                    referenceTimeMillis = timeMillis;
+                }
+
+                @Override
+                public void onEpoch(GnssMeasurementsEpoch epoch) {
+                    module.updateMeasurements(epoch);
+
+                    if (!module.isPoseUpdated())
+                        return;
+
+                    Coordinates pose = module.getPose();
+
+                    double horizontal = Double.NaN;
+                    double vertical = Double.NaN;
+
+                    if (reference != null && (referenceTimeMillis == 0
+                            || Math.abs(epoch.getReceivedMillis() - referenceTimeMillis) <= MAX_FIX_AGE_MILLIS)) {
+                        reference.computeLocal(pose);
+                        horizontal = Math.hypot(reference.getE(), reference.getN());
+                        vertical = Math.abs(reference.getU());
+                        jobStatistics.add(horizontal, vertical);
+                    }
+
+                    try {
+                        writer.write(String.format(Locale.US, "%d,%.9f,%.9f,%.3f,%.3f,%.3f",
+                                epoch.getReceivedMillis(),
+                                pose.getGeodeticLatitude(),
+                                pose.getGeodeticLongitude(),
+                                pose.getGeodeticHeight(),
+                                horizontal,
+                                vertical));
+                        writer.newLine();
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+
+            replay.replay(session);
+
+            synchronized (statistics) {
+                statistics.get(configuration).merge(jobStatistics);
+            }
+            completedJobs.incrementAndGet();
+
+        } catch (IOException | RuntimeException e) {
+            failedJobs.incrementAndGet();
+            Log.e(TAG, "processJob: " + session.getName() + " with " + configuration.getName() + " failed", e);
+        }
+    }
+
+    /**
+     * Writes the merged statistics of all configurations
+     * @param summaryFile destination file
+     * @throws IOException if writing fails
+     */
+    public void writeSummary(File summaryFile) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(summaryFile))) {
+            writer.write("Configuration,Epochs,InvalidEpochs,MeanHorizontal,RmsHorizontal,MeanVertical,RmsVertical,Cep50,Cep95");
+            writer.newLine();
+            synchronized (statistics) {
+                for (Map.Entry<Configuration, ErrorStatistics> entry : statistics.entrySet()) {
+                    ErrorStatistics value = entry.getValue();
+                    writer.write(String.format(Locale.US, "%s,%d,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f",
+                            entry.getKey().getName(),
+                            value.getCount(),
+                            value.getInvalidCount(),
+                            value.getMeanHorizontalError(),
+                            value.getRmsHorizontalError(),
+                            value.getMeanVerticalError(),
+                            value.getRmsVerticalError(),
+                            value.getCep50(),
+                            value.getCep95()));
+                    writer.newLine();
+                }
+            }
+        }
+    }
+
+    private static String getBaseName(File file) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    private static String getSafeName(String name) {
+        return name.replaceAll("[^A-Za-z0-9_-]", "_");
+    }
+}
@@ -16,19 +16,15 @@
 
 package com.galfins.gnss_compare;
 
-import android.location.GnssMeasurementsEvent;
-import android.location.Location;
-import android.graphics.Color;
-import android.os.Bundle;
-import android.util.ArraySet;
-import android.util.Log;
+import com.galfins.gogpsextracts.Log;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Objects;
 import java.util.Set;
 
 import com.galfins.gnss_compare.Constellations.Constellation;
+import com.galfins.gnss_compare.Constellations.GnssMeasurementsEpoch;
 import com.galfins.gnss_compare.Corrections.Correction;
 import com.galfins.gnss_compare.FileLoggers.FileLogger;
 import com.galfins.gnss_compare.PvtMethods.PvtMethod;
@@ -111,7 +107,7 @@ public class CalculationModule{
     }
 
     /**
-     * Color used for data plotting
+     * Color used for data plotting, as an ARGB int (same as {@code android.graphics.Color})
      */
     private int DATA_COLOR;
 
@@ -144,16 +140,16 @@ public class CalculationModule{
      * Array of colors from which the data color is selected
      */
     private static final int seriesColors[] = {
-            Color.rgb(84,110,122),
-            Color.rgb(142,36,170),
-            Color.rgb(229,57,53),
-            Color.rgb(3,155,229),
-            Color.rgb(0,137,123),
-            Color.rgb(124,179,66),
-            Color.rgb(253,216,53),
-            Color.rgb(251,140,0),
-            Color.rgb(109,76,65),
-            Color.rgb(84,110,122)
+            0xFF546E7A,
+            0xFF8E24AA,
+            0xFFE53935,
+            0xFF039BE5,
+            0xFF00897B,
+            0xFF7CB342,
+            0xFFFDD835,
+            0xFFFB8C00,
+            0xFF6D4C41,
+            0xFF546E7A
     };
 
     /**
@@ -167,27 +163,40 @@ public class CalculationModule{
     private boolean poseInitialized = false;
 
     /**
-     * Satellite constellation object
+     * Flag indicating that the last processed epoch produced a new, finite pose
      */
-    private Constellation constellation;
+    private boolean poseUpdated = false;
 
     /**
-     * @return location as calculated by the phone's location service
+     * Satellite constellation object
      */
-    public Location getLocationFromGoogleServices() {
-        return locationFromGoogleServices;
-    }
+    private Constellation constellation;
 
     /**
-     * Location calculated by the Google services
+     * Location calculated by the Google services, converted to the platform independent
+     * Coordinates used by the processing core
      */
-    private Location locationFromGoogleServices;
+    private Coordinates referencePosition;
 
     /**
      * Tag used for logging
      */
     private final static String TAG = "Calculation Module";
 
+    /**
+     * Latency metrics of this module and of its processing stages
+     */
+    private PipelineMetrics.ModuleMetrics metrics;
+    private PipelineMetrics.Stage epochStage;
+    private PipelineMetrics.Stage satPositionStage;
+    private PipelineMetrics.Stage pvtStage;
+    private PipelineMetrics.Stage fileLoggerStage;
+
+    /**
+     * Navigation data, correction cache and metrics used by this module
+     */
+    private final ProcessingContext processingContext;
+
     /**
      * String description of the module
      */
@@ -238,6 +247,14 @@ public class CalculationModule{
         return pose;
     }
 
+    /**
+     * @return true if the last processed epoch produced a new pose with finite coordinates,
+     * false if the pose was not computed (no reference position or no used satellites) or failed
+     */
+    public boolean isPoseUpdated() {
+        return poseUpdated;
+    }
+
     /**
      * Reference to the class used to create the constellation object
      */
@@ -282,20 +299,44 @@ public class CalculationModule{
             Class <? extends PvtMethod> pvtMethodClass,
             Class <? extends FileLogger> fileLoggerClass
     ) throws NameAlreadyRegisteredException, NumberOfSeriesExceededLimitException {
+        this(name, constellationClass, correctionClasses, pvtMethodClass, fileLoggerClass, true,
+                ProcessingContext.getShared());
+    }
+
+    /**
+     * Constructor
+     * @param registered if false, the module is not added to the lists of registered names
+     *                   and ids, and any number of such modules can exist at once
+     * @param processingContext context providing the navigation data, correction cache and metrics
+     * @throws NameAlreadyRegisteredException when name is already on the list of registered modules
+     * @throws NumberOfSeriesExceededLimitException when no more modules can be created
+     */
+    private CalculationModule(
+            String name,
+            Class <? extends Constellation> constellationClass,
+            List<Class <?extends Correction>> correctionClasses,
+            Class <? extends PvtMethod> pvtMethodClass,
+            Class <? extends FileLogger> fileLoggerClass,
+            boolean registered,
+            ProcessingContext processingContext
+    ) throws NameAlreadyRegisteredException, NumberOfSeriesExceededLimitException {
 
+        this.processingContext = processingContext;
         this.constellationClass = constellationClass;
         this.correctionClasses = correctionClasses;
         this.pvtMethodClass = pvtMethodClass;
         this.fileLoggerClass = fileLoggerClass;
 
-        if(registeredNames.contains(name)){
-            throw new NameAlreadyRegisteredException("This name is already registered, select a different one!");
-        } else if (registeredIds.size() >= seriesColors.length){
-            throw new NumberOfSeriesExceededLimitException("Can't add more series!");
+        if (registered) {
+            if (registeredNames.contains(name)) {
+                throw new NameAlreadyRegisteredException("This name is already registered, select a different one!");
+            } else if (registeredIds.size() >= seriesColors.length) {
+                throw new NumberOfSeriesExceededLimitException("Can't add more series!");
+            }
+            registeredNames.add(name);
         }
 
         NAME = name;
-        registeredNames.add(name);
 
         pose = Coordinates.globalGeodInstance(0.000001, 0.000001, 0.000001); // can't be zeros - ECEF conversion crashes
 
@@ -307,15 +348,64 @@ public class CalculationModule{
         }
 
         int id = 0;
-        while(registeredIds.contains(id)){
-            id++;
+        if (registered) {
+            while (registeredIds.contains(id)) {
+                id++;
+            }
+            registeredIds.add(id);
         }
 
-        registeredIds.add(id);
-
         DATA_COLOR = seriesColors[id];
     }
 
+    /**
+     * Creates a module which is not displayed nor counted in the limit of modules, to be used
+     * for offline processing of recorded data
+     * @param name name of the module
+     * @param constellationClass reference to the class used to create the constellation object
+     * @param correctionClasses reference to the classes used to create correction obejcts
+     * @param pvtMethodClass reference to the class used to create the pvt method object
+     * @param fileLoggerClass reference to the class used to create the file logger object
+     * @return new, unregistered calculation module
+     */
+    public static CalculationModule createUnregistered(
+            String name,
+            Class <? extends Constellation> constellationClass,
+            List<Class <?extends Correction>> correctionClasses,
+            Class <? extends PvtMethod> pvtMethodClass,
+            Class <? extends FileLogger> fileLoggerClass) {
+        return createUnregistered(name, constellationClass, correctionClasses, pvtMethodClass,
+                fileLoggerClass, ProcessingContext.getShared());
+    }
+
+    /**
+     * Creates an unregistered module working in its own processing context, e.g. to process
+     * recorded data next to the live processing
+     * @param name name of the module
+     * @param constellationClass reference to the class used to create the constellation object
+     * @param correctionClasses reference to the classes used to create correction obejcts
+     * @param pvtMethodClass reference to the class used to create the pvt method object
+     * @param fileLoggerClass reference to the class used to create the file logger object
+     * @param processingContext context providing the navigation data, correction cache and metrics
+     * @return new, unregistered calculation module
+     */
+    public static CalculationModule createUnregistered(
+            String name,
+            Class <? extends Constellation> constellationClass,
+            List<Class <?extends Correction>> correctionClasses,
+            Class <? extends PvtMethod> pvtMethodClass,
+            Class <? extends FileLogger> fileLoggerClass,
+            ProcessingContext processingContext) {
+        try {
+            return new CalculationModule(
+                    name, constellationClass, correctionClasses, pvtMethodClass, fileLoggerClass, false,
+                    processingContext);
+        } catch (NameAlreadyRegisteredException | NumberOfSeriesExceededLimitException e) {
+            // not thrown for unregistered modules
+            throw new IllegalStateException(e);
+        }
+    }
+
 
     /**
      * Method which reads the current settings for this calculation module and updates
@@ -338,8 +428,17 @@ public class CalculationModule{
             moduleDescription += correction.getName() + "\n";
         }
 
+        constellation.setProcessingContext(processingContext);
         constellation.addCorrections(corrections);
 
+        metrics = processingContext.getMetrics(NAME);
+        epochStage = metrics.getStage(PipelineMetrics.STAGE_EPOCH);
+        satPositionStage = metrics.getStage(PipelineMetrics.STAGE_SAT_POSITION);
+        pvtStage = metrics.getStage(PipelineMetrics.STAGE_PVT);
+        fileLoggerStage = metrics.getStage(PipelineMetrics.STAGE_FILE_LOGGER);
+        for (Correction correction : corrections)
+            correction.setMetricsStage(metrics.getStage(correction.getName()));
+
         boolean isLogStarted = false;
         if (fileLogger != null) {
             isLogStarted = fileLogger.isStarted();
@@ -415,42 +514,90 @@ public class CalculationModule{
 
     /**
      * Performs the update on the GNSS event and all following calculations.
-     * @param event GNSS event
+     * @param epoch decoded GNSS measurement epoch
      */
-    public void updateMeasurements(GnssMeasurementsEvent event){
+    public void updateMeasurements(GnssMeasurementsEpoch epoch){
 
         if (active) {
 
-            constellation.updateMeasurements(event);
+            long epochStartNanos = PipelineMetrics.startTimer();
+            long epochStartBytes = PipelineMetrics.startAllocationCounter();
+            metrics.increment(PipelineMetrics.COUNTER_EPOCHS);
+            poseUpdated = false;
+
+            constellation.updateMeasurements(epoch);
 
             if (poseInitialized) {
-                constellation.calculateSatPosition(locationFromGoogleServices, pose);
+                long startNanos = PipelineMetrics.startTimer();
+                long startBytes = PipelineMetrics.startAllocationCounter();
+                constellation.calculateSatPosition(referencePosition, pose);
+                satPositionStage.record(startNanos, startBytes);
+
                 if (constellation.getUsedConstellationSize() != 0) {
+                    startNanos = PipelineMetrics.startTimer();
+                    startBytes = PipelineMetrics.startAllocationCounter();
                     pose = pvtMethod.calculatePose(constellation);
+                    pvtStage.record(startNanos, startBytes);
+                    metrics.increment(PipelineMetrics.COUNTER_POSES);
+
+                    poseUpdated = pose != null
+                            && !Double.isNaN(pose.getX()) && !Double.isInfinite(pose.getX())
+                            && !Double.isNaN(pose.getY()) && !Double.isInfinite(pose.getY())
+                            && !Double.isNaN(pose.getZ()) && !Double.isInfinite(pose.getZ());
+
                     Log.i(TAG, "newPose: " + pose.getGeodeticLatitude() + ", " + pose.getGeodeticLongitude() + ", " + pose.getGeodeticHeight());
                     if (logToFile) {
+                        startNanos = PipelineMetrics.startTimer();
+                        startBytes = PipelineMetrics.startAllocationCounter();
                         fileLogger.addNewPose(pose, constellation);
+                        fileLoggerStage.record(startNanos, startBytes);
                     }
                 }
             }
+
+            epochStage.record(epochStartNanos, epochStartBytes);
         }
     }
 
+    /**
+     * @return latency metrics of this module
+     */
+    public PipelineMetrics.ModuleMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return context providing the navigation data, correction cache and metrics of this module
+     */
+    public ProcessingContext getProcessingContext() {
+        return processingContext;
+    }
+
     /**
      * Updates phone's location as calculated by the google services. On the first execution,
      * the location is assigned to initial location
-     * @param location new location
+     * @param latitude latitude in degrees
+     * @param longitude longitude in degrees
+     * @param altitude altitude in meters
      */
-    public void updateLocationFromGoogleServices(Location location){
+    public void updateLocationFromGoogleServices(double latitude, double longitude, double altitude){
+        pvtMethod.logFineLocation(latitude, longitude, altitude);
+        updateReferencePosition(latitude, longitude, altitude);
+    }
 
-        locationFromGoogleServices = location;
-        pvtMethod.logFineLocation(location);
+    /**
+     * Updates the reference position used to retrieve the navigation data. On the first
+     * execution, the position is also assigned to the initial pose.
+     * @param latitude latitude in degrees
+     * @param longitude longitude in degrees
+     * @param altitude altitude in meters
+     */
+    public void updateReferencePosition(double latitude, double longitude, double altitude){
 
-        if (!poseInitialized && locationFromGoogleServices != null) {
-            pose = Coordinates.globalGeodInstance(
-                    locationFromGoogleServices.getLatitude(),
-                    locationFromGoogleServices.getLongitude(),
-                    locationFromGoogleServices.getAltitude());
+        referencePosition = Coordinates.globalGeodInstance(latitude, longitude, altitude);
+
+        if (!poseInitialized) {
+            pose = Coordinates.globalGeodInstance(latitude, longitude, altitude);
 
             poseInitialized = true;
         }
@@ -624,77 +771,6 @@ public class CalculationModule{
         return returnedValue;
     }
 
-    private final static String CONSTRUCTOR_BUNDLE_NAME_TAG = "_name";
-    private final static String CONSTRUCTOR_BUNDLE_ACTIVE_TAG = "_active";
-    private final static String CONSTRUCTOR_BUNDLE_LOG_TO_FILE_TAG = "_log_to_file";
-    private final static String CONSTRUCTOR_BUNDLE_CONSTELLATION_TAG = "_constellation";
-    private final static String CONSTRUCTOR_BUNDLE_PVT_METHOD_TAG = "_pvt_method";
-    private final static String CONSTRUCTOR_BUNDLE_FILE_LOGGER_TAG = "_file_logger";
-    private final static String CONSTRUCTOR_BUNDLE_CORRECTIONS_TAG = "_corrections";
-    private final static String CONSTRUCTOR_BUNDLE_SANITY_CHECK = "_sanity_check";
-
-    /**
-     * @return a Bundle which can be later used in fromConstructorBundle to create a
-     * calculation module
-     */
-    public Bundle getConstructorBundle(){
-
-        Bundle returnedBundle = new Bundle();
-        ArrayList<String> correctionsList = new ArrayList<>();
-
-        returnedBundle.putString(CONSTRUCTOR_BUNDLE_NAME_TAG, getName());
-        returnedBundle.putBoolean(CONSTRUCTOR_BUNDLE_ACTIVE_TAG, active);
-        returnedBundle.putBoolean(CONSTRUCTOR_BUNDLE_LOG_TO_FILE_TAG, logToFile);
-        returnedBundle.putString(CONSTRUCTOR_BUNDLE_CONSTELLATION_TAG, constellation.getName());
-        returnedBundle.putString(CONSTRUCTOR_BUNDLE_PVT_METHOD_TAG, pvtMethod.getName());
-        returnedBundle.putString(CONSTRUCTOR_BUNDLE_FILE_LOGGER_TAG, fileLogger.getName());
-
-        for(Correction corr : corrections)
-            correctionsList.add(corr.getName());
-
-        returnedBundle.putStringArrayList(CONSTRUCTOR_BUNDLE_CORRECTIONS_TAG, correctionsList);
-
-        returnedBundle.putBoolean(CONSTRUCTOR_BUNDLE_SANITY_CHECK, true);
-
-        return returnedBundle;
-    }
-
-    /**
-     * @param constructorBundle Bundle generated by getConstructorArrayList
-     * @return new calculation module based on the constructorBundle parameter
-     * @throws NameAlreadyRegisteredException when the name is already registered
-     * @throws NumberOfSeriesExceededLimitException when the number of created modules is exceeded
-     */
-    public static CalculationModule fromConstructorBundle(Bundle constructorBundle)
-            throws NameAlreadyRegisteredException, NumberOfSeriesExceededLimitException {
-
-        if(constructorBundle.getBoolean(CONSTRUCTOR_BUNDLE_SANITY_CHECK, false)) {
-
-            String name = constructorBundle.getString(CONSTRUCTOR_BUNDLE_NAME_TAG);
-            boolean valueOfActive = constructorBundle.getBoolean(CONSTRUCTOR_BUNDLE_ACTIVE_TAG);
-            boolean valueOfLogToFile = constructorBundle.getBoolean(CONSTRUCTOR_BUNDLE_LOG_TO_FILE_TAG);
-            String constellationClassName = constructorBundle.getString(CONSTRUCTOR_BUNDLE_CONSTELLATION_TAG);
-            String pvtMethodClassName = constructorBundle.getString(CONSTRUCTOR_BUNDLE_PVT_METHOD_TAG);
-            String fileLoggerClassName = constructorBundle.getString(CONSTRUCTOR_BUNDLE_FILE_LOGGER_TAG);
-            Set<String> correctionClassNames = new ArraySet<>();
-            correctionClassNames.addAll(Objects.requireNonNull(constructorBundle.getStringArrayList(CONSTRUCTOR_BUNDLE_CORRECTIONS_TAG)));
-
-            CalculationModule createdModule = new CalculationModule(
-                    name,
-                    getConstellationClassFromName(constellationClassName),
-                    getCorrectionClassesFromNames(correctionClassNames),
-                    getPvtMethodClassFromName(pvtMethodClassName),
-                    getFileLoggerClassFromName(fileLoggerClassName));
-
-            createdModule.active = valueOfActive;
-            createdModule.logToFile = valueOfLogToFile;
-
-            return createdModule;
-        } else {
-            return null;
-        }
-    }
-
     /**
      * @param arrayList list generated by getConstructorArrayList
      * @return new calculation module based on the arrayList parameter
@@ -708,7 +784,7 @@ public class CalculationModule{
         String constellationClassName = arrayList.get(3);
         String pvtMethodClassName = arrayList.get(4);
         String fileLoggerClassName = arrayList.get(5);
-        Set<String> correctionClassNames = new ArraySet<>();
+        Set<String> correctionClassNames = new HashSet<>();
 
         for(int i=6; i<arrayList.size(); i++)
             correctionClassNames.add(arrayList.get(i));
@@ -0,0 +1,515 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare;
+
+import com.galfins.gogpsextracts.Log;
+
+import com.galfins.gnss_compare.Constellations.GnssMeasurementsEpoch;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Observer;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Class encapsulating generic operations on created CalculationModules.
+ *
+ * Modules are added and removed from the UI thread while the epochs are processed on the
+ * processing thread, so the list is copied on write and every iteration works on a snapshot.
+ *
+ * The decoded epochs and the reference locations are fed by the platform, e.g. by the
+ * GnssMeasurementsReceiver of the Android application or by a RawMeasurementsReplay.
+ */
+public class CalculationModulesArrayList extends CopyOnWriteArrayList<CalculationModule> {
+
+    private final String TAG="CalculationModulesArrayList";
+
+    /**
+     * Latency metrics of the stages which are common to all modules
+     */
+    private final PipelineMetrics.ModuleMetrics pipelineMetrics = PipelineMetrics.getModule(PipelineMetrics.PIPELINE);
+    private final PipelineMetrics.Stage notifyStage = pipelineMetrics.getStage(PipelineMetrics.STAGE_NOTIFY);
+
+    /**
+     * Default time given to a single module to process an epoch in the parallel mode
+     */
+    public static final long DEFAULT_MODULE_TIMEOUT_MILLIS = 500;
+
+    /**
+     * Executor running the modules in the parallel mode, null in the serial mode
+     */
+    private ExecutorService moduleExecutor = null;
+    private int parallelism = 1;
+    private long moduleTimeoutMillis = DEFAULT_MODULE_TIMEOUT_MILLIS;
+
+    /**
+     * Updates of modules which have exceeded their timeout and are still running. Such modules
+     * are skipped until their previous update finishes.
+     */
+    private final Map<CalculationModule, ModuleUpdate> lateModuleUpdates = new HashMap<>();
+
+    /**
+     * Update of a single module with an epoch in the parallel mode. An update is started at
+     * most once: either by a worker thread, or it is claimed by the epoch barrier on timeout,
+     * in which case it never runs.
+     */
+    private static final class ModuleUpdate implements Runnable {
+        private final CalculationModule module;
+        private final GnssMeasurementsEpoch epoch;
+        private final AtomicBoolean claimed = new AtomicBoolean(false);
+        private volatile boolean finished = false;
+
+        ModuleUpdate(CalculationModule module, GnssMeasurementsEpoch epoch) {
+            this.module = module;
+            this.epoch = epoch;
+        }
+
+        @Override
+        public void run() {
+            if (!claimed.compareAndSet(false, true))
+                return;
+            try {
+                module.updateMeasurements(epoch);
+            } finally {
+                finished = true;
+            }
+        }
+
+        /**
+         * @return true if the update had not started yet and will not run anymore
+         */
+        boolean cancelIfNotStarted() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        boolean isFinished() {
+            return finished;
+        }
+    }
+
+    private long lastEpochProcessingNanos = 0;
+
+    /**
+     * Default number of decoded epochs waiting for processing
+     */
+    public static final int DEFAULT_EPOCH_QUEUE_CAPACITY = 3;
+
+    /**
+     * Single thread on which the epochs are processed and location updates are applied, null
+     * if the processing is done on the calling thread
+     */
+    private ExecutorService processingExecutor = null;
+
+    private static final ThreadFactory PROCESSING_THREAD_FACTORY = new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(runnable, "GnssProcessing");
+        }
+    };
+
+    /**
+     * Bounded queue of epochs waiting for processing. When full, the oldest epoch is dropped.
+     */
+    private final ArrayDeque<GnssMeasurementsEpoch> pendingEpochs = new ArrayDeque<>();
+    private int epochQueueCapacity = DEFAULT_EPOCH_QUEUE_CAPACITY;
+    private boolean drainScheduled = false;
+    private long droppedEpochs = 0;
+    private int maxEpochQueueDepth = 0;
+
+    private final Runnable drainPendingEpochs = new Runnable() {
+        @Override
+        public void run() {
+            while (true) {
+                GnssMeasurementsEpoch epoch;
+                synchronized (pendingEpochs) {
+                    epoch = pendingEpochs.pollFirst();
+                    if (epoch == null) {
+                        drainScheduled = false;
+                        return;
+                    }
+                }
+                processEpoch(epoch);
+            }
+        }
+    };
+
+    public static abstract class PoseUpdatedListener {
+        public abstract void onPoseUpdated();
+    }
+
+    private PoseUpdatedListener mPoseUpdatedListener = null;
+
+    public void assignPoseUpdatedListener(PoseUpdatedListener newCallback){
+        mPoseUpdatedListener = newCallback;
+    }
+
+    public class CallbacksNotAssignedException extends IllegalStateException{
+        public CallbacksNotAssignedException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Updates the location of all modules as calculated by the google services, on the
+     * processing thread
+     * @param latitude latitude in degrees
+     * @param longitude longitude in degrees
+     * @param altitude altitude in meters
+     */
+    public void updateLocationFromGoogleServices(final double latitude, final double longitude, final double altitude){
+        executeOnProcessingThread(new Runnable() {
+            @Override
+            public void run() {
+                for (CalculationModule calculationModule : CalculationModulesArrayList.this)
+                    calculationModule.updateLocationFromGoogleServices(latitude, longitude, altitude);
+            }
+        });
+    }
+
+    /**
+     * Updates the reference position of all modules, without an Android Location object
+     * @param latitude latitude in degrees
+     * @param longitude longitude in degrees
+     * @param altitude altitude in meters
+     */
+    public synchronized void updateReferencePosition(double latitude, double longitude, double altitude){
+        for (CalculationModule calculationModule : this)
+            calculationModule.updateReferencePosition(latitude, longitude, altitude);
+    }
+
+    /**
+     * Starts the processing thread, from then on the enqueued epochs and the location updates
+     * are processed on it
+     */
+    public synchronized void startProcessing(){
+        if (processingExecutor == null)
+            processingExecutor = Executors.newSingleThreadExecutor(PROCESSING_THREAD_FACTORY);
+    }
+
+    /**
+     * Stops the processing thread once the current task is finished, and drops the epochs
+     * waiting for processing
+     */
+    public synchronized void stopProcessing(){
+        if (processingExecutor != null) {
+            processingExecutor.shutdown();
+            processingExecutor = null;
+        }
+
+        synchronized (pendingEpochs) {
+            pendingEpochs.clear();
+            drainScheduled = false;
+        }
+    }
+
+    /**
+     * Runs the task on the processing thread, or on the calling thread if it is not started
+     */
+    private void executeOnProcessingThread(Runnable task){
+        ExecutorService executor;
+        synchronized (this) {
+            executor = processingExecutor;
+        }
+
+        if (executor == null) {
+            task.run();
+            return;
+        }
+
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "executeOnProcessingThread: processing stopped, task dropped");
+        }
+    }
+
+    /**
+     * Adds a decoded epoch to the processing queue. If the queue is full, the oldest waiting
+     * epoch is dropped, so that the processing latency stays bounded under load. If no
+     * processing thread is running, the epoch is processed on the calling thread.
+     * @param epoch decoded GNSS measurement epoch
+     */
+    public void enqueueEpoch(GnssMeasurementsEpoch epoch){
+
+        ExecutorService executor;
+        synchronized (this) {
+            executor = processingExecutor;
+        }
+
+        if (executor == null) {
+            processEpoch(epoch);
+            return;
+        }
+
+        synchronized (pendingEpochs) {
+            while (pendingEpochs.size() >= epochQueueCapacity) {
+                pendingEpochs.pollFirst();
+                droppedEpochs++;
+                pipelineMetrics.increment(PipelineMetrics.COUNTER_DROPPED);
+                Log.w(TAG, "enqueueEpoch: processing too slow, dropped epochs: " + droppedEpochs);
+            }
+
+            pendingEpochs.addLast(epoch);
+            maxEpochQueueDepth = Math.max(maxEpochQueueDepth, pendingEpochs.size());
+
+            if (!drainScheduled) {
+                try {
+                    executor.execute(drainPendingEpochs);
+                    drainScheduled = true;
+                } catch (RejectedExecutionException e) {
+                    pendingEpochs.clear();
+                    Log.w(TAG, "enqueueEpoch: processing stopped, epoch dropped");
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the maximum number of epochs waiting for processing
+     * @param capacity queue capacity, values lower than 1 are treated as 1
+     */
+    public void setEpochQueueCapacity(int capacity){
+        synchronized (pendingEpochs) {
+            epochQueueCapacity = Math.max(1, capacity);
+        }
+    }
+
+    public int getEpochQueueCapacity(){
+        synchronized (pendingEpochs) {
+            return epochQueueCapacity;
+        }
+    }
+
+    /**
+     * @return number of epochs dropped since the creation of this object
+     */
+    public long getDroppedEpochs(){
+        synchronized (pendingEpochs) {
+            return droppedEpochs;
+        }
+    }
+
+    /**
+     * @return current number of epochs waiting for processing
+     */
+    public int getEpochQueueDepth(){
+        synchronized (pendingEpochs) {
+            return pendingEpochs.size();
+        }
+    }
+
+    /**
+     * @return highest number of epochs which were waiting for processing at the same time
+     */
+    public int getMaxEpochQueueDepth(){
+        synchronized (pendingEpochs) {
+            return maxEpochQueueDepth;
+        }
+    }
+
+    /**
+     * Sets the number of modules processed concurrently. With a parallelism of 1 (default) all
+     * modules are processed one after another on the calling thread, with a higher value the
+     * modules are fanned out to a fixed thread pool and joined before observers are notified.
+     * @param parallelism number of worker threads, values lower than 1 are treated as 1
+     */
+    public synchronized void setParallelism(int parallelism){
+        parallelism = Math.max(1, parallelism);
+
+        if (parallelism == this.parallelism)
+            return;
+
+        if (moduleExecutor != null)
+            moduleExecutor.shutdown();
+
+        if (parallelism > 1)
+            moduleExecutor = Executors.newFixedThreadPool(parallelism);
+        else
+            moduleExecutor = null;
+
+        // late updates keep running on the old executor, their modules stay skipped until
+        // they finish
+        this.parallelism = parallelism;
+    }
+
+    public synchronized int getParallelism(){
+        return parallelism;
+    }
+
+    /**
+     * Sets the maximum time a module can take to process an epoch in the parallel mode. Modules
+     * exceeding it are not waited for, so that a single slow module does not stall the epoch.
+     * @param timeoutMillis timeout in milliseconds
+     */
+    public synchronized void setModuleTimeoutMillis(long timeoutMillis){
+        moduleTimeoutMillis = timeoutMillis;
+    }
+
+    public synchronized long getModuleTimeoutMillis(){
+        return moduleTimeoutMillis;
+    }
+
+    /**
+     * @return time it took to process the last epoch by all modules, in nanoseconds
+     */
+    public synchronized long getLastEpochProcessingNanos(){
+        return lastEpochProcessingNanos;
+    }
+
+    /**
+     * Processes a decoded epoch with all modules, in the serial or parallel mode, and notifies
+     * the pose listener once all modules have finished (or timed out).
+     *
+     * The modules and the configuration are taken under the lock, the modules are then updated
+     * and waited for without holding it, so that the configuration can be changed and read
+     * while an epoch is being processed. Epochs are processed by one thread at a time: the
+     * processing thread, or the thread of a replay.
+     * @param epoch decoded GNSS measurement epoch
+     */
+    public void processEpoch(GnssMeasurementsEpoch epoch){
+
+        long startTime = System.nanoTime();
+
+        List<CalculationModule> modules = new ArrayList<>();
+        ExecutorService executor;
+        long timeoutMillis;
+        int currentParallelism;
+
+        synchronized (this) {
+            for (CalculationModule calculationModule : this) {
+                if (!isLate(calculationModule))
+                    modules.add(calculationModule);
+            }
+            executor = moduleExecutor;
+            timeoutMillis = moduleTimeoutMillis;
+            currentParallelism = parallelism;
+        }
+
+        if (executor == null)
+            processEpochSerially(modules, epoch);
+        else
+            processEpochInParallel(modules, epoch, executor, timeoutMillis);
+
+        long processingNanos = System.nanoTime() - startTime;
+
+        synchronized (this) {
+            lastEpochProcessingNanos = processingNanos;
+        }
+
+        Log.d(TAG, "processEpoch: " + modules.size() + " modules, parallelism " + currentParallelism
+                + ", latency " + processingNanos / 1e6 + " ms");
+
+        if(mPoseUpdatedListener !=null) {
+            long notifyStartNanos = PipelineMetrics.startTimer();
+            mPoseUpdatedListener.onPoseUpdated();
+            notifyStage.record(notifyStartNanos);
+        }
+    }
+
+    private void processEpochSerially(List<CalculationModule> modules, GnssMeasurementsEpoch epoch){
+        for (CalculationModule calculationModule : modules)
+            calculationModule.updateMeasurements(epoch);
+    }
+
+    /**
+     * @return true if the module is still processing an epoch which has exceeded its timeout,
+     * in which case it has to be skipped. Called with the lock held.
+     */
+    private boolean isLate(CalculationModule calculationModule){
+        ModuleUpdate lateUpdate = lateModuleUpdates.get(calculationModule);
+        if (lateUpdate == null)
+            return false;
+
+        if (!lateUpdate.isFinished()) {
+            Log.w(TAG, "processEpoch: skipping " + calculationModule.getName()
+                    + ", previous epoch still being processed");
+            return true;
+        }
+
+        lateModuleUpdates.remove(calculationModule);
+        return false;
+    }
+
+    private void processEpochInParallel(
+            List<CalculationModule> modules,
+            GnssMeasurementsEpoch epoch,
+            ExecutorService executor,
+            long timeoutMillis){
+
+        List<ModuleUpdate> submittedUpdates = new ArrayList<>();
+        List<Future<?>> submittedFutures = new ArrayList<>();
+
+        for (CalculationModule calculationModule : modules) {
+            ModuleUpdate update = new ModuleUpdate(calculationModule, epoch);
+            try {
+                submittedFutures.add(executor.submit(update));
+                submittedUpdates.add(update);
+            } catch (RejectedExecutionException e) {
+                // the parallelism has been changed meanwhile, the executor is shut down
+                update.run();
+            }
+        }
+
+        // epoch barrier, all modules share the same deadline
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+
+        for (int i = 0; i < submittedFutures.size(); i++) {
+            ModuleUpdate update = submittedUpdates.get(i);
+            try {
+                submittedFutures.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                Log.w(TAG, "processEpochInParallel: " + update.module.getName()
+                        + " exceeded timeout of " + timeoutMillis + " ms");
+                abandonUpdate(update);
+                pipelineMetrics.increment(PipelineMetrics.COUNTER_LATE);
+            } catch (ExecutionException e) {
+                Log.e(TAG, "processEpochInParallel: " + update.module.getName() + " failed", e.getCause());
+            } catch (InterruptedException e) {
+                Log.w(TAG, "processEpochInParallel: interrupted", e);
+                for (int j = i; j < submittedUpdates.size(); j++)
+                    abandonUpdate(submittedUpdates.get(j));
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Stops waiting for an update. An update which has not started yet is cancelled, so that
+     * the module does not change its state after the pose listener has been notified. A running
+     * update cannot be stopped safely, so its module is skipped until it finishes.
+     */
+    private void abandonUpdate(ModuleUpdate update){
+        if (!update.cancelIfNotStarted() && !update.isFinished()) {
+            synchronized (this) {
+                lateModuleUpdates.put(update.module, update);
+            }
+        }
+    }
+}
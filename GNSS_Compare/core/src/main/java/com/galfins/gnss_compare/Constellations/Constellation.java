@@ -0,0 +1,399 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare.Constellations;
+
+import com.galfins.gogpsextracts.Log;
+
+import org.ejml.simple.SimpleMatrix;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+
+import com.galfins.gnss_compare.Corrections.Correction;
+import com.galfins.gnss_compare.Corrections.CorrectionCache;
+import com.galfins.gnss_compare.PipelineMetrics;
+import com.galfins.gnss_compare.ProcessingContext;
+import com.galfins.gogpsextracts.Coordinates;
+import com.galfins.gogpsextracts.EpochGeometry;
+import com.galfins.gogpsextracts.NavigationProducer;
+import com.galfins.gogpsextracts.SatellitePosition;
+import com.galfins.gogpsextracts.Time;
+
+
+/**
+ * Created by Mateusz Krainski on 1/28/2018.
+ * This class implements an abstract class Constellation, which should be extended by each
+ * implemented satellite constellation which is to be used.
+ *
+ * Constellations do not depend on the Android SDK: constellation types are the
+ * {@link GnssConstants}, messages are logged through {@code com.galfins.gogpsextracts.Log} and
+ * the measurements are passed as a decoded {@link GnssMeasurementsEpoch}.
+ */
+
+public abstract class Constellation {
+
+    /**
+     * Indicates if initialization has already been performed
+     */
+    private static boolean initialized = false;
+
+    private static String TAG = "Constellation";
+
+    protected static String RNP_NULL_MESSAGE = "RNP_NULL_MESSAGE";
+
+    /**
+     * Interface through which constellations report messages to the user, so that they do not
+     * depend on the platform specific way of displaying them
+     */
+    public interface UserMessageListener {
+        void onUserMessage(String text, String id);
+    }
+
+    private static UserMessageListener userMessageListener = null;
+
+    /**
+     * Assigns the listener receiving messages from all constellations
+     * @param listener listener, or null to only log the messages
+     */
+    public static void setUserMessageListener(UserMessageListener listener){
+        userMessageListener = listener;
+    }
+
+    /**
+     * Passes a message to the user message listener
+     * @param text message
+     * @param id message id, messages with the same id can be merged
+     */
+    protected static void notifyUser(String text, String id){
+        UserMessageListener listener = userMessageListener;
+        if (listener != null)
+            listener.onUserMessage(text, id);
+        else
+            Log.w(TAG, "notifyUser: " + text);
+    }
+
+
+
+    /**
+     * Registers all constellation classes which extend this
+     */
+    public static void initialize() {
+        if(!initialized) {
+
+            GpsConstellation.registerClass();
+            GalileoConstellation.registerClass();
+            GalileoGpsConstellation.registerClass();
+            GpsL5Constellation.registerClass();
+            GpsIonoFreeConstellation.registerClass();
+            GalileoE5aConstellation.registerClass();
+            GalileoIonoFreeConstellation.registerClass();
+
+            initialized = true;
+        }
+    }
+
+    /**
+     * Additional definition of an ID for a new constellation type
+     */
+    public static final int CONSTELLATION_GALILEO_GPS = 999; //todo is there a better way to define this?
+    public static final int CONSTELLATION_GALILEO_IonoFree = 998; //todo is there a better way to define this?
+    public static final int CONSTELLATION_GPS_IonoFree = 997; //todo is there a better way to define this?
+
+    /**
+     *
+     * @return the estimated receiver position
+     */
+    public abstract Coordinates getRxPos();
+
+    /**
+     *
+     * @param rxPos new estimated receiver position
+     */
+    public abstract void setRxPos(Coordinates rxPos);
+
+    /**
+     * Factory method for converting RxPos to a SimpleMatrix
+     * @param rxPos rxPos Coordinates object
+     * @return RxPos as a 4z1 vector
+     */
+    public static SimpleMatrix getRxPosAsVector(Coordinates rxPos){
+        SimpleMatrix rxPosSimpleVector = new SimpleMatrix(4, 1);
+        rxPosSimpleVector.set(0, rxPos.getX());
+        rxPosSimpleVector.set(1, rxPos.getY());
+        rxPosSimpleVector.set(2, rxPos.getZ());
+        rxPosSimpleVector.set(3, 0);
+
+        return rxPosSimpleVector;
+    }
+
+    /**
+     *
+     * @param index id
+     * @return satellite of that id
+     */
+    public abstract SatelliteParameters getSatellite(int index);
+
+    /**
+     *
+     * @return all satellites registered in the object
+     */
+    public abstract List<SatelliteParameters> getSatellites();
+
+    public abstract List<SatelliteParameters> getUnusedSatellites();
+
+    /**
+     *
+     * @return size of the visible constellation
+     */
+    public abstract int getVisibleConstellationSize();
+
+    /**
+     *
+     * @return size of the used constellation
+     */
+    public abstract int getUsedConstellationSize();
+
+    /**
+     * Method which is to calculate the satellite positions based on current satellite parameters
+     * and passed location objects. Implementations publish the resulting satellites with
+     * {@code publishSnapshot}.
+     * @param initialLocation initial location, can be used to retrieve the navigation message
+     * @param position current position of the receiver
+     */
+    public abstract void calculateSatPosition(Coordinates initialLocation, Coordinates position);
+
+    /**
+     * Used satellites of the last processed epoch, replaced as a whole once per epoch
+     */
+    private volatile ConstellationSnapshot snapshot = ConstellationSnapshot.EMPTY;
+
+    /**
+     * @return immutable copy of the used satellites of the last processed epoch, which can be
+     * read without locking the constellation
+     */
+    public ConstellationSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Copies the used satellites of the current epoch and makes them available through
+     * {@code getSnapshot}
+     * @param satellites used satellites, with computed positions and corrections
+     */
+    protected void publishSnapshot(List<SatelliteParameters> satellites) {
+        snapshot = ConstellationSnapshot.create(getTime(), getRxPos(), satellites);
+    }
+
+    /**
+     * Scratch arrays of {@code applyCorrections}, indexed as the epoch geometry
+     */
+    private SatellitePosition[] correctionPositions = new SatellitePosition[0];
+    private SatellitePosition[] uncachedPositions = new SatellitePosition[0];
+    private int[] correctionKeys = new int[0];
+    private double[] correctionValues = new double[0];
+    private double[] accumulatedCorrections = new double[0];
+
+    /**
+     * Evaluates each correction once for all the satellites of the epoch and assigns the
+     * accumulated correction to every satellite which was added to {@code geometry}. Values
+     * already computed by another module for the same satellites, epoch and receiver cell are
+     * taken from the {@link CorrectionCache} of the processing context, and only the remaining
+     * satellites are passed to the correction.
+     * @param corrections corrections of the constellation
+     * @param receptionTime time of measurement reception
+     * @param rxPos approximate position of the receiver
+     * @param navigationProducer navigation data of the constellation
+     * @param initialLocation initial location of the receiver
+     * @param geometry geometry of the epoch, with all the positioned satellites added
+     * @param satellites satellites of the epoch
+     */
+    protected void applyCorrections(
+            List<Correction> corrections,
+            Time receptionTime,
+            Coordinates rxPos,
+            NavigationProducer navigationProducer,
+            Coordinates initialLocation,
+            EpochGeometry geometry,
+            List<SatelliteParameters> satellites) {
+
+        int size = geometry.size();
+        if (correctionValues.length < size) {
+            correctionPositions = new SatellitePosition[size];
+            uncachedPositions = new SatellitePosition[size];
+            correctionKeys = new int[size];
+            correctionValues = new double[size];
+            accumulatedCorrections = new double[size];
+        }
+
+        Arrays.fill(correctionPositions, 0, size, null);
+        Arrays.fill(accumulatedCorrections, 0, size, 0.0);
+        for (SatelliteParameters satellite : satellites) {
+            if (satellite.getGeometry() == geometry && satellite.getGeometryIndex() < size) {
+                correctionPositions[satellite.getGeometryIndex()] = satellite.getSatellitePosition();
+                correctionKeys[satellite.getGeometryIndex()] = satellite.getKey();
+            }
+        }
+
+        CorrectionCache cache = processingContext.getCorrectionCache();
+        long epoch = receptionTime.getMsec();
+        double x = geometry.getReceiverX();
+        double y = geometry.getReceiverY();
+        double z = geometry.getReceiverZ();
+
+        for (Correction correction : corrections) {
+            Class<? extends Correction> type = correction.getClass();
+
+            int uncached = 0;
+            for (int i = 0; i < size; i++) {
+                double cachedValue = correctionPositions[i] == null || correctionKeys[i] == SatelliteKey.NO_KEY ?
+                        Double.NaN : cache.get(type, correctionKeys[i], epoch, x, y, z);
+
+                if (Double.isNaN(cachedValue)) {
+                    uncachedPositions[i] = correctionPositions[i];
+                    if (correctionPositions[i] != null)
+                        uncached++;
+                } else {
+                    uncachedPositions[i] = null;
+                    accumulatedCorrections[i] += cachedValue;
+                }
+            }
+
+            if (uncached == 0)
+                continue;
+
+            long correctionStartNanos = PipelineMetrics.startTimer();
+            correction.calculateCorrections(
+                    receptionTime,
+                    rxPos,
+                    navigationProducer,
+                    initialLocation,
+                    geometry,
+                    uncachedPositions,
+                    correctionValues);
+            correction.recordLatency(correctionStartNanos);
+
+            for (int i = 0; i < size; i++) {
+                if (uncachedPositions[i] == null)
+                    continue;
+                accumulatedCorrections[i] += correctionValues[i];
+                if (correctionKeys[i] != SatelliteKey.NO_KEY)
+                    cache.put(type, correctionKeys[i], epoch, x, y, z, correctionValues[i]);
+            }
+        }
+
+        for (SatelliteParameters satellite : satellites) {
+            if (satellite.getGeometry() == geometry && satellite.getGeometryIndex() < size)
+                satellite.setAccumulatedCorrection(accumulatedCorrections[satellite.getGeometryIndex()]);
+        }
+    }
+
+    /**
+     * stores all classes which extend the Constellation class and were registered with the
+     * register method
+     */
+    private static HashMap<String, Class<? extends Constellation>> registeredObjects = new HashMap<>();
+
+    /**
+     * Registers the new Constellation class
+     * @param constellationName name of the class
+     * @param objectClass reference to the class
+     */
+    protected static void register(
+            String constellationName,
+            Class <? extends Constellation> objectClass) {
+
+        if(!registeredObjects.containsKey(constellationName)) {
+            registeredObjects.put(constellationName, objectClass);
+        }
+    }
+
+    /**
+     *
+     * @return names of all registered classes
+     */
+    public static Set<String> getRegistered(){
+        return registeredObjects.keySet();
+    }
+
+    /**
+     *
+     * @param name name of the class
+     * @return class reference
+     */
+    public static Class<? extends Constellation> getClassByName(String name){
+        return registeredObjects.get(name);
+    }
+
+    /**
+     * Returns signal strength to a satellite given by an index.
+     * Warning: index is the index of the satellite as stored in internal list, not it's id.
+     * @param index index of satellite
+     * @return signal strength for the satellite given by {@code index}.
+     */
+    public abstract double getSatelliteSignalStrength(int index);
+
+    /**
+     * @return ID of the constellation
+     */
+    public abstract int getConstellationId();
+
+    /**
+     * Adds corrections to the processing flow
+     * @param corrections corrections to be added
+     */
+    public abstract void addCorrections(ArrayList<Correction> corrections);
+
+    /**
+     * Navigation providers and correction cache of the processing using this constellation
+     */
+    private ProcessingContext processingContext = ProcessingContext.getShared();
+
+    /**
+     * Assigns the constellation to a processing, whose navigation providers and correction
+     * cache it uses from then on. Constellations use the shared context by default.
+     * @param processingContext context of the processing
+     */
+    public void setProcessingContext(ProcessingContext processingContext) {
+        this.processingContext = processingContext;
+    }
+
+    public ProcessingContext getProcessingContext() {
+        return processingContext;
+    }
+
+    /**
+     *
+     * @return time of measurement
+     */
+    public abstract Time getTime();
+
+    /**
+     *
+     * @return name of the constellation
+     */
+    public abstract String getName();
+
+    /**
+     * method invoked on every GNSS measurement event update. It should update satellite's internal
+     * parameters.
+     * @param epoch decoded GNSS measurement epoch
+     */
+    public abstract void updateMeasurements(GnssMeasurementsEpoch epoch);
+}
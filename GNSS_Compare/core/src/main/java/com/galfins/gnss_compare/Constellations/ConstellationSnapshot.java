@@ -0,0 +1,238 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare.Constellations;
+
+import com.galfins.gogpsextracts.Coordinates;
+import com.galfins.gogpsextracts.Time;
+
+import java.util.List;
+
+/**
+ * Immutable copy of the used satellites of a constellation, taken at the end of
+ * {@code Constellation.calculateSatPosition}. The PVT methods and the viewers read the
+ * snapshot without locking the constellation, and always see the satellites of a single epoch,
+ * even if the constellation is updated in the meantime.
+ *
+ * The arrays are indexed by the position of the satellite in the snapshot. Satellites whose
+ * position could not be computed (e.g. no navigation data yet) are kept for the viewers, with
+ * NaN coordinates, see {@link #hasPosition(int)}.
+ */
+public final class ConstellationSnapshot {
+
+    public static final ConstellationSnapshot EMPTY = new ConstellationSnapshot(
+            null, null, new SatelliteParameters[0], 0);
+
+    private final Time time;
+    private final Coordinates rxPos;
+    private final int size;
+
+    private final int[] keys;
+    private final String[] uniqueSatIds;
+    private final int[] satIds;
+    private final int[] constellationTypes;
+    private final boolean[] positioned;
+    private final double[] x;
+    private final double[] y;
+    private final double[] z;
+    private final double[] pseudoranges;
+    private final double[] measurementVariances;
+    private final double[] clockBiases;
+    private final double[] corrections;
+    private final double[] elevations;
+    private final double[] azimuths;
+    private final double[] signalStrengths;
+
+    /**
+     * Copies the satellites with a pseudorange
+     * @param time time of the measurements
+     * @param rxPos receiver position used to compute the satellite geometry, copied
+     * @param satellites used satellites
+     * @return snapshot of the satellites
+     */
+    public static ConstellationSnapshot create(Time time, Coordinates rxPos, List<SatelliteParameters> satellites) {
+        SatelliteParameters[] measured = new SatelliteParameters[satellites.size()];
+        int count = 0;
+        for (SatelliteParameters satellite : satellites)
+            if (satellite.getPseudorangeObject() != null)
+                measured[count++] = satellite;
+
+        Coordinates rxPosCopy = rxPos == null ? null :
+                Coordinates.globalXYZInstance(rxPos.getX(), rxPos.getY(), rxPos.getZ());
+
+        return new ConstellationSnapshot(time, rxPosCopy, measured, count);
+    }
+
+    private ConstellationSnapshot(Time time, Coordinates rxPos, SatelliteParameters[] satellites, int size) {
+        this.time = time;
+        this.rxPos = rxPos;
+        this.size = size;
+
+        keys = new int[size];
+        uniqueSatIds = new String[size];
+        satIds = new int[size];
+        constellationTypes = new int[size];
+        positioned = new boolean[size];
+        x = new double[size];
+        y = new double[size];
+        z = new double[size];
+        pseudoranges = new double[size];
+        measurementVariances = new double[size];
+        clockBiases = new double[size];
+        corrections = new double[size];
+        elevations = new double[size];
+        azimuths = new double[size];
+        signalStrengths = new double[size];
+
+        for (int i = 0; i < size; i++) {
+            SatelliteParameters satellite = satellites[i];
+            keys[i] = satellite.getKey();
+            uniqueSatIds[i] = satellite.getUniqueSatId();
+            satIds[i] = satellite.getSatId();
+            constellationTypes[i] = satellite.getConstellationType();
+            positioned[i] = satellite.getSatellitePosition() != null;
+            if (positioned[i]) {
+                x[i] = satellite.getSatellitePosition().getX();
+                y[i] = satellite.getSatellitePosition().getY();
+                z[i] = satellite.getSatellitePosition().getZ();
+            } else {
+                x[i] = Double.NaN;
+                y[i] = Double.NaN;
+                z[i] = Double.NaN;
+            }
+            pseudoranges[i] = satellite.getPseudorange();
+            measurementVariances[i] = satellite.getPseudorangeObject().getMeasurementVariance();
+            clockBiases[i] = satellite.getClockBias();
+            corrections[i] = satellite.getAccumulatedCorrection();
+            if (satellite.getGeometry() != null) {
+                elevations[i] = satellite.getElevation();
+                azimuths[i] = satellite.getAzimuth();
+            } else {
+                elevations[i] = Double.NaN;
+                azimuths[i] = Double.NaN;
+            }
+            signalStrengths[i] = satellite.getSignalStrength();
+        }
+    }
+
+    /**
+     * @return number of satellites
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return time of the measurements, null for an empty constellation
+     */
+    public Time getTime() {
+        return time;
+    }
+
+    /**
+     * @return receiver position used to compute the satellite geometry
+     */
+    public Coordinates getRxPos() {
+        return rxPos;
+    }
+
+    /**
+     * @return packed key of the satellite, see {@code SatelliteKey}
+     */
+    public int getKey(int index) {
+        return keys[index];
+    }
+
+    public String getUniqueSatId(int index) {
+        return uniqueSatIds[index];
+    }
+
+    public int getSatId(int index) {
+        return satIds[index];
+    }
+
+    public int getConstellationType(int index) {
+        return constellationTypes[index];
+    }
+
+    /**
+     * @return true if the position and the clock bias of the satellite were computed
+     */
+    public boolean hasPosition(int index) {
+        return positioned[index];
+    }
+
+    /**
+     * @return satellite ECEF X coordinate, corrected for the Earth rotation
+     */
+    public double getX(int index) {
+        return x[index];
+    }
+
+    public double getY(int index) {
+        return y[index];
+    }
+
+    public double getZ(int index) {
+        return z[index];
+    }
+
+    public double getPseudorange(int index) {
+        return pseudoranges[index];
+    }
+
+    /**
+     * @return elevation based variance of the pseudorange
+     */
+    public double getMeasurementVariance(int index) {
+        return measurementVariances[index];
+    }
+
+    /**
+     * @return satellite clock bias, meters
+     */
+    public double getClockBias(int index) {
+        return clockBiases[index];
+    }
+
+    /**
+     * @return sum of the corrections of the pseudorange, meters
+     */
+    public double getAccumulatedCorrection(int index) {
+        return corrections[index];
+    }
+
+    /**
+     * @return elevation of the satellite, degrees
+     */
+    public double getElevation(int index) {
+        return elevations[index];
+    }
+
+    /**
+     * @return azimuth of the satellite, degrees
+     */
+    public double getAzimuth(int index) {
+        return azimuths[index];
+    }
+
+    /**
+     * @return signal strength, dB-Hz
+     */
+    public double getSignalStrength(int index) {
+        return signalStrengths[index];
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare.Constellations;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Pairs the satellites of two single-frequency constellations by svid and forms the
+ * ionosphere-free satellites. The satellites of the second frequency are indexed by svid in a
+ * fixed array, so that each satellite of the first frequency finds its pair in constant time.
+ *
+ * The combined satellites take the position, geometry and corrections of their first frequency
+ * satellite (see {@link #copyGeometry}), so that the orbits are only propagated once. Not
+ * synchronized, used under the lock of the owning constellation.
+ */
+public class DualFrequencyCombiner {
+
+    private static final int INITIAL_SIZE = 40;
+
+    private final SignalCombination combination;
+
+    private final SatellitePool pool;
+
+    private SatelliteParameters[] secondBySvid = new SatelliteParameters[INITIAL_SIZE];
+    private SatelliteParameters[] firstBySvid = new SatelliteParameters[INITIAL_SIZE];
+
+    /**
+     * epoch in which the second frequency satellite, and the positioned first frequency
+     * satellite, of each svid were set
+     */
+    private int[] secondEpochs = new int[INITIAL_SIZE];
+    private int[] positionedEpochs = new int[INITIAL_SIZE];
+
+    private int epoch = 0;
+
+    /**
+     * @param constellationType constellation type as defined by {@link GnssConstants}
+     * @param combination frequencies of the first and the second constellation
+     */
+    public DualFrequencyCombiner(int constellationType, SignalCombination combination) {
+        this.combination = combination;
+        this.pool = new SatellitePool(constellationType, SatelliteKey.SIGNAL_IONO_FREE);
+    }
+
+    /**
+     * Forms the ionosphere-free satellites of the epoch
+     * @param first satellites of the first frequency
+     * @param second satellites of the second frequency
+     * @param combined list to which the ionosphere-free satellites are added
+     */
+    public void combine(
+            List<SatelliteParameters> first,
+            List<SatelliteParameters> second,
+            List<SatelliteParameters> combined) {
+
+        epoch++;
+        pool.startEpoch();
+
+        for (SatelliteParameters satellite : second) {
+            int svid = satellite.getSatId();
+            ensureCapacity(svid);
+            secondBySvid[svid] = satellite;
+            secondEpochs[svid] = epoch;
+        }
+
+        for (SatelliteParameters satelliteFirst : first) {
+            int svid = satelliteFirst.getSatId();
+            if (svid >= secondEpochs.length || secondEpochs[svid] != epoch)
+                continue;
+
+            SatelliteParameters satelliteSecond = secondBySvid[svid];
+
+            SatelliteParameters newSatellite = pool.obtain(svid);
+            if (newSatellite == null)
+                continue;
+
+            newSatellite.setPseudorange(combination.ionoFree(
+                    satelliteFirst.getPseudorange(),
+                    satelliteSecond.getPseudorange()));
+
+            //todo: assign properly
+            newSatellite.setSignalStrength(
+                    (satelliteFirst.getSignalStrength() + satelliteSecond.getSignalStrength()) / 2);
+
+            newSatellite.setConstellationType(satelliteFirst.getConstellationType());
+
+            firstBySvid[svid] = satelliteFirst;
+            combined.add(newSatellite);
+        }
+    }
+
+    /**
+     * Copies the position, the geometry and the accumulated correction of the first frequency
+     * satellites to the combined satellites. Must follow {@code calculateSatPosition} of the
+     * first frequency constellation.
+     * @param positionedFirst first frequency satellites which passed the position computation
+     *                        and the masking
+     * @param combined satellites formed by {@link #combine}
+     * @param excluded list to which the combined satellites without a positioned pair are added
+     */
+    public void copyGeometry(
+            List<SatelliteParameters> positionedFirst,
+            List<SatelliteParameters> combined,
+            List<SatelliteParameters> excluded) {
+
+        for (SatelliteParameters satellite : positionedFirst) {
+            int svid = satellite.getSatId();
+            if (svid < firstBySvid.length && firstBySvid[svid] == satellite)
+                positionedEpochs[svid] = epoch;
+        }
+
+        for (SatelliteParameters satellite : combined) {
+            int svid = satellite.getSatId();
+            if (positionedEpochs[svid] != epoch) {
+                excluded.add(satellite);
+                continue;
+            }
+
+            SatelliteParameters satelliteFirst = firstBySvid[svid];
+            satellite.setSatellitePosition(satelliteFirst.getSatellitePosition());
+            if (satelliteFirst.getGeometry() != null)
+                satellite.setGeometry(satelliteFirst.getGeometry(), satelliteFirst.getGeometryIndex());
+            satellite.setAccumulatedCorrection(satelliteFirst.getAccumulatedCorrection());
+        }
+    }
+
+    private void ensureCapacity(int svid) {
+        if (svid < secondBySvid.length)
+            return;
+
+        int length = Math.max(svid + 1, 2 * secondBySvid.length);
+        secondBySvid = Arrays.copyOf(secondBySvid, length);
+        firstBySvid = Arrays.copyOf(firstBySvid, length);
+        secondEpochs = Arrays.copyOf(secondEpochs, length);
+        positionedEpochs = Arrays.copyOf(positionedEpochs, length);
+    }
+}
@@ -0,0 +1,339 @@
+package com.galfins.gnss_compare.Constellations;
+
+import com.galfins.gogpsextracts.Log;
+
+import com.galfins.gnss_compare.Corrections.Correction;
+import com.galfins.gnss_compare.ProcessingContext;
+import com.galfins.gogpsextracts.Constants;
+import com.galfins.gogpsextracts.Coordinates;
+import com.galfins.gogpsextracts.EpochGeometry;
+import com.galfins.gogpsextracts.GnssTime;
+import com.galfins.gogpsextracts.NavigationProducer;
+import com.galfins.gogpsextracts.NavigationProviders;
+import com.galfins.gogpsextracts.RinexNavigationGalileo;
+import com.galfins.gogpsextracts.SatellitePosition;
+import com.galfins.gogpsextracts.Time;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Created by Sebastian Ciuban on 8/10/2018.
+ */
+
+public class GalileoConstellation extends Constellation{
+    private final static char satType = 'E';
+    protected static final String NAME = "Galileo E1";
+    private static final String TAG = "GalileoE1Constellation";
+    private static int constellationId = GnssConstants.CONSTELLATION_GALILEO;
+    private static final double MASK_ELEVATION = 15; // degrees
+    private static final double MASK_CN0 = 10; // dB-Hz
+
+
+
+    private Coordinates rxPos;
+
+    /**
+     * Receiver to satellite geometry of the current epoch
+     */
+    private final EpochGeometry geometry = new EpochGeometry();
+
+    protected double tRxGalileoTOW;
+    private double tRxGalileoE1_2nd;
+    protected double weekNumber;
+
+    public double getWeekNumber(){
+        return weekNumber;
+    }
+
+    public double gettRxGalileoTOW(){
+        return tRxGalileoTOW;
+    }
+
+    /**
+     * Time of the measurement
+     */
+    private Time timeRefMsec;
+
+    protected int visibleButNotUsed = 0;
+
+    private static final int MAXTOWUNCNS = 50;                                     // [nanoseconds]
+
+
+    /**
+     * List holding used satellites
+     */
+    protected List<SatelliteParameters> observedSatellites = new ArrayList<>();
+
+    /**
+     * Satellites excluded by the masking criteria in calculateSatPosition
+     */
+    private final List<SatelliteParameters> excludedSatellites = new ArrayList<>();
+
+    /**
+     * Persistent satellite slots, reused every epoch
+     */
+    private final SatellitePool satellitePool = new SatellitePool(constellationId, SatelliteKey.SIGNAL_L1);
+
+    /**
+     * Signal of the measurements used by the constellation
+     */
+    private static final int signal = SignalRegistry.GALILEO_E1;
+
+    /**
+     * List holding unused satellites
+     */
+    protected List<SatelliteParameters> unusedSatellites = new ArrayList<>();
+
+
+//    private long timeRx;
+
+    private NavigationProducer rinexNavGalileo = null;
+
+    /**
+     * Corrections which are to be applied to received pseudoranges
+     */
+    private ArrayList<Correction> corrections = new ArrayList<>();
+
+    public GalileoConstellation() {
+        // Navigation data provider shared by all constellations and modules
+        rinexNavGalileo = NavigationProviders.getGalileo();
+    }
+
+    @Override
+    public void setProcessingContext(ProcessingContext processingContext) {
+        super.setProcessingContext(processingContext);
+        rinexNavGalileo = processingContext.getNavigationProvider(NavigationProviders.GALILEO);
+    }
+
+    @Override
+    public void addCorrections(ArrayList<Correction> corrections) {
+        synchronized (this) {
+            for (Correction correction : corrections)
+                correction.setCarrierFrequency(Constants.FE1);
+            this.corrections = corrections;
+        }
+    }
+
+    @Override
+    public Time getTime() {
+        synchronized (this) {
+            return timeRefMsec;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void updateMeasurements(GnssMeasurementsEpoch epoch) {
+        synchronized (this) {
+
+            visibleButNotUsed = 0;
+            observedSatellites.clear();
+            unusedSatellites.clear();
+            satellitePool.startEpoch();
+            timeRefMsec = new Time(epoch.getReceivedMillis());
+
+            // Galileo Time generation (GSA White Paper - page 20)
+            double galileoTime = epoch.getGpsTimeNanos();
+
+            // Compute the time of signal reception for when  GNSS_MEASUREMENT_STATE_TOW_KNOWN or GNSS_MEASUREMENT_STATE_TOW_DECODED are true
+            tRxGalileoTOW = galileoTime % Constants.NUMBER_NANO_SECONDS_PER_WEEK;
+
+            // Compute the signal reception for when GNSS_MEASUREMENT_STATE_GAL_E1C_2ND_CODE_LOCK is true
+            tRxGalileoE1_2nd = galileoTime % Constants.NumberNanoSeconds100Milli;
+
+            weekNumber = epoch.getWeekNumber();
+
+            // Pseudoranges (TOW or E1C 2nd code based) are computed once per epoch
+            // by GnssMeasurementsEpoch.Decoder, which also groups the measurements by signal
+            for (int n = 0; n < epoch.getSignalSize(signal); n++) {
+
+                int i = epoch.getSignalMeasurement(signal, n);
+
+                SatelliteParameters satelliteParameters = satellitePool.obtain(epoch.getSvid(i));
+                if (satelliteParameters == null)
+                    continue;
+
+                if (epoch.hasPseudorange(i))
+                    satelliteParameters.setPseudorange(epoch.getPseudorangeMeters(i));
+
+                satelliteParameters.setSignalStrength(epoch.getCn0DbHz(i));
+                satelliteParameters.setConstellationType(epoch.getConstellationType(i));
+
+                if (epoch.hasCarrierFrequencyHz(i))
+                    satelliteParameters.setCarrierFrequency(epoch.getCarrierFrequencyHz(i));
+
+                if (epoch.hasPseudorange(i)) {
+                    observedSatellites.add(satelliteParameters);
+                    Log.d(TAG, "updateConstellations(" + epoch.getSvid(i) + "): " + weekNumber + ", " + tRxGalileoTOW + ", " + epoch.getPseudorangeMeters(i));
+                    Log.d(TAG, "updateConstellations: Passed with measurement state: " + epoch.getState(i));
+                } else {
+                    unusedSatellites.add(satelliteParameters);
+                    visibleButNotUsed++;
+                }
+            }
+        }
+    }
+
+    @Override
+    public double getSatelliteSignalStrength(int index) {
+        synchronized (this) {
+            return observedSatellites.get(index).getSignalStrength();
+        }
+    }
+
+    @Override
+    public int getConstellationId() {
+        synchronized (this) {
+            return constellationId;
+        }
+    }
+
+
+    @Override
+    public Coordinates getRxPos() {
+        synchronized (this) {
+            return rxPos;
+        }
+    }
+
+    @Override
+    public void setRxPos(Coordinates rxPos) {
+        synchronized (this) {
+            this.rxPos = rxPos;
+        }
+    }
+
+    @Override
+    public SatelliteParameters getSatellite(int index) {
+        synchronized (this) {
+            return observedSatellites.get(index);
+        }
+    }
+
+    @Override
+    public List<SatelliteParameters> getSatellites() {
+        synchronized (this) {
+            return observedSatellites;
+        }
+    }
+
+    @Override
+    public List<SatelliteParameters> getUnusedSatellites() {
+        return unusedSatellites;
+    }
+
+    @Override
+    public int getVisibleConstellationSize() {
+        synchronized (this) {
+            return getUsedConstellationSize() + visibleButNotUsed;
+        }
+    }
+
+    @Override
+    public int getUsedConstellationSize() {
+        synchronized (this) {
+            return observedSatellites.size();
+        }
+    }
+
+    @Override
+    public void calculateSatPosition(Coordinates initialLocation, Coordinates position) {
+
+        synchronized (this) {
+            excludedSatellites.clear();
+            rxPos = Coordinates.globalXYZInstance(position.getX(), position.getY(), position.getZ());
+            geometry.reset(rxPos);
+
+            // Determine the current Galileo week number (info: is the same as GPS week number)
+            // todo: confirm difference to github fork
+            int galileoWeek = (int) weekNumber;
+
+            // Time of signal reception in Galileo Seconds of the Week (SoW)
+            double galileoSow = (tRxGalileoTOW) * 1e-9;
+            // Convert the time of reception from GPS SoW to UNIX time (milliseconds)
+            long timeRx = GnssTime.gpsToUnixMillis(galileoWeek, galileoSow);
+
+            for (SatelliteParameters observedSatellite : observedSatellites) {
+
+                /*
+                  Computation of the Galileo satellite coordinates in ECEF frame
+                */
+
+                /*Compute the Galileo satellite coordinates
+
+                 INPUT:
+                 @param timeRx         = time of measurement reception - UNIX        [milliseconds]
+                 @param pseudorange    = pseudorange measuremnent                          [meters]
+                 @param satID          = satellite ID
+                 @param satType        = satellite type indicating the constellation (E: Galileo)
+
+                 */
+                SatellitePosition rnp = ((RinexNavigationGalileo) rinexNavGalileo).getGalileoSatPosition(
+                        timeRx,
+                        observedSatellite.getPseudorange(),
+                        observedSatellite.getSatId(),
+                        satType,
+                        0.0,
+                        initialLocation);
+
+                if (rnp == null) {
+                    excludedSatellites.add(observedSatellite);
+                    notifyUser("Failed getting ephemeris data!", RNP_NULL_MESSAGE);
+                    continue;
+                }
+
+                observedSatellite.setSatellitePosition(rnp);
+
+
+                /* Compute the azimuth and elevation w.r.t the user's approximate location
+
+                 INPUT:
+                 @param rxPos                = user's approximate ECEF coordinates       [cartesian]
+                 @param satellitePosition    = satellite ECEF coordinates                [cartesian]
+
+                 */
+                observedSatellite.setGeometry(
+                        geometry,
+                        geometry.add(observedSatellite.getSatellitePosition()));
+
+
+                // Add to the exclusion list the satellites that do not pass the masking criteria
+                if(observedSatellite.getElevation() < MASK_ELEVATION){
+                    excludedSatellites.add(observedSatellite);
+                    continue;
+                }
+            }
+
+            // Each correction is evaluated once for all the satellites of the epoch
+            applyCorrections(
+                    corrections,
+                    new Time(timeRx),
+                    rxPos,
+                    rinexNavGalileo,
+                    initialLocation,
+                    geometry,
+                    observedSatellites);
+
+            // Remove from the list all the satellites that did not pass the masking criteria
+            visibleButNotUsed += excludedSatellites.size();
+            observedSatellites.removeAll(excludedSatellites);
+            unusedSatellites.addAll(excludedSatellites);
+
+            publishSnapshot(observedSatellites);
+        }
+    }
+
+
+
+
+    public static void registerClass() {
+        register(
+                NAME,
+                GalileoConstellation.class);
+    }
+}
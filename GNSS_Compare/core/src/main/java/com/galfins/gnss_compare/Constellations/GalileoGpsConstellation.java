@@ -16,13 +16,11 @@
 
 package com.galfins.gnss_compare.Constellations;
 
-import android.location.GnssMeasurementsEvent;
-import android.location.Location;
-
 import java.util.ArrayList;
 import java.util.List;
 
 import com.galfins.gnss_compare.Corrections.Correction;
+import com.galfins.gnss_compare.ProcessingContext;
 import com.galfins.gogpsextracts.Coordinates;
 import com.galfins.gogpsextracts.Time;
 
@@ -88,7 +86,7 @@ public class GalileoGpsConstellation extends Constellation {
     }
 
     @Override
-    public void calculateSatPosition(Location location, Coordinates position) {
+    public void calculateSatPosition(Coordinates location, Coordinates position) {
         synchronized (this) {
             gpsConstellation.calculateSatPosition(location, position);
             galileoConstellation.calculateSatPosition(location, position);
@@ -106,14 +104,16 @@ public class GalileoGpsConstellation extends Constellation {
 
             unusedSatellites.addAll(gpsConstellation.getUnusedSatellites());
             unusedSatellites.addAll(galileoConstellation.getUnusedSatellites());
+
+            publishSnapshot(observedSatellites);
         }
     }
 
-    public void updateMeasurements(GnssMeasurementsEvent event) {
+    public void updateMeasurements(GnssMeasurementsEpoch epoch) {
         synchronized (this) {
 
-            galileoConstellation.updateMeasurements(event);
-            gpsConstellation.updateMeasurements(event);
+            galileoConstellation.updateMeasurements(epoch);
+            gpsConstellation.updateMeasurements(epoch);
 
         }
     }
@@ -132,6 +132,15 @@ public class GalileoGpsConstellation extends Constellation {
         }
     }
 
+    @Override
+    public void setProcessingContext(ProcessingContext processingContext) {
+        synchronized (this) {
+            super.setProcessingContext(processingContext);
+            gpsConstellation.setProcessingContext(processingContext);
+            galileoConstellation.setProcessingContext(processingContext);
+        }
+    }
+
     @Override
     public void addCorrections(ArrayList<Correction> corrections) {
         synchronized (this) {
@@ -0,0 +1,117 @@
+package com.galfins.gnss_compare.Constellations;
+
+import com.galfins.gnss_compare.Corrections.Correction;
+import com.galfins.gnss_compare.ProcessingContext;
+import com.galfins.gogpsextracts.Coordinates;
+import com.galfins.gogpsextracts.Time;
+import com.galfins.gogpsextracts.Constants;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.lang.Math.max;
+
+public class GalileoIonoFreeConstellation extends GalileoConstellation {
+
+    private GalileoConstellation galileoConstellation = new GalileoConstellation();
+    private GalileoE5aConstellation galileoE5aConstellation = new GalileoE5aConstellation();
+//    GalileoE1Constellation galileoIonoFreeConstellation = new GalileoE1Constellation();
+
+    private static final String NAME = "Galileo IF";
+
+    private Time timeRefMsec;
+
+    /**
+     * Pairs the E1 and E5a satellites by svid and forms the ionosphere-free satellites
+     */
+    private final DualFrequencyCombiner combiner = new DualFrequencyCombiner(
+            GnssConstants.CONSTELLATION_GALILEO, SignalCombination.GALILEO_E1_E5A);
+
+    /**
+     * Satellites whose E1 pair was excluded in calculateSatPosition
+     */
+    private final List<SatelliteParameters> excludedIonoFree = new ArrayList<>();
+
+    @Override
+    public void updateMeasurements(GnssMeasurementsEpoch epoch) {
+        synchronized (this) {
+
+            timeRefMsec = new Time(System.currentTimeMillis());
+
+            galileoConstellation.updateMeasurements(epoch);
+            galileoE5aConstellation.updateMeasurements(epoch);
+
+            observedSatellites.clear();
+
+            combiner.combine(galileoConstellation.getSatellites(), galileoE5aConstellation.getSatellites(), observedSatellites);
+
+            visibleButNotUsed = max(galileoConstellation.getVisibleConstellationSize(), galileoE5aConstellation.getVisibleConstellationSize())-observedSatellites.size();
+
+            tRxGalileoTOW = galileoConstellation.gettRxGalileoTOW();
+
+            weekNumber = galileoConstellation.getWeekNumber()*Constants.NUMBER_NANO_SECONDS_PER_WEEK;
+
+        }
+    }
+
+    @Override
+    public void calculateSatPosition(Coordinates initialLocation, Coordinates position) {
+        synchronized (this) {
+            // The orbits are only propagated for the E1 satellites, the ionosphere-free
+            // satellites take the position, geometry and corrections of their E1 pair
+            galileoConstellation.calculateSatPosition(initialLocation, position);
+
+            setRxPos(galileoConstellation.getRxPos());
+
+            excludedIonoFree.clear();
+            combiner.copyGeometry(galileoConstellation.getSatellites(), observedSatellites, excludedIonoFree);
+            observedSatellites.removeAll(excludedIonoFree);
+
+            visibleButNotUsed = max(galileoConstellation.getVisibleConstellationSize(), galileoE5aConstellation.getVisibleConstellationSize())-observedSatellites.size();
+
+            publishSnapshot(observedSatellites);
+        }
+    }
+
+    @Override
+    public void setProcessingContext(ProcessingContext processingContext) {
+        galileoE5aConstellation.setProcessingContext(processingContext);
+        galileoConstellation.setProcessingContext(processingContext);
+
+        super.setProcessingContext(processingContext);
+    }
+
+    @Override
+    public void addCorrections(ArrayList<Correction> corrections) {
+        // the corrections are shared and computed for the E1 pairs, so E1 is set last
+        galileoE5aConstellation.addCorrections(corrections);
+        galileoConstellation.addCorrections(corrections);
+
+        super.addCorrections(corrections);
+    }
+
+    @Override
+    public Time getTime() {
+        synchronized (this) {
+            return timeRefMsec;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public int getConstellationId() {
+        synchronized (this) {
+            return Constellation.CONSTELLATION_GALILEO_IonoFree;
+        }
+    }
+
+    public static void registerClass() {
+        register(
+                NAME,
+                GalileoIonoFreeConstellation.class);
+    }
+}
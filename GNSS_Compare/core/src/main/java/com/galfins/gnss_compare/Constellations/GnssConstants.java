@@ -0,0 +1,43 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare.Constellations;
+
+/**
+ * Constellation types and measurement states used by the processing core. The values are the
+ * ones of {@code android.location.GnssStatus} and {@code android.location.GnssMeasurement}, so
+ * that the values reported by the platform, or logged in the raw measurement files, can be
+ * used directly.
+ */
+public final class GnssConstants {
+
+    public static final int CONSTELLATION_UNKNOWN = 0;
+    public static final int CONSTELLATION_GPS = 1;
+    public static final int CONSTELLATION_SBAS = 2;
+    public static final int CONSTELLATION_GLONASS = 3;
+    public static final int CONSTELLATION_QZSS = 4;
+    public static final int CONSTELLATION_BEIDOU = 5;
+    public static final int CONSTELLATION_GALILEO = 6;
+
+    public static final int STATE_CODE_LOCK = 1;
+    public static final int STATE_TOW_DECODED = 8;
+    public static final int STATE_MSEC_AMBIGUOUS = 16;
+    public static final int STATE_GAL_E1C_2ND_CODE_LOCK = 2048;
+    public static final int STATE_TOW_KNOWN = 16384;
+
+    private GnssConstants() {
+    }
+}
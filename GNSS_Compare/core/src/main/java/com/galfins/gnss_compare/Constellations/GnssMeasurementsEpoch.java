@@ -0,0 +1,559 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare.Constellations;
+
+import com.galfins.gogpsextracts.Constants;
+
+import java.util.Arrays;
+
+/**
+ * Immutable, primitive snapshot of a single GNSS measurement epoch. The raw
+ * {@code GnssMeasurementsEvent} is decoded once (see {@link Decoder}) and the resulting
+ * object is shared by all constellations of all calculation modules. Each measurement is
+ * classified once into a {@link SignalRegistry} signal, and the measurements are grouped by
+ * signal, so that a constellation only visits the measurements of its own signal (see
+ * {@link #getSignalSize(int)} and {@link #getSignalMeasurement(int, int)}).
+ *
+ * Measurements are stored as a structure of arrays, indexed from 0 to {@link #size()}-1.
+ * The pseudorange is computed by the decoder using the rules of the corresponding
+ * constellation and band, and is set to {@link Double#NaN} if the measurement state
+ * does not allow a valid pseudorange to be formed.
+ */
+public class GnssMeasurementsEpoch {
+
+    /**
+     * Signal band identifiers
+     */
+    public static final int BAND_UNKNOWN = 0;
+    public static final int BAND_L1 = 1; // GPS L1, Galileo E1
+    public static final int BAND_L5 = 2; // GPS L5, Galileo E5a
+
+    private final long receivedMillis;
+    private final long timeNanos;
+    private final long fullBiasNanos;
+    private final long firstFullBiasNanos;
+    private final double biasNanos;
+
+    private final int size;
+    private final int[] svid;
+    private final int[] constellationType;
+    private final int[] band;
+    private final int[] signal;
+    private final double[] carrierFrequencyHz;
+    private final long[] receivedSvTimeNanos;
+    private final long[] receivedSvTimeUncertaintyNanos;
+    private final double[] timeOffsetNanos;
+    private final int[] state;
+    private final double[] cn0DbHz;
+    private final int[] accumulatedDeltaRangeState;
+    private final double[] accumulatedDeltaRangeMeters;
+    private final double[] pseudorangeRateMetersPerSecond;
+    private final double[] pseudorangeMeters;
+
+    /**
+     * measurement indices grouped by signal, the measurements of signal s are stored from
+     * signalOffsets[s] to signalOffsets[s+1]-1
+     */
+    private final int[] signalOffsets;
+    private final int[] signalMeasurements;
+
+    private GnssMeasurementsEpoch(Decoder decoder) {
+        receivedMillis = decoder.receivedMillis;
+        timeNanos = decoder.timeNanos;
+        fullBiasNanos = decoder.fullBiasNanos;
+        firstFullBiasNanos = decoder.firstFullBiasNanos;
+        biasNanos = decoder.biasNanos;
+
+        size = decoder.size;
+        svid = Arrays.copyOf(decoder.svid, size);
+        constellationType = Arrays.copyOf(decoder.constellationType, size);
+        band = Arrays.copyOf(decoder.band, size);
+        signal = Arrays.copyOf(decoder.signal, size);
+        carrierFrequencyHz = Arrays.copyOf(decoder.carrierFrequencyHz, size);
+        receivedSvTimeNanos = Arrays.copyOf(decoder.receivedSvTimeNanos, size);
+        receivedSvTimeUncertaintyNanos = Arrays.copyOf(decoder.receivedSvTimeUncertaintyNanos, size);
+        timeOffsetNanos = Arrays.copyOf(decoder.timeOffsetNanos, size);
+        state = Arrays.copyOf(decoder.state, size);
+        cn0DbHz = Arrays.copyOf(decoder.cn0DbHz, size);
+        accumulatedDeltaRangeState = Arrays.copyOf(decoder.accumulatedDeltaRangeState, size);
+        accumulatedDeltaRangeMeters = Arrays.copyOf(decoder.accumulatedDeltaRangeMeters, size);
+        pseudorangeRateMetersPerSecond = Arrays.copyOf(decoder.pseudorangeRateMetersPerSecond, size);
+        pseudorangeMeters = Arrays.copyOf(decoder.pseudorangeMeters, size);
+
+        // counting sort of the measurements by signal, keeping the reported order
+        int signalCount = SignalRegistry.getSignalCount();
+        signalOffsets = new int[signalCount + 1];
+        for (int i = 0; i < size; i++)
+            if (signal[i] != SignalRegistry.NO_SIGNAL)
+                signalOffsets[signal[i] + 1]++;
+        for (int s = 0; s < signalCount; s++)
+            signalOffsets[s + 1] += signalOffsets[s];
+
+        signalMeasurements = new int[signalOffsets[signalCount]];
+        int[] next = Arrays.copyOf(signalOffsets, signalCount);
+        for (int i = 0; i < size; i++)
+            if (signal[i] != SignalRegistry.NO_SIGNAL)
+                signalMeasurements[next[signal[i]]++] = i;
+    }
+
+    /**
+     * @return system time (milliseconds) at which the epoch was decoded
+     */
+    public long getReceivedMillis() {
+        return receivedMillis;
+    }
+
+    public long getTimeNanos() {
+        return timeNanos;
+    }
+
+    /**
+     * @return FullBiasNanos reported with this epoch
+     */
+    public long getFullBiasNanos() {
+        return fullBiasNanos;
+    }
+
+    /**
+     * @return FullBiasNanos of the first decoded epoch, which is the one used in the
+     * pseudorange computation (as done in gps-measurement-tools)
+     */
+    public long getFirstFullBiasNanos() {
+        return firstFullBiasNanos;
+    }
+
+    public double getBiasNanos() {
+        return biasNanos;
+    }
+
+    /**
+     * @return receiver time in full GPS time, in nanoseconds (GSA White Paper - page 20)
+     */
+    public double getGpsTimeNanos() {
+        return timeNanos - (firstFullBiasNanos + biasNanos);
+    }
+
+    /**
+     * @return current week number, based on the first FullBiasNanos
+     */
+    public double getWeekNumber() {
+        return Math.floor((-1. * firstFullBiasNanos) / Constants.NUMBER_NANO_SECONDS_PER_WEEK);
+    }
+
+    /**
+     * @return number of nanoseconds from the beginning of GPS time to the current week
+     */
+    public double getWeekNumberNanos() {
+        return getWeekNumber() * Constants.NUMBER_NANO_SECONDS_PER_WEEK;
+    }
+
+    /**
+     * @return number of measurements in the epoch
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getSvid(int index) {
+        return svid[index];
+    }
+
+    public int getConstellationType(int index) {
+        return constellationType[index];
+    }
+
+    /**
+     * @return one of {@code BAND_L1}, {@code BAND_L5} or {@code BAND_UNKNOWN}
+     */
+    public int getBand(int index) {
+        return band[index];
+    }
+
+    /**
+     * @return {@code SignalRegistry} signal of the measurement, or {@code SignalRegistry.NO_SIGNAL}
+     */
+    public int getSignal(int index) {
+        return signal[index];
+    }
+
+    /**
+     * @return number of measurements of the given {@code SignalRegistry} signal
+     */
+    public int getSignalSize(int signal) {
+        if (signal < 0 || signal + 1 >= signalOffsets.length)
+            return 0;
+        return signalOffsets[signal + 1] - signalOffsets[signal];
+    }
+
+    /**
+     * @param signal {@code SignalRegistry} signal
+     * @param n measurement of the signal, from 0 to {@code getSignalSize(signal)}-1
+     * @return index of the measurement in the epoch
+     */
+    public int getSignalMeasurement(int signal, int n) {
+        return signalMeasurements[signalOffsets[signal] + n];
+    }
+
+    public boolean hasCarrierFrequencyHz(int index) {
+        return !Double.isNaN(carrierFrequencyHz[index]);
+    }
+
+    /**
+     * @return carrier frequency or {@code NaN} if not reported
+     */
+    public double getCarrierFrequencyHz(int index) {
+        return carrierFrequencyHz[index];
+    }
+
+    public long getReceivedSvTimeNanos(int index) {
+        return receivedSvTimeNanos[index];
+    }
+
+    public long getReceivedSvTimeUncertaintyNanos(int index) {
+        return receivedSvTimeUncertaintyNanos[index];
+    }
+
+    public double getTimeOffsetNanos(int index) {
+        return timeOffsetNanos[index];
+    }
+
+    public int getState(int index) {
+        return state[index];
+    }
+
+    public double getCn0DbHz(int index) {
+        return cn0DbHz[index];
+    }
+
+    public int getAccumulatedDeltaRangeState(int index) {
+        return accumulatedDeltaRangeState[index];
+    }
+
+    public double getAccumulatedDeltaRangeMeters(int index) {
+        return accumulatedDeltaRangeMeters[index];
+    }
+
+    /**
+     * @return Doppler measurement expressed as pseudorange rate
+     */
+    public double getPseudorangeRateMetersPerSecond(int index) {
+        return pseudorangeRateMetersPerSecond[index];
+    }
+
+    /**
+     * @return pseudorange in meters, or {@code NaN} if the measurement is not usable
+     */
+    public double getPseudorangeMeters(int index) {
+        return pseudorangeMeters[index];
+    }
+
+    public boolean hasPseudorange(int index) {
+        return !Double.isNaN(pseudorangeMeters[index]);
+    }
+
+    /**
+     * @return true if the measurement at {@code index} belongs to the given constellation and band
+     */
+    public boolean matches(int index, int constellationType, int band) {
+        return this.constellationType[index] == constellationType && this.band[index] == band;
+    }
+
+    /**
+     * Maps a carrier frequency to a signal band. Measurements without a reported carrier
+     * frequency are assumed to be on L1/E1.
+     * @param carrierFrequencyHz carrier frequency or {@code NaN}
+     * @return band identifier
+     */
+    public static int bandOf(double carrierFrequencyHz) {
+        return SignalRegistry.bandOf(carrierFrequencyHz);
+    }
+
+    /**
+     * Builds {@code GnssMeasurementsEpoch} objects from raw values fed measurement by
+     * measurement, as reported by the platform or read from a raw measurements log.
+     * The decoder keeps the FullBiasNanos of the first epoch it sees, until the hardware clock
+     * reports a discontinuity, and internal growable buffers which are reused between epochs.
+     * It is not thread safe.
+     *
+     * The STATE_TOW_KNOWN bit of the measurement state is only defined from Android O, the
+     * decoder is given the API level of the platform which reported the measurements.
+     */
+    public static class Decoder {
+
+        /**
+         * API level from which the STATE_TOW_KNOWN bit is reported (Android O)
+         */
+        public static final int TOW_KNOWN_API_LEVEL = 26;
+
+        private static final int INITIAL_CAPACITY = 64;
+
+        private final boolean towKnownReported;
+
+        private boolean fullBiasNanosInitialized = false;
+        private long firstFullBiasNanos;
+        private int hardwareClockDiscontinuityCount;
+
+        private long receivedMillis;
+        private long timeNanos;
+        private long fullBiasNanos;
+        private double biasNanos;
+
+        private int size = 0;
+        private int[] svid = new int[INITIAL_CAPACITY];
+        private int[] constellationType = new int[INITIAL_CAPACITY];
+        private int[] band = new int[INITIAL_CAPACITY];
+        private int[] signal = new int[INITIAL_CAPACITY];
+        private double[] carrierFrequencyHz = new double[INITIAL_CAPACITY];
+        private long[] receivedSvTimeNanos = new long[INITIAL_CAPACITY];
+        private long[] receivedSvTimeUncertaintyNanos = new long[INITIAL_CAPACITY];
+        private double[] timeOffsetNanos = new double[INITIAL_CAPACITY];
+        private int[] state = new int[INITIAL_CAPACITY];
+        private double[] cn0DbHz = new double[INITIAL_CAPACITY];
+        private int[] accumulatedDeltaRangeState = new int[INITIAL_CAPACITY];
+        private double[] accumulatedDeltaRangeMeters = new double[INITIAL_CAPACITY];
+        private double[] pseudorangeRateMetersPerSecond = new double[INITIAL_CAPACITY];
+        private double[] pseudorangeMeters = new double[INITIAL_CAPACITY];
+
+        /**
+         * @param apiLevel API level of the platform which reported the measurements, e.g.
+         *                 {@code Build.VERSION.SDK_INT} on a device
+         */
+        public Decoder(int apiLevel) {
+            towKnownReported = apiLevel >= TOW_KNOWN_API_LEVEL;
+        }
+
+        /**
+         * Starts a new epoch without a hardware clock discontinuity, discarding any
+         * measurements which were not yet finished
+         */
+        public void startEpoch(long receivedMillis, long timeNanos, long fullBiasNanos, double biasNanos) {
+            startEpoch(receivedMillis, timeNanos, fullBiasNanos, biasNanos, hardwareClockDiscontinuityCount);
+        }
+
+        /**
+         * Starts a new epoch, discarding any measurements which were not yet finished
+         * @param hardwareClockDiscontinuityCount HardwareClockDiscontinuityCount of the clock,
+         *                                        a change restarts the FullBiasNanos
+         */
+        public void startEpoch(long receivedMillis, long timeNanos, long fullBiasNanos, double biasNanos, int hardwareClockDiscontinuityCount) {
+            this.receivedMillis = receivedMillis;
+            this.timeNanos = timeNanos;
+            this.fullBiasNanos = fullBiasNanos;
+            this.biasNanos = biasNanos;
+
+            // Use only the first instance of the FullBiasNanos (as done in gps-measurement-tools),
+            // the time scale of the clock restarts after a discontinuity
+            if (!fullBiasNanosInitialized
+                    || hardwareClockDiscontinuityCount != this.hardwareClockDiscontinuityCount) {
+                firstFullBiasNanos = fullBiasNanos;
+                fullBiasNanosInitialized = true;
+            }
+            this.hardwareClockDiscontinuityCount = hardwareClockDiscontinuityCount;
+
+            size = 0;
+        }
+
+        /**
+         * Adds a single measurement to the epoch started with {@code startEpoch}
+         * @param carrierFrequencyHz carrier frequency or {@code NaN} if not available
+         */
+        public void addMeasurement(
+                int svid,
+                int constellationType,
+                double carrierFrequencyHz,
+                long receivedSvTimeNanos,
+                long receivedSvTimeUncertaintyNanos,
+                double timeOffsetNanos,
+                int state,
+                double cn0DbHz,
+                int accumulatedDeltaRangeState,
+                double accumulatedDeltaRangeMeters,
+                double pseudorangeRateMetersPerSecond) {
+
+            if (size == this.svid.length)
+                grow();
+
+            int band = SignalRegistry.bandOf(carrierFrequencyHz);
+            int signal = SignalRegistry.signalOf(constellationType, band);
+
+            this.svid[size] = svid;
+            this.constellationType[size] = constellationType;
+            this.band[size] = band;
+            this.signal[size] = signal;
+            this.carrierFrequencyHz[size] = carrierFrequencyHz;
+            this.receivedSvTimeNanos[size] = receivedSvTimeNanos;
+            this.receivedSvTimeUncertaintyNanos[size] = receivedSvTimeUncertaintyNanos;
+            this.timeOffsetNanos[size] = timeOffsetNanos;
+            this.state[size] = state;
+            this.cn0DbHz[size] = cn0DbHz;
+            this.accumulatedDeltaRangeState[size] = accumulatedDeltaRangeState;
+            this.accumulatedDeltaRangeMeters[size] = accumulatedDeltaRangeMeters;
+            this.pseudorangeRateMetersPerSecond[size] = pseudorangeRateMetersPerSecond;
+
+            double pseudorange = Double.NaN;
+
+            int pseudorangeRule = signal == SignalRegistry.NO_SIGNAL ?
+                    SignalRegistry.PSEUDORANGE_NONE : SignalRegistry.getPseudorangeRule(signal);
+
+            switch (pseudorangeRule) {
+                case SignalRegistry.PSEUDORANGE_GPS:
+                    pseudorange = computeGpsPseudorange(receivedSvTimeNanos, timeOffsetNanos, state);
+                    break;
+                case SignalRegistry.PSEUDORANGE_GALILEO_E1:
+                    pseudorange = computeGalileoE1Pseudorange(receivedSvTimeNanos, timeOffsetNanos, state);
+                    break;
+                case SignalRegistry.PSEUDORANGE_GALILEO_E5A:
+                    pseudorange = computeGalileoE5aPseudorange(receivedSvTimeNanos, timeOffsetNanos, state);
+                    break;
+            }
+
+            this.pseudorangeMeters[size] = pseudorange;
+
+            size++;
+        }
+
+        /**
+         * @return immutable epoch holding all measurements added since {@code startEpoch}
+         */
+        public GnssMeasurementsEpoch finishEpoch() {
+            return new GnssMeasurementsEpoch(this);
+        }
+
+        private boolean isTowKnown(int state) {
+            return towKnownReported && (state & GnssConstants.STATE_TOW_KNOWN) != 0;
+        }
+
+        /**
+         * GPS L1 and L5 pseudorange (GSA White Paper - page 20)
+         */
+        private double computeGpsPseudorange(long receivedSvTimeNanos, double timeOffsetNanos, int state) {
+
+            double gpsTime = timeNanos - (firstFullBiasNanos + biasNanos);
+
+            double tRxGPS = gpsTime + timeOffsetNanos;
+
+            double weekNumberNanos =
+                    Math.floor((-1. * firstFullBiasNanos) / Constants.NUMBER_NANO_SECONDS_PER_WEEK)
+                            * Constants.NUMBER_NANO_SECONDS_PER_WEEK;
+
+            double pseudorange =
+                    (tRxGPS - weekNumberNanos - receivedSvTimeNanos) / 1.0E9
+                            * Constants.SPEED_OF_LIGHT;
+
+            boolean codeLock = (state & GnssConstants.STATE_CODE_LOCK) != 0;
+            boolean towDecoded = (state & GnssConstants.STATE_TOW_DECODED) != 0;
+            boolean towKnown = isTowKnown(state);
+
+            if (codeLock && (towDecoded || towKnown) && pseudorange < 1e9)
+                return pseudorange;
+
+            return Double.NaN;
+        }
+
+        /**
+         * Galileo E1 pseudorange, either from the TOW or from the E1C 2nd code lock
+         */
+        private double computeGalileoE1Pseudorange(long receivedSvTimeNanos, double timeOffsetNanos, int state) {
+
+            double galileoTime = timeNanos - (firstFullBiasNanos + biasNanos);
+
+            double tRxGalileoTOW = galileoTime % Constants.NUMBER_NANO_SECONDS_PER_WEEK;
+
+            double tTxGalileo = receivedSvTimeNanos + timeOffsetNanos;
+
+            boolean towKnown = isTowKnown(state);
+            boolean towDecoded = (state & GnssConstants.STATE_TOW_DECODED) != 0;
+            boolean codeLockE1C = (state & GnssConstants.STATE_GAL_E1C_2ND_CODE_LOCK) != 0;
+
+            if (towDecoded || towKnown)
+                return (tRxGalileoTOW - tTxGalileo) * 1e-9 * Constants.SPEED_OF_LIGHT;
+
+            if (codeLockE1C)
+                return ((galileoTime - tTxGalileo) % Constants.NumberNanoSeconds100Milli) * 1e-9 * Constants.SPEED_OF_LIGHT;
+
+            return Double.NaN;
+        }
+
+        /**
+         * Galileo E5a pseudorange, with the 100 ms and 1 ms ambiguity resolution
+         */
+        private double computeGalileoE5aPseudorange(long receivedSvTimeNanos, double timeOffsetNanos, int state) {
+
+            String strFullBiasNanos = Long.toString(fullBiasNanos);
+            if (strFullBiasNanos.length() < 20)
+                return Double.NaN;
+
+            long dayFullBias = Long.valueOf(strFullBiasNanos.substring(0, 11));
+            long podFullBiasNanos = (long) -1.0 * Long.valueOf(strFullBiasNanos.substring(11, 20));
+
+            double tRx = 1e-9 * (timeNanos - (podFullBiasNanos + biasNanos));
+
+            double weekNumber = Math.floor(-dayFullBias / Constants.WEEKSEC);
+            double modDayFullBias = (dayFullBias + weekNumber * Constants.WEEKSEC);
+
+            double tTx = 1e-9 * (receivedSvTimeNanos + timeOffsetNanos);
+            tTx = tTx + modDayFullBias;
+
+            double prSeconds = tRx - tTx;
+
+            boolean towKnown = isTowKnown(state);
+            boolean towKnownValid = towKnownReported;
+
+            boolean towDecoded = (state & GnssConstants.STATE_TOW_DECODED) > 0;
+            boolean msecAmbiguity = (state & GnssConstants.STATE_MSEC_AMBIGUOUS) > 0;
+
+            if (towKnownValid) {
+                // Solve for the 100 millisecond ambiguity
+                if (towDecoded && towKnown)
+                    prSeconds = prSeconds % Constants.HUNDREDSMILLI;
+
+                // Solve for the 1 millisecond ambiguity
+                if (!towDecoded && !towKnown && msecAmbiguity)
+                    prSeconds = Math.floor(prSeconds / 1e-3) * 1e-3 + prSeconds % Constants.ONEMILLI;
+            }
+
+            boolean condition;
+            if (towKnownValid)
+                condition = towDecoded || msecAmbiguity || towKnown;
+            else
+                condition = towDecoded;
+
+            if (condition)
+                return prSeconds * Constants.SPEED_OF_LIGHT;
+
+            return Double.NaN;
+        }
+
+        private void grow() {
+            int capacity = svid.length * 2;
+            svid = Arrays.copyOf(svid, capacity);
+            constellationType = Arrays.copyOf(constellationType, capacity);
+            band = Arrays.copyOf(band, capacity);
+            signal = Arrays.copyOf(signal, capacity);
+            carrierFrequencyHz = Arrays.copyOf(carrierFrequencyHz, capacity);
+            receivedSvTimeNanos = Arrays.copyOf(receivedSvTimeNanos, capacity);
+            receivedSvTimeUncertaintyNanos = Arrays.copyOf(receivedSvTimeUncertaintyNanos, capacity);
+            timeOffsetNanos = Arrays.copyOf(timeOffsetNanos, capacity);
+            state = Arrays.copyOf(state, capacity);
+            cn0DbHz = Arrays.copyOf(cn0DbHz, capacity);
+            accumulatedDeltaRangeState = Arrays.copyOf(accumulatedDeltaRangeState, capacity);
+            accumulatedDeltaRangeMeters = Arrays.copyOf(accumulatedDeltaRangeMeters, capacity);
+            pseudorangeRateMetersPerSecond = Arrays.copyOf(pseudorangeRateMetersPerSecond, capacity);
+            pseudorangeMeters = Arrays.copyOf(pseudorangeMeters, capacity);
+        }
+    }
+}
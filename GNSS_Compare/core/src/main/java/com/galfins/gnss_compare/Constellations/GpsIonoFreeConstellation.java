@@ -0,0 +1,118 @@
+package com.galfins.gnss_compare.Constellations;
+
+import com.galfins.gnss_compare.Corrections.Correction;
+import com.galfins.gnss_compare.ProcessingContext;
+import com.galfins.gogpsextracts.Coordinates;
+import com.galfins.gogpsextracts.Time;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.lang.Math.max;
+
+public class GpsIonoFreeConstellation extends GpsConstellation {
+
+    private GpsConstellation gpsL1Constellation = new GpsConstellation();
+    private GpsL5Constellation gpsL5Constellation = new GpsL5Constellation();
+//    private GpsL1Constellation gpsIonoFreeConstellation = new GpsL1Constellation();
+
+    //    private static final String NAME = "GPS<sub><small><small>IF</small></small></sub>";
+    private static final String NAME = "GPS IF";
+
+    private Time timeRefMsec;
+
+    /**
+     * Pairs the L1 and L5 satellites by svid and forms the ionosphere-free satellites
+     */
+    private final DualFrequencyCombiner combiner = new DualFrequencyCombiner(
+            GnssConstants.CONSTELLATION_GPS, SignalCombination.GPS_L1_L5);
+
+    /**
+     * Satellites whose L1 pair was excluded in calculateSatPosition
+     */
+    private final List<SatelliteParameters> excludedIonoFree = new ArrayList<>();
+
+
+    @Override
+    public void updateMeasurements(GnssMeasurementsEpoch epoch) {
+        synchronized (this) {
+
+            timeRefMsec = new Time(System.currentTimeMillis());
+
+            gpsL1Constellation.updateMeasurements(epoch);
+            gpsL5Constellation.updateMeasurements(epoch);
+
+            observedSatellites.clear();
+
+            combiner.combine(gpsL1Constellation.getSatellites(), gpsL5Constellation.getSatellites(), observedSatellites);
+
+            visibleButNotUsed = max(gpsL1Constellation.getVisibleConstellationSize(), gpsL5Constellation.getVisibleConstellationSize())-observedSatellites.size();
+
+            tRxGPS = gpsL1Constellation.gettRxGPS();
+            weekNumberNanos = gpsL1Constellation.getWeekNumber();
+        }
+    }
+
+    @Override
+    public void calculateSatPosition(Coordinates initialLocation, Coordinates position) {
+        synchronized (this) {
+            // The orbits are only propagated for the L1 satellites, the ionosphere-free
+            // satellites take the position, geometry and corrections of their L1 pair
+            gpsL1Constellation.calculateSatPosition(initialLocation, position);
+
+            setRxPos(gpsL1Constellation.getRxPos());
+
+            excludedIonoFree.clear();
+            combiner.copyGeometry(gpsL1Constellation.getSatellites(), observedSatellites, excludedIonoFree);
+            observedSatellites.removeAll(excludedIonoFree);
+
+            visibleButNotUsed = max(gpsL1Constellation.getVisibleConstellationSize(), gpsL5Constellation.getVisibleConstellationSize())-observedSatellites.size();
+
+            publishSnapshot(observedSatellites);
+        }
+    }
+
+    @Override
+    public Time getTime() {
+        synchronized (this) {
+            return timeRefMsec;
+        }
+    }
+
+
+    @Override
+    public void setProcessingContext(ProcessingContext processingContext) {
+        gpsL5Constellation.setProcessingContext(processingContext);
+        gpsL1Constellation.setProcessingContext(processingContext);
+
+        super.setProcessingContext(processingContext);
+    }
+
+    @Override
+    public void addCorrections(ArrayList<Correction> corrections) {
+        // the corrections are shared and computed for the L1 pairs, so L1 is set last
+        gpsL5Constellation.addCorrections(corrections);
+        gpsL1Constellation.addCorrections(corrections);
+
+        super.addCorrections(corrections);
+    }
+
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public int getConstellationId() {
+        synchronized (this) {
+            return Constellation.CONSTELLATION_GPS_IonoFree;
+        }
+    }
+
+    public static void registerClass() {
+        register(
+                NAME,
+                GpsIonoFreeConstellation.class);
+    }
+}
\ No newline at end of file
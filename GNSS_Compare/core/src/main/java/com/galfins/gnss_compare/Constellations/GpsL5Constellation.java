@@ -0,0 +1,316 @@
+package com.galfins.gnss_compare.Constellations;
+
+import com.galfins.gogpsextracts.Log;
+
+import com.galfins.gnss_compare.Corrections.Correction;
+import com.galfins.gnss_compare.ProcessingContext;
+import com.galfins.gogpsextracts.Constants;
+import com.galfins.gogpsextracts.Coordinates;
+import com.galfins.gogpsextracts.EpochGeometry;
+import com.galfins.gogpsextracts.GnssTime;
+import com.galfins.gogpsextracts.NavigationProducer;
+import com.galfins.gogpsextracts.NavigationProviders;
+import com.galfins.gogpsextracts.RinexNavigationGps;
+import com.galfins.gogpsextracts.SatellitePosition;
+import com.galfins.gogpsextracts.Time;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Created by Sebastian Ciuban on 22/10/2018.
+ * This class is for...
+ * <p>
+ * GPS Pseudorange computation algorithm by: GSA White Paper
+ * - variable name changes and comments were added
+ * to fit the description in the GSA white paper
+ * by: Sebastian Ciuban
+ */
+
+public class GpsL5Constellation extends Constellation {
+
+    private final static char satType = 'G';
+    private static final String NAME = "GPS L5";
+    private static final String TAG = "GpsL5Constellation";
+    private static double MASK_ELEVATION = 15; // degrees
+    private static double MASK_CN0 = 10; // dB-Hz
+
+
+    private Coordinates rxPos;
+
+    /**
+     * Receiver to satellite geometry of the current epoch
+     */
+    private final EpochGeometry geometry = new EpochGeometry();
+
+    private double tRxGPS;
+    private double weekNumberNanos;
+    private double weekNumber;
+
+    private static final int constellationId = GnssConstants.CONSTELLATION_GPS;
+
+    /**
+     * Time of the measurement
+     */
+    private Time timeRefMsec;
+
+    private int visibleButNotUsed = 0;
+
+    // Condition for the pseudoranges that takes into account a maximum uncertainty for the TOW
+    // (as done in gps-measurement-tools MATLAB code)
+    private static final int MAXTOWUNCNS = 50;                                     // [nanoseconds]
+
+    private NavigationProducer rinexNavGps = null;
+
+    /**
+     * List holding observed satellites
+     */
+    protected List<SatelliteParameters> observedSatellites = new ArrayList<>();
+
+    /**
+     * Satellites excluded by the masking criteria in calculateSatPosition
+     */
+    private final List<SatelliteParameters> excludedSatellites = new ArrayList<>();
+
+    /**
+     * Persistent satellite slots, reused every epoch
+     */
+    private final SatellitePool satellitePool = new SatellitePool(constellationId, SatelliteKey.SIGNAL_L5);
+
+    /**
+     * Signal of the measurements used by the constellation
+     */
+    private static final int signal = SignalRegistry.GPS_L5;
+
+    protected List<SatelliteParameters> unusedSatellites = new ArrayList<>();
+
+    /**
+     * Corrections which are to be applied to received pseudoranges
+     */
+    private ArrayList<Correction> corrections;
+
+    public GpsL5Constellation() {
+        // Navigation data provider shared by all constellations and modules
+        rinexNavGps = NavigationProviders.getGps();
+    }
+
+    @Override
+    public void setProcessingContext(ProcessingContext processingContext) {
+        super.setProcessingContext(processingContext);
+        rinexNavGps = processingContext.getNavigationProvider(NavigationProviders.GPS);
+    }
+
+    @Override
+    public void addCorrections(ArrayList<Correction> corrections) {
+        synchronized (this) {
+            for (Correction correction : corrections)
+                correction.setCarrierFrequency(Constants.FL5);
+            this.corrections = corrections;
+        }
+    }
+
+    @Override
+    public Time getTime() {
+        synchronized (this) {
+            return timeRefMsec;
+        }
+    }
+
+    @Override
+    public String getName() {
+        synchronized (this) {
+            return NAME;
+        }
+    }
+
+    @Override
+    public void updateMeasurements(GnssMeasurementsEpoch epoch) {
+
+        synchronized (this) {
+            visibleButNotUsed = 0;
+            observedSatellites.clear();
+            unusedSatellites.clear();
+            satellitePool.startEpoch();
+            timeRefMsec = new Time(epoch.getReceivedMillis());
+
+            // GPS Time generation (GSA White Paper - page 20)
+            double gpsTime = epoch.getGpsTimeNanos(); // TODO intersystem bias?
+
+            // the number of nanoseconds that have occurred from the beginning of GPS time to the
+            // current week number
+            weekNumberNanos = epoch.getWeekNumberNanos();
+
+            // Pseudoranges are computed once per epoch by GnssMeasurementsEpoch.Decoder,
+            // which also groups the measurements by signal
+            for (int n = 0; n < epoch.getSignalSize(signal); n++) {
+
+                int i = epoch.getSignalMeasurement(signal, n);
+
+                // Measurement time in full GPS time without taking into account weekNumberNanos
+                tRxGPS = gpsTime + epoch.getTimeOffsetNanos(i);
+
+                SatelliteParameters satelliteParameters = satellitePool.obtain(epoch.getSvid(i));
+                if (satelliteParameters == null)
+                    continue;
+
+                if (epoch.hasPseudorange(i))
+                    satelliteParameters.setPseudorange(epoch.getPseudorangeMeters(i));
+
+
+                satelliteParameters.setSignalStrength(epoch.getCn0DbHz(i));
+
+                satelliteParameters.setConstellationType(epoch.getConstellationType(i));
+
+                if (epoch.hasCarrierFrequencyHz(i))
+                    satelliteParameters.setCarrierFrequency(epoch.getCarrierFrequencyHz(i));
+
+                if (epoch.hasPseudorange(i)) {
+                    observedSatellites.add(satelliteParameters);
+
+                    Log.d(TAG, "updateConstellations(" + epoch.getSvid(i) + "): " + weekNumberNanos + ", " + tRxGPS + ", " + epoch.getPseudorangeMeters(i));
+                    Log.d(TAG, "updateConstellations: Passed with measurement state: " + epoch.getState(i));
+                } else {
+                    unusedSatellites.add(satelliteParameters);
+                    visibleButNotUsed++;
+                }
+            }
+        }
+    }
+
+    @Override
+    public double getSatelliteSignalStrength(int index) {
+        synchronized (this) {
+            return observedSatellites.get(index).getSignalStrength();
+        }
+    }
+
+    @Override
+    public int getConstellationId() {
+        synchronized (this) {
+            return constellationId;
+        }
+    }
+
+
+    @Override
+    public void calculateSatPosition(Coordinates initialLocation, Coordinates position) {
+
+        synchronized (this) {
+            excludedSatellites.clear();
+
+            rxPos = Coordinates.globalXYZInstance(position.getX(), position.getY(), position.getZ());
+
+            geometry.reset(rxPos);
+
+            // Determine the current GPS week number
+            int gpsWeek = (int) (weekNumberNanos / Constants.NUMBER_NANO_SECONDS_PER_WEEK);
+
+            // Time of signal reception in GPS Seconds of the Week (SoW)
+            double gpsSow = (tRxGPS - weekNumberNanos) * 1e-9;
+            // Convert the time of reception from GPS SoW to UNIX time (milliseconds)
+            long timeRx = GnssTime.gpsToUnixMillis(gpsWeek, gpsSow);
+
+            for (SatelliteParameters observedSatellite : observedSatellites) {
+                // Computation of the GPS satellite coordinates in ECEF frame
+
+                SatellitePosition rnp = ((RinexNavigationGps) rinexNavGps).getSatPositionAndVelocities(
+                        timeRx,
+                        observedSatellite.getPseudorange(),
+                        observedSatellite.getSatId(),
+                        satType,
+                        0.0,
+                        initialLocation);
+
+                if (rnp == null) {
+                    excludedSatellites.add(observedSatellite);
+                    notifyUser("Faled getting ephemeris data!", RNP_NULL_MESSAGE);
+                    continue;
+                }
+
+                observedSatellite.setSatellitePosition(rnp);
+
+                observedSatellite.setGeometry(
+                        geometry,
+                        geometry.add(observedSatellite.getSatellitePosition()));
+
+                // Add to the exclusion list the satellites that do not pass the masking criteria
+                if(observedSatellite.getElevation() < MASK_ELEVATION){
+                    excludedSatellites.add(observedSatellite);
+                }
+            }
+
+            // Each correction is evaluated once for all the satellites of the epoch
+            applyCorrections(
+                    corrections,
+                    new Time(timeRx),
+                    rxPos,
+                    rinexNavGps,
+                    initialLocation,
+                    geometry,
+                    observedSatellites);
+
+            // Remove from the list all the satellites that did not pass the masking criteria
+            visibleButNotUsed += excludedSatellites.size();
+            observedSatellites.removeAll(excludedSatellites);
+            unusedSatellites.addAll(excludedSatellites);
+
+            publishSnapshot(observedSatellites);
+        }
+    }
+
+
+    public static void registerClass() {
+        register(
+                NAME,
+                GpsL5Constellation.class);
+    }
+
+
+    @Override
+    public Coordinates getRxPos() {
+        synchronized (this) {
+            return rxPos;
+        }
+    }
+
+    @Override
+    public void setRxPos(Coordinates rxPos) {
+        synchronized (this) {
+            this.rxPos = rxPos;
+        }
+    }
+
+    @Override
+    public SatelliteParameters getSatellite(int index) {
+        synchronized (this) {
+            return observedSatellites.get(index);
+        }
+    }
+
+    @Override
+    public List<SatelliteParameters> getSatellites() {
+        synchronized (this) {
+            return observedSatellites;
+        }
+    }
+
+    @Override
+    public List<SatelliteParameters> getUnusedSatellites() {
+        return unusedSatellites;
+    }
+
+    @Override
+    public int getVisibleConstellationSize() {
+        synchronized (this) {
+            return getUsedConstellationSize() + visibleButNotUsed;
+        }
+    }
+
+    @Override
+    public int getUsedConstellationSize() {
+        synchronized (this) {
+            return observedSatellites.size();
+        }
+    }
+
+}
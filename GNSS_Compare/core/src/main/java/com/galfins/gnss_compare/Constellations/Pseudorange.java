@@ -46,6 +46,15 @@ public class Pseudorange {
      */
     private double measurementVariance = 0;
 
+    /**
+     * Sets new values, for reused objects
+     */
+    void set(double pseudorange, double pseudorangeRate) {
+        this.pseudorange = pseudorange;
+        this.pseudorangeRate = pseudorangeRate;
+        this.measurementVariance = 0;
+    }
+
     public double getPseudorange(){
         return pseudorange;
     }
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare.Constellations;
+
+/**
+ * Packs the constellation type, the signal and the svid of a satellite into a single int,
+ * so that satellites can be identified without building strings. The display string (e.g.
+ * "G5_L1") is only created by {@link #toString(int)}, when it is needed by the UI or the logs.
+ *
+ * Layout: constellation type in bits 16-31, signal in bits 8-15, svid in bits 0-7.
+ */
+public final class SatelliteKey {
+
+    /**
+     * Signals, the bands of {@code GnssMeasurementsEpoch} and the ionosphere-free combination
+     */
+    public static final int SIGNAL_L1 = GnssMeasurementsEpoch.BAND_L1;
+    public static final int SIGNAL_L5 = GnssMeasurementsEpoch.BAND_L5;
+    public static final int SIGNAL_IONO_FREE = 3;
+
+    public static final int NO_KEY = -1;
+
+    private SatelliteKey() {
+    }
+
+    /**
+     * @param constellationType constellation type as defined by {@link GnssConstants}
+     * @param signal one of the SIGNAL_ constants
+     * @param svid satellite id in the constellation
+     * @return packed key
+     */
+    public static int pack(int constellationType, int signal, int svid) {
+        return ((constellationType & 0xFFFF) << 16) | ((signal & 0xFF) << 8) | (svid & 0xFF);
+    }
+
+    public static int getConstellationType(int key) {
+        return (key >>> 16) & 0xFFFF;
+    }
+
+    public static int getSignal(int key) {
+        return (key >>> 8) & 0xFF;
+    }
+
+    public static int getSvid(int key) {
+        return key & 0xFF;
+    }
+
+    /**
+     * @return display string of the key, as used for the unique satellite ids
+     */
+    public static String toString(int key) {
+        int constellationType = getConstellationType(key);
+        int signal = getSignal(key);
+        boolean galileo = constellationType == GnssConstants.CONSTELLATION_GALILEO;
+
+        String suffix;
+        switch (signal) {
+            case SIGNAL_L1:
+                suffix = galileo ? "_E1" : "_L1";
+                break;
+            case SIGNAL_L5:
+                suffix = galileo ? "_E5a" : "_L5";
+                break;
+            case SIGNAL_IONO_FREE:
+                suffix = "_IF";
+                break;
+            default:
+                suffix = "";
+        }
+
+        return String.valueOf(getSystemLetter(constellationType)) + getSvid(key) + suffix;
+    }
+
+    /**
+     * @return RINEX system letter of the constellation type
+     */
+    public static char getSystemLetter(int constellationType) {
+        switch (constellationType) {
+            case GnssConstants.CONSTELLATION_GPS:
+                return 'G';
+            case GnssConstants.CONSTELLATION_GALILEO:
+                return 'E';
+            case GnssConstants.CONSTELLATION_GLONASS:
+                return 'R';
+            case GnssConstants.CONSTELLATION_BEIDOU:
+                return 'C';
+            case GnssConstants.CONSTELLATION_QZSS:
+                return 'J';
+            case GnssConstants.CONSTELLATION_SBAS:
+                return 'S';
+            default:
+                return '?';
+        }
+    }
+}
@@ -18,8 +18,8 @@ package com.galfins.gnss_compare.Constellations;
 
 import com.galfins.gogpsextracts.Constants;
 import com.galfins.gogpsextracts.Coordinates;
+import com.galfins.gogpsextracts.EpochGeometry;
 import com.galfins.gogpsextracts.SatellitePosition;
-import com.galfins.gogpsextracts.TopocentricCoordinates;
 
 /**
  * Container class for storing satellite related parameters
@@ -90,11 +90,21 @@ public class SatelliteParameters {
     private double signalStrength;
 
     /**
-     * Type of the constellation as defined by the GnssStatus, extended by the definitions
+     * Type of the constellation as defined by GnssConstants, extended by the definitions
      * in the Constellation class
      */
     private int constellationType;
 
+    /**
+     * Packed constellation, signal and svid of the satellite, or {@code SatelliteKey.NO_KEY}
+     */
+    private final int key;
+
+    /**
+     * Pseudorange object reused by the measurements of a pooled satellite
+     */
+    private Pseudorange pooledPseudorange;
+
     /**
      * @param satelliteId Id of the newly created satellite
      * @param pseudorange pseudorange to this satellite
@@ -102,9 +112,56 @@ public class SatelliteParameters {
     public SatelliteParameters(int satelliteId, Pseudorange pseudorange){
         this.satId = satelliteId;
         this.pseudorange = pseudorange;
+        this.key = SatelliteKey.NO_KEY;
+        setSignalStrength(0.0);
+    }
+
+    /**
+     * Creates a persistent satellite slot, see {@code SatellitePool}
+     * @param key packed key of the satellite, see {@code SatelliteKey}
+     */
+    SatelliteParameters(int key){
+        this.satId = SatelliteKey.getSvid(key);
+        this.key = key;
         setSignalStrength(0.0);
     }
 
+    /**
+     * Clears the measurement and the computed values, so that the slot can be reused in a new
+     * epoch. The satellite id and key are kept.
+     */
+    void reset(){
+        pseudorange = null;
+        accumulatedCorrection = 0;
+        carrierFrequency = 0;
+        coordinates = null;
+        satellitePosition = null;
+        satelliteVelocity = null;
+        signalStrength = 0;
+        clockBias = 0;
+        geometry = null;
+        geometryIndex = 0;
+    }
+
+    /**
+     * Sets the pseudorange measured in this epoch, reusing the pseudorange object of the slot
+     * @param pseudorange pseudorange to this satellite
+     */
+    public void setPseudorange(double pseudorange){
+        if (pooledPseudorange == null)
+            pooledPseudorange = new Pseudorange(pseudorange, 0.0);
+        else
+            pooledPseudorange.set(pseudorange, 0.0);
+        this.pseudorange = pooledPseudorange;
+    }
+
+    /**
+     * @return packed key of the satellite, {@code SatelliteKey.NO_KEY} if not created by a pool
+     */
+    public int getKey() {
+        return key;
+    }
+
     /**
      * @param newPose new coordinates of the satellite
      */
@@ -134,26 +191,54 @@ public class SatelliteParameters {
     }
 
     /**
-     * asimuth and elevation of the satellite with respect to the user
+     * geometry of the epoch in which the satellite was last processed
+     */
+    private EpochGeometry geometry;
+
+    /**
+     * index of the satellite in geometry
      */
-    private TopocentricCoordinates rxTopo;
+    private int geometryIndex;
 
     /**
-     * @return asimuth and elevation of the satellite with respect to the user
+     * @return geometry of the epoch in which the satellite was last processed
      */
-    public TopocentricCoordinates getRxTopo() {
-        return rxTopo;
+    public EpochGeometry getGeometry() {
+        return geometry;
     }
 
     /**
-     * sets the asimuth and elevation of the satellite with respect to the user.
-     * This also sets the pseudorange measurement variance
-     * @param rxTopo new coordinates
+     * @return index of the satellite in getGeometry()
      */
-    public void setRxTopo(TopocentricCoordinates rxTopo) { //todo rename to better indicate function
-        this.rxTopo = rxTopo;
+    public int getGeometryIndex() {
+        return geometryIndex;
+    }
+
+    /**
+     * sets the geometry (asimuth, elevation, line of sight) of the satellite with respect to the
+     * user. This also sets the pseudorange measurement variance
+     * @param geometry geometry of the current epoch
+     * @param geometryIndex index of the satellite in geometry
+     */
+    public void setGeometry(EpochGeometry geometry, int geometryIndex) {
+        this.geometry = geometry;
+        this.geometryIndex = geometryIndex;
         pseudorange.setMeasurementVariance(
-                1.0 / Math.pow(Math.tan(rxTopo.getElevation()-0.1),2)/100.0);
+                1.0 / Math.pow(Math.tan(getElevation()-0.1),2)/100.0);
+    }
+
+    /**
+     * @return elevation of the satellite with respect to the user, degrees
+     */
+    public double getElevation() {
+        return geometry.getElevation(geometryIndex);
+    }
+
+    /**
+     * @return asimuth of the satellite with respect to the user, degrees
+     */
+    public double getAzimuth() {
+        return geometry.getAzimuth(geometryIndex);
     }
 
     /**
@@ -200,9 +285,11 @@ public class SatelliteParameters {
     private String uniqueSatId;
 
     /**
-     * @return unique id of the satellite
+     * @return unique id of the satellite, created from the key on the first call
      */
     public String getUniqueSatId(){
+        if (uniqueSatId == null && key != SatelliteKey.NO_KEY)
+            uniqueSatId = SatelliteKey.toString(key);
         return uniqueSatId;
     }
 
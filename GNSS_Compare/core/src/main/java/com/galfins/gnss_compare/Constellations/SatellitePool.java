@@ -0,0 +1,89 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare.Constellations;
+
+/**
+ * Persistent SatelliteParameters slots of one constellation and signal, one per svid. The
+ * constellations take the slot of each measured satellite every epoch, instead of allocating
+ * new SatelliteParameters and Pseudorange objects.
+ *
+ * A slot is overwritten on the next epoch. Within an epoch each svid is handed out once, a
+ * repeated measurement of the same satellite and signal gets no slot. Pools are not
+ * synchronized, they are used under the lock of the owning constellation.
+ */
+public class SatellitePool {
+
+    private static final int INITIAL_SIZE = 40;
+
+    private final int constellationType;
+    private final int signal;
+
+    private SatelliteParameters[] slots = new SatelliteParameters[INITIAL_SIZE];
+
+    /**
+     * epoch in which each slot was last obtained
+     */
+    private int[] slotEpochs = new int[INITIAL_SIZE];
+
+    private int epoch = 0;
+
+    /**
+     * @param constellationType constellation type as defined by {@link GnssConstants}
+     * @param signal one of the {@code SatelliteKey} SIGNAL_ constants
+     */
+    public SatellitePool(int constellationType, int signal) {
+        this.constellationType = constellationType;
+        this.signal = signal;
+    }
+
+    /**
+     * Starts a new epoch, all slots can be obtained again
+     */
+    public void startEpoch() {
+        epoch++;
+    }
+
+    /**
+     * @param svid satellite id in the constellation
+     * @return slot of the satellite, reset to an empty measurement, or null if the slot was
+     * already obtained in this epoch
+     */
+    public SatelliteParameters obtain(int svid) {
+        if (svid >= slots.length) {
+            int length = Math.max(svid + 1, 2 * slots.length);
+            SatelliteParameters[] grownSlots = new SatelliteParameters[length];
+            int[] grownEpochs = new int[length];
+            System.arraycopy(slots, 0, grownSlots, 0, slots.length);
+            System.arraycopy(slotEpochs, 0, grownEpochs, 0, slotEpochs.length);
+            slots = grownSlots;
+            slotEpochs = grownEpochs;
+        }
+
+        if (slotEpochs[svid] == epoch && slots[svid] != null)
+            return null;
+        slotEpochs[svid] = epoch;
+
+        SatelliteParameters slot = slots[svid];
+        if (slot == null) {
+            slot = new SatelliteParameters(SatelliteKey.pack(constellationType, signal, svid));
+            slots[svid] = slot;
+        } else {
+            slot.reset();
+        }
+        return slot;
+    }
+}
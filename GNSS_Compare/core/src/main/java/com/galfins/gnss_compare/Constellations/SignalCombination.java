@@ -0,0 +1,106 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare.Constellations;
+
+import com.galfins.gogpsextracts.Constants;
+
+/**
+ * Linear combinations of the measurements of two frequencies, with the coefficients computed
+ * once per frequency pair. All measurements and results are in meters.
+ */
+public final class SignalCombination {
+
+    public static final SignalCombination GPS_L1_L5 =
+            new SignalCombination(Constants.FL1, Constants.FL5);
+
+    public static final SignalCombination GALILEO_E1_E5A =
+            new SignalCombination(Constants.FE1, Constants.FE5a);
+
+    private final double firstFrequency;
+    private final double secondFrequency;
+
+    private final double ionoFreeFirst;
+    private final double ionoFreeSecond;
+
+    private final double wideLanePhaseFirst;
+    private final double wideLanePhaseSecond;
+    private final double narrowLaneCodeFirst;
+    private final double narrowLaneCodeSecond;
+
+    private final double wideLaneWavelength;
+
+    /**
+     * @param firstFrequency higher frequency, Hz
+     * @param secondFrequency lower frequency, Hz
+     */
+    public SignalCombination(double firstFrequency, double secondFrequency) {
+        this.firstFrequency = firstFrequency;
+        this.secondFrequency = secondFrequency;
+
+        double firstSquared = firstFrequency * firstFrequency;
+        double secondSquared = secondFrequency * secondFrequency;
+
+        ionoFreeFirst = firstSquared / (firstSquared - secondSquared);
+        ionoFreeSecond = -secondSquared / (firstSquared - secondSquared);
+
+        wideLanePhaseFirst = firstFrequency / (firstFrequency - secondFrequency);
+        wideLanePhaseSecond = -secondFrequency / (firstFrequency - secondFrequency);
+        narrowLaneCodeFirst = firstFrequency / (firstFrequency + secondFrequency);
+        narrowLaneCodeSecond = secondFrequency / (firstFrequency + secondFrequency);
+
+        wideLaneWavelength = Constants.SPEED_OF_LIGHT / (firstFrequency - secondFrequency);
+    }
+
+    public double getFirstFrequency() {
+        return firstFrequency;
+    }
+
+    public double getSecondFrequency() {
+        return secondFrequency;
+    }
+
+    /**
+     * @return ionosphere-free combination, (f1^2 P1 - f2^2 P2)/(f1^2 - f2^2)
+     */
+    public double ionoFree(double first, double second) {
+        return ionoFreeFirst * first + ionoFreeSecond * second;
+    }
+
+    /**
+     * @return geometry-free combination, first - second. For the code measurements it is
+     * proportional to the ionospheric delay, with the opposite sign for the carrier phases.
+     */
+    public double geometryFree(double first, double second) {
+        return first - second;
+    }
+
+    /**
+     * @return Melbourne-Wubbena combination, wide lane phase minus narrow lane code. Divided
+     * by {@link #getWideLaneWavelength()} it gives the wide lane ambiguity in cycles.
+     */
+    public double melbourneWubbena(double firstPhase, double secondPhase, double firstCode, double secondCode) {
+        return wideLanePhaseFirst * firstPhase + wideLanePhaseSecond * secondPhase
+                - narrowLaneCodeFirst * firstCode - narrowLaneCodeSecond * secondCode;
+    }
+
+    /**
+     * @return wavelength of the wide lane combination, meters
+     */
+    public double getWideLaneWavelength() {
+        return wideLaneWavelength;
+    }
+}
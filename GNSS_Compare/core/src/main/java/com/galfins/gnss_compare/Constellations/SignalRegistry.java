@@ -0,0 +1,172 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare.Constellations;
+
+import java.util.Arrays;
+
+/**
+ * Static registry of the signals processed by the application. A signal is a (constellation
+ * type, band) pair with the rule used to compute its pseudorange. {@link GnssMeasurementsEpoch.Decoder}
+ * classifies every measurement once into its signal, and the epoch keeps the measurements
+ * grouped by signal, so that each constellation only visits its own measurements.
+ *
+ * Bands are found with a lookup table of 1.023 MHz frequency bins, instead of comparing the
+ * carrier frequency with every band. Supporting another signal (e.g. QZSS L1 with the GPS
+ * pseudorange rule) is a single {@link #register} entry in the static block below.
+ */
+public final class SignalRegistry {
+
+    /**
+     * Pseudorange computation rules, see {@code GnssMeasurementsEpoch.Decoder}
+     */
+    public static final int PSEUDORANGE_NONE = 0;
+    public static final int PSEUDORANGE_GPS = 1;
+    public static final int PSEUDORANGE_GALILEO_E1 = 2;
+    public static final int PSEUDORANGE_GALILEO_E5A = 3;
+
+    public static final int NO_SIGNAL = -1;
+
+    private static final double FREQUENCY_BIN_HZ = 1.023e6;
+    private static final int FREQUENCY_BINS = 2048;
+
+    private static final int CONSTELLATION_TYPES = 8;
+    private static final int BANDS = 3;
+
+    /**
+     * band of each frequency bin
+     */
+    private static final int[] bandOfBin = new int[FREQUENCY_BINS];
+
+    /**
+     * signal of each (constellation type, band) pair
+     */
+    private static final int[] signalOf = new int[CONSTELLATION_TYPES * BANDS];
+
+    private static volatile int[] signalConstellationTypes = new int[0];
+    private static volatile int[] signalBands = new int[0];
+    private static volatile int[] signalPseudorangeRules = new int[0];
+
+    static {
+        Arrays.fill(bandOfBin, GnssMeasurementsEpoch.BAND_UNKNOWN);
+        Arrays.fill(signalOf, NO_SIGNAL);
+
+        registerBand(GnssMeasurementsEpoch.BAND_L1, 1.57542e9, 0.1e9);
+        registerBand(GnssMeasurementsEpoch.BAND_L5, 1.17645e9, 0.1e9);
+    }
+
+    public static final int GPS_L1 = register(
+            GnssConstants.CONSTELLATION_GPS, GnssMeasurementsEpoch.BAND_L1, PSEUDORANGE_GPS);
+    public static final int GPS_L5 = register(
+            GnssConstants.CONSTELLATION_GPS, GnssMeasurementsEpoch.BAND_L5, PSEUDORANGE_GPS);
+    public static final int GALILEO_E1 = register(
+            GnssConstants.CONSTELLATION_GALILEO, GnssMeasurementsEpoch.BAND_L1, PSEUDORANGE_GALILEO_E1);
+    public static final int GALILEO_E5A = register(
+            GnssConstants.CONSTELLATION_GALILEO, GnssMeasurementsEpoch.BAND_L5, PSEUDORANGE_GALILEO_E5A);
+
+    private SignalRegistry() {
+    }
+
+    /**
+     * Assigns a range of carrier frequencies to a band
+     * @param band one of the {@code GnssMeasurementsEpoch} BAND_ constants
+     * @param centerFrequencyHz center frequency of the band
+     * @param halfWidthHz half width of the accepted frequency range
+     */
+    static synchronized void registerBand(int band, double centerFrequencyHz, double halfWidthHz) {
+        int first = Math.max(0, (int) Math.ceil((centerFrequencyHz - halfWidthHz) / FREQUENCY_BIN_HZ));
+        int last = Math.min(FREQUENCY_BINS - 1, (int) Math.floor((centerFrequencyHz + halfWidthHz) / FREQUENCY_BIN_HZ));
+        for (int bin = first; bin <= last; bin++)
+            bandOfBin[bin] = band;
+    }
+
+    /**
+     * Registers a signal. Registering the same pair twice returns the existing signal.
+     * @param constellationType constellation type as defined by {@link GnssConstants}
+     * @param band one of the {@code GnssMeasurementsEpoch} BAND_ constants
+     * @param pseudorangeRule one of the PSEUDORANGE_ constants
+     * @return signal identifier, from 0 to {@link #getSignalCount()}-1
+     */
+    public static synchronized int register(int constellationType, int band, int pseudorangeRule) {
+        int pair = pairIndex(constellationType, band);
+        if (pair < 0)
+            throw new IllegalArgumentException(
+                    "Unsupported signal: constellation " + constellationType + ", band " + band);
+
+        if (signalOf[pair] != NO_SIGNAL)
+            return signalOf[pair];
+
+        int signal = signalBands.length;
+        signalConstellationTypes = Arrays.copyOf(signalConstellationTypes, signal + 1);
+        signalBands = Arrays.copyOf(signalBands, signal + 1);
+        signalPseudorangeRules = Arrays.copyOf(signalPseudorangeRules, signal + 1);
+
+        signalConstellationTypes[signal] = constellationType;
+        signalBands[signal] = band;
+        signalPseudorangeRules[signal] = pseudorangeRule;
+        signalOf[pair] = signal;
+
+        return signal;
+    }
+
+    /**
+     * Maps a carrier frequency to a signal band. Measurements without a reported carrier
+     * frequency are assumed to be on L1/E1.
+     * @param carrierFrequencyHz carrier frequency or {@code NaN}
+     * @return band identifier
+     */
+    public static int bandOf(double carrierFrequencyHz) {
+        if (Double.isNaN(carrierFrequencyHz))
+            return GnssMeasurementsEpoch.BAND_L1;
+        int bin = (int) Math.round(carrierFrequencyHz / FREQUENCY_BIN_HZ);
+        if (bin < 0 || bin >= FREQUENCY_BINS)
+            return GnssMeasurementsEpoch.BAND_UNKNOWN;
+        return bandOfBin[bin];
+    }
+
+    /**
+     * @return signal of the measurement, or {@link #NO_SIGNAL} if it is not registered
+     */
+    public static int signalOf(int constellationType, int band) {
+        int pair = pairIndex(constellationType, band);
+        return pair < 0 ? NO_SIGNAL : signalOf[pair];
+    }
+
+    /**
+     * @return number of registered signals
+     */
+    public static int getSignalCount() {
+        return signalBands.length;
+    }
+
+    public static int getConstellationType(int signal) {
+        return signalConstellationTypes[signal];
+    }
+
+    public static int getBand(int signal) {
+        return signalBands[signal];
+    }
+
+    public static int getPseudorangeRule(int signal) {
+        return signalPseudorangeRules[signal];
+    }
+
+    private static int pairIndex(int constellationType, int band) {
+        if (constellationType < 0 || constellationType >= CONSTELLATION_TYPES || band < 0 || band >= BANDS)
+            return -1;
+        return constellationType * BANDS + band;
+    }
+}
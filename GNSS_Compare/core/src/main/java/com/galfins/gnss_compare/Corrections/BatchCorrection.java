@@ -0,0 +1,51 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare.Corrections;
+
+import com.galfins.gogpsextracts.Coordinates;
+import com.galfins.gogpsextracts.EpochGeometry;
+import com.galfins.gogpsextracts.NavigationProducer;
+import com.galfins.gogpsextracts.SatellitePosition;
+import com.galfins.gogpsextracts.Time;
+
+/**
+ * Correction evaluated for all satellites of an epoch in a single call. The results are
+ * written to an array owned by the caller, so that implementations keep no per-satellite state.
+ */
+public interface BatchCorrection {
+
+    /**
+     * Calculates the corrections of all satellites in the geometry of the epoch
+     * @param currentTime current timestamp
+     * @param approximatedPose approximate pose of the receiver
+     * @param navigationProducer navigation data (e.g. Klobuchar coefficients)
+     * @param initialLocation initial location of the receiver
+     * @param geometry receiver state and receiver to satellite geometry of the epoch
+     * @param satellitePositions satellite positions, indexed as in {@code geometry}. Satellites
+     *                           with a null position are skipped and get a correction of 0.
+     * @param corrections output, the correction of satellite i is written to corrections[i],
+     *                    for i from 0 to geometry.size()-1
+     */
+    void calculateCorrections(
+            Time currentTime,
+            Coordinates approximatedPose,
+            NavigationProducer navigationProducer,
+            Coordinates initialLocation,
+            EpochGeometry geometry,
+            SatellitePosition[] satellitePositions,
+            double[] corrections);
+}
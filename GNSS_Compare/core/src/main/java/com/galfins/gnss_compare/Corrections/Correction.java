@@ -0,0 +1,206 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare.Corrections;
+
+import java.util.HashMap;
+import java.util.Set;
+
+
+import com.galfins.gnss_compare.PipelineMetrics;
+import com.galfins.gogpsextracts.Constants;
+import com.galfins.gogpsextracts.Coordinates;
+import com.galfins.gogpsextracts.EpochGeometry;
+import com.galfins.gogpsextracts.NavigationProducer;
+import com.galfins.gogpsextracts.Time;
+import com.galfins.gogpsextracts.SatellitePosition;
+
+/**
+ * Created by Mateusz Krainski on 1/20/2018.
+ * This class is for implementing a uniform interface for correction modules
+ */
+public abstract class Correction implements BatchCorrection {
+
+    /**
+     * Calculates current correction for given parameters
+     * @param currentTime current timestamp
+     * @param approximatedPose approximate pose of the receiver
+     * @param satelliteCoordinates satellite coordinates
+     * @param navigationProducer Klobuchar coefficients from the naivgation message (ephemeris)
+     * @return calculated correction to be applied to the pseudorange
+     */
+    public abstract void calculateCorrection(
+            Time currentTime,
+            Coordinates approximatedPose,
+            SatellitePosition satelliteCoordinates,
+            NavigationProducer navigationProducer,
+            Coordinates initialLocation);
+
+    /**
+     * Calculates current correction for given parameters, with the geometry of the satellite
+     * already computed for this epoch. Corrections which depend on the elevation, azimuth or
+     * range override this to avoid recomputing them.
+     * @param geometry receiver to satellite geometry of the current epoch
+     * @param satelliteIndex index of the satellite in geometry
+     */
+    public void calculateCorrection(
+            Time currentTime,
+            Coordinates approximatedPose,
+            SatellitePosition satelliteCoordinates,
+            NavigationProducer navigationProducer,
+            Coordinates initialLocation,
+            EpochGeometry geometry,
+            int satelliteIndex) {
+        calculateCorrection(currentTime, approximatedPose, satelliteCoordinates, navigationProducer, initialLocation);
+    }
+
+    /**
+     * Adapter of the per-satellite interface, calls {@code calculateCorrection} for every
+     * satellite of the epoch. Corrections which can share work between the satellites override
+     * this with a native batch implementation.
+     */
+    @Override
+    public void calculateCorrections(
+            Time currentTime,
+            Coordinates approximatedPose,
+            NavigationProducer navigationProducer,
+            Coordinates initialLocation,
+            EpochGeometry geometry,
+            SatellitePosition[] satellitePositions,
+            double[] corrections) {
+
+        for (int i = 0; i < geometry.size(); i++) {
+            if (satellitePositions[i] == null) {
+                corrections[i] = 0.0;
+                continue;
+            }
+
+            calculateCorrection(
+                    currentTime,
+                    approximatedPose,
+                    satellitePositions[i],
+                    navigationProducer,
+                    initialLocation,
+                    geometry,
+                    i);
+            corrections[i] = getCorrection();
+        }
+    }
+
+    /**
+     *
+     * @return calculated correction
+     */
+    public abstract double getCorrection();
+
+    /**
+     * Carrier frequency of the corrected signal, used by the frequency dependent corrections
+     */
+    private double carrierFrequency = Constants.FL1;
+
+    /**
+     * Sets the carrier frequency of the signal to which the correction is applied, L1/E1 by
+     * default. Frequency dependent corrections scale their delay to it.
+     * @param carrierFrequency carrier frequency in Hz
+     */
+    public void setCarrierFrequency(double carrierFrequency) {
+        this.carrierFrequency = carrierFrequency;
+    }
+
+    public double getCarrierFrequency() {
+        return carrierFrequency;
+    }
+
+    /**
+     * Metrics stage to which the latency of this correction is reported, null if not measured
+     */
+    private PipelineMetrics.Stage metricsStage = null;
+
+    /**
+     * @param metricsStage metrics stage to which the latency of this correction is reported
+     */
+    public void setMetricsStage(PipelineMetrics.Stage metricsStage) {
+        this.metricsStage = metricsStage;
+    }
+
+    /**
+     * Reports the latency of the last calculateCorrection or calculateCorrections call
+     * @param startNanos value of PipelineMetrics.startTimer() before the call
+     */
+    public void recordLatency(long startNanos) {
+        if (metricsStage != null)
+            metricsStage.record(startNanos);
+    }
+
+    /**
+     * stores all classes which extend the Correction class and were registered with the
+     * register method
+     */
+    private static HashMap<String, Class <? extends Correction>> registeredObjects = new HashMap<>();
+
+    /**
+     * Registers the new Correction class
+     * @param correctionName name of the class
+     * @param objectClass reference to the class
+     */
+    protected static void register(String correctionName, Class <?extends Correction> objectClass) {
+        if(!registeredObjects.containsKey(correctionName))
+            registeredObjects.put(correctionName, objectClass);
+    }
+
+    /**
+     * names of all registered classes
+     */
+    public static Set<String> getRegistered(){
+        return registeredObjects.keySet();
+    }
+
+    /**
+     *
+     * @param name name of the class
+     * @return class reference
+     */
+    public static Class<? extends Correction> getClassByName(String name) {
+        return registeredObjects.get(name);
+    }
+
+    /**
+     *
+     * @return name of the constellation
+     */
+    public abstract String getName();
+
+    /**
+     * Indicates if initialization has already been performed
+     */
+    private static boolean initialized = false;
+
+    /**
+     * Registers all constellation classes which extend this
+     */
+    public static void initialize() {
+        if(!initialized) {
+            IonoCorrection.registerClass();
+            ShapiroCorrection.registerClass();
+            TropoCorrection.registerClass();
+            Unb3mTropoCorrection.registerClass();
+            // only offered when the maps are installed, without them it always returns 0
+            if (NeQuickData.isInstalled())
+                NeQuickCorrection.registerClass();
+            initialized = true;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare.Corrections;
+
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Correction values shared by the calculation modules. Modules using the same constellation
+ * and the same correction classes compute the same delays for the same satellites in an
+ * epoch, so the first module stores them and the others reuse them.
+ *
+ * Entries are keyed by the correction class, the satellite key (constellation, signal and
+ * svid, see {@code SatelliteKey}), the epoch and the receiver position quantised to cells of
+ * {@link #CELL_SIZE}. The navigation producers are shared by all the constellations of a
+ * type, so they are not part of the key.
+ *
+ * The entries are spread over {@link #STRIPES} maps with a lock each, so that modules
+ * running in parallel only contend when they access the same stripe. The stripe of an entry
+ * does not depend on its epoch. The cache holds a single epoch: the first lookup or store of a
+ * newer epoch evicts the entries of all the stripes, and the entries of an older epoch are
+ * neither returned nor stored.
+ */
+public class CorrectionCache {
+
+    /**
+     * Edge of the receiver position cells, meters
+     */
+    public static final double CELL_SIZE = 10.0;
+
+    public static final int STRIPES = 16;
+
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private static final CorrectionCache instance = new CorrectionCache(DEFAULT_CAPACITY);
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final int stripeCapacity;
+
+    private final AtomicLong currentEpoch = new AtomicLong(Long.MIN_VALUE);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Key of an entry, the value is stored with the key and is not part of its identity
+     */
+    private static final class Key {
+        Class<?> type;
+        int satellite;
+        long epoch;
+        long cellX;
+        long cellY;
+        long cellZ;
+        int hash;
+
+        double value;
+
+        void set(Class<?> type, int satellite, long epoch, long cellX, long cellY, long cellZ, int hash) {
+            this.type = type;
+            this.satellite = satellite;
+            this.epoch = epoch;
+            this.cellX = cellX;
+            this.cellY = cellY;
+            this.cellZ = cellZ;
+            this.hash = hash;
+        }
+
+        Key copy(double value) {
+            Key key = new Key();
+            key.type = type;
+            key.satellite = satellite;
+            key.epoch = epoch;
+            key.cellX = cellX;
+            key.cellY = cellY;
+            key.cellZ = cellZ;
+            key.hash = hash;
+            key.value = value;
+            return key;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key))
+                return false;
+            Key other = (Key) obj;
+            return type == other.type
+                    && satellite == other.satellite
+                    && epoch == other.epoch
+                    && cellX == other.cellX
+                    && cellY == other.cellY
+                    && cellZ == other.cellZ;
+        }
+    }
+
+    /**
+     * Entries of the current epoch, guarded by the stripe itself
+     */
+    private static final class Stripe {
+        final HashMap<Key, Key> entries = new HashMap<>();
+        final Key probe = new Key();
+    }
+
+    /**
+     * @param capacity maximum number of entries, spread evenly over the stripes
+     */
+    public CorrectionCache(int capacity) {
+        stripeCapacity = Math.max(1, capacity / STRIPES);
+        for (int i = 0; i < STRIPES; i++)
+            stripes[i] = new Stripe();
+    }
+
+    /**
+     * @return cache shared by all the constellations
+     */
+    public static CorrectionCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * @param type class of the correction
+     * @param satellite satellite key
+     * @param epoch time of the epoch, milliseconds
+     * @param x receiver ECEF X, meters
+     * @param y receiver ECEF Y, meters
+     * @param z receiver ECEF Z, meters
+     * @return stored correction, or NaN if there is none
+     */
+    public double get(Class<? extends Correction> type, int satellite, long epoch, double x, double y, double z) {
+        long cellX = cell(x);
+        long cellY = cell(y);
+        long cellZ = cell(z);
+        int hash = hash(type, satellite, cellX, cellY, cellZ);
+        Stripe stripe = stripes[hash & (STRIPES - 1)];
+
+        double value = Double.NaN;
+        if (advance(epoch)) {
+            synchronized (stripe) {
+                stripe.probe.set(type, satellite, epoch, cellX, cellY, cellZ, hash);
+                Key entry = stripe.entries.get(stripe.probe);
+                if (entry != null)
+                    value = entry.value;
+            }
+        }
+
+        if (Double.isNaN(value))
+            misses.incrementAndGet();
+        else
+            hits.incrementAndGet();
+        return value;
+    }
+
+    /**
+     * Stores a correction. Nothing is stored if the stripe is full or if the epoch is older
+     * than the current one.
+     */
+    public void put(Class<? extends Correction> type, int satellite, long epoch, double x, double y, double z, double value) {
+        long cellX = cell(x);
+        long cellY = cell(y);
+        long cellZ = cell(z);
+        int hash = hash(type, satellite, cellX, cellY, cellZ);
+        Stripe stripe = stripes[hash & (STRIPES - 1)];
+
+        if (!advance(epoch))
+            return;
+
+        synchronized (stripe) {
+            // the epoch may have advanced since the check, the entry would never be read
+            if (epoch == currentEpoch.get() && stripe.entries.size() < stripeCapacity) {
+                stripe.probe.set(type, satellite, epoch, cellX, cellY, cellZ, hash);
+                Key entry = stripe.probe.copy(value);
+                stripe.entries.put(entry, entry);
+            }
+        }
+    }
+
+    /**
+     * Makes the epoch current if it is newer than the current one, and then evicts the entries
+     * of all the stripes
+     * @return false if the epoch is older than the current one
+     */
+    private boolean advance(long epoch) {
+        while (true) {
+            long current = currentEpoch.get();
+            if (epoch < current)
+                return false;
+            if (epoch == current)
+                return true;
+            if (currentEpoch.compareAndSet(current, epoch)) {
+                for (Stripe stripe : stripes) {
+                    synchronized (stripe) {
+                        stripe.entries.clear();
+                    }
+                }
+                return true;
+            }
+        }
+    }
+
+    private static long cell(double coordinate) {
+        return (long) Math.floor(coordinate / CELL_SIZE);
+    }
+
+    /**
+     * Hash of the key without the epoch, which selects the stripe
+     */
+    private static int hash(Class<?> type, int satellite, long cellX, long cellY, long cellZ) {
+        int h = type.hashCode();
+        h = 31 * h + satellite;
+        h = 31 * h + (int) (cellX ^ (cellX >>> 32));
+        h = 31 * h + (int) (cellY ^ (cellY >>> 32));
+        h = 31 * h + (int) (cellZ ^ (cellZ >>> 32));
+        return h ^ (h >>> 16);
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return number of stored entries
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.entries.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Removes all the entries and resets the counters
+     */
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.entries.clear();
+            }
+        }
+        currentEpoch.set(Long.MIN_VALUE);
+        hits.set(0);
+        misses.set(0);
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare.Corrections;
+
+
+import com.galfins.gogpsextracts.Coordinates;
+import com.galfins.gogpsextracts.EpochGeometry;
+import com.galfins.gogpsextracts.NavigationProducer;
+import com.galfins.gogpsextracts.SatellitePosition;
+import com.galfins.gogpsextracts.Time;
+import com.galfins.gogpsextracts.TopocentricCoordinates;
+
+/**
+ * Created by Sebastian Ciuban on 10/02/2018.
+ *
+ * Ionospheric Correction based on Klobuchar's Algorithm
+ *
+ * This algorithm can be applied to Galileo, GPS pseudoranges or any other constellation
+ * However the required coefficients to compute this correction are contained only in the
+ * GPS Navigation message. So for Galileo satellites this correciton will always return 0.0
+ *
+ * It accounts for roughly 50% of the total ionospheric error affecting the pseudoranges
+ *
+ *
+ */
+
+public class IonoCorrection extends Correction {
+
+
+    private double correctionValue;
+
+    private final static String NAME = "Klobuchar Iono Correction";
+
+    private final KlobucharModel model = new KlobucharModel();
+
+    public IonoCorrection(){
+        super();
+    }
+
+    public void calculateCorrection(Time currentTime, Coordinates approximatedPose, SatellitePosition satelliteCoordinates, NavigationProducer navigationProducer, Coordinates initialLocation) {
+
+        // Compute the elevation and azimuth angles for each satellite
+        TopocentricCoordinates topo = new TopocentricCoordinates();
+        topo.computeTopocentric(approximatedPose, satelliteCoordinates);
+
+        model.update(
+                currentTime,
+                navigationProducer,
+                initialLocation,
+                approximatedPose.getGeodeticLatitude(),
+                approximatedPose.getGeodeticLongitude());
+
+        correctionValue = model.getDelay(topo.getElevation(), topo.getAzimuth());
+    }
+
+    @Override
+    public void calculateCorrection(Time currentTime, Coordinates approximatedPose, SatellitePosition satelliteCoordinates, NavigationProducer navigationProducer, Coordinates initialLocation, EpochGeometry geometry, int satelliteIndex) {
+
+        model.update(
+                currentTime,
+                navigationProducer,
+                initialLocation,
+                geometry.getReceiverLatitude(),
+                geometry.getReceiverLongitude());
+
+        correctionValue = model.getDelay(geometry.getElevation(satelliteIndex), geometry.getAzimuth(satelliteIndex));
+    }
+
+    /**
+     * Klobuchar correction of all satellites of the epoch, with the coefficients and the
+     * receiver terms resolved once
+     */
+    @Override
+    public void calculateCorrections(Time currentTime, Coordinates approximatedPose, NavigationProducer navigationProducer, Coordinates initialLocation, EpochGeometry geometry, SatellitePosition[] satellitePositions, double[] corrections) {
+
+        model.update(
+                currentTime,
+                navigationProducer,
+                initialLocation,
+                geometry.getReceiverLatitude(),
+                geometry.getReceiverLongitude());
+
+        for (int i = 0; i < geometry.size(); i++)
+            corrections[i] = satellitePositions[i] == null ?
+                    0.0 : model.getDelay(geometry.getElevation(i), geometry.getAzimuth(i));
+    }
+
+    /**
+     * @return number of times new Klobuchar coefficients were received from the navigation data
+     */
+    public long getCoefficientRefreshCount() {
+        return model.getCoefficientRefreshCount();
+    }
+
+    @Override
+    public double getCorrection() {
+        return correctionValue;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    public static void registerClass(){
+        register(NAME, IonoCorrection.class);
+    }
+}
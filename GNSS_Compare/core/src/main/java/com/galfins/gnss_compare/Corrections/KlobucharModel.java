@@ -0,0 +1,181 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare.Corrections;
+
+import com.galfins.gogpsextracts.Constants;
+import com.galfins.gogpsextracts.Coordinates;
+import com.galfins.gogpsextracts.IonoGps;
+import com.galfins.gogpsextracts.NavigationProducer;
+import com.galfins.gogpsextracts.Time;
+
+/**
+ * Klobuchar ionosphere model with the state of one epoch. The broadcast coefficients are
+ * resolved from the navigation producer once per epoch and copied only when they change, and
+ * the receiver position is converted to semicircles once, so that {@link #getDelay} only
+ * evaluates the terms depending on the satellite.
+ */
+public class KlobucharModel {
+
+    private final double[] alpha = new double[4];
+    private final double[] beta = new double[4];
+
+    /**
+     * false if no coefficients are available, in which case the delay is 0
+     */
+    private boolean available = false;
+
+    private NavigationProducer cachedProducer = null;
+    private long cachedMsec = Long.MIN_VALUE;
+
+    private double latitudeSemicircles;
+    private double longitudeSemicircles;
+    private double gpsTime;
+
+    private long coefficientRefreshes = 0;
+
+    /**
+     * Prepares the model for an epoch. The coefficients are only looked up when the time or
+     * the navigation producer differ from the previous call.
+     * @param currentTime time of the epoch
+     * @param navigationProducer navigation data containing the Klobuchar coefficients
+     * @param initialLocation initial location of the receiver
+     * @param latitude geodetic latitude of the receiver, degrees
+     * @param longitude geodetic longitude of the receiver, degrees
+     */
+    public void update(Time currentTime, NavigationProducer navigationProducer, Coordinates initialLocation, double latitude, double longitude) {
+
+        if (currentTime.getMsec() != cachedMsec || navigationProducer != cachedProducer) {
+            cachedMsec = currentTime.getMsec();
+            cachedProducer = navigationProducer;
+            gpsTime = currentTime.getGpsTime();
+
+            IonoGps iono = navigationProducer == null ?
+                    null : navigationProducer.getIono(cachedMsec, initialLocation);
+            setCoefficients(iono);
+        }
+
+        // Parameter conversion to semicircles
+        latitudeSemicircles = latitude / 180;
+        longitudeSemicircles = longitude / 180;
+    }
+
+    /**
+     * Copies the coefficients if they differ from the current ones
+     */
+    private void setCoefficients(IonoGps iono) {
+
+        if (iono == null || iono.getBeta(0) == 0) {
+            available = false;
+            return;
+        }
+
+        boolean changed = !available;
+        for (int i = 0; i < 4; i++) {
+            changed |= alpha[i] != iono.getAlpha(i) || beta[i] != iono.getBeta(i);
+            alpha[i] = iono.getAlpha(i);
+            beta[i] = iono.getBeta(i);
+        }
+
+        available = true;
+        if (changed)
+            coefficientRefreshes++;
+    }
+
+    /**
+     * @return true if broadcast coefficients were found for the last epoch
+     */
+    public boolean isAvailable() {
+        return available;
+    }
+
+    /**
+     * @return number of times the coefficients were set to new values
+     */
+    public long getCoefficientRefreshCount() {
+        return coefficientRefreshes;
+    }
+
+    /**
+     * Klobuchar algorithm
+     * @param elevation elevation of the satellite, degrees
+     * @param azimuth azimuth of the satellite, degrees
+     * @return ionospheric delay on L1, meters, 0 if no coefficients are available
+     */
+    public double getDelay(double elevation, double azimuth) {
+
+        if (!available)
+            return 0.0;
+
+        // Parameter conversion to semicircles
+        elevation = Math.abs(elevation) / 180;
+        azimuth = azimuth / 180;
+
+        // Compute the slant factor
+        double slant = 0.53 - elevation;
+        double f = 1 + 16 * slant * slant * slant;
+
+        // Compute the earth-centred angle
+        double psi = 0.0137 / (elevation + 0.11) - 0.022;
+
+        // Compute the latitude of the Ionospheric Pierce Point (IPP)
+        double phi = latitudeSemicircles + psi * Math.cos(azimuth * Math.PI);
+
+        if (phi > 0.416)
+            phi = 0.416;
+        if (phi < -0.416)
+            phi = -0.416;
+
+        // Compute the longitude of the IPP
+        double lambda = longitudeSemicircles + (psi * Math.sin(azimuth * Math.PI))
+                / Math.cos(phi * Math.PI);
+
+        // Find the geomagnetic latitude of the IPP
+        double ro = phi + 0.064 * Math.cos((lambda - 1.617) * Math.PI);
+
+        // Find the local time at the IPP
+        double t = lambda * 43200 + gpsTime;
+
+        while (t >= 86400)
+            t = t - 86400;
+
+        while (t < 0)
+            t = t + 86400;
+
+        // Compute the period of ionospheric delay
+        double p = beta[0] + ro * (beta[1] + ro * (beta[2] + ro * beta[3]));
+
+        if (p < 72000)
+            p = 72000;
+
+        // Compute the amplitude of ionospheric delay
+        double a = alpha[0] + ro * (alpha[1] + ro * (alpha[2] + ro * alpha[3]));
+
+        if (a < 0)
+            a = 0;
+
+        // Compute the phase of ionospheric delay
+        double x = (2 * Math.PI * (t - 50400)) / p;
+
+        // Compute the ionospheric correction
+        if (Math.abs(x) < 1.57) {
+            double x2 = x * x;
+            return Constants.SPEED_OF_LIGHT * f * (5e-9 + a * (1 - x2 / 2 + x2 * x2 / 24));
+        } else {
+            return Constants.SPEED_OF_LIGHT * f * 5e-9;
+        }
+    }
+}
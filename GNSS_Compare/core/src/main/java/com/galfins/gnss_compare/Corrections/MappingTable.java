@@ -0,0 +1,88 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare.Corrections;
+
+/**
+ * Lookup table of a troposphere mapping function, sampled every {@link #STEP} degrees of
+ * elevation and linearly interpolated. Below {@link #MIN_ELEVATION} the mapping functions
+ * grow too fast to be interpolated, so they are evaluated directly.
+ */
+public class MappingTable {
+
+    /**
+     * Elevation dependence of a troposphere model
+     */
+    public interface MappingFunction {
+        /**
+         * @param elevation elevation of the satellite, degrees, from 0 to 90
+         * @return value of the mapping function
+         */
+        double evaluate(double elevation);
+    }
+
+    /**
+     * sampling step of the table, degrees
+     */
+    public static final double STEP = 0.1;
+
+    /**
+     * lowest tabulated elevation, degrees
+     */
+    public static final double MIN_ELEVATION = 3.0;
+
+    private static final int SIZE = (int) Math.round((90.0 - MIN_ELEVATION) / STEP) + 1;
+
+    private final MappingFunction function;
+
+    private final double[] values = new double[SIZE];
+
+    /**
+     * Creates and fills the table
+     * @param function tabulated function
+     */
+    public MappingTable(MappingFunction function) {
+        this.function = function;
+        fill();
+    }
+
+    /**
+     * Samples the function again, must be called when the parameters of the function change
+     */
+    public void fill() {
+        for (int i = 0; i < SIZE; i++)
+            values[i] = function.evaluate(MIN_ELEVATION + i * STEP);
+    }
+
+    /**
+     * @param elevation elevation of the satellite, degrees
+     * @return interpolated value of the mapping function
+     */
+    public double get(double elevation) {
+        elevation = Math.abs(elevation);
+
+        if (elevation < MIN_ELEVATION)
+            return function.evaluate(elevation);
+
+        double position = (elevation - MIN_ELEVATION) / STEP;
+        int index = (int) position;
+        if (index >= SIZE - 1)
+            return values[SIZE - 1];
+
+        double fraction = position - index;
+        return values[index] + fraction * (values[index + 1] - values[index]);
+    }
+}
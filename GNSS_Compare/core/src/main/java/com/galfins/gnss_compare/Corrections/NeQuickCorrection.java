@@ -0,0 +1,349 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare.Corrections;
+
+import com.galfins.gogpsextracts.Log;
+
+import com.galfins.gogpsextracts.Constants;
+import com.galfins.gogpsextracts.Coordinates;
+import com.galfins.gogpsextracts.EpochGeometry;
+import com.galfins.gogpsextracts.IonoGalileo;
+import com.galfins.gogpsextracts.NavigationProducer;
+import com.galfins.gogpsextracts.SatellitePosition;
+import com.galfins.gogpsextracts.Time;
+import com.galfins.gogpsextracts.TopocentricCoordinates;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Ionospheric correction based on the NeQuick-G model, with the effective ionisation level
+ * coefficients of the Galileo navigation message. For satellites of other constellations no
+ * coefficients are available and this correction returns 0.0, as it does when the NeQuick-G
+ * maps were not installed (see {@link NeQuickData}). The delay is computed for the carrier
+ * frequency of the correction, E1 by default.
+ *
+ * The slant TEC of each satellite is kept between epochs and integrated again only when the
+ * satellite moved by more than {@link #RAY_TOLERANCE} in the sky, when the receiver moved by
+ * more than {@link #RECEIVER_TOLERANCE}, when the coefficients changed or after
+ * {@link #MAX_TEC_AGE}. The integrations run on the thread of the calling module: with the
+ * reused TECs only one or two rays are integrated per epoch, and the modules already run in
+ * parallel, so a ray pool only adds threads competing for the same processors (see
+ * NeQuickRayBenchmark).
+ */
+public class NeQuickCorrection extends Correction {
+
+    private static final String TAG = "NeQuickCorrection";
+
+    private final static String NAME = "NeQuick-G Iono Correction";
+
+    /**
+     * Change of the elevation or azimuth of a satellite above which its TEC is integrated
+     * again, degrees
+     */
+    public static final double RAY_TOLERANCE = 0.05;
+
+    /**
+     * Displacement of the receiver above which all TECs are integrated again, meters
+     */
+    public static final double RECEIVER_TOLERANCE = 100.0;
+
+    /**
+     * Time after which a TEC is integrated again, milliseconds
+     */
+    public static final long MAX_TEC_AGE = 30000;
+
+    private static final int MAX_SATELLITE_ID = 64;
+
+    private static final long MILLISEC_IN_DAY = Constants.SEC_IN_DAY * Constants.MILLISEC_IN_SEC;
+    private static final double MILLISEC_IN_HOUR = 3600000.0;
+
+    private double correctionValue;
+
+    private NeQuickG model = null;
+
+    /**
+     * false if the maps or the coefficients are missing, in which case the correction is 0
+     */
+    private boolean available = false;
+
+    private boolean missingDataReported = false;
+
+    private NavigationProducer cachedProducer = null;
+    private long cachedMsec = Long.MIN_VALUE;
+    private final double[] coefficients = new double[3];
+    private boolean coefficientsAvailable = false;
+
+    private final Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("GMT"));
+    private long cachedDay = Long.MIN_VALUE;
+    private int month;
+
+    private double receiverX = Double.NaN;
+    private double receiverY = Double.NaN;
+    private double receiverZ = Double.NaN;
+
+    // TEC of the last integration of each satellite, indexed by the satellite id
+    private final double[] tec = new double[MAX_SATELLITE_ID];
+    private final double[] tecElevation = new double[MAX_SATELLITE_ID];
+    private final double[] tecAzimuth = new double[MAX_SATELLITE_ID];
+    private final long[] tecMsec = new long[MAX_SATELLITE_ID];
+    private final char[] tecSatelliteType = new char[MAX_SATELLITE_ID];
+
+    private long integrations = 0;
+
+    public NeQuickCorrection(){
+        super();
+        Arrays.fill(tecMsec, Long.MIN_VALUE);
+    }
+
+    @Override
+    public void calculateCorrection(Time currentTime, Coordinates approximatedPose, SatellitePosition satelliteCoordinates, NavigationProducer navigationProducer, Coordinates initialLocation) {
+
+        TopocentricCoordinates topo = new TopocentricCoordinates();
+        topo.computeTopocentric(approximatedPose, satelliteCoordinates);
+
+        update(
+                currentTime,
+                navigationProducer,
+                initialLocation,
+                approximatedPose.getX(),
+                approximatedPose.getY(),
+                approximatedPose.getZ(),
+                approximatedPose.getGeodeticLatitude(),
+                approximatedPose.getGeodeticLongitude());
+
+        correctionValue = getDelay(
+                approximatedPose.getGeodeticLatitude(),
+                approximatedPose.getGeodeticLongitude(),
+                approximatedPose.getGeodeticHeight(),
+                satelliteCoordinates,
+                topo.getElevation(),
+                topo.getAzimuth());
+    }
+
+    @Override
+    public void calculateCorrection(Time currentTime, Coordinates approximatedPose, SatellitePosition satelliteCoordinates, NavigationProducer navigationProducer, Coordinates initialLocation, EpochGeometry geometry, int satelliteIndex) {
+
+        update(
+                currentTime,
+                navigationProducer,
+                initialLocation,
+                geometry.getReceiverX(),
+                geometry.getReceiverY(),
+                geometry.getReceiverZ(),
+                geometry.getReceiverLatitude(),
+                geometry.getReceiverLongitude());
+
+        correctionValue = getDelay(
+                geometry.getReceiverLatitude(),
+                geometry.getReceiverLongitude(),
+                geometry.getReceiverHeight(),
+                satelliteCoordinates,
+                geometry.getElevation(satelliteIndex),
+                geometry.getAzimuth(satelliteIndex));
+    }
+
+    /**
+     * NeQuick-G correction of all satellites of the epoch. The epoch terms of the model are
+     * computed once and the TECs are reused when possible.
+     */
+    @Override
+    public void calculateCorrections(Time currentTime, Coordinates approximatedPose, NavigationProducer navigationProducer, Coordinates initialLocation, EpochGeometry geometry, SatellitePosition[] satellitePositions, double[] corrections) {
+
+        update(
+                currentTime,
+                navigationProducer,
+                initialLocation,
+                geometry.getReceiverX(),
+                geometry.getReceiverY(),
+                geometry.getReceiverZ(),
+                geometry.getReceiverLatitude(),
+                geometry.getReceiverLongitude());
+
+        for (int i = 0; i < geometry.size(); i++) {
+            SatellitePosition satellite = satellitePositions[i];
+            if (satellite == null) {
+                corrections[i] = 0.0;
+                continue;
+            }
+
+            corrections[i] = getDelay(
+                    geometry.getReceiverLatitude(),
+                    geometry.getReceiverLongitude(),
+                    geometry.getReceiverHeight(),
+                    satellite,
+                    geometry.getElevation(i),
+                    geometry.getAzimuth(i));
+        }
+    }
+
+    /**
+     * Prepares the model for an epoch. The coefficients are only looked up when the time or
+     * the navigation producer differ from the previous call.
+     */
+    private void update(Time currentTime, NavigationProducer navigationProducer, Coordinates initialLocation, double x, double y, double z, double latitude, double longitude) {
+
+        if (model == null) {
+            NeQuickData data = NeQuickData.getInstance();
+            if (data == null) {
+                if (!missingDataReported) {
+                    Log.w(TAG, "update: NeQuick-G maps not available, correction disabled");
+                    missingDataReported = true;
+                }
+                available = false;
+                return;
+            }
+            model = new NeQuickG(data);
+        }
+
+        boolean prepare = false;
+
+        if (currentTime.getMsec() != cachedMsec || navigationProducer != cachedProducer) {
+            cachedMsec = currentTime.getMsec();
+            cachedProducer = navigationProducer;
+
+            IonoGalileo iono = navigationProducer == null ?
+                    null : navigationProducer.getIonoNeQuick(cachedMsec, initialLocation);
+            coefficientsAvailable = iono != null;
+            if (!coefficientsAvailable) {
+                available = false;
+                return;
+            }
+
+            boolean changed = false;
+            for (int i = 0; i < 3; i++) {
+                changed |= coefficients[i] != iono.getAlpha(i);
+                coefficients[i] = iono.getAlpha(i);
+            }
+            if (changed)
+                clearTec();
+
+            long day = cachedMsec / MILLISEC_IN_DAY;
+            if (day != cachedDay) {
+                calendar.setTimeInMillis(cachedMsec);
+                month = calendar.get(Calendar.MONTH) + 1;
+                cachedDay = day;
+            }
+
+            prepare = true;
+        }
+
+        if (!coefficientsAvailable)
+            return;
+
+        double dx = x - receiverX;
+        double dy = y - receiverY;
+        double dz = z - receiverZ;
+        if (!(dx * dx + dy * dy + dz * dz <= RECEIVER_TOLERANCE * RECEIVER_TOLERANCE)) {
+            receiverX = x;
+            receiverY = y;
+            receiverZ = z;
+            clearTec();
+            prepare = true;
+        }
+
+        if (prepare) {
+            double universalTime = (cachedMsec % MILLISEC_IN_DAY) / MILLISEC_IN_HOUR;
+            model.prepare(month, universalTime, coefficients[0], coefficients[1], coefficients[2], latitude, longitude);
+            available = true;
+        }
+    }
+
+    /**
+     * Delay of a single satellite, reusing its last TEC when possible
+     */
+    private double getDelay(double receiverLatitude, double receiverLongitude, double receiverHeight, SatellitePosition satellite, double elevation, double azimuth) {
+
+        if (!available)
+            return 0.0;
+
+        if (isTecValid(satellite.getSatID(), satellite.getSatType(), elevation, azimuth))
+            return tecToDelay(tec[satellite.getSatID()]);
+
+        integrations++;
+        double slantTec = model.getSlantTec(
+                receiverLatitude,
+                receiverLongitude,
+                receiverHeight,
+                satellite.getGeodeticLatitude(),
+                satellite.getGeodeticLongitude(),
+                satellite.getGeodeticHeight());
+
+        storeTec(satellite, elevation, azimuth, slantTec);
+        return tecToDelay(slantTec);
+    }
+
+    private boolean isTecValid(int id, char satelliteType, double elevation, double azimuth) {
+        if (id < 0 || id >= MAX_SATELLITE_ID || tecMsec[id] == Long.MIN_VALUE)
+            return false;
+
+        double azimuthChange = Math.abs(azimuth - tecAzimuth[id]) % 360;
+        azimuthChange = Math.min(azimuthChange, 360 - azimuthChange);
+
+        return tecSatelliteType[id] == satelliteType
+                && cachedMsec >= tecMsec[id]
+                && cachedMsec - tecMsec[id] <= MAX_TEC_AGE
+                && Math.abs(elevation - tecElevation[id]) <= RAY_TOLERANCE
+                && azimuthChange <= RAY_TOLERANCE;
+    }
+
+    private void storeTec(SatellitePosition satellite, double elevation, double azimuth, double slantTec) {
+        int id = satellite.getSatID();
+        if (id < 0 || id >= MAX_SATELLITE_ID)
+            return;
+
+        tec[id] = slantTec;
+        tecElevation[id] = elevation;
+        tecAzimuth[id] = azimuth;
+        tecMsec[id] = cachedMsec;
+        tecSatelliteType[id] = satellite.getSatType();
+    }
+
+    private void clearTec() {
+        Arrays.fill(tecMsec, Long.MIN_VALUE);
+    }
+
+    /**
+     * @return delay on the carrier frequency of the correction, meters
+     */
+    private double tecToDelay(double slantTec) {
+        double frequency = getCarrierFrequency();
+        return 40.3e16 * slantTec / (frequency * frequency);
+    }
+
+    /**
+     * @return number of slant TEC integrations since the creation of the correction
+     */
+    public long getIntegrationCount() {
+        return integrations;
+    }
+
+    @Override
+    public double getCorrection() {
+        return correctionValue;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    public static void registerClass(){
+        register(NAME, NeQuickCorrection.class);
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare.Corrections;
+
+import com.galfins.gogpsextracts.Log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StreamTokenizer;
+
+/**
+ * Maps used by the NeQuick-G model: the ITU-R (CCIR) coefficients of foF2 and M(3000)F2 for
+ * each month, and the modified dip latitude (MODIP) grid.
+ *
+ * The maps are read from the files distributed with the Galileo ionospheric correction
+ * algorithm, which are not part of the application: ccir11.asc to ccir22.asc (January to
+ * December) and modipNeQG_wrapped.asc, all in the directory set with {@link #setDataDirectory}.
+ * Each ccir file holds 2858 values, the foF2 coefficients F2[2][76][13] followed by the
+ * M(3000)F2 coefficients Fm3[2][49][9], with the last index varying fastest. The MODIP file
+ * holds 39 x 39 values in degrees, one row per latitude from -95 to 95 degrees in steps of 5,
+ * and one column per longitude from -190 to 190 degrees in steps of 10.
+ */
+public class NeQuickData {
+
+    private static final String TAG = "NeQuickData";
+
+    public static final int MONTHS = 12;
+
+    public static final int F2_COEFFICIENTS = 76;
+    public static final int F2_HARMONICS = 13;
+    public static final int FM3_COEFFICIENTS = 49;
+    public static final int FM3_HARMONICS = 9;
+
+    public static final int MODIP_ROWS = 39;
+    public static final int MODIP_COLUMNS = 39;
+
+    private static final String MODIP_FILE = "modipNeQG_wrapped.asc";
+
+    /**
+     * foF2 coefficients, [month][solar activity][coefficient][harmonic]
+     */
+    private final double[][][][] f2;
+
+    /**
+     * M(3000)F2 coefficients, [month][solar activity][coefficient][harmonic]
+     */
+    private final double[][][][] fm3;
+
+    /**
+     * MODIP grid, [latitude][longitude], degrees
+     */
+    private final double[][] modip;
+
+    private static File dataDirectory = null;
+    private static NeQuickData instance = null;
+    private static boolean loadFailed = false;
+
+    /**
+     * @param f2 foF2 coefficients, [month][solar activity][coefficient][harmonic]
+     * @param fm3 M(3000)F2 coefficients, [month][solar activity][coefficient][harmonic]
+     * @param modip MODIP grid, [latitude][longitude], degrees
+     */
+    public NeQuickData(double[][][][] f2, double[][][][] fm3, double[][] modip) {
+        this.f2 = f2;
+        this.fm3 = fm3;
+        this.modip = modip;
+    }
+
+    /**
+     * Sets the directory from which the maps are loaded, null disables the NeQuick-G model
+     */
+    public static synchronized void setDataDirectory(File directory) {
+        dataDirectory = directory;
+        instance = null;
+        loadFailed = false;
+    }
+
+    /**
+     * Checks that all the map files are present, without loading them
+     * @return true if the maps can be loaded from the data directory
+     */
+    public static synchronized boolean isInstalled() {
+        if (dataDirectory == null)
+            return false;
+
+        for (int month = 0; month < MONTHS; month++) {
+            if (!getCcirFile(dataDirectory, month).isFile())
+                return false;
+        }
+        return new File(dataDirectory, MODIP_FILE).isFile();
+    }
+
+    private static File getCcirFile(File directory, int month) {
+        return new File(directory, "ccir" + (month + 11) + ".asc");
+    }
+
+    /**
+     * Loads the maps on the first call
+     * @return the maps, or null if they are not available
+     */
+    public static synchronized NeQuickData getInstance() {
+        if (instance == null && !loadFailed && dataDirectory != null) {
+            try {
+                instance = load(dataDirectory);
+            } catch (IOException e) {
+                Log.e(TAG, "getInstance: Failed to load the NeQuick-G maps from " + dataDirectory, e);
+                loadFailed = true;
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Reads all the maps from a directory
+     * @param directory directory containing the ccir and MODIP files
+     * @return loaded maps
+     * @throws IOException if a file is missing or is too short
+     */
+    public static NeQuickData load(File directory) throws IOException {
+        double[][][][] f2 = new double[MONTHS][2][F2_COEFFICIENTS][F2_HARMONICS];
+        double[][][][] fm3 = new double[MONTHS][2][FM3_COEFFICIENTS][FM3_HARMONICS];
+        double[][] modip = new double[MODIP_ROWS][MODIP_COLUMNS];
+
+        for (int month = 0; month < MONTHS; month++) {
+            Reader reader = new BufferedReader(new FileReader(getCcirFile(directory, month)));
+            try {
+                StreamTokenizer tokenizer = createTokenizer(reader);
+                read(tokenizer, f2[month]);
+                read(tokenizer, fm3[month]);
+            } finally {
+                reader.close();
+            }
+        }
+
+        Reader reader = new BufferedReader(new FileReader(new File(directory, MODIP_FILE)));
+        try {
+            read(createTokenizer(reader), modip);
+        } finally {
+            reader.close();
+        }
+
+        return new NeQuickData(f2, fm3, modip);
+    }
+
+    /**
+     * @param month month, from 1 to 12
+     * @return foF2 coefficients of the month, [solar activity][coefficient][harmonic]
+     */
+    public double[][][] getF2(int month) {
+        return f2[month - 1];
+    }
+
+    /**
+     * @param month month, from 1 to 12
+     * @return M(3000)F2 coefficients of the month, [solar activity][coefficient][harmonic]
+     */
+    public double[][][] getFm3(int month) {
+        return fm3[month - 1];
+    }
+
+    /**
+     * Interpolates the MODIP grid with third order polynomials, first along the latitude and
+     * then along the longitude
+     * @param latitude geodetic latitude, degrees
+     * @param longitude geodetic longitude, degrees
+     * @return modified dip latitude, degrees
+     */
+    public double getModip(double latitude, double longitude) {
+        if (latitude <= -90)
+            return -90;
+        if (latitude >= 90)
+            return 90;
+
+        longitude = longitude - 360 * Math.floor((longitude + 180) / 360);
+
+        double row = (latitude + 95) / 5;
+        int firstRow = (int) Math.floor(row) - 1;
+        double rowFraction = row - Math.floor(row);
+
+        double column = (longitude + 190) / 10;
+        int firstColumn = (int) Math.floor(column) - 1;
+        double columnFraction = column - Math.floor(column);
+
+        double z0 = interpolate(modip, firstRow, firstColumn, rowFraction);
+        double z1 = interpolate(modip, firstRow, firstColumn + 1, rowFraction);
+        double z2 = interpolate(modip, firstRow, firstColumn + 2, rowFraction);
+        double z3 = interpolate(modip, firstRow, firstColumn + 3, rowFraction);
+
+        return interpolate(z0, z1, z2, z3, columnFraction);
+    }
+
+    private static double interpolate(double[][] grid, int firstRow, int column, double fraction) {
+        return interpolate(
+                grid[firstRow][column],
+                grid[firstRow + 1][column],
+                grid[firstRow + 2][column],
+                grid[firstRow + 3][column],
+                fraction);
+    }
+
+    /**
+     * Third order interpolation between z1 and z2 of four equally spaced values
+     * @param fraction position between z1 (0) and z2 (1)
+     */
+    static double interpolate(double z0, double z1, double z2, double z3, double fraction) {
+        if (Math.abs(fraction) < 1e-10)
+            return z1;
+
+        double delta = 2 * fraction - 1;
+        double g1 = z2 + z1;
+        double g2 = z2 - z1;
+        double g3 = z3 + z0;
+        double g4 = (z3 - z0) / 3;
+
+        double a0 = 9 * g1 - g3;
+        double a1 = 9 * g2 - g4;
+        double a2 = g3 - g1;
+        double a3 = g4 - g2;
+
+        return (a0 + delta * (a1 + delta * (a2 + delta * a3))) / 16;
+    }
+
+    /**
+     * @return tokenizer returning every whitespace separated value as a word
+     */
+    private static StreamTokenizer createTokenizer(Reader reader) {
+        StreamTokenizer tokenizer = new StreamTokenizer(reader);
+        tokenizer.resetSyntax();
+        tokenizer.wordChars('!', '~');
+        tokenizer.whitespaceChars(0, ' ');
+        return tokenizer;
+    }
+
+    private static void read(StreamTokenizer tokenizer, double[][][] values) throws IOException {
+        for (double[][] value : values)
+            read(tokenizer, value);
+    }
+
+    private static void read(StreamTokenizer tokenizer, double[][] values) throws IOException {
+        for (double[] row : values) {
+            for (int i = 0; i < row.length; i++) {
+                if (tokenizer.nextToken() != StreamTokenizer.TT_WORD)
+                    throw new IOException("Unexpected end of the NeQuick-G map file");
+                try {
+                    row[i] = Double.parseDouble(tokenizer.sval.replace('D', 'E'));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid value in the NeQuick-G map file: " + tokenizer.sval);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,603 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare.Corrections;
+
+/**
+ * NeQuick-G electron density model and slant TEC integration, following the Galileo single
+ * frequency ionospheric correction algorithm.
+ *
+ * {@link #prepare} computes the terms shared by all the rays of an epoch: the effective
+ * ionisation level from the broadcast coefficients and the MODIP of the receiver, the solar
+ * declination and the time series of the foF2 and M(3000)F2 maps. After it, {@link #getSlantTec}
+ * only reads the state of the model and can be called from several threads at the same time.
+ *
+ * The electron density is integrated along the ray with an adaptive Gauss-Kronrod (G7-K15)
+ * rule, with a relative tolerance of 0.001 below 1000 km and 0.01 above.
+ */
+public class NeQuickG {
+
+    private static final double EARTH_RADIUS_KM = 6371.2;
+
+    private static final double TOLERANCE_BELOW_1000_KM = 0.001;
+    private static final double TOLERANCE_ABOVE_1000_KM = 0.01;
+    private static final int MAX_LEVEL = 50;
+
+    /**
+     * Conversion of the integral of the density, 1e11 m^-3 times km, to TEC units
+     */
+    private static final double TEC_UNITS = 1e11 * 1e3 / 1e16;
+
+    // Gauss-Kronrod 7-15 nodes and weights on [-1, 1], the odd nodes are the Gauss nodes
+    private static final double[] KRONROD_NODES = {
+            0.991455371120812639206854697526329,
+            0.949107912342758524526189684047851,
+            0.864864423359769072789712788640926,
+            0.741531185599394439863864773280788,
+            0.586087235467691130294144845693013,
+            0.405845151377397166906606412076961,
+            0.207784955007898467600689403773245,
+            0.0};
+    private static final double[] KRONROD_WEIGHTS = {
+            0.022935322010529224963732008058970,
+            0.063092092629978553290700663189204,
+            0.104790010322250183839876322541518,
+            0.140653259715525918745189590510238,
+            0.169004726639267902826583426598550,
+            0.190350578064785409913256402421014,
+            0.204432940075298892414161999234649,
+            0.209482141084727828012999174891714};
+    private static final double[] GAUSS_WEIGHTS = {
+            0.129484966168869693270611432679082,
+            0.279705391489276667901467771423780,
+            0.381830050505118944950369775488975,
+            0.417959183673469387755102040816327};
+
+    /**
+     * Number of sin(MODIP) powers of each longitude order of the foF2 and M(3000)F2 maps
+     */
+    private static final int[] F2_ORDERS = {12, 12, 9, 5, 2, 1, 1, 1, 1};
+    private static final int[] FM3_ORDERS = {7, 8, 6, 3, 2, 1, 1};
+
+    private static final double ZENITH_ANGLE_LIMIT = 86.23292796211615;
+
+    private final NeQuickData data;
+
+    private int month;
+    private int season;
+    private double universalTime;
+
+    private double az;
+    private double azr;
+
+    private double sinDeclination;
+    private double cosDeclination;
+
+    private final double[] cf2 = new double[NeQuickData.F2_COEFFICIENTS];
+    private final double[] cm3 = new double[NeQuickData.FM3_COEFFICIENTS];
+
+    public NeQuickG(NeQuickData data) {
+        this.data = data;
+    }
+
+    /**
+     * Computes the terms shared by all the rays of an epoch
+     * @param month month, from 1 to 12
+     * @param universalTime universal time, hours
+     * @param ai0 first effective ionisation level coefficient, sfu
+     * @param ai1 second effective ionisation level coefficient, sfu/degree
+     * @param ai2 third effective ionisation level coefficient, sfu/degree^2
+     * @param receiverLatitude geodetic latitude of the receiver, degrees
+     * @param receiverLongitude geodetic longitude of the receiver, degrees
+     */
+    public void prepare(int month, double universalTime, double ai0, double ai1, double ai2, double receiverLatitude, double receiverLongitude) {
+        this.month = month;
+        this.universalTime = universalTime;
+
+        if (month == 1 || month == 2 || month == 11 || month == 12)
+            season = -1;
+        else if (month == 3 || month == 4 || month == 9 || month == 10)
+            season = 0;
+        else
+            season = 1;
+
+        // Effective ionisation level at the receiver, and effective sunspot number
+        if (ai0 == 0 && ai1 == 0 && ai2 == 0) {
+            az = 63.7;
+        } else {
+            double modip = data.getModip(receiverLatitude, receiverLongitude);
+            az = ai0 + ai1 * modip + ai2 * modip * modip;
+            az = Math.min(Math.max(az, 0), 400);
+        }
+        azr = Math.sqrt(167273 + (az - 63.7) * 1123.6) - 408.99;
+
+        // Solar declination
+        double dayOfYear = 30.5 * month - 15;
+        double t = dayOfYear + (18 - universalTime) / 24;
+        double am = Math.toRadians(0.9856 * t - 3.289);
+        double al = am + Math.toRadians(1.916 * Math.sin(am) + 0.020 * Math.sin(2 * am) + 282.634);
+        sinDeclination = 0.39782 * Math.sin(al);
+        cosDeclination = Math.sqrt(1 - sinDeclination * sinDeclination);
+
+        // Maps of the month, interpolated in solar activity and evaluated at the time
+        double[][][] f2 = data.getF2(month);
+        double[][][] fm3 = data.getFm3(month);
+        double weight = azr / 100;
+        double timeAngle = Math.toRadians(15 * universalTime - 180);
+
+        for (int i = 0; i < cf2.length; i++)
+            cf2[i] = timeSeries(f2[0][i], f2[1][i], weight, timeAngle);
+        for (int i = 0; i < cm3.length; i++)
+            cm3[i] = timeSeries(fm3[0][i], fm3[1][i], weight, timeAngle);
+    }
+
+    /**
+     * @return effective ionisation level of the last {@code prepare}, sfu
+     */
+    public double getEffectiveIonisationLevel() {
+        return az;
+    }
+
+    private static double timeSeries(double[] low, double[] high, double weight, double timeAngle) {
+        double value = low[0] * (1 - weight) + high[0] * weight;
+        for (int k = 1; 2 * k < low.length; k++) {
+            double sinCoefficient = low[2 * k - 1] * (1 - weight) + high[2 * k - 1] * weight;
+            double cosCoefficient = low[2 * k] * (1 - weight) + high[2 * k] * weight;
+            value += sinCoefficient * Math.sin(k * timeAngle) + cosCoefficient * Math.cos(k * timeAngle);
+        }
+        return value;
+    }
+
+    /**
+     * Integrates the electron density between the receiver and the satellite
+     * @param latitude1 geodetic latitude of the receiver, degrees
+     * @param longitude1 geodetic longitude of the receiver, degrees
+     * @param height1 height of the receiver, meters
+     * @param latitude2 geodetic latitude of the satellite, degrees
+     * @param longitude2 geodetic longitude of the satellite, degrees
+     * @param height2 height of the satellite, meters
+     * @return slant total electron content, TEC units
+     */
+    public double getSlantTec(double latitude1, double longitude1, double height1, double latitude2, double longitude2, double height2) {
+
+        Ray ray = new Ray();
+
+        double h1 = height1 / 1000;
+        double h2 = height2 / 1000;
+
+        if (Math.abs(latitude2 - latitude1) < 1e-5 && Math.abs(longitude2 - longitude1) < 1e-5) {
+            ray.setVertical(latitude1, longitude1);
+            return integrateSegments(ray, h1, h2, h1, h2, EARTH_RADIUS_KM + 1000, EARTH_RADIUS_KM + 2000);
+        }
+
+        ray.setSlant(latitude1, longitude1, EARTH_RADIUS_KM + h1, latitude2, longitude2, EARTH_RADIUS_KM + h2);
+
+        double r1 = EARTH_RADIUS_KM + h1;
+        double r2 = EARTH_RADIUS_KM + h2;
+        double s1 = r1 * ray.cosZenith;
+        double s2 = Math.sqrt(r2 * r2 - ray.perigee * ray.perigee);
+
+        return integrateSegments(
+                ray, s1, s2, h1, h2,
+                distanceAlongRay(ray, EARTH_RADIUS_KM + 1000),
+                distanceAlongRay(ray, EARTH_RADIUS_KM + 2000));
+    }
+
+    private static double distanceAlongRay(Ray ray, double radius) {
+        if (ray.vertical)
+            return radius - EARTH_RADIUS_KM;
+        return Math.sqrt(Math.max(radius * radius - ray.perigee * ray.perigee, 0));
+    }
+
+    /**
+     * Integrates from s1 to s2, split at the 1000 km and 2000 km heights
+     */
+    private double integrateSegments(Ray ray, double s1, double s2, double h1, double h2, double s1000, double s2000) {
+        if (ray.vertical) {
+            s1000 = 1000;
+            s2000 = 2000;
+        }
+
+        double tec;
+        if (h2 <= 1000) {
+            tec = integrate(ray, s1, s2, TOLERANCE_BELOW_1000_KM, 0);
+        } else if (h1 >= 2000) {
+            tec = integrate(ray, s1, s2, TOLERANCE_ABOVE_1000_KM, 0);
+        } else {
+            tec = 0;
+            if (h1 < 1000)
+                tec += integrate(ray, s1, s1000, TOLERANCE_BELOW_1000_KM, 0);
+            tec += integrate(ray, Math.max(s1, s1000), Math.min(s2, s2000), TOLERANCE_ABOVE_1000_KM, 0);
+            if (h2 > 2000)
+                tec += integrate(ray, Math.max(s1, s2000), s2, TOLERANCE_ABOVE_1000_KM, 0);
+        }
+
+        return tec * TEC_UNITS;
+    }
+
+    /**
+     * Adaptive Gauss-Kronrod integration of the electron density along the ray
+     */
+    private double integrate(Ray ray, double a, double b, double tolerance, int level) {
+        double center = (a + b) / 2;
+        double halfLength = (b - a) / 2;
+
+        double centerValue = ray.density(this, center);
+        double kronrod = centerValue * KRONROD_WEIGHTS[7];
+        double gauss = centerValue * GAUSS_WEIGHTS[3];
+
+        for (int j = 0; j < 7; j++) {
+            double offset = halfLength * KRONROD_NODES[j];
+            double sum = ray.density(this, center - offset) + ray.density(this, center + offset);
+            kronrod += KRONROD_WEIGHTS[j] * sum;
+            if (j % 2 == 1)
+                gauss += GAUSS_WEIGHTS[j / 2] * sum;
+        }
+
+        kronrod *= halfLength;
+        gauss *= halfLength;
+
+        // NaN never meets the tolerance, it is returned instead of splitting down to MAX_LEVEL
+        if (Math.abs(kronrod - gauss) <= tolerance * Math.abs(kronrod) || level == MAX_LEVEL || Double.isNaN(kronrod))
+            return kronrod;
+
+        return integrate(ray, a, center, tolerance, level + 1)
+                + integrate(ray, center, b, tolerance, level + 1);
+    }
+
+    /**
+     * @param latitude geodetic latitude, degrees
+     * @param longitude geodetic longitude, degrees
+     * @param height height, km
+     * @return electron density, m^-3
+     */
+    public double getElectronDensity(double latitude, double longitude, double height) {
+        return electronDensity(new Ray(), latitude, longitude, height) * 1e11;
+    }
+
+    /**
+     * Electron density of the NeQuick profile
+     * @param scratch arrays of the map evaluation
+     * @return electron density, 1e11 m^-3
+     */
+    private double electronDensity(Ray scratch, double latitude, double longitude, double height) {
+
+        double modip = data.getModip(latitude, longitude);
+
+        double phi = Math.toRadians(latitude);
+        double sinLatitude = Math.sin(phi);
+        double cosLatitude = Math.cos(phi);
+
+        // Effective solar zenith angle
+        double localTime = universalTime + longitude / 15;
+        double cosZenith = sinLatitude * sinDeclination
+                + cosLatitude * cosDeclination * Math.cos(Math.PI / 12 * (12 - localTime));
+        double zenith = Math.toDegrees(Math.atan2(Math.sqrt(Math.max(1 - cosZenith * cosZenith, 0)), cosZenith));
+        double zenithWeight = clipExp(12 * (zenith - ZENITH_ANGLE_LIMIT));
+        double effectiveZenith = (zenith + (90 - 0.24 * Math.exp(20 - 0.2 * zenith)) * zenithWeight)
+                / (1 + zenithWeight);
+
+        // E layer critical frequency
+        double ee = Math.exp(0.3 * latitude);
+        double seasonFactor = season * (ee - 1) / (ee + 1);
+        double foE = Math.sqrt(Math.pow(1.112 - 0.019 * seasonFactor, 2)
+                * Math.sqrt(az) * Math.pow(Math.cos(Math.toRadians(effectiveZenith)), 0.6) + 0.49);
+
+        // F2 layer critical frequency and transmission factor
+        double[] modipPowers = scratch.modipPowers;
+        double[] latitudePowers = scratch.latitudePowers;
+        double[] cosLongitude = scratch.cosLongitude;
+        double[] sinLongitude = scratch.sinLongitude;
+
+        double sinModip = Math.sin(Math.toRadians(modip));
+        modipPowers[0] = 1;
+        for (int k = 1; k < modipPowers.length; k++)
+            modipPowers[k] = modipPowers[k - 1] * sinModip;
+
+        double lambda = Math.toRadians(longitude);
+        latitudePowers[0] = 1;
+        cosLongitude[0] = 1;
+        sinLongitude[0] = 0;
+        for (int n = 1; n < latitudePowers.length; n++) {
+            latitudePowers[n] = latitudePowers[n - 1] * cosLatitude;
+            cosLongitude[n] = Math.cos(n * lambda);
+            sinLongitude[n] = Math.sin(n * lambda);
+        }
+
+        double foF2 = evaluateMap(cf2, F2_ORDERS, modipPowers, latitudePowers, cosLongitude, sinLongitude);
+        double m3000 = evaluateMap(cm3, FM3_ORDERS, modipPowers, latitudePowers, cosLongitude, sinLongitude);
+
+        // F1 layer critical frequency
+        double foF1 = foE >= 2.0 ? 1.4 * foE : 0.0;
+        if (foF1 < 1e-6)
+            foF1 = 0;
+        if (foF1 > 0.85 * foF2)
+            foF1 = 0.85 * foF2;
+
+        double nmE = 0.124 * foE * foE;
+        double nmF1 = 0.124 * foF1 * foF1;
+        double nmF2 = 0.124 * foF2 * foF2;
+
+        // Peak heights
+        double numerator = 1490 * m3000 * Math.sqrt((0.0196 * m3000 * m3000 + 1) / (1.2967 * m3000 * m3000 - 1));
+        double deltaM;
+        if (foE >= 1e-30) {
+            double ratio = foF2 / foE;
+            double ratioWeight = clipExp(20 * (ratio - 1.75));
+            ratio = (ratio * ratioWeight + 1.75) / (ratioWeight + 1);
+            deltaM = 0.253 / (ratio - 1.215) - 0.012;
+        } else {
+            deltaM = -0.012;
+        }
+        double hmF2 = numerator / (m3000 + deltaM) - 176;
+        double hmE = 120;
+        double hmF1 = (hmF2 + hmE) / 2;
+
+        // Thickness parameters
+        double b2Bottom = 0.385 * nmF2
+                / (0.01 * Math.exp(-3.467 + 0.857 * Math.log(foF2 * foF2) + 2.02 * Math.log(m3000)));
+        double b1Top = 0.3 * (hmF2 - hmF1);
+        double b1Bottom = 0.5 * (hmF1 - hmE);
+        double bETop = Math.max(b1Bottom, 7);
+        double bEBottom = 5;
+
+        // Amplitudes of the Epstein layers
+        double a1 = 4 * nmF2;
+        double a2;
+        double a3;
+        if (foF1 < 0.5) {
+            a2 = 0;
+            a3 = 4 * (nmE - epstein(a1, hmF2, b2Bottom, hmE));
+        } else {
+            a3 = 4 * nmE;
+            a2 = 0;
+            for (int i = 0; i < 5; i++) {
+                a2 = 4 * (nmF1 - epstein(a1, hmF2, b2Bottom, hmF1) - epstein(a3, hmE, bETop, hmF1));
+                double a2Weight = clipExp(a2 - 0.8 * nmF1);
+                a2 = (a2 * a2Weight + 0.8 * nmF1) / (1 + a2Weight);
+                a3 = 4 * (nmE - epstein(a2, hmF1, b1Bottom, hmE) - epstein(a1, hmF2, b2Bottom, hmE));
+            }
+        }
+        double a3Weight = clipExp(60 * (a3 - 0.005));
+        a3 = (a3 * a3Weight + 0.05) / (1 + a3Weight);
+
+        if (height <= hmF2)
+            return bottomside(height, hmE, hmF1, hmF2, a1, a2, a3, b2Bottom, b1Top, b1Bottom, bETop, bEBottom);
+
+        // Topside shape parameter
+        double ka;
+        if (month >= 4 && month <= 9)
+            ka = 6.705 - 0.014 * azr - 0.008 * hmF2;
+        else
+            ka = -7.77 + 0.097 * Math.pow(hmF2 / b2Bottom, 2) + 0.153 * nmF2;
+        double kb = (ka * clipExp(ka - 2) + 2) / (1 + clipExp(ka - 2));
+        double k = (8 * clipExp(kb - 8) + kb) / (1 + clipExp(kb - 8));
+
+        return topside(height, hmF2, nmF2, k * b2Bottom);
+    }
+
+    /**
+     * Evaluates a foF2 or M(3000)F2 map, the coefficients of each longitude order n multiply
+     * cos^n(latitude) (cos(n longitude), sin(n longitude)) and the powers of sin(MODIP)
+     */
+    private static double evaluateMap(double[] coefficients, int[] orders, double[] modipPowers, double[] latitudePowers, double[] cosLongitude, double[] sinLongitude) {
+        double value = 0;
+        for (int k = 0; k < orders[0]; k++)
+            value += coefficients[k] * modipPowers[k];
+
+        int index = orders[0];
+        for (int n = 1; n < orders.length; n++) {
+            double cosTerm = latitudePowers[n] * cosLongitude[n];
+            double sinTerm = latitudePowers[n] * sinLongitude[n];
+            for (int k = 0; k < orders[n]; k++) {
+                value += (coefficients[index] * cosTerm + coefficients[index + 1] * sinTerm) * modipPowers[k];
+                index += 2;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Exponential of the smooth joins of the model, clipped at +-80 as in the reference
+     * implementation. The joins divide two large exponentials, which would give NaN once they
+     * overflow, e.g. for the solar zenith angles of the night.
+     */
+    private static double clipExp(double x) {
+        if (x > 80)
+            return 5.5406e34;
+        if (x < -80)
+            return 1.8049e-35;
+        return Math.exp(x);
+    }
+
+    /**
+     * Epstein function
+     */
+    static double epstein(double peak, double peakHeight, double thickness, double height) {
+        double exponential = Math.exp((height - peakHeight) / thickness);
+        return peak * exponential / Math.pow(1 + exponential, 2);
+    }
+
+    /**
+     * Sum of the E, F1 and F2 semi-Epstein layers below the F2 peak, with a Chapman-like
+     * decay below 100 km
+     */
+    private static double bottomside(double height, double hmE, double hmF1, double hmF2, double a1, double a2, double a3, double b2Bottom, double b1Top, double b1Bottom, double bETop, double bEBottom) {
+
+        double h = Math.max(height, 100);
+
+        double bE = h > hmE ? bETop : bEBottom;
+        double bF1 = h > hmF1 ? b1Top : b1Bottom;
+
+        double fade = Math.exp(10 / (1 + Math.abs(h - hmF2)));
+        double[] amplitudes = {a1, a2, a3};
+        double[] thicknesses = {b2Bottom, bF1, bE};
+        double[] arguments = {
+                (h - hmF2) / b2Bottom,
+                (h - hmF1) / bF1 * fade,
+                (h - hmE) / bE * fade};
+
+        double density = 0;
+        double derivative = 0;
+        for (int i = 0; i < 3; i++) {
+            if (Math.abs(arguments[i]) > 25)
+                continue;
+            double exponential = Math.exp(arguments[i]);
+            double layer = amplitudes[i] * exponential / Math.pow(1 + exponential, 2);
+            density += layer;
+            derivative += layer * (1 - exponential) / (1 + exponential) / thicknesses[i];
+        }
+
+        if (height >= 100)
+            return density;
+
+        double bc = 1 - 10 * derivative / density;
+        double z = (height - 100) / 10;
+        return density * Math.exp(1 - bc * z - Math.exp(-z));
+    }
+
+    /**
+     * Semi-Epstein layer above the F2 peak, with a thickness growing with the height
+     */
+    private static double topside(double height, double hmF2, double nmF2, double h0) {
+        final double g = 0.125;
+        final double r = 100;
+
+        double deltaHeight = height - hmF2;
+        double z = deltaHeight / (h0 * (1 + r * g * deltaHeight / (r * h0 + g * deltaHeight)));
+        double exponential = Math.exp(z);
+
+        if (exponential > 1e11)
+            return 4 * nmF2 / exponential;
+        return 4 * nmF2 * exponential / Math.pow(1 + exponential, 2);
+    }
+
+    /**
+     * Straight line between the receiver and the satellite, with the scratch arrays of the
+     * density evaluation. Each thread integrates its own rays.
+     */
+    private static class Ray {
+
+        boolean vertical;
+
+        // vertical rays
+        double latitude;
+        double longitude;
+
+        // slant rays, described from their perigee
+        double cosZenith;
+        double perigee;
+        double sinPerigeeLatitude;
+        double cosPerigeeLatitude;
+        double perigeeLongitude;
+        double sinAzimuth;
+        double cosAzimuth;
+
+        final double[] modipPowers = new double[12];
+        final double[] latitudePowers = new double[9];
+        final double[] cosLongitude = new double[9];
+        final double[] sinLongitude = new double[9];
+
+        void setVertical(double latitude, double longitude) {
+            vertical = true;
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+
+        void setSlant(double latitude1, double longitude1, double r1, double latitude2, double longitude2, double r2) {
+            vertical = false;
+
+            double phi1 = Math.toRadians(latitude1);
+            double phi2 = Math.toRadians(latitude2);
+            double lambda1 = Math.toRadians(longitude1);
+            double lambda2 = Math.toRadians(longitude2);
+
+            double sinPhi1 = Math.sin(phi1);
+            double cosPhi1 = Math.cos(phi1);
+            double sinPhi2 = Math.sin(phi2);
+            double cosPhi2 = Math.cos(phi2);
+
+            // Zenith angle of the satellite at the receiver, and radius of the ray perigee
+            double cosDelta = sinPhi1 * sinPhi2 + cosPhi1 * cosPhi2 * Math.cos(lambda2 - lambda1);
+            double sinDelta = Math.sqrt(Math.max(1 - cosDelta * cosDelta, 0));
+            double zenith = Math.atan2(sinDelta, cosDelta - r1 / r2);
+            cosZenith = Math.cos(zenith);
+            perigee = r1 * Math.sin(zenith);
+
+            // Azimuth of the satellite at the receiver
+            double sinSigma;
+            double cosSigma;
+            if (Math.abs(cosPhi1) < 1e-10) {
+                sinSigma = 0;
+                cosSigma = phi1 > 0 ? -1 : 1;
+            } else {
+                sinSigma = Math.sin(lambda2 - lambda1) * cosPhi2 / sinDelta;
+                cosSigma = (sinPhi2 - cosDelta * sinPhi1) / (sinDelta * cosPhi1);
+            }
+
+            // The perigee is at the angular distance 90 - zenith from the receiver, opposite
+            // to the satellite
+            double deltaPerigee = Math.PI / 2 - zenith;
+            double sinDeltaPerigee = Math.sin(deltaPerigee);
+            double cosDeltaPerigee = Math.cos(deltaPerigee);
+            sinPerigeeLatitude = sinPhi1 * cosDeltaPerigee - cosPhi1 * sinDeltaPerigee * cosSigma;
+            cosPerigeeLatitude = Math.sqrt(Math.max(1 - sinPerigeeLatitude * sinPerigeeLatitude, 0));
+            double perigeeLambda = lambda1 + Math.atan2(
+                    -sinSigma * sinDeltaPerigee * cosPhi1,
+                    cosDeltaPerigee - sinPhi1 * sinPerigeeLatitude);
+            perigeeLongitude = perigeeLambda;
+
+            // Azimuth of the satellite at the perigee
+            double cosPsi = sinPerigeeLatitude * sinPhi2
+                    + cosPerigeeLatitude * cosPhi2 * Math.cos(lambda2 - perigeeLambda);
+            double sinPsi = Math.sqrt(Math.max(1 - cosPsi * cosPsi, 0));
+            if (cosPerigeeLatitude < 1e-10 || sinPsi < 1e-10) {
+                sinAzimuth = 0;
+                cosAzimuth = sinPerigeeLatitude > 0 ? -1 : 1;
+            } else {
+                sinAzimuth = Math.sin(lambda2 - perigeeLambda) * cosPhi2 / sinPsi;
+                cosAzimuth = (sinPhi2 - sinPerigeeLatitude * cosPsi) / (cosPerigeeLatitude * sinPsi);
+            }
+        }
+
+        /**
+         * @param s distance from the perigee for slant rays, height for vertical rays, km
+         * @return electron density, 1e11 m^-3
+         */
+        double density(NeQuickG model, double s) {
+            if (vertical)
+                return model.electronDensity(this, latitude, longitude, s);
+
+            double height = Math.sqrt(s * s + perigee * perigee) - EARTH_RADIUS_KM;
+
+            double delta = Math.atan2(s, perigee);
+            double sinDelta = Math.sin(delta);
+            double cosDelta = Math.cos(delta);
+
+            double sinLatitude = sinPerigeeLatitude * cosDelta + cosPerigeeLatitude * sinDelta * cosAzimuth;
+            double cosLatitude = Math.sqrt(Math.max(1 - sinLatitude * sinLatitude, 0));
+            double pointLongitude = perigeeLongitude + Math.atan2(
+                    sinDelta * sinAzimuth * cosPerigeeLatitude,
+                    cosDelta - sinPerigeeLatitude * sinLatitude);
+
+            return model.electronDensity(
+                    this,
+                    Math.toDegrees(Math.atan2(sinLatitude, cosLatitude)),
+                    Math.toDegrees(pointLongitude),
+                    height);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare.Corrections;
+
+import com.galfins.gogpsextracts.Constants;
+
+/**
+ * Saastamoinen troposphere model with standard atmosphere values, valid up to 5000 m:
+ *
+ *      delay = 0.002277 / sin(E) * (P + (1255 / T + 0.05) * e) - 0.002277 * B / (sin(E) * tan^2(E))
+ *
+ * The two elevation terms do not depend on the receiver, so their tables are shared by all
+ * instances.
+ */
+public class SaastamoinenModel extends TroposphereModel {
+
+    /**
+     * maximum receiver height supported by the model, meters
+     */
+    public static final double MAX_HEIGHT = 5000;
+
+    private static final MappingTable COSECANT = new MappingTable(new MappingTable.MappingFunction() {
+        @Override
+        public double evaluate(double elevation) {
+            return 1.0 / Math.sin(toRadians(elevation));
+        }
+    });
+
+    private static final MappingTable HEIGHT_FACTOR_MAPPING = new MappingTable(new MappingTable.MappingFunction() {
+        @Override
+        public double evaluate(double elevation) {
+            double radians = toRadians(elevation);
+            return 1.0 / (Math.sin(radians) * Math.pow(Math.tan(radians), 2));
+        }
+    });
+
+    // Numerical constants and tables for Saastamoinen algorithm
+    // (troposphere correction)
+    private static final double hr = 50.0;
+    private static final int[] ha = {0, 500, 1000, 1500, 2000, 2500, 3000, 4000, 5000 };
+    private static final double[] ba = { 1.156, 1.079, 1.006, 0.938, 0.874, 0.813, 0.757, 0.654, 0.563 };
+
+    public SaastamoinenModel() {
+        firstMapping = COSECANT;
+        secondMapping = HEIGHT_FACTOR_MAPPING;
+    }
+
+    @Override
+    protected void computeZenithTerms(double latitude, double height, int dayOfYear) {
+
+        if (height > MAX_HEIGHT) {
+            firstZenith = 0;
+            secondZenith = 0;
+            return;
+        }
+
+        firstZenith = 0.002277 * (pressure(height) + wetTerm(height));
+        secondZenith = -0.002277 * heightFactor(height);
+    }
+
+    /**
+     * @param elevation elevation, degrees
+     * @return elevation in radians, moved away from 0 where the mapping functions are not defined
+     */
+    private static double toRadians(double elevation) {
+        double radians = Math.toRadians(Math.abs(elevation));
+        if (radians == 0){
+            radians = radians + 0.01;
+        }
+        return radians;
+    }
+
+    private static double pressure(double height) {
+        return Constants.STANDARD_PRESSURE * Math.pow((1 - 0.0000226 * height), 5.225);
+    }
+
+    private static double heightFactor(double height) {
+        // If height is below zero, keep the maximum correction value
+        double B = ba[0];
+        // Otherwise, interpolate the tables
+        if (height >= 0) {
+            int i = 1;
+            while (height > ha[i]) {
+                i++;
+            }
+            double m = (ba[i] - ba[i - 1]) / (ha[i] - ha[i - 1]);
+            B = ba[i - 1] + m * (height - ha[i - 1]);
+        }
+        return B;
+    }
+
+    private static double wetTerm(double height) {
+        double T = Constants.STANDARD_TEMPERATURE - 0.0065 * height;
+        double H = hr * Math.exp(-0.0006396 * height);
+
+        double e = 0.01
+                * H
+                * Math.exp(-37.2465 + 0.213166 * T - 0.000256908
+                * Math.pow(T, 2));
+
+        return (1255 / T + 0.05) * e;
+    }
+}
@@ -16,16 +16,13 @@
 
 package com.galfins.gnss_compare.Corrections;
 
-import android.location.Location;
-
 import com.galfins.gogpsextracts.Coordinates;
+import com.galfins.gogpsextracts.EpochGeometry;
 import com.galfins.gogpsextracts.NavigationProducer;
 import com.galfins.gogpsextracts.SatellitePosition;
 import com.galfins.gogpsextracts.Time;
 import com.galfins.gogpsextracts.Constants;
 
-import org.ejml.simple.SimpleMatrix;
-
 /**
  * Created by Sebastian Ciuban on 10/02/2018.
  *
@@ -44,13 +41,54 @@ public class ShapiroCorrection extends Correction {
     }
 
     @Override
-    public void calculateCorrection(Time currentTime, Coordinates approximatedPose, SatellitePosition satelliteCoordinates, NavigationProducer navigationProducer, Location initialLocation) {
-        // Compute the difference vector between the receiver and the satellite
-        SimpleMatrix diff = approximatedPose.minusXYZ(satelliteCoordinates);
-
+    public void calculateCorrection(Time currentTime, Coordinates approximatedPose, SatellitePosition satelliteCoordinates, NavigationProducer navigationProducer, Coordinates initialLocation) {
         // Compute the geometric distance between the receiver and the satellite
+        double geomDist = approximatedPose.distanceTo(satelliteCoordinates);
+
+        calculateCorrection(approximatedPose, satelliteCoordinates, geomDist);
+    }
+
+    @Override
+    public void calculateCorrection(Time currentTime, Coordinates approximatedPose, SatellitePosition satelliteCoordinates, NavigationProducer navigationProducer, Coordinates initialLocation, EpochGeometry geometry, int satelliteIndex) {
+
+        calculateCorrection(approximatedPose, satelliteCoordinates, geometry.getRange(satelliteIndex));
+    }
+
+    /**
+     * Shapiro delay of all satellites of the epoch. The satellite positions are recovered from
+     * the range and the line of sight in the geometry.
+     */
+    @Override
+    public void calculateCorrections(Time currentTime, Coordinates approximatedPose, NavigationProducer navigationProducer, Coordinates initialLocation, EpochGeometry geometry, SatellitePosition[] satellitePositions, double[] corrections) {
+
+        double rxX = geometry.getReceiverX();
+        double rxY = geometry.getReceiverY();
+        double rxZ = geometry.getReceiverZ();
+
+        // Compute the geocentric distance of the receiver, once for all satellites
+        double geoDistRx = Math.sqrt(rxX * rxX + rxY * rxY + rxZ * rxZ);
+
+        double factor = (2.0 * Constants.EARTH_GRAVITATIONAL_CONSTANT) / (Constants.SPEED_OF_LIGHT * Constants.SPEED_OF_LIGHT);
+
+        for (int i = 0; i < geometry.size(); i++) {
+            if (satellitePositions[i] == null) {
+                corrections[i] = 0.0;
+                continue;
+            }
+
+            double geomDist = geometry.getRange(i);
+
+            double svX = rxX + geomDist * geometry.getLineOfSightX(i);
+            double svY = rxY + geomDist * geometry.getLineOfSightY(i);
+            double svZ = rxZ + geomDist * geometry.getLineOfSightZ(i);
+
+            double geoDistSv = Math.sqrt(svX * svX + svY * svY + svZ * svZ);
+
+            corrections[i] = factor * Math.log((geoDistSv + geoDistRx + geomDist) / (geoDistSv + geoDistRx - geomDist));
+        }
+    }
 
-        double geomDist = Math.sqrt(Math.pow(diff.get(0), 2) + Math.pow(diff.get(1), 2) + Math.pow(diff.get(2), 2));
+    private void calculateCorrection(Coordinates approximatedPose, Coordinates satelliteCoordinates, double geomDist) {
 
         // Compute the geocentric distance of the receiver
         double geoDistRx = Math.sqrt(Math.pow(approximatedPose.getX(), 2) + Math.pow(approximatedPose.getY(), 2) + Math.pow(approximatedPose.getZ(), 2));
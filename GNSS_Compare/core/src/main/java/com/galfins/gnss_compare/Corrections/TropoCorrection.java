@@ -0,0 +1,100 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare.Corrections;
+
+import com.galfins.gogpsextracts.Coordinates;
+import com.galfins.gogpsextracts.EpochGeometry;
+import com.galfins.gogpsextracts.NavigationProducer;
+import com.galfins.gogpsextracts.SatellitePosition;
+import com.galfins.gogpsextracts.Time;
+import com.galfins.gogpsextracts.TopocentricCoordinates;
+
+/**
+ * Created by Sebastian Ciuban on 10/02/2018.
+ *
+ * Correction for the delay caused by the troposphere to the pseudoranges
+ *
+ * The implemented model is Saastamoinen's. The terms depending on the receiver are computed by
+ * a {@link TroposphereModel} once per receiver position, and extending classes can pass another
+ * model to the constructor.
+ *
+ */
+
+public class TropoCorrection extends Correction {
+
+    private final static String NAME = "Tropospheric correction";
+
+    private final TroposphereModel model;
+
+    private double correctionValue;
+
+    public TropoCorrection() {
+        this(new SaastamoinenModel());
+    }
+
+    /**
+     * @param model troposphere model used by the correction
+     */
+    protected TropoCorrection(TroposphereModel model) {
+        this.model = model;
+    }
+
+    @Override
+    public void calculateCorrection(Time currentTime, Coordinates approximatedPose, SatellitePosition satelliteCoordinates, NavigationProducer navigationProducer, Coordinates initialLocation) {
+
+        // Compute the elevation and azimuth angles for each satellite
+        TopocentricCoordinates topo = new TopocentricCoordinates();
+        topo.computeTopocentric(approximatedPose, satelliteCoordinates);
+
+        model.update(currentTime, approximatedPose.getGeodeticLatitude(), approximatedPose.getGeodeticHeight());
+        correctionValue = model.getDelay(topo.getElevation());
+    }
+
+    @Override
+    public void calculateCorrection(Time currentTime, Coordinates approximatedPose, SatellitePosition satelliteCoordinates, NavigationProducer navigationProducer, Coordinates initialLocation, EpochGeometry geometry, int satelliteIndex) {
+
+        model.update(currentTime, geometry.getReceiverLatitude(), geometry.getReceiverHeight());
+        correctionValue = model.getDelay(geometry.getElevation(satelliteIndex));
+    }
+
+    /**
+     * Troposphere correction of all satellites of the epoch, the zenith terms are only
+     * recomputed when the receiver moved
+     */
+    @Override
+    public void calculateCorrections(Time currentTime, Coordinates approximatedPose, NavigationProducer navigationProducer, Coordinates initialLocation, EpochGeometry geometry, SatellitePosition[] satellitePositions, double[] corrections) {
+
+        model.update(currentTime, geometry.getReceiverLatitude(), geometry.getReceiverHeight());
+
+        for (int i = 0; i < geometry.size(); i++)
+            corrections[i] = satellitePositions[i] == null ? 0.0 : model.getDelay(geometry.getElevation(i));
+    }
+
+    @Override
+    public double getCorrection() {
+        return correctionValue;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    public static void registerClass(){
+        register(NAME, TropoCorrection.class);
+    }
+}
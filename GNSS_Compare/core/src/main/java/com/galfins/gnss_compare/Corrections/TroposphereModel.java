@@ -0,0 +1,101 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare.Corrections;
+
+import com.galfins.gogpsextracts.Constants;
+import com.galfins.gogpsextracts.Time;
+
+/**
+ * Troposphere model written as the sum of two terms, each a zenith term depending only on the
+ * receiver multiplied by a mapping function of the elevation:
+ *
+ *      delay = firstZenith * firstMapping(elevation) + secondZenith * secondMapping(elevation)
+ *
+ * The zenith terms are only recomputed when the receiver moves by more than
+ * {@link #HEIGHT_THRESHOLD} in height or {@link #LATITUDE_THRESHOLD} in latitude, or when the
+ * day of year changes, so that the evaluation per satellite is a table lookup.
+ */
+public abstract class TroposphereModel {
+
+    /**
+     * height change which triggers a recomputation of the zenith terms, meters
+     */
+    public static final double HEIGHT_THRESHOLD = 1.0;
+
+    /**
+     * latitude change which triggers a recomputation of the zenith terms, degrees
+     */
+    public static final double LATITUDE_THRESHOLD = 0.01;
+
+    private static final long MILLISEC_IN_DAY = Constants.SEC_IN_DAY * Constants.MILLISEC_IN_SEC;
+
+    private double cachedLatitude = Double.NaN;
+    private double cachedHeight = Double.NaN;
+    private long cachedDay = Long.MIN_VALUE;
+    private int dayOfYear = 1;
+
+    protected double firstZenith;
+    protected double secondZenith;
+
+    protected MappingTable firstMapping;
+    protected MappingTable secondMapping;
+
+    /**
+     * Recomputes the zenith terms if the receiver moved beyond the thresholds
+     * @param time time of the epoch
+     * @param latitude geodetic latitude of the receiver, degrees
+     * @param height ellipsoidal height of the receiver, meters
+     */
+    public void update(Time time, double latitude, double height) {
+        boolean changed = false;
+
+        // the calendar is only consulted when the UTC day changes
+        long day = time.getMsec() / MILLISEC_IN_DAY;
+        if (day != cachedDay) {
+            cachedDay = day;
+            dayOfYear = time.getDayOfYear();
+            changed = true;
+        }
+
+        if (!(Math.abs(height - cachedHeight) <= HEIGHT_THRESHOLD)
+                || !(Math.abs(latitude - cachedLatitude) <= LATITUDE_THRESHOLD)) {
+            cachedHeight = height;
+            cachedLatitude = latitude;
+            changed = true;
+        }
+
+        if (changed)
+            computeZenithTerms(cachedLatitude, cachedHeight, dayOfYear);
+    }
+
+    /**
+     * @param elevation elevation of the satellite, degrees
+     * @return tropospheric delay, meters, for the receiver of the last {@code update}
+     */
+    public double getDelay(double elevation) {
+        return firstZenith * firstMapping.get(elevation) + secondZenith * secondMapping.get(elevation);
+    }
+
+    /**
+     * Computes {@code firstZenith} and {@code secondZenith}, and refills the mapping tables if
+     * they depend on the receiver
+     * @param latitude geodetic latitude of the receiver, degrees
+     * @param height ellipsoidal height of the receiver, meters
+     * @param dayOfYear day of year, from 1
+     */
+    protected abstract void computeZenithTerms(double latitude, double height, int dayOfYear);
+}
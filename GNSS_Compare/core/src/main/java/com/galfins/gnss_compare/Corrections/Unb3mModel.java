@@ -0,0 +1,195 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare.Corrections;
+
+/**
+ * UNB3m troposphere model (Leandro, Santos and Langley, 2006): the meteorological parameters
+ * are interpolated from a latitude and day of year table, the zenith delays follow
+ * Saastamoinen (hydrostatic) and Askne and Nordius (wet), and the Niell mapping functions map
+ * them to the elevation of the satellites.
+ *
+ * The Niell mapping functions depend on the latitude, the day of year and the height of the
+ * receiver, so their tables are refilled together with the zenith delays.
+ */
+public class Unb3mModel extends TroposphereModel {
+
+    // Latitudes of the tables, degrees
+    private static final double[] LATITUDES = {15, 30, 45, 60, 75};
+
+    // Average and seasonal amplitude of pressure [mbar], temperature [K], relative humidity [%],
+    // temperature lapse rate [K/m] and water vapour lapse rate
+    private static final double[][] MET_AVERAGE = {
+            {1013.25, 299.65, 75.0, 6.30e-3, 2.77},
+            {1017.25, 294.15, 80.0, 6.05e-3, 3.15},
+            {1015.75, 283.15, 76.0, 5.58e-3, 2.57},
+            {1011.75, 272.15, 77.5, 5.39e-3, 1.81},
+            {1013.00, 263.65, 82.5, 4.53e-3, 1.55}};
+    private static final double[][] MET_AMPLITUDE = {
+            {0.00, 0.00, 0.0, 0.00e-3, 0.00},
+            {-3.75, 7.00, 0.0, 0.25e-3, 0.33},
+            {-2.25, 11.00, -1.0, 0.32e-3, 0.46},
+            {-1.75, 15.00, -2.5, 0.81e-3, 0.74},
+            {-0.50, 14.50, 2.5, 0.62e-3, 0.30}};
+
+    // Niell hydrostatic mapping function coefficients a, b, c
+    private static final double[][] HYDROSTATIC_AVERAGE = {
+            {1.2769934e-3, 2.9153695e-3, 62.610505e-3},
+            {1.2683230e-3, 2.9152299e-3, 62.837393e-3},
+            {1.2465397e-3, 2.9288445e-3, 63.721774e-3},
+            {1.2196049e-3, 2.9022565e-3, 63.824265e-3},
+            {1.2045996e-3, 2.9024912e-3, 64.258455e-3}};
+    private static final double[][] HYDROSTATIC_AMPLITUDE = {
+            {0.0, 0.0, 0.0},
+            {1.2709626e-5, 2.1414979e-5, 9.0128400e-5},
+            {2.6523662e-5, 3.0160779e-5, 4.3497037e-5},
+            {3.4000452e-5, 7.2562722e-5, 84.795348e-5},
+            {4.1202191e-5, 11.723375e-5, 170.37206e-5}};
+    private static final double[] HEIGHT_COEFFICIENTS = {2.53e-5, 5.49e-3, 1.14e-3};
+
+    // Niell wet mapping function coefficients a, b, c
+    private static final double[][] WET = {
+            {5.8021897e-4, 1.4275268e-3, 4.3472961e-2},
+            {5.6794847e-4, 1.5138625e-3, 4.6729510e-2},
+            {5.8118019e-4, 1.4572752e-3, 4.3908931e-2},
+            {5.9727542e-4, 1.5007428e-3, 4.4626982e-2},
+            {6.1641693e-4, 1.7599082e-3, 5.4736038e-2}};
+
+    private static final double EXCENTRICITY_SQUARED = 6.6943799901413e-3;
+    private static final double MD = 28.9644;
+    private static final double MW = 18.0152;
+    private static final double K1 = 77.604;
+    private static final double K2 = 64.79;
+    private static final double K3 = 3.776e5;
+    private static final double R = 8314.34;
+    private static final double C1 = 2.2768e-3;
+    private static final double K2_PRIME = K2 - K1 * (MW / MD);
+    private static final double RD = R / MD;
+    private static final double G = 9.80665;
+
+    /**
+     * Niell coefficients of the receiver of the last update, read by the mapping tables
+     */
+    private final double[] hydrostatic = new double[3];
+    private final double[] wet = new double[3];
+    private double heightKilometers;
+
+    private final double[] met = new double[5];
+
+    public Unb3mModel() {
+        firstMapping = new MappingTable(new MappingTable.MappingFunction() {
+            @Override
+            public double evaluate(double elevation) {
+                double sinElevation = Math.sin(Math.toRadians(Math.max(elevation, 0.01)));
+                return continuedFraction(sinElevation, hydrostatic[0], hydrostatic[1], hydrostatic[2])
+                        + (1.0 / sinElevation - continuedFraction(sinElevation,
+                                HEIGHT_COEFFICIENTS[0],
+                                HEIGHT_COEFFICIENTS[1],
+                                HEIGHT_COEFFICIENTS[2])) * heightKilometers;
+            }
+        });
+
+        secondMapping = new MappingTable(new MappingTable.MappingFunction() {
+            @Override
+            public double evaluate(double elevation) {
+                double sinElevation = Math.sin(Math.toRadians(Math.max(elevation, 0.01)));
+                return continuedFraction(sinElevation, wet[0], wet[1], wet[2]);
+            }
+        });
+    }
+
+    @Override
+    protected void computeZenithTerms(double latitude, double height, int dayOfYear) {
+
+        // Seasonal phase, shifted by half a year in the southern hemisphere
+        double day = dayOfYear;
+        if (latitude < 0)
+            day += 182.625;
+        double cosPhase = Math.cos((day - 28) * 2 * Math.PI / 365.25);
+
+        double absLatitude = Math.abs(latitude);
+        interpolate(MET_AVERAGE, MET_AMPLITUDE, absLatitude, cosPhase, met);
+        interpolate(HYDROSTATIC_AVERAGE, HYDROSTATIC_AMPLITUDE, absLatitude, cosPhase, hydrostatic);
+        interpolate(WET, null, absLatitude, cosPhase, wet);
+
+        double p0 = met[0];
+        double t0 = met[1];
+        double rh0 = met[2];
+        double beta = met[3];
+        double lambda = met[4];
+
+        // Water vapour pressure at mean sea level
+        double es = 0.01 * Math.exp(1.2378847e-5 * t0 * t0 - 1.9121316e-2 * t0
+                + 33.93711047 - 6.3431645e3 / t0);
+        double fw = 1.00062 + 3.14e-6 * p0 + 5.6e-7 * Math.pow(t0 - 273.15, 2);
+        double e0 = rh0 / 100 * es * fw;
+
+        // Meteorological parameters at the receiver height
+        double ep = lambda + 1;
+        double t = t0 - beta * height;
+        double p = p0 * Math.pow(t / t0, G / (RD * beta));
+        double e = e0 * Math.pow(t / t0, ep * G / (RD * beta));
+
+        // Gravity at the mass centre of the atmospheric column
+        double geocentricLatitude = Math.atan((1 - EXCENTRICITY_SQUARED) * Math.tan(Math.toRadians(latitude)));
+        double gravityFactor = 1 - 2.66e-3 * Math.cos(2 * geocentricLatitude) - 2.8e-7 * height;
+        double gm = 9.784 * gravityFactor;
+
+        // Mean temperature of the water vapour
+        double tm = t * (1 - beta * RD / (ep * gm));
+
+        firstZenith = C1 / gravityFactor * p;
+        secondZenith = 1.0e-6 * (tm * K2_PRIME + K3) * RD / (gm * ep - beta * RD) * e / t;
+
+        heightKilometers = height / 1000;
+        firstMapping.fill();
+        secondMapping.fill();
+    }
+
+    /**
+     * Interpolates the rows of a latitude table, average minus amplitude times the seasonal phase
+     * @param amplitude amplitude table, null if the parameters have no seasonal variation
+     */
+    private static void interpolate(double[][] average, double[][] amplitude, double latitude, double cosPhase, double[] result) {
+        int upper = 0;
+        while (upper < LATITUDES.length && latitude > LATITUDES[upper])
+            upper++;
+
+        int lower = upper;
+        double fraction = 0;
+        if (upper == LATITUDES.length) {
+            upper = lower = LATITUDES.length - 1;
+        } else if (upper > 0) {
+            lower = upper - 1;
+            fraction = (latitude - LATITUDES[lower]) / (LATITUDES[upper] - LATITUDES[lower]);
+        }
+
+        for (int i = 0; i < result.length; i++) {
+            double value = average[lower][i] + fraction * (average[upper][i] - average[lower][i]);
+            if (amplitude != null)
+                value -= (amplitude[lower][i] + fraction * (amplitude[upper][i] - amplitude[lower][i])) * cosPhase;
+            result[i] = value;
+        }
+    }
+
+    /**
+     * Marini continued fraction, normalized to one at the zenith
+     */
+    private static double continuedFraction(double sinElevation, double a, double b, double c) {
+        return (1 + a / (1 + b / (1 + c)))
+                / (sinElevation + a / (sinElevation + b / (sinElevation + c)));
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare.Corrections;
+
+/**
+ * Correction for the delay caused by the troposphere to the pseudoranges, computed with the
+ * UNB3m model and the Niell mapping functions
+ */
+public class Unb3mTropoCorrection extends TropoCorrection {
+
+    private final static String NAME = "Tropospheric correction (UNB3m)";
+
+    public Unb3mTropoCorrection() {
+        super(new Unb3mModel());
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    public static void registerClass(){
+        register(NAME, Unb3mTropoCorrection.class);
+    }
+}
@@ -16,9 +16,7 @@
 
 package com.galfins.gnss_compare.FileLoggers;
 
-import android.location.GnssMeasurementsEvent;
-import android.os.Environment;
-import android.util.Log;
+import com.galfins.gogpsextracts.Log;
 
 import java.io.BufferedWriter;
 import java.io.File;
@@ -48,6 +46,22 @@ public abstract class FileLogger {
     protected File mFile;
     private boolean isStarted = false;
 
+    /**
+     * Directory in which each logger creates its own subdirectory, set by the platform
+     */
+    private static File baseDirectory = null;
+
+    /**
+     * Sets the directory in which the logs are written, null disables the logging
+     */
+    public static synchronized void setBaseDirectory(File directory) {
+        baseDirectory = directory;
+    }
+
+    public static synchronized File getBaseDirectory() {
+        return baseDirectory;
+    }
+
     public void setName(String calculationName) { filePrefix = calculationName; }
 
     public boolean isStarted() {
@@ -59,16 +73,16 @@ public abstract class FileLogger {
      */
     public void startNewLog() {
         synchronized (mFileLock) {
-            File baseDirectory;
-            String state = Environment.getExternalStorageState();
-            if (Environment.MEDIA_MOUNTED.equals(state)) {
-                baseDirectory = new File(Environment.getExternalStorageDirectory(), "GNSS Compare/" + filePrefix);
-                baseDirectory.mkdirs();
-            } else if (Environment.MEDIA_MOUNTED_READ_ONLY.equals(state)) {
-                Log.w(TAG, "Cannot write to external storage.");
+            File rootDirectory = getBaseDirectory();
+            if (rootDirectory == null) {
+                Log.w(TAG, "No directory set for the logs.");
                 return;
-            } else {
-                Log.w(TAG, "Cannot read external storage.");
+            }
+
+            File baseDirectory = new File(rootDirectory, filePrefix);
+            baseDirectory.mkdirs();
+            if (!baseDirectory.canWrite()) {
+                Log.w(TAG, "Cannot write to " + baseDirectory);
                 return;
             }
 
@@ -138,8 +152,6 @@ public abstract class FileLogger {
         }
     }
 
-    public void onGnssMeasurementsReceived(GnssMeasurementsEvent event) {}
-
     /**
      * @return Name of the File Logger, which is to be displayed in the UI
      */
@@ -16,11 +16,11 @@
 
 package com.galfins.gnss_compare.FileLoggers;
 
-import android.location.Location;
-import android.util.Log;
+import com.galfins.gogpsextracts.Log;
 import org.ejml.simple.SimpleMatrix;
 
 import com.galfins.gnss_compare.Constellations.Constellation;
+import com.galfins.gnss_compare.Constellations.ConstellationSnapshot;
 import com.galfins.gogpsextracts.Coordinates;
 
 import java.io.IOException;
@@ -64,7 +64,7 @@ public class KalmanFilterFileLogger extends FileLogger {
 
     public void addNewPose(Coordinates pose, Constellation constellation) {}
 
-    public void logKalmanParam(SimpleMatrix x_meas, SimpleMatrix P_meas, int numStates, SimpleMatrix gamma, SimpleMatrix S, int constellationSize, Constellation constellation) {
+    public void logKalmanParam(SimpleMatrix x_meas, SimpleMatrix P_meas, int numStates, SimpleMatrix gamma, SimpleMatrix S, int constellationSize, ConstellationSnapshot snapshot) {
         synchronized (mFileLock) {
             if (mFileWriter == null) {
                 return;
@@ -98,13 +98,13 @@ public class KalmanFilterFileLogger extends FileLogger {
 
             buildStream.append("id,");
             for (int i = 0; i < constellationSize; i++) {
-                buildStream.append("," + constellation.getSatellites().get(i).getUniqueSatId());
+                buildStream.append("," + snapshot.getUniqueSatId(i));
             }
             buildStream.append("\n");
 
             buildStream.append("PR,");
             for (int i = 0; i < constellationSize; i++) {
-                buildStream.append("," + constellation.getSatellites().get(i).getPseudorange());
+                buildStream.append("," + snapshot.getPseudorange(i));
             }
 
             try {
@@ -121,7 +121,7 @@ public class KalmanFilterFileLogger extends FileLogger {
         return NAME;
     }
 
-    public void logFineLocation(Location fineLocation) {
+    public void logFineLocation(double latitude, double longitude, double altitude) {
         synchronized (mFileLock) {
             if (mFileWriter == null) {
                 return;
@@ -130,9 +130,9 @@ public class KalmanFilterFileLogger extends FileLogger {
             String locationStream =
                     String.format(Locale.ENGLISH,
                             "FL, %f, %f, %f",
-                            fineLocation.getLatitude(),
-                            fineLocation.getLongitude(),
-                            fineLocation.getAltitude());
+                            latitude,
+                            longitude,
+                            altitude);
             try {
                 mFileWriter.write(locationStream);
                 mFileWriter.newLine();
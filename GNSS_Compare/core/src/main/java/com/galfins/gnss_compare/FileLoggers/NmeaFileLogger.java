@@ -16,8 +16,8 @@
 
 package com.galfins.gnss_compare.FileLoggers;
 
-import android.location.GnssStatus;
-import android.util.Log;
+import com.galfins.gnss_compare.Constellations.GnssConstants;
+import com.galfins.gogpsextracts.Log;
 
 import java.io.IOException;
 import java.text.DecimalFormat;
@@ -58,22 +58,22 @@ public class NmeaFileLogger extends FileLogger {
             }
             String TalkerID;
             switch (constellation.getConstellationId()) {
-                case GnssStatus.CONSTELLATION_GPS:
+                case GnssConstants.CONSTELLATION_GPS:
                     TalkerID = new String("GP");
                     break;
-                case GnssStatus.CONSTELLATION_SBAS:
+                case GnssConstants.CONSTELLATION_SBAS:
                     TalkerID = new String("SB");
                     break;
-                case GnssStatus.CONSTELLATION_GLONASS:
+                case GnssConstants.CONSTELLATION_GLONASS:
                     TalkerID = new String("GL");
                     break;
-                case GnssStatus.CONSTELLATION_QZSS:
+                case GnssConstants.CONSTELLATION_QZSS:
                     TalkerID = new String("QZ");
                     break;
-                case GnssStatus.CONSTELLATION_BEIDOU:
+                case GnssConstants.CONSTELLATION_BEIDOU:
                     TalkerID = new String("BD");
                     break;
-                case GnssStatus.CONSTELLATION_GALILEO:
+                case GnssConstants.CONSTELLATION_GALILEO:
                     TalkerID = new String("GA");
                     break;
                 case Constellation.CONSTELLATION_GALILEO_GPS:
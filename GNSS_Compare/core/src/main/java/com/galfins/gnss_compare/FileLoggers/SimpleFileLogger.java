@@ -16,7 +16,7 @@
 
 package com.galfins.gnss_compare.FileLoggers;
 
-import android.util.Log;
+import com.galfins.gogpsextracts.Log;
 
 import java.io.IOException;
 import java.util.Locale;
@@ -0,0 +1,441 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency and allocation metrics of the epoch processing pipeline, per stage and per module.
+ *
+ * Metrics are disabled by default. In that case {@link #startTimer()} returns 0 without reading
+ * the clock and recording returns immediately, so the instrumentation can stay in place.
+ *
+ * Typical use:
+ * <pre>
+ *     long startNanos = PipelineMetrics.startTimer();
+ *     constellation.calculateSatPosition(referencePosition, pose);
+ *     satPositionStage.record(startNanos);
+ * </pre>
+ */
+public class PipelineMetrics {
+
+    /**
+     * Name of the metrics which are not related to a single module
+     */
+    public static final String PIPELINE = "Pipeline";
+
+    public static final String STAGE_DECODE = "Decode";
+    public static final String STAGE_EPOCH = "Epoch";
+    public static final String STAGE_SAT_POSITION = "SatPosition";
+    public static final String STAGE_PVT = "PvtMethod";
+    public static final String STAGE_FILE_LOGGER = "FileLogger";
+    public static final String STAGE_NOTIFY = "Notify";
+
+    public static final String COUNTER_EPOCHS = "Epochs";
+    public static final String COUNTER_POSES = "Poses";
+    public static final String COUNTER_LATE = "Late";
+    public static final String COUNTER_DROPPED = "Dropped";
+
+    /**
+     * Returned by the start methods when the metrics are disabled
+     */
+    private static final long NOT_STARTED = 0;
+
+    private static volatile boolean enabled = false;
+    private static volatile boolean allocationTracking = false;
+
+    /**
+     * Per-thread allocation counter of the platform, the core has none of its own
+     */
+    public interface AllocationCounter {
+        /**
+         * Starts or stops counting the allocations
+         */
+        void setCounting(boolean counting);
+
+        /**
+         * @return number of bytes allocated so far by the calling thread
+         */
+        long getThreadAllocatedBytes();
+    }
+
+    private static volatile AllocationCounter allocationCounter = null;
+
+    private static final ConcurrentHashMap<String, ModuleMetrics> modules = new ConcurrentHashMap<>();
+
+    /**
+     * Enables or disables the collection of metrics
+     */
+    public static void setEnabled(boolean enabled) {
+        PipelineMetrics.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sets the allocation counter used by the allocation tracking, stopping the tracking
+     * @param counter counter of the platform, or null if there is none
+     */
+    public static synchronized void setAllocationCounter(AllocationCounter counter) {
+        setAllocationTracking(false);
+        allocationCounter = counter;
+    }
+
+    /**
+     * Enables or disables counting of the bytes allocated by the measured stages. Counting the
+     * allocations slows down the runtime, it should only be enabled when investigating them.
+     * Without an allocation counter the tracking stays disabled.
+     */
+    public static synchronized void setAllocationTracking(boolean tracking) {
+        if (allocationCounter == null)
+            tracking = false;
+
+        if (tracking == allocationTracking)
+            return;
+
+        allocationCounter.setCounting(tracking);
+        allocationTracking = tracking;
+    }
+
+    private static long getThreadAllocSize() {
+        AllocationCounter counter = allocationCounter;
+        return counter != null ? counter.getThreadAllocatedBytes() : NOT_STARTED;
+    }
+
+    public static boolean isAllocationTracking() {
+        return allocationTracking;
+    }
+
+    /**
+     * @return current time in nanoseconds, or 0 if the metrics are disabled
+     */
+    public static long startTimer() {
+        return enabled ? System.nanoTime() : NOT_STARTED;
+    }
+
+    /**
+     * @return number of bytes allocated so far by the calling thread, or 0 if the allocation
+     * tracking is disabled
+     */
+    public static long startAllocationCounter() {
+        return enabled && allocationTracking ? getThreadAllocSize() : NOT_STARTED;
+    }
+
+    /**
+     * @param name name of the module
+     * @return metrics of the module, created if necessary
+     */
+    public static ModuleMetrics getModule(String name) {
+        ModuleMetrics module = modules.get(name);
+        if (module == null) {
+            ModuleMetrics created = new ModuleMetrics(name);
+            module = modules.putIfAbsent(name, created);
+            if (module == null)
+                module = created;
+        }
+        return module;
+    }
+
+    /**
+     * Clears all collected metrics
+     */
+    public static void reset() {
+        for (ModuleMetrics module : modules.values())
+            module.reset();
+    }
+
+    /**
+     * @return human readable table of all collected metrics
+     */
+    public static String dump() {
+
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format(Locale.US, "%-24s %-28s %10s %10s %10s %10s %10s %12s%n",
+                "Module", "Stage", "Count", "p50 [us]", "p90 [us]", "p99 [us]", "max [us]", "alloc [B]"));
+
+        List<String> moduleNames = new ArrayList<>(modules.keySet());
+        Collections.sort(moduleNames);
+
+        for (String moduleName : moduleNames) {
+            ModuleMetrics module = modules.get(moduleName);
+
+            List<String> stageNames = new ArrayList<>(module.stages.keySet());
+            Collections.sort(stageNames);
+
+            for (String stageName : stageNames) {
+                Stage stage = module.stages.get(stageName);
+                synchronized (stage) {
+                    builder.append(String.format(Locale.US,
+                            "%-24s %-28s %10d %10.1f %10.1f %10.1f %10.1f %12.0f%n",
+                            moduleName,
+                            stageName,
+                            stage.latency.getCount(),
+                            stage.latency.getPercentile(0.50) / 1e3,
+                            stage.latency.getPercentile(0.90) / 1e3,
+                            stage.latency.getPercentile(0.99) / 1e3,
+                            stage.latency.getMax() / 1e3,
+                            stage.getMeanAllocatedBytes()));
+                }
+            }
+
+            for (Map.Entry<String, AtomicLong> counter : module.counters.entrySet())
+                builder.append(String.format(Locale.US, "%-24s %-28s %10d%n",
+                        moduleName, counter.getKey(), counter.getValue().get()));
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Writes the output of {@link #dump()} to a file
+     * @param file destination file
+     * @throws IOException if writing fails
+     */
+    public static void dumpToFile(File file) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+            writer.write(dump());
+        }
+    }
+
+    /**
+     * Metrics of the stages and the counters of a single module
+     */
+    public static class ModuleMetrics {
+
+        private final String name;
+        private final ConcurrentHashMap<String, Stage> stages = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+        ModuleMetrics(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @param stageName name of the stage
+         * @return metrics of the stage, created if necessary
+         */
+        public Stage getStage(String stageName) {
+            Stage stage = stages.get(stageName);
+            if (stage == null) {
+                Stage created = new Stage();
+                stage = stages.putIfAbsent(stageName, created);
+                if (stage == null)
+                    stage = created;
+            }
+            return stage;
+        }
+
+        /**
+         * Increments a counter of the module, if the metrics are enabled
+         */
+        public void increment(String counterName) {
+            if (!enabled)
+                return;
+
+            AtomicLong counter = counters.get(counterName);
+            if (counter == null) {
+                AtomicLong created = new AtomicLong();
+                counter = counters.putIfAbsent(counterName, created);
+                if (counter == null)
+                    counter = created;
+            }
+            counter.incrementAndGet();
+        }
+
+        public long getCounter(String counterName) {
+            AtomicLong counter = counters.get(counterName);
+            return counter == null ? 0 : counter.get();
+        }
+
+        private void reset() {
+            for (Stage stage : stages.values())
+                stage.reset();
+            counters.clear();
+        }
+    }
+
+    /**
+     * Latency histogram and allocation count of a single pipeline stage
+     */
+    public static class Stage {
+
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private long allocatedBytes = 0;
+        private long allocationSamples = 0;
+
+        /**
+         * Records the time elapsed since {@code startNanos}
+         * @param startNanos value returned by {@link #startTimer()}
+         */
+        public void record(long startNanos) {
+            if (startNanos == NOT_STARTED)
+                return;
+
+            long elapsedNanos = System.nanoTime() - startNanos;
+            synchronized (this) {
+                latency.record(elapsedNanos);
+            }
+        }
+
+        /**
+         * Records the time elapsed and the bytes allocated since the start of the stage
+         * @param startNanos value returned by {@link #startTimer()}
+         * @param startAllocatedBytes value returned by {@link #startAllocationCounter()}
+         */
+        public void record(long startNanos, long startAllocatedBytes) {
+            if (startNanos == NOT_STARTED)
+                return;
+
+            long elapsedNanos = System.nanoTime() - startNanos;
+            long allocated = allocationTracking && startAllocatedBytes != NOT_STARTED ?
+                    getThreadAllocSize() - startAllocatedBytes : -1;
+
+            synchronized (this) {
+                latency.record(elapsedNanos);
+                if (allocated >= 0) {
+                    allocatedBytes += allocated;
+                    allocationSamples++;
+                }
+            }
+        }
+
+        public synchronized long getCount() {
+            return latency.getCount();
+        }
+
+        /**
+         * @param fraction fraction of the samples, from 0 to 1
+         * @return latency in nanoseconds below which the given fraction of samples falls
+         */
+        public synchronized long getPercentileNanos(double fraction) {
+            return latency.getPercentile(fraction);
+        }
+
+        /**
+         * @return mean number of bytes allocated per execution, NaN if not tracked
+         */
+        public synchronized double getMeanAllocatedBytes() {
+            return allocationSamples == 0 ? Double.NaN : (double) allocatedBytes / allocationSamples;
+        }
+
+        private synchronized void reset() {
+            latency.reset();
+            allocatedBytes = 0;
+            allocationSamples = 0;
+        }
+    }
+
+    /**
+     * Histogram with logarithmically growing buckets, each power of two is split into
+     * SUB_BUCKETS linear buckets (HdrHistogram layout). The relative error of the reported values
+     * is below 1/SUB_BUCKETS, and the memory use is fixed. Not thread safe.
+     */
+    static class LatencyHistogram {
+
+        private static final int SUB_BUCKET_BITS = 5;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+        /**
+         * Values with more significant bits are stored in the last bucket (~2.4 h in nanoseconds)
+         */
+        private static final int MAX_VALUE_BITS = 43;
+
+        private static final int BUCKETS =
+                2 * SUB_BUCKETS + (MAX_VALUE_BITS - SUB_BUCKET_BITS - 1) * SUB_BUCKETS;
+
+        private final long[] counts = new long[BUCKETS];
+        private long count = 0;
+        private long max = 0;
+
+        void record(long value) {
+            if (value < 0)
+                value = 0;
+
+            counts[indexOf(value)]++;
+            count++;
+            if (value > max)
+                max = value;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        long getMax() {
+            return max;
+        }
+
+        /**
+         * @param fraction fraction of the samples, from 0 to 1
+         * @return upper bound of the bucket containing the given fraction of samples
+         */
+        long getPercentile(double fraction) {
+            if (count == 0)
+                return 0;
+
+            long required = Math.max(1, (long) Math.ceil(fraction * count));
+            long accumulated = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                accumulated += counts[i];
+                if (accumulated >= required)
+                    return Math.min(upperBoundOf(i), max);
+            }
+            return max;
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKETS; i++)
+                counts[i] = 0;
+            count = 0;
+            max = 0;
+        }
+
+        static int indexOf(long value) {
+            if (value < 2 * SUB_BUCKETS)
+                return (int) value;
+
+            int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS - 1;
+            int index = 2 * SUB_BUCKETS + (shift - 1) * SUB_BUCKETS + (int) (value >> shift) - SUB_BUCKETS;
+            return Math.min(index, BUCKETS - 1);
+        }
+
+        static long upperBoundOf(int index) {
+            if (index < 2 * SUB_BUCKETS)
+                return index;
+
+            int shift = (index - 2 * SUB_BUCKETS) / SUB_BUCKETS + 1;
+            long subBucket = (index - 2 * SUB_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+            return ((subBucket + 1) << shift) - 1;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare;
+
+import com.galfins.gnss_compare.Corrections.CorrectionCache;
+import com.galfins.gogpsextracts.NavigationProducer;
+import com.galfins.gogpsextracts.NavigationProviders;
+
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * State which the calculation modules of a processing share: the navigation data providers,
+ * the cache of the correction values and the latency metrics.
+ *
+ * The modules of the live processing use the shared context, backed by NavigationProviders,
+ * CorrectionCache.getInstance() and the PipelineMetrics registry. A processing running next
+ * to it, e.g. a job of BatchReprocessing, creates its own context, so that it neither sees
+ * the navigation data, corrections and metrics of other processings nor evicts theirs.
+ */
+public class ProcessingContext {
+
+    private static final ProcessingContext shared = new ProcessingContext(CorrectionCache.getInstance(), true);
+
+    private final CorrectionCache correctionCache;
+
+    private final boolean isShared;
+
+    /**
+     * Providers of this context, constellations without one use the shared provider
+     */
+    private final HashMap<Character, NavigationProducer> navigationProviders = new HashMap<>();
+
+    /**
+     * Metrics of the modules of this context, unused by the shared context
+     */
+    private final ConcurrentHashMap<String, PipelineMetrics.ModuleMetrics> metrics = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a context with its own correction cache and metrics, using the shared navigation
+     * providers until others are set
+     */
+    public ProcessingContext() {
+        this(new CorrectionCache(CorrectionCache.DEFAULT_CAPACITY), false);
+    }
+
+    private ProcessingContext(CorrectionCache correctionCache, boolean isShared) {
+        this.correctionCache = correctionCache;
+        this.isShared = isShared;
+    }
+
+    /**
+     * @return context of the live processing
+     */
+    public static ProcessingContext getShared() {
+        return shared;
+    }
+
+    /**
+     * Sets the navigation data provider of a constellation. Constellations pick their provider
+     * when they are assigned to the context, so this has to be called before the calculation
+     * modules are created.
+     * @param constellation constellation identifier, NavigationProviders.GPS or GALILEO
+     * @param provider provider of the constellation
+     */
+    public synchronized void setNavigationProvider(char constellation, NavigationProducer provider) {
+        if (isShared)
+            throw new IllegalStateException("The shared providers are set with NavigationProviders");
+        navigationProviders.put(constellation, provider);
+    }
+
+    /**
+     * @param constellation constellation identifier, NavigationProviders.GPS or GALILEO
+     * @return provider of the navigation data of the constellation
+     */
+    public synchronized NavigationProducer getNavigationProvider(char constellation) {
+        NavigationProducer provider = navigationProviders.get(constellation);
+        return provider != null ? provider : NavigationProviders.get(constellation);
+    }
+
+    public CorrectionCache getCorrectionCache() {
+        return correctionCache;
+    }
+
+    /**
+     * @param moduleName name of the module
+     * @return metrics of the module in this context, created if necessary
+     */
+    public PipelineMetrics.ModuleMetrics getMetrics(String moduleName) {
+        if (isShared)
+            return PipelineMetrics.getModule(moduleName);
+
+        PipelineMetrics.ModuleMetrics module = metrics.get(moduleName);
+        if (module == null) {
+            PipelineMetrics.ModuleMetrics created = new PipelineMetrics.ModuleMetrics(moduleName);
+            module = metrics.putIfAbsent(moduleName, created);
+            if (module == null)
+                module = created;
+        }
+        return module;
+    }
+}
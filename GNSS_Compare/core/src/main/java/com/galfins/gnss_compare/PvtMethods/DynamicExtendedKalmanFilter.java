@@ -16,13 +16,13 @@
 
 package com.galfins.gnss_compare.PvtMethods;
 
-import android.location.Location;
-import android.util.Log;
+import com.galfins.gogpsextracts.Log;
 
 import org.ejml.data.SingularMatrixException;
 import org.ejml.simple.SimpleMatrix;
 
 import com.galfins.gnss_compare.Constellations.Constellation;
+import com.galfins.gnss_compare.Constellations.ConstellationSnapshot;
 import com.galfins.gnss_compare.FileLoggers.KalmanFilterFileLogger;
 import com.galfins.gogpsextracts.Constants;
 import com.galfins.gogpsextracts.Coordinates;
@@ -167,18 +167,22 @@ public class DynamicExtendedKalmanFilter extends PvtMethod {
         }
     }
     @Override
-    public void logFineLocation(Location fineLocation){
+    public void logFineLocation(double latitude, double longitude, double altitude){
         if (kalmanParamLogger.isStarted()) {
-            kalmanParamLogger.logFineLocation(fineLocation);
+            kalmanParamLogger.logFineLocation(latitude, longitude, altitude);
         }
     }
 
     @Override
     public Coordinates calculatePose(Constellation constellation) {
 
+        /** satellites of the last epoch, read without locking the constellation
+         */
+        ConstellationSnapshot snapshot = constellation.getSnapshot();
+
         /** number of satellites in constellation
          */
-        final int CONSTELLATION_SIZE = constellation.getUsedConstellationSize();
+        final int CONSTELLATION_SIZE = snapshot.size();
 
         /** innovation sequence vector
          */
@@ -196,7 +200,7 @@ public class DynamicExtendedKalmanFilter extends PvtMethod {
         /**
          * approximate position of the receiver in ECEF.
          */
-        SimpleMatrix rxPosSimpleVector = Constellation.getRxPosAsVector(constellation.getRxPos());
+        SimpleMatrix rxPosSimpleVector = Constellation.getRxPosAsVector(snapshot.getRxPos());
 
         if(firstExecution){
             // Initialize the state vector
@@ -256,36 +260,36 @@ public class DynamicExtendedKalmanFilter extends PvtMethod {
 
         // Form the observation matrix H
         for(int k = 0; k < CONSTELLATION_SIZE; k++){
-            if(constellation.getSatellite(k).getSatellitePosition() == null)
+            if(!snapshot.hasPosition(k))
                 continue;
 
             // Get the raw pseudoranges for each satellite
-            prVect.set(k, constellation.getSatellite(k).getPseudorange());
+            prVect.set(k, snapshot.getPseudorange(k));
 
             // Compute the predicted (geometric) distance towards each satellite
             distPred = Math.sqrt(
-                    Math.pow( constellation.getSatellite(k).getSatellitePosition().getX()
+                    Math.pow( snapshot.getX(k)
                             - x_pred.get(idxX), 2 )
-                            + Math.pow( constellation.getSatellite(k).getSatellitePosition().getY()
+                            + Math.pow( snapshot.getY(k)
                             - x_pred.get(idxY), 2 )
-                            + Math.pow( constellation.getSatellite(k).getSatellitePosition().getZ()
+                            + Math.pow( snapshot.getZ(k)
                             - x_pred.get(idxZ), 2 )
             );
 
             // Set the values inside the H matrix
             // velocity values are zero.
-            H.set(k, idxX,  (x_pred.get(idxX) - constellation.getSatellite(k).getSatellitePosition().getX()) / distPred);
-            H.set(k, idxY,  (x_pred.get(idxY) - constellation.getSatellite(k).getSatellitePosition().getY()) / distPred);
-            H.set(k, idxZ,  (x_pred.get(idxZ) - constellation.getSatellite(k).getSatellitePosition().getZ()) / distPred);
+            H.set(k, idxX,  (x_pred.get(idxX) - snapshot.getX(k)) / distPred);
+            H.set(k, idxY,  (x_pred.get(idxY) - snapshot.getY(k)) / distPred);
+            H.set(k, idxZ,  (x_pred.get(idxZ) - snapshot.getZ(k)) / distPred);
             H.set(k, idxClockBias, 1.0);
 
             // Form the predicted measurement towards each satellite
             measPred.set(k, distPred + x_pred.get(idxClockBias)
-                    - constellation.getSatellite(k).getClockBias()
-                    + constellation.getSatellite(k).getAccumulatedCorrection());
+                    - snapshot.getClockBias(k)
+                    + snapshot.getAccumulatedCorrection(k));
 
             // Form the VCM of the measurements (R)
-            elev = constellation.getSatellite(k).getRxTopo().getElevation() * (Math.PI / 180.0);
+            elev = snapshot.getElevation(k) * (Math.PI / 180.0);
             R.set(k,k,sigma2Meas * Math.pow(a + b * Math.exp(-elev/10.0),2));
 
             usedInCalculations ++;
@@ -313,7 +317,7 @@ public class DynamicExtendedKalmanFilter extends PvtMethod {
             P_meas = (SimpleMatrix.identity(numStates).minus((K.mult(H)))).mult(P_pred);
 
             if (kalmanParamLogger.isStarted())
-                kalmanParamLogger.logKalmanParam(x_meas, P_meas, numStates, gamma, S, CONSTELLATION_SIZE, constellation);
+                kalmanParamLogger.logKalmanParam(x_meas, P_meas, numStates, gamma, S, CONSTELLATION_SIZE, snapshot);
 
             firstExecution = false;
 
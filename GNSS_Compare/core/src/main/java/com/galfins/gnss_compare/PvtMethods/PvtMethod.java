@@ -16,8 +16,6 @@
 
 package com.galfins.gnss_compare.PvtMethods;
 
-import android.location.Location;
-
 import java.util.HashMap;
 import java.util.Set;
 
@@ -83,5 +81,11 @@ public abstract class PvtMethod {
 
     public void logError(double latError, double lonError) { }
 
-    public void logFineLocation(Location location) {}
+    /**
+     * Logs the location calculated by the platform, used as a reference for the filters
+     * @param latitude latitude in degrees
+     * @param longitude longitude in degrees
+     * @param altitude altitude in meters
+     */
+    public void logFineLocation(double latitude, double longitude, double altitude) {}
 }
@@ -20,12 +20,12 @@ import org.ejml.data.SingularMatrixException;
 import org.ejml.simple.SimpleMatrix;
 
 import com.galfins.gnss_compare.Constellations.Constellation;
+import com.galfins.gnss_compare.Constellations.ConstellationSnapshot;
 import com.galfins.gnss_compare.FileLoggers.KalmanFilterFileLogger;
 import com.galfins.gogpsextracts.Constants;
 import com.galfins.gogpsextracts.Coordinates;
 
-import android.location.Location;
-import android.util.Log;
+import com.galfins.gogpsextracts.Log;
 
 
 /**
@@ -148,18 +148,22 @@ public class StaticExtendedKalmanFilter extends PvtMethod {
         }
     }
     @Override
-    public void logFineLocation(Location fineLocation){
+    public void logFineLocation(double latitude, double longitude, double altitude){
         if (kalmanParamLogger.isStarted()) {
-            kalmanParamLogger.logFineLocation(fineLocation);
+            kalmanParamLogger.logFineLocation(latitude, longitude, altitude);
         }
     }
 
     @Override
     public Coordinates calculatePose(Constellation constellation) {
 
+        /** satellites of the last epoch, read without locking the constellation
+         */
+        ConstellationSnapshot snapshot = constellation.getSnapshot();
+
         /** number of satellites in constellation
          */
-        final int CONSTELLATION_SIZE = constellation.getUsedConstellationSize();
+        final int CONSTELLATION_SIZE = snapshot.size();
 
         /** innovation sequence vector
          */
@@ -176,7 +180,7 @@ public class StaticExtendedKalmanFilter extends PvtMethod {
         /**
          * approximate position of the receiver in ECEF.
          */
-        SimpleMatrix rxPosSimpleVector = Constellation.getRxPosAsVector(constellation.getRxPos());
+        SimpleMatrix rxPosSimpleVector = Constellation.getRxPosAsVector(snapshot.getRxPos());
 
         if(firstExecution){
             // Initialize the state vector
@@ -232,35 +236,35 @@ public class StaticExtendedKalmanFilter extends PvtMethod {
 
         // Form the observation matrix H
         for(int k = 0; k < CONSTELLATION_SIZE; k++){
-            if(constellation.getSatellite(k).getSatellitePosition() == null)
+            if(!snapshot.hasPosition(k))
                 continue;
 
             // Get the raw pseudoranges for each satellite
-            prVect.set(k, constellation.getSatellite(k).getPseudorange());
+            prVect.set(k, snapshot.getPseudorange(k));
 
             // Compute the predicted (geometric) distance towards each satellite
             distPred = Math.sqrt(
-                    Math.pow( constellation.getSatellite(k).getSatellitePosition().getX()
+                    Math.pow( snapshot.getX(k)
                             - x_pred.get(idxX), 2 )
-                            + Math.pow( constellation.getSatellite(k).getSatellitePosition().getY()
+                            + Math.pow( snapshot.getY(k)
                             - x_pred.get(idxY), 2 )
-                            + Math.pow( constellation.getSatellite(k).getSatellitePosition().getZ()
+                            + Math.pow( snapshot.getZ(k)
                             - x_pred.get(idxZ), 2 )
             );
 
             // Set the values inside the H matrix
-            H.set(k, idxX,  (x_pred.get(idxX) - constellation.getSatellite(k).getSatellitePosition().getX()) / distPred);
-            H.set(k, idxY,  (x_pred.get(idxY) - constellation.getSatellite(k).getSatellitePosition().getY()) / distPred);
-            H.set(k, idxZ,  (x_pred.get(idxZ) - constellation.getSatellite(k).getSatellitePosition().getZ()) / distPred);
+            H.set(k, idxX,  (x_pred.get(idxX) - snapshot.getX(k)) / distPred);
+            H.set(k, idxY,  (x_pred.get(idxY) - snapshot.getY(k)) / distPred);
+            H.set(k, idxZ,  (x_pred.get(idxZ) - snapshot.getZ(k)) / distPred);
             H.set(k, idxClockBias, 1.0);
 
             // Form the predicted measurement towards each satellite
             measPred.set(k, distPred + x_pred.get(idxClockBias)
-                    - constellation.getSatellite(k).getClockBias()
-                    + constellation.getSatellite(k).getAccumulatedCorrection());
+                    - snapshot.getClockBias(k)
+                    + snapshot.getAccumulatedCorrection(k));
 
             // Form the VCM of the measurements (R)
-            elev = constellation.getSatellite(k).getRxTopo().getElevation() * (Math.PI / 180.0);
+            elev = snapshot.getElevation(k) * (Math.PI / 180.0);
             R.set(k,k,sigma2Meas * Math.pow(a + b * Math.exp(-elev/10.0),2));
 
             usedInCalculations ++;
@@ -291,7 +295,7 @@ public class StaticExtendedKalmanFilter extends PvtMethod {
 
             // x_meas and P_meas are being used for the next set of measurements
             if (kalmanParamLogger.isStarted())
-                kalmanParamLogger.logKalmanParam(x_meas, P_meas, numStates, gamma, S, CONSTELLATION_SIZE, constellation);
+                kalmanParamLogger.logKalmanParam(x_meas, P_meas, numStates, gamma, S, CONSTELLATION_SIZE, snapshot);
 
             firstExecution = false;
 
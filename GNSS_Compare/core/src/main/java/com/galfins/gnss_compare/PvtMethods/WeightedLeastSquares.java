@@ -16,14 +16,14 @@
 
 package com.galfins.gnss_compare.PvtMethods;
 
-import android.util.Log;
+import com.galfins.gogpsextracts.Log;
 
 import org.ejml.data.SingularMatrixException;
 import org.ejml.simple.SimpleMatrix;
 
 import com.galfins.gnss_compare.Constellations.Constellation;
+import com.galfins.gnss_compare.Constellations.ConstellationSnapshot;
 import com.galfins.gogpsextracts.Coordinates;
-import com.galfins.gogpsextracts.TopocentricCoordinates;
 
 /**
  * Created by Mateusz Krainski on 17/02/2018.
@@ -54,11 +54,14 @@ public class WeightedLeastSquares extends PvtMethod {
     @Override
     public Coordinates calculatePose(Constellation constellation) {
 
-        final int CONSTELLATION_SIZE = constellation.getUsedConstellationSize();
+        // Satellites of the epoch, which are not modified while the pose is calculated
+        ConstellationSnapshot snapshot = constellation.getSnapshot();
+
+        final int CONSTELLATION_SIZE = snapshot.size();
 
         // Initialize matrices for data storage
 
-        SimpleMatrix rxPosSimpleVector = Constellation.getRxPosAsVector(constellation.getRxPos());
+        SimpleMatrix rxPosSimpleVector = Constellation.getRxPosAsVector(snapshot.getRxPos());
         SimpleMatrix satPosMat = new SimpleMatrix(CONSTELLATION_SIZE, 3);
         SimpleMatrix tropoCorr = new SimpleMatrix(CONSTELLATION_SIZE, 1);
         SimpleMatrix svClkBias = new SimpleMatrix(CONSTELLATION_SIZE, 1);
@@ -72,74 +75,38 @@ public class WeightedLeastSquares extends PvtMethod {
         double elevation, measVar,  measVarC1;
         int CN0;
 
-        TopocentricCoordinates topo = new TopocentricCoordinates();
-        Coordinates origin; // = new Coordinates(){};
-        Coordinates target; // = new Coordinates(){};
-
         ///////////////////////////// SV coordinates/velocities + PR corrections computation ////////////////////////////////////////////////////
 
-        try {
-
-            for (int ii = 0; ii < CONSTELLATION_SIZE; ii++) {
-
-                // Set the measurements into a vector
-                prVect.set(ii, constellation.getSatellite(ii).getPseudorange());
-
-                // Compute the satellite coordinates
-                svClkBias.set(ii, constellation.getSatellite(ii).getClockBias());
-
-                ///////////////////////////// PR corrections computations ////////////////////////////////////////////////////
-
+        for (int ii = 0; ii < CONSTELLATION_SIZE; ii++) {
 
-                // Assign the computed SV coordinates into a matrix
-                satPosMat.set(ii, 0, constellation.getSatellite(ii).getSatellitePosition().getX());
-                satPosMat.set(ii, 1, constellation.getSatellite(ii).getSatellitePosition().getY());
-                satPosMat.set(ii, 2, constellation.getSatellite(ii).getSatellitePosition().getZ());
+            if (!snapshot.hasPosition(ii)) {
+                Log.e(TAG, "calculatePose: Satellite position not available!");
+                constellation.setRxPos(ZERO_POSE); // Right at the edge of the plot
+                rxPosSimpleVector = Constellation.getRxPosAsVector(constellation.getRxPos());
+                return Coordinates.globalXYZInstance(rxPosSimpleVector.get(0), rxPosSimpleVector.get(1), rxPosSimpleVector.get(2));
+            }
 
+            // Set the measurements into a vector
+            prVect.set(ii, snapshot.getPseudorange(ii));
 
-                // Compute the elevation and azimuth angles for each satellite
-                origin = Coordinates.globalXYZInstance(rxPosSimpleVector.get(0), rxPosSimpleVector.get(1), rxPosSimpleVector.get(2));
-                target = Coordinates.globalXYZInstance(satPosMat.get(ii, 0),satPosMat.get(ii, 1),satPosMat.get(ii, 2) );
-//                origin.setXYZ(rxPosSimpleVector.get(0), rxPosSimpleVector.get(1),rxPosSimpleVector.get(2));
-//                target.setXYZ(satPosMat.get(ii, 0),satPosMat.get(ii, 1),satPosMat.get(ii, 2) );
-                topo.computeTopocentric(origin, target);
-                elevation = topo.getElevation() * (Math.PI / 180.0);
+            // Compute the satellite coordinates
+            svClkBias.set(ii, snapshot.getClockBias(ii));
 
-                // Set the variance of the measurement for each satellite
-                measVar = sigma2Meas * Math.pow(a + b * Math.exp(-elevation/10.0),2);
-                sigma2.set(ii, measVar);
+            ///////////////////////////// PR corrections computations ////////////////////////////////////////////////////
 
-                ///////////////////////////// Printing results  ////////////////////////////////////////////////////
 
-                // Print the computed satellite coordinates \ velocities
-                /*
-                System.out.println();
-                System.out.println();
-                System.out.println("The GPS ECEF coordinates of " + "SV" + constellation.getSatellite(ii).getSatId() + " are:");
-                System.out.printf("%.4f", satPosMat.get(ii, 0));
-                System.out.println();
-                System.out.printf("%.4f", satPosMat.get(ii, 1));
-                System.out.println();
-                System.out.printf("%.4f", satPosMat.get(ii, 2));
-                System.out.println();
-                System.out.printf("Tropo corr: %.4f", tropoCorr.get(ii));
-                System.out.println();
-                System.out.printf("Iono corr: %.4f", ionoCorr.get(ii));
-                System.out.println();
-                */
-                System.out.printf("Shapiro corr: %.4f", shapiroCorr.get(ii));
+            // Assign the computed SV coordinates into a matrix
+            satPosMat.set(ii, 0, snapshot.getX(ii));
+            satPosMat.set(ii, 1, snapshot.getY(ii));
+            satPosMat.set(ii, 2, snapshot.getZ(ii));
 
-            }
-        } catch(NullPointerException | IndexOutOfBoundsException e){
-            e.printStackTrace();
 
-            if(e.getClass() == IndexOutOfBoundsException.class){
-                Log.e(TAG, "calculatePose: Satellites cleared before calculating result!");
-            }
+            // Elevation of the satellite, computed with the geometry of the epoch
+            elevation = snapshot.getElevation(ii) * (Math.PI / 180.0);
 
-            constellation.setRxPos(ZERO_POSE); // Right at the edge of the plot
-            rxPosSimpleVector = Constellation.getRxPosAsVector(constellation.getRxPos());
-            return Coordinates.globalXYZInstance(rxPosSimpleVector.get(0), rxPosSimpleVector.get(1), rxPosSimpleVector.get(2));
+            // Set the variance of the measurement for each satellite
+            measVar = sigma2Meas * Math.pow(a + b * Math.exp(-elevation/10.0),2);
+            sigma2.set(ii, measVar);
         }
 
 		/*
@@ -176,12 +143,12 @@ public class WeightedLeastSquares extends PvtMethod {
 
                     // Measurement prediction
                     measPred.set( k, distPred.get(k)
-                                    + constellation.getSatellite(k).getAccumulatedCorrection() - svClkBias.get(k) );
+                                    + snapshot.getAccumulatedCorrection(k) - svClkBias.get(k) );
 
                     // Compute the observation matrix (H)
-                    H.set(k, 0, (constellation.getRxPos().getX() - satPosMat.get(k, 0)) / distPred.get(k));
-                    H.set(k, 1, (constellation.getRxPos().getY() - satPosMat.get(k, 1)) / distPred.get(k));
-                    H.set(k, 2, (constellation.getRxPos().getZ() - satPosMat.get(k, 2)) / distPred.get(k));
+                    H.set(k, 0, (snapshot.getRxPos().getX() - satPosMat.get(k, 0)) / distPred.get(k));
+                    H.set(k, 1, (snapshot.getRxPos().getY() - satPosMat.get(k, 1)) / distPred.get(k));
+                    H.set(k, 2, (snapshot.getRxPos().getZ() - satPosMat.get(k, 2)) / distPred.get(k));
                     H.set(k, 3, 1.0);
 
                 }
@@ -208,12 +175,8 @@ public class WeightedLeastSquares extends PvtMethod {
 
             clockBias = rxPosSimpleVector.get(3);
 
-        } catch (SingularMatrixException | IndexOutOfBoundsException e) {
-            if(e.getClass() == IndexOutOfBoundsException.class){
-                Log.e(TAG, "calculatePose: Satellites cleared before calculating result!");
-            } else if (e.getClass() == SingularMatrixException.class) {
-                Log.e(TAG, "calculatePose: SingularMatrixException caught!");
-            }
+        } catch (SingularMatrixException e) {
+            Log.e(TAG, "calculatePose: SingularMatrixException caught!");
             constellation.setRxPos(ZERO_POSE); // Right at the edge of the plot
             rxPosSimpleVector = Constellation.getRxPosAsVector(constellation.getRxPos());
             e.printStackTrace();
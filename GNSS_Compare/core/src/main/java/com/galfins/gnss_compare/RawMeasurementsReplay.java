@@ -0,0 +1,374 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare;
+
+import com.galfins.gogpsextracts.Log;
+
+import com.galfins.gnss_compare.Constellations.GnssMeasurementsEpoch;
+import com.galfins.gogpsextracts.GnssTime;
+import com.galfins.gogpsextracts.NavigationProviders;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replays files written by the RawMeasurementsFileLogger (GnssLogger format) through a set of
+ * calculation modules, without the need of a device. {@code Raw} lines are grouped into epochs
+ * by their TimeNanos and processed with {@link CalculationModulesArrayList#processEpoch},
+ * {@code Fix} lines update the reference position of the modules. Other consumers of the
+ * replayed data can be attached with a {@link ReplayListener}.
+ *
+ * The replay can be paced with a speed factor relative to the receiver clock (1 for real time,
+ * 10 for ten times faster), or run as fast as possible.
+ *
+ * By default the constellations request the navigation data from SUPL, which only provides
+ * ephemerides valid at the current time. Sessions older than a few hours are replayed with the
+ * broadcast navigation files of their days, set with {@link #setNavigationFiles}.
+ */
+public class RawMeasurementsReplay {
+
+    private static final String TAG = "RawMeasurementsReplay";
+
+    /**
+     * Speed factor for which no pacing is done
+     */
+    public static final double AS_FAST_AS_POSSIBLE = 0.0;
+
+    private static final String RAW_TAG = "Raw";
+    private static final String FIX_TAG = "Fix";
+    private static final String COMMENT_START = "#";
+
+    /**
+     * Default column order of the Raw lines, used if the file has no header
+     */
+    private static final String[] DEFAULT_RAW_COLUMNS = {
+            "Raw", "ElapsedRealtimeMillis", "TimeNanos", "LeapSecond", "TimeUncertaintyNanos",
+            "FullBiasNanos", "BiasNanos", "BiasUncertaintyNanos", "DriftNanosPerSecond",
+            "DriftUncertaintyNanosPerSecond", "HardwareClockDiscontinuityCount", "Svid",
+            "TimeOffsetNanos", "State", "ReceivedSvTimeNanos", "ReceivedSvTimeUncertaintyNanos",
+            "Cn0DbHz", "PseudorangeRateMetersPerSecond", "PseudorangeRateUncertaintyMetersPerSecond",
+            "AccumulatedDeltaRangeState", "AccumulatedDeltaRangeMeters",
+            "AccumulatedDeltaRangeUncertaintyMeters", "CarrierFrequencyHz", "CarrierCycles",
+            "CarrierPhase", "CarrierPhaseUncertainty", "MultipathIndicator", "SnrInDb",
+            "ConstellationType", "AgcDb"};
+
+    /**
+     * Receives the data read from the replayed file
+     */
+    public interface ReplayListener {
+        /**
+         * Called for each {@code Fix} line
+         * @param latitude latitude in degrees
+         * @param longitude longitude in degrees
+         * @param altitude altitude in meters
+         * @param timeMillis UTC time of the fix in milliseconds, 0 if not logged
+         */
+        void onFix(double latitude, double longitude, double altitude, long timeMillis);
+
+        /**
+         * Called for each complete epoch of {@code Raw} lines
+         * @param epoch decoded measurements of the epoch
+         */
+        void onEpoch(GnssMeasurementsEpoch epoch);
+    }
+
+    private final ReplayListener listener;
+
+    /**
+     * Raw lines are only logged from Android N, and their state bits are those of the device
+     * which logged them, so all the bits are decoded as on Android O and later
+     */
+    private final GnssMeasurementsEpoch.Decoder epochDecoder =
+            new GnssMeasurementsEpoch.Decoder(GnssMeasurementsEpoch.Decoder.TOW_KNOWN_API_LEVEL);
+
+    private double speedFactor = AS_FAST_AS_POSSIBLE;
+
+    private volatile boolean stopRequested = false;
+
+    private Map<String, Integer> rawColumns = new HashMap<>();
+
+    private boolean epochStarted = false;
+    private long currentEpochTimeNanos;
+
+    private long firstEpochTimeNanos;
+    private long replayStartNanos;
+
+    private long processedEpochs = 0;
+    private long processedFixes = 0;
+    private long replayDurationNanos = 0;
+
+    /**
+     * @param calculationModules modules through which the measurements are replayed
+     */
+    public RawMeasurementsReplay(final CalculationModulesArrayList calculationModules) {
+        this(new ReplayListener() {
+            @Override
+            public void onFix(double latitude, double longitude, double altitude, long timeMillis) {
+                calculationModules.updateReferencePosition(latitude, longitude, altitude);
+            }
+
+            @Override
+            public void onEpoch(GnssMeasurementsEpoch epoch) {
+                calculationModules.processEpoch(epoch);
+            }
+        });
+    }
+
+    /**
+     * @param listener receiver of the replayed fixes and epochs
+     */
+    public RawMeasurementsReplay(ReplayListener listener) {
+        this.listener = listener;
+        setRawColumns(DEFAULT_RAW_COLUMNS);
+    }
+
+    /**
+     * Makes the constellations use the navigation data of RINEX broadcast navigation files
+     * instead of SUPL. Constellations keep the navigation data source they were created with,
+     * so this has to be called before the calculation modules are created.
+     * @param gpsFiles GPS navigation files, e.g. daily brdc files, null to keep using SUPL
+     * @param galileoFiles Galileo navigation files, null to keep using SUPL
+     * @throws IOException if any of the files can't be read
+     */
+    public static void setNavigationFiles(List<File> gpsFiles, List<File> galileoFiles) throws IOException {
+        NavigationProviders.useRinexFiles(gpsFiles, galileoFiles);
+    }
+
+    /**
+     * Sets the replay speed relative to the receiver clock
+     * @param speedFactor 1 for real time, 10 for ten times faster, or
+     *                    {@code AS_FAST_AS_POSSIBLE}
+     */
+    public void setSpeedFactor(double speedFactor) {
+        this.speedFactor = speedFactor;
+    }
+
+    public double getSpeedFactor() {
+        return speedFactor;
+    }
+
+    /**
+     * Requests the ongoing replay to stop after the current line
+     */
+    public void stop() {
+        stopRequested = true;
+    }
+
+    /**
+     * @return number of epochs processed by the last replay
+     */
+    public long getProcessedEpochs() {
+        return processedEpochs;
+    }
+
+    /**
+     * @return number of Fix lines processed by the last replay
+     */
+    public long getProcessedFixes() {
+        return processedFixes;
+    }
+
+    /**
+     * @return processing throughput of the last replay
+     */
+    public double getEpochsPerSecond() {
+        if (replayDurationNanos == 0)
+            return 0.0;
+        return processedEpochs / (replayDurationNanos * 1e-9);
+    }
+
+    /**
+     * Replays a single file
+     * @param file file created by the RawMeasurementsFileLogger or GnssLogger
+     * @throws IOException if the file can't be read
+     */
+    public void replay(File file) throws IOException {
+        try (FileReader reader = new FileReader(file)) {
+            replay(reader);
+        }
+    }
+
+    /**
+     * Replays all lines provided by the reader
+     * @param reader source of the log lines
+     * @throws IOException if reading fails
+     */
+    public void replay(Reader reader) throws IOException {
+
+        BufferedReader bufferedReader = new BufferedReader(reader);
+
+        stopRequested = false;
+        epochStarted = false;
+        processedEpochs = 0;
+        processedFixes = 0;
+        replayStartNanos = System.nanoTime();
+
+        String line;
+        while (!stopRequested && (line = bufferedReader.readLine()) != null) {
+            try {
+                processLine(line.trim());
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                Log.w(TAG, "replay: skipping malformed line: " + line);
+            }
+        }
+
+        if (!stopRequested)
+            finishEpoch();
+
+        replayDurationNanos = System.nanoTime() - replayStartNanos;
+
+        Log.i(TAG, "replay: " + processedEpochs + " epochs, " + processedFixes + " fixes in "
+                + replayDurationNanos / 1e9 + " s (" + getEpochsPerSecond() + " epochs/s)");
+    }
+
+    private void processLine(String line) {
+
+        if (line.isEmpty())
+            return;
+
+        if (line.startsWith(COMMENT_START)) {
+            String header = line.substring(COMMENT_START.length()).trim();
+            if (header.startsWith(RAW_TAG + ","))
+                setRawColumns(header.split(","));
+            return;
+        }
+
+        String[] fields = line.split(",", -1);
+
+        if (fields[0].equals(RAW_TAG))
+            processRawLine(fields);
+        else if (fields[0].equals(FIX_TAG))
+            processFixLine(fields);
+    }
+
+    private void setRawColumns(String[] columns) {
+        rawColumns.clear();
+        for (int i = 0; i < columns.length; i++) {
+            // the first occurrence is used for duplicated column names
+            if (!rawColumns.containsKey(columns[i].trim()))
+                rawColumns.put(columns[i].trim(), i);
+        }
+    }
+
+    private String getRawField(String[] fields, String column) {
+        Integer index = rawColumns.get(column);
+        if (index == null || index >= fields.length)
+            return "";
+        return fields[index];
+    }
+
+    private long getRawLong(String[] fields, String column, long defaultValue) {
+        String field = getRawField(fields, column);
+        if (field.isEmpty())
+            return defaultValue;
+        try {
+            return Long.parseLong(field);
+        } catch (NumberFormatException e) {
+            return (long) Double.parseDouble(field);
+        }
+    }
+
+    private double getRawDouble(String[] fields, String column, double defaultValue) {
+        String field = getRawField(fields, column);
+        return field.isEmpty() ? defaultValue : Double.parseDouble(field);
+    }
+
+    private void processRawLine(String[] fields) {
+
+        long timeNanos = getRawLong(fields, "TimeNanos", 0);
+
+        if (!epochStarted || timeNanos != currentEpochTimeNanos) {
+            finishEpoch();
+
+            long fullBiasNanos = getRawLong(fields, "FullBiasNanos", 0);
+            double biasNanos = getRawDouble(fields, "BiasNanos", 0.0);
+            int discontinuityCount = (int) getRawLong(fields, "HardwareClockDiscontinuityCount", 0);
+
+            // UTC of the epoch, as System.currentTimeMillis() when decoding on a device
+            long unixMillis = GnssTime.fromGpsNanos(
+                    Math.round(timeNanos - (fullBiasNanos + biasNanos))).getUtcMillis();
+
+            if (processedEpochs == 0)
+                firstEpochTimeNanos = timeNanos;
+
+            waitForEpoch(timeNanos);
+
+            epochDecoder.startEpoch(unixMillis, timeNanos, fullBiasNanos, biasNanos, discontinuityCount);
+            currentEpochTimeNanos = timeNanos;
+            epochStarted = true;
+        }
+
+        epochDecoder.addMeasurement(
+                (int) getRawLong(fields, "Svid", 0),
+                (int) getRawLong(fields, "ConstellationType", 0),
+                getRawDouble(fields, "CarrierFrequencyHz", Double.NaN),
+                getRawLong(fields, "ReceivedSvTimeNanos", 0),
+                getRawLong(fields, "ReceivedSvTimeUncertaintyNanos", 0),
+                getRawDouble(fields, "TimeOffsetNanos", 0.0),
+                (int) getRawLong(fields, "State", 0),
+                getRawDouble(fields, "Cn0DbHz", 0.0),
+                (int) getRawLong(fields, "AccumulatedDeltaRangeState", 0),
+                getRawDouble(fields, "AccumulatedDeltaRangeMeters", 0.0),
+                getRawDouble(fields, "PseudorangeRateMetersPerSecond", 0.0));
+    }
+
+    private void processFixLine(String[] fields) {
+        // Fix,Provider,Latitude,Longitude,Altitude,Speed,Accuracy,(UTC)TimeInMs
+        double latitude = Double.parseDouble(fields[2]);
+        double longitude = Double.parseDouble(fields[3]);
+        double altitude = Double.parseDouble(fields[4]);
+        long timeMillis = fields.length > 7 && !fields[7].isEmpty() ? Long.parseLong(fields[7]) : 0;
+
+        listener.onFix(latitude, longitude, altitude, timeMillis);
+        processedFixes++;
+    }
+
+    private void finishEpoch() {
+        if (!epochStarted)
+            return;
+
+        listener.onEpoch(epochDecoder.finishEpoch());
+        processedEpochs++;
+        epochStarted = false;
+    }
+
+    /**
+     * Sleeps until the epoch with the given receiver time is due, according to the speed factor
+     */
+    private void waitForEpoch(long timeNanos) {
+        if (speedFactor <= AS_FAST_AS_POSSIBLE || processedEpochs == 0)
+            return;
+
+        long dueNanos = replayStartNanos + (long) ((timeNanos - firstEpochTimeNanos) / speedFactor);
+        long waitNanos = dueNanos - System.nanoTime();
+
+        if (waitNanos > 0) {
+            try {
+                Thread.sleep(waitNanos / 1000000, (int) (waitNanos % 1000000));
+            } catch (InterruptedException e) {
+                stopRequested = true;
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
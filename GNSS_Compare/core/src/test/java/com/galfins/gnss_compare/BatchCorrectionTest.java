@@ -0,0 +1,108 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare;
+
+import com.galfins.gnss_compare.Corrections.Correction;
+import com.galfins.gnss_compare.Corrections.ShapiroCorrection;
+import com.galfins.gnss_compare.Corrections.TropoCorrection;
+import com.galfins.gogpsextracts.Coordinates;
+import com.galfins.gogpsextracts.EpochGeometry;
+import com.galfins.gogpsextracts.NavigationProducer;
+import com.galfins.gogpsextracts.SatellitePosition;
+import com.galfins.gogpsextracts.Time;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the epoch-level correction interface against the per-satellite one
+ */
+public class BatchCorrectionTest {
+
+    private static final double[][] SATELLITES = {
+            {1.5e7, 2.0e7, 0.5e7},
+            {2.2e7, -1.0e7, 1.0e7},
+            {0.9e7, 0.3e7, 2.4e7},
+            {2.5e7, 0.8e7, -0.4e7}};
+
+    @Test
+    public void TropoBatchTest() {
+        compareBatchWithSingle(new TropoCorrection());
+    }
+
+    @Test
+    public void ShapiroBatchTest() {
+        compareBatchWithSingle(new ShapiroCorrection());
+    }
+
+    @Test
+    public void AdapterTest() {
+        // correction without a native batch implementation, uses the adapter of Correction
+        Correction correction = new Correction() {
+            private double value;
+
+            @Override
+            public void calculateCorrection(Time currentTime, Coordinates approximatedPose, SatellitePosition satelliteCoordinates, NavigationProducer navigationProducer, Coordinates initialLocation) {
+                value = satelliteCoordinates.getX() * 1e-7;
+            }
+
+            @Override
+            public double getCorrection() {
+                return value;
+            }
+
+            @Override
+            public String getName() {
+                return "Test correction";
+            }
+        };
+
+        compareBatchWithSingle(correction);
+    }
+
+    private static void compareBatchWithSingle(Correction correction) {
+        Coordinates receiver = Coordinates.globalXYZInstance(3904174.0, 301788.0, 5017699.0);
+        Time time = new Time(1520000000000L);
+
+        EpochGeometry geometry = new EpochGeometry();
+        geometry.reset(receiver);
+
+        SatellitePosition[] positions = new SatellitePosition[SATELLITES.length];
+        for (int i = 0; i < SATELLITES.length; i++) {
+            positions[i] = new SatellitePosition(0, i + 1, 'G', SATELLITES[i][0], SATELLITES[i][1], SATELLITES[i][2]);
+            assertEquals(i, geometry.add(positions[i]));
+        }
+
+        double[] corrections = new double[SATELLITES.length];
+        correction.calculateCorrections(time, receiver, null, receiver, geometry, positions, corrections);
+
+        for (int i = 0; i < SATELLITES.length; i++) {
+            correction.calculateCorrection(time, receiver, positions[i], null, receiver, geometry, i);
+            assertEquals(correction.getCorrection(), corrections[i], 1e-9);
+        }
+
+        // satellites without a position, e.g. already in the correction cache, are skipped
+        double[] skipped = new double[SATELLITES.length];
+        SatellitePosition[] partialPositions = positions.clone();
+        partialPositions[1] = null;
+        correction.calculateCorrections(time, receiver, null, receiver, geometry, partialPositions, skipped);
+
+        for (int i = 0; i < SATELLITES.length; i++)
+            assertEquals(i == 1 ? 0.0 : corrections[i], skipped[i], 1e-9);
+    }
+}
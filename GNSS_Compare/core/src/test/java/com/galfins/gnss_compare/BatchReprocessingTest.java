@@ -0,0 +1,94 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the merged error statistics of BatchReprocessing
+ */
+public class BatchReprocessingTest {
+
+    private static final double RESOLUTION = 2 * BatchReprocessing.ErrorStatistics.HISTOGRAM_BIN_METERS;
+
+    @Test
+    public void ErrorStatisticsTest() {
+
+        BatchReprocessing.ErrorStatistics statistics = new BatchReprocessing.ErrorStatistics();
+
+        for (int i = 1; i <= 100; i++)
+            statistics.add(i * 0.1, 2.0);
+
+        assertEquals(100, statistics.getCount());
+        assertEquals(5.05, statistics.getMeanHorizontalError(), 1e-9);
+        assertEquals(Math.sqrt(33.835), statistics.getRmsHorizontalError(), 1e-9);
+        assertEquals(2.0, statistics.getRmsVerticalError(), 1e-9);
+        assertEquals(5.0, statistics.getCep50(), RESOLUTION);
+        assertEquals(9.5, statistics.getCep95(), RESOLUTION);
+    }
+
+    @Test
+    public void MergeTest() {
+
+        BatchReprocessing.ErrorStatistics merged = new BatchReprocessing.ErrorStatistics();
+        BatchReprocessing.ErrorStatistics first = new BatchReprocessing.ErrorStatistics();
+        BatchReprocessing.ErrorStatistics second = new BatchReprocessing.ErrorStatistics();
+
+        for (int i = 0; i < 50; i++) {
+            first.add(1.0, 1.0);
+            second.add(3.0, 1.0);
+        }
+
+        merged.merge(first);
+        merged.merge(second);
+
+        assertEquals(100, merged.getCount());
+        assertEquals(2.0, merged.getMeanHorizontalError(), 1e-9);
+        assertEquals(1.0, merged.getCep50(), RESOLUTION);
+        assertEquals(3.0, merged.getCep95(), RESOLUTION);
+
+        merged.add(1000.0, 0.0);
+        assertEquals(Double.POSITIVE_INFINITY, merged.getHorizontalErrorPercentile(1.0), 0.0);
+    }
+
+    @Test
+    public void InvalidErrorTest() {
+        BatchReprocessing.ErrorStatistics statistics = new BatchReprocessing.ErrorStatistics();
+
+        statistics.add(Double.NaN, Double.NaN);
+        statistics.add(Double.POSITIVE_INFINITY, 1.0);
+        statistics.add(4.0, 1.0);
+
+        assertEquals(1, statistics.getCount());
+        assertEquals(2, statistics.getInvalidCount());
+        assertEquals(4.0, statistics.getMeanHorizontalError(), 1e-9);
+        assertEquals(4.0, statistics.getCep50(), RESOLUTION);
+
+        BatchReprocessing.ErrorStatistics merged = new BatchReprocessing.ErrorStatistics();
+        merged.merge(statistics);
+        assertEquals(2, merged.getInvalidCount());
+    }
+
+    @Test
+    public void EmptyStatisticsTest() {
+        BatchReprocessing.ErrorStatistics statistics = new BatchReprocessing.ErrorStatistics();
+        assertTrue(Double.isNaN(statistics.getRmsHorizontalError()));
+        assertTrue(Double.isNaN(statistics.getCep95()));
+    }
+}
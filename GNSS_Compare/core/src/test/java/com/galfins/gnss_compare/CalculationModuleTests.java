@@ -16,8 +16,6 @@
 
 package com.galfins.gnss_compare;
 
-import android.util.ArraySet;
-
 import org.junit.Test;
 
 import static org.junit.Assert.*;
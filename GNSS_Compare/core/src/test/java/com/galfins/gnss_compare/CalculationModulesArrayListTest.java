@@ -0,0 +1,323 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare;
+
+import com.galfins.gnss_compare.Constellations.GnssMeasurementsEpoch;
+
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests of the serial and parallel execution modes of CalculationModulesArrayList
+ */
+public class CalculationModulesArrayListTest {
+
+    private static final int NUMBER_OF_MODULES = 8;
+
+    /**
+     * Time after which a latch which should have been released is considered stuck
+     */
+    private static final long STUCK_MILLIS = 10000;
+
+    /**
+     * Module mock which runs {@code action} for every epoch it processes
+     */
+    private static CalculationModule createModule(final Runnable action) {
+        CalculationModule module = mock(CalculationModule.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                action.run();
+                return null;
+            }
+        }).when(module).updateMeasurements(any(GnssMeasurementsEpoch.class));
+        return module;
+    }
+
+    private static CalculationModule createCountingModule(final AtomicInteger updates) {
+        return createModule(new Runnable() {
+            @Override
+            public void run() {
+                updates.incrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Module mock which blocks on {@code release} after counting an update
+     */
+    private static CalculationModule createBlockingModule(final AtomicInteger updates, final CountDownLatch release) {
+        return createModule(new Runnable() {
+            @Override
+            public void run() {
+                updates.incrementAndGet();
+                await(release);
+            }
+        });
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(STUCK_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static GnssMeasurementsEpoch emptyEpoch() {
+        GnssMeasurementsEpoch.Decoder decoder = new GnssMeasurementsEpoch.Decoder(GnssMeasurementsEpoch.Decoder.TOW_KNOWN_API_LEVEL);
+        decoder.startEpoch(0, 0, 0, 0);
+        return decoder.finishEpoch();
+    }
+
+    private static CalculationModulesArrayList.PoseUpdatedListener countingListener(final AtomicInteger notifications) {
+        return new CalculationModulesArrayList.PoseUpdatedListener() {
+            @Override
+            public void onPoseUpdated() {
+                notifications.incrementAndGet();
+            }
+        };
+    }
+
+    @Test
+    public void SerialOrderTest() {
+
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        final Thread callingThread = Thread.currentThread();
+        final AtomicInteger otherThreadUpdates = new AtomicInteger();
+
+        CalculationModulesArrayList modules = new CalculationModulesArrayList();
+        for (int i = 0; i < NUMBER_OF_MODULES; i++) {
+            final int index = i;
+            modules.add(createModule(new Runnable() {
+                @Override
+                public void run() {
+                    order.add(index);
+                    if (Thread.currentThread() != callingThread)
+                        otherThreadUpdates.incrementAndGet();
+                }
+            }));
+        }
+
+        modules.processEpoch(emptyEpoch());
+
+        assertEquals(NUMBER_OF_MODULES, order.size());
+        for (int i = 0; i < NUMBER_OF_MODULES; i++)
+            assertEquals(i, (int) order.get(i));
+        assertEquals(0, otherThreadUpdates.get());
+    }
+
+    @Test
+    public void ParallelExecutionTest() {
+
+        // every module waits until all modules have started, which only completes if they run
+        // concurrently
+        final CountDownLatch allStarted = new CountDownLatch(NUMBER_OF_MODULES);
+        final AtomicInteger concurrentUpdates = new AtomicInteger();
+        AtomicInteger notifications = new AtomicInteger();
+
+        CalculationModulesArrayList modules = new CalculationModulesArrayList();
+        for (int i = 0; i < NUMBER_OF_MODULES; i++) {
+            modules.add(createModule(new Runnable() {
+                @Override
+                public void run() {
+                    allStarted.countDown();
+                    if (await(allStarted))
+                        concurrentUpdates.incrementAndGet();
+                }
+            }));
+        }
+        modules.assignPoseUpdatedListener(countingListener(notifications));
+
+        modules.setParallelism(NUMBER_OF_MODULES);
+        modules.setModuleTimeoutMillis(2 * STUCK_MILLIS);
+        modules.processEpoch(emptyEpoch());
+        modules.setParallelism(1);
+
+        // the listener is notified after all modules have finished
+        assertEquals(NUMBER_OF_MODULES, concurrentUpdates.get());
+        assertEquals(1, notifications.get());
+    }
+
+    @Test
+    public void SlowModuleTimeoutTest() {
+
+        AtomicInteger fastUpdates = new AtomicInteger();
+        AtomicInteger slowUpdates = new AtomicInteger();
+        AtomicInteger notifications = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        CalculationModulesArrayList modules = new CalculationModulesArrayList();
+        modules.add(createCountingModule(fastUpdates));
+        modules.add(createBlockingModule(slowUpdates, release));
+        modules.assignPoseUpdatedListener(countingListener(notifications));
+
+        modules.setParallelism(2);
+        modules.setModuleTimeoutMillis(50);
+
+        // the epoch is finished without the blocked module
+        modules.processEpoch(emptyEpoch());
+        assertEquals(1, fastUpdates.get());
+        assertEquals(1, notifications.get());
+
+        // the blocked module is skipped until its previous update finishes
+        modules.processEpoch(emptyEpoch());
+        modules.processEpoch(emptyEpoch());
+        assertEquals(3, fastUpdates.get());
+        assertEquals(1, slowUpdates.get());
+        assertEquals(3, notifications.get());
+
+        release.countDown();
+        modules.setParallelism(1);
+    }
+
+    @Test
+    public void ConfigurationDuringEpochTest() throws InterruptedException {
+
+        final AtomicInteger updates = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        final CalculationModulesArrayList modules = new CalculationModulesArrayList();
+        modules.add(createModule(new Runnable() {
+            @Override
+            public void run() {
+                updates.incrementAndGet();
+                started.countDown();
+                await(release);
+            }
+        }));
+
+        modules.setParallelism(2);
+        modules.setModuleTimeoutMillis(2 * STUCK_MILLIS);
+
+        Thread processingThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                modules.processEpoch(emptyEpoch());
+            }
+        });
+        processingThread.start();
+        assertTrue(await(started));
+
+        // the epoch barrier is waiting for the module, the configuration is not locked
+        final CountDownLatch configured = new CountDownLatch(1);
+        Thread configuringThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                modules.setModuleTimeoutMillis(STUCK_MILLIS);
+                modules.getLastEpochProcessingNanos();
+                configured.countDown();
+            }
+        });
+        configuringThread.start();
+        boolean configuredDuringEpoch = configured.await(1, TimeUnit.SECONDS);
+
+        release.countDown();
+        processingThread.join(STUCK_MILLIS);
+        configuringThread.join(STUCK_MILLIS);
+        modules.setParallelism(1);
+
+        assertTrue(configuredDuringEpoch);
+        assertEquals(1, updates.get());
+        assertEquals(STUCK_MILLIS, modules.getModuleTimeoutMillis());
+    }
+
+    @Test
+    public void QueuedUpdateCancelledTest() {
+
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger blockedUpdates = new AtomicInteger();
+        final List<GnssMeasurementsEpoch> queuedModuleEpochs =
+                Collections.synchronizedList(new ArrayList<GnssMeasurementsEpoch>());
+
+        CalculationModulesArrayList modules = new CalculationModulesArrayList();
+        modules.add(createBlockingModule(blockedUpdates, release));
+        modules.add(createBlockingModule(blockedUpdates, release));
+
+        // queued in the first epoch, as both workers are blocked
+        CalculationModule queuedModule = mock(CalculationModule.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                queuedModuleEpochs.add((GnssMeasurementsEpoch) invocation.getArguments()[0]);
+                return null;
+            }
+        }).when(queuedModule).updateMeasurements(any(GnssMeasurementsEpoch.class));
+        modules.add(queuedModule);
+
+        modules.setParallelism(2);
+        modules.setModuleTimeoutMillis(50);
+        modules.processEpoch(emptyEpoch());
+
+        // the update which did not start before the timeout must never run
+        release.countDown();
+        modules.setModuleTimeoutMillis(2 * STUCK_MILLIS);
+        GnssMeasurementsEpoch secondEpoch = emptyEpoch();
+        modules.processEpoch(secondEpoch);
+        modules.setParallelism(1);
+
+        assertEquals(1, queuedModuleEpochs.size());
+        assertSame(secondEpoch, queuedModuleEpochs.get(0));
+    }
+
+    @Test
+    public void ModuleAddedDuringEpochTest() {
+
+        AtomicInteger updates = new AtomicInteger();
+        final CalculationModulesArrayList modules = new CalculationModulesArrayList();
+        final CalculationModule addedModule = createCountingModule(updates);
+
+        // a module added while the epoch is processed, as done by the UI thread
+        CalculationModule addingModule = mock(CalculationModule.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                modules.addIfAbsent(addedModule);
+                return null;
+            }
+        }).when(addingModule).updateMeasurements(any(GnssMeasurementsEpoch.class));
+
+        modules.add(addingModule);
+        modules.add(createCountingModule(updates));
+
+        modules.processEpoch(emptyEpoch());
+        assertEquals(1, updates.get());
+        assertEquals(3, modules.size());
+
+        modules.processEpoch(emptyEpoch());
+        assertEquals(3, updates.get());
+        assertEquals(3, modules.size());
+
+        modules.remove(addedModule);
+        assertEquals(2, modules.size());
+    }
+}
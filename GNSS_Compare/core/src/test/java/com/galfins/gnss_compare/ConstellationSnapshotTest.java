@@ -0,0 +1,95 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare;
+
+import com.galfins.gnss_compare.Constellations.ConstellationSnapshot;
+import com.galfins.gnss_compare.Constellations.GnssConstants;
+import com.galfins.gnss_compare.Constellations.SatelliteKey;
+import com.galfins.gnss_compare.Constellations.SatelliteParameters;
+import com.galfins.gnss_compare.Constellations.SatellitePool;
+import com.galfins.gogpsextracts.Constants;
+import com.galfins.gogpsextracts.Coordinates;
+import com.galfins.gogpsextracts.SatellitePosition;
+import com.galfins.gogpsextracts.Time;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the per-epoch constellation snapshots
+ */
+public class ConstellationSnapshotTest {
+
+    @Test
+    public void SnapshotIsIndependentOfSatellitesTest() {
+        SatellitePool pool = new SatellitePool(GnssConstants.CONSTELLATION_GPS, SatelliteKey.SIGNAL_L1);
+        List<SatelliteParameters> satellites = new ArrayList<>();
+
+        pool.startEpoch();
+        SatelliteParameters positioned = pool.obtain(3);
+        positioned.setPseudorange(2.1e7);
+        positioned.setSignalStrength(40.0);
+        SatellitePosition position = new SatellitePosition(0, 3, 'G', 1.5e7, 2.0e7, 0.5e7);
+        position.setSatelliteClockError(1e-6);
+        positioned.setSatellitePosition(position);
+        satellites.add(positioned);
+
+        SatelliteParameters notPositioned = pool.obtain(8);
+        notPositioned.setPseudorange(2.3e7);
+        notPositioned.setSignalStrength(30.0);
+        notPositioned.setConstellationType(GnssConstants.CONSTELLATION_GPS);
+        satellites.add(notPositioned);
+
+        // no pseudorange, not part of the snapshot
+        satellites.add(pool.obtain(9));
+
+        Coordinates rxPos = Coordinates.globalXYZInstance(4e6, 1e6, 4.8e6);
+        ConstellationSnapshot snapshot = ConstellationSnapshot.create(new Time(1000), rxPos, satellites);
+
+        // next epoch overwrites the satellites and moves the receiver
+        pool.startEpoch();
+        pool.obtain(3).setPseudorange(1.0);
+        rxPos.setXYZ(0, 0, 0);
+
+        assertEquals(2, snapshot.size());
+        assertEquals(4e6, snapshot.getRxPos().getX(), 0.0);
+
+        assertTrue(snapshot.hasPosition(0));
+        assertEquals(SatelliteKey.pack(GnssConstants.CONSTELLATION_GPS, SatelliteKey.SIGNAL_L1, 3), snapshot.getKey(0));
+        assertEquals("G3_L1", snapshot.getUniqueSatId(0));
+        assertEquals(2.1e7, snapshot.getPseudorange(0), 0.0);
+        assertEquals(2.0e7, snapshot.getY(0), 0.0);
+        assertEquals(1e-6 * Constants.SPEED_OF_LIGHT, snapshot.getClockBias(0), 1e-9);
+        assertEquals(40.0, snapshot.getSignalStrength(0), 0.0);
+        assertTrue(Double.isNaN(snapshot.getElevation(0)));
+
+        assertFalse(snapshot.hasPosition(1));
+        assertEquals(8, snapshot.getSatId(1));
+        assertEquals(GnssConstants.CONSTELLATION_GPS, snapshot.getConstellationType(1));
+        assertTrue(Double.isNaN(snapshot.getX(1)));
+    }
+
+    @Test
+    public void EmptySnapshotTest() {
+        assertEquals(0, ConstellationSnapshot.EMPTY.size());
+        assertNull(ConstellationSnapshot.EMPTY.getRxPos());
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare;
+
+import com.galfins.gnss_compare.Constellations.GnssConstants;
+import com.galfins.gnss_compare.Constellations.SatelliteKey;
+import com.galfins.gnss_compare.Corrections.CorrectionCache;
+import com.galfins.gnss_compare.Corrections.IonoCorrection;
+import com.galfins.gnss_compare.Corrections.TropoCorrection;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the correction cache shared by the calculation modules
+ */
+public class CorrectionCacheTest {
+
+    private static final double X = 3904174.0;
+    private static final double Y = 301788.0;
+    private static final double Z = 5017699.0;
+
+    private static final int G5_L1 = SatelliteKey.pack(GnssConstants.CONSTELLATION_GPS, SatelliteKey.SIGNAL_L1, 5);
+    private static final int G5_L5 = SatelliteKey.pack(GnssConstants.CONSTELLATION_GPS, SatelliteKey.SIGNAL_L5, 5);
+
+    @Test
+    public void KeyTest() {
+        CorrectionCache cache = new CorrectionCache(1024);
+
+        assertTrue(Double.isNaN(cache.get(TropoCorrection.class, G5_L1, 1000, X, Y, Z)));
+        cache.put(TropoCorrection.class, G5_L1, 1000, X, Y, Z, 2.5);
+
+        assertEquals(2.5, cache.get(TropoCorrection.class, G5_L1, 1000, X, Y, Z), 0.0);
+
+        // same cell
+        double offset = CorrectionCache.CELL_SIZE / 4;
+        double cellX = Math.floor(X / CorrectionCache.CELL_SIZE) * CorrectionCache.CELL_SIZE + offset;
+        assertEquals(2.5, cache.get(TropoCorrection.class, G5_L1, 1000, cellX, Y, Z), 0.0);
+
+        // any other part of the key differs
+        assertTrue(Double.isNaN(cache.get(TropoCorrection.class, G5_L1, 1000, X + CorrectionCache.CELL_SIZE, Y, Z)));
+        assertTrue(Double.isNaN(cache.get(IonoCorrection.class, G5_L1, 1000, X, Y, Z)));
+        assertTrue(Double.isNaN(cache.get(TropoCorrection.class, G5_L5, 1000, X, Y, Z)));
+
+        assertEquals(2, cache.getHitCount());
+        assertEquals(4, cache.getMissCount());
+    }
+
+    @Test
+    public void EpochEvictionTest() {
+        CorrectionCache cache = new CorrectionCache(1024);
+
+        for (int svid = 1; svid <= 20; svid++)
+            cache.put(TropoCorrection.class, svid, 1000, X, Y, Z, svid);
+        assertEquals(20, cache.size());
+
+        // a newer epoch evicts the entries of its stripe
+        for (int svid = 1; svid <= 20; svid++)
+            assertTrue(Double.isNaN(cache.get(TropoCorrection.class, svid, 2000, X, Y, Z)));
+        for (int svid = 1; svid <= 20; svid++)
+            cache.put(TropoCorrection.class, svid, 2000, X, Y, Z, -svid);
+        assertEquals(20, cache.size());
+
+        // late modules neither read nor write the older epoch
+        cache.put(TropoCorrection.class, 1, 1000, X, Y, Z, 1.0);
+        assertTrue(Double.isNaN(cache.get(TropoCorrection.class, 1, 1000, X, Y, Z)));
+        assertEquals(-1.0, cache.get(TropoCorrection.class, 1, 2000, X, Y, Z), 0.0);
+    }
+
+    @Test
+    public void CapacityTest() {
+        CorrectionCache cache = new CorrectionCache(CorrectionCache.STRIPES * 2);
+
+        for (int svid = 0; svid < 200; svid++)
+            cache.put(TropoCorrection.class, svid, 1000, X, Y, Z, svid);
+
+        assertTrue(cache.size() <= CorrectionCache.STRIPES * 2);
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    public void ConcurrencyTest() throws InterruptedException {
+        final CorrectionCache cache = new CorrectionCache(4096);
+        final int modules = 8;
+        final int satellites = 40;
+        final AtomicInteger errors = new AtomicInteger();
+
+        for (int epoch = 1; epoch <= 20; epoch++) {
+            final long epochMsec = epoch * 1000L;
+            List<Thread> threads = new ArrayList<>();
+
+            for (int module = 0; module < modules; module++) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int svid = 0; svid < satellites; svid++) {
+                            double expected = epochMsec + svid;
+                            double value = cache.get(TropoCorrection.class, svid, epochMsec, X, Y, Z);
+                            if (Double.isNaN(value))
+                                cache.put(TropoCorrection.class, svid, epochMsec, X, Y, Z, expected);
+                            else if (value != expected)
+                                errors.incrementAndGet();
+                        }
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+
+            for (Thread thread : threads)
+                thread.join();
+        }
+
+        assertEquals(0, errors.get());
+        assertEquals(20L * modules * satellites, cache.getHitCount() + cache.getMissCount());
+        assertTrue(cache.getHitCount() > 0);
+        assertTrue(cache.size() <= satellites);
+    }
+}
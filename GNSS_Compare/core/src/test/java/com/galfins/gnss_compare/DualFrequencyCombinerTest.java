@@ -0,0 +1,120 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare;
+
+import com.galfins.gnss_compare.Constellations.DualFrequencyCombiner;
+import com.galfins.gnss_compare.Constellations.GnssConstants;
+import com.galfins.gnss_compare.Constellations.SatelliteKey;
+import com.galfins.gnss_compare.Constellations.SatelliteParameters;
+import com.galfins.gnss_compare.Constellations.SatellitePool;
+import com.galfins.gnss_compare.Constellations.SignalCombination;
+import com.galfins.gogpsextracts.Constants;
+import com.galfins.gogpsextracts.SatellitePosition;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the dual-frequency combinations and of the svid pairing of the iono-free satellites
+ */
+public class DualFrequencyCombinerTest {
+
+    @Test
+    public void CombinationCoefficientsTest() {
+        SignalCombination combination = SignalCombination.GPS_L1_L5;
+
+        double f1 = Constants.FL1;
+        double f5 = Constants.FL5;
+        double pseudorangeL1 = 2.1e7 + 3.0;
+        double pseudorangeL5 = 2.1e7 + 3.0 * f1 * f1 / (f5 * f5);
+
+        // ionospheric delay scales with 1/f^2 and is removed by the combination
+        assertEquals(2.1e7, combination.ionoFree(pseudorangeL1, pseudorangeL5), 1e-6);
+        assertEquals(
+                (f1 * f1 * pseudorangeL1 - f5 * f5 * pseudorangeL5) / (f1 * f1 - f5 * f5),
+                combination.ionoFree(pseudorangeL1, pseudorangeL5),
+                1e-6);
+
+        assertEquals(pseudorangeL1 - pseudorangeL5, combination.geometryFree(pseudorangeL1, pseudorangeL5), 0.0);
+
+        assertEquals(Constants.SPEED_OF_LIGHT / (f1 - f5), combination.getWideLaneWavelength(), 1e-9);
+
+        // no geometry, no ionosphere: the combination is the wide lane ambiguity
+        double ambiguity = 3 * combination.getWideLaneWavelength();
+        double phaseL1 = 2.1e7;
+        double phaseL5 = phaseL1 - ambiguity * (f1 - f5) / f5;
+        assertEquals(0.0, combination.melbourneWubbena(phaseL1, phaseL1, phaseL1, phaseL1), 1e-6);
+        assertEquals(ambiguity, combination.melbourneWubbena(phaseL1, phaseL5, phaseL1, phaseL1), 1e-6);
+    }
+
+    @Test
+    public void PairingTest() {
+        SatellitePool poolL1 = new SatellitePool(GnssConstants.CONSTELLATION_GPS, SatelliteKey.SIGNAL_L1);
+        SatellitePool poolL5 = new SatellitePool(GnssConstants.CONSTELLATION_GPS, SatelliteKey.SIGNAL_L5);
+        DualFrequencyCombiner combiner = new DualFrequencyCombiner(
+                GnssConstants.CONSTELLATION_GPS, SignalCombination.GPS_L1_L5);
+
+        poolL1.startEpoch();
+        poolL5.startEpoch();
+
+        List<SatelliteParameters> satellitesL1 = new ArrayList<>();
+        List<SatelliteParameters> satellitesL5 = new ArrayList<>();
+        for (int svid : new int[]{3, 10, 24})
+            satellitesL1.add(createSatellite(poolL1, svid, 2.1e7 + svid));
+        for (int svid : new int[]{24, 3, 70})
+            satellitesL5.add(createSatellite(poolL5, svid, 2.1e7 + 2 * svid));
+
+        List<SatelliteParameters> combined = new ArrayList<>();
+        combiner.combine(satellitesL1, satellitesL5, combined);
+
+        assertEquals(2, combined.size());
+        assertEquals(3, combined.get(0).getSatId());
+        assertEquals(24, combined.get(1).getSatId());
+        assertEquals("G24_IF", combined.get(1).getUniqueSatId());
+        assertEquals(
+                SignalCombination.GPS_L1_L5.ionoFree(2.1e7 + 24, 2.1e7 + 48),
+                combined.get(1).getPseudorange(),
+                1e-6);
+
+        // only the L1 satellite of svid 24 was positioned
+        SatellitePosition position = new SatellitePosition(0, 24, 'G', 1.5e7, 2.0e7, 0.5e7);
+        satellitesL1.get(2).setSatellitePosition(position);
+        satellitesL1.get(2).setAccumulatedCorrection(4.5);
+        List<SatelliteParameters> positioned = new ArrayList<>();
+        positioned.add(satellitesL1.get(2));
+
+        List<SatelliteParameters> excluded = new ArrayList<>();
+        combiner.copyGeometry(positioned, combined, excluded);
+
+        assertEquals(1, excluded.size());
+        assertSame(combined.get(0), excluded.get(0));
+        assertSame(position, combined.get(1).getSatellitePosition());
+        assertEquals(4.5, combined.get(1).getAccumulatedCorrection(), 0.0);
+    }
+
+    private static SatelliteParameters createSatellite(SatellitePool pool, int svid, double pseudorange) {
+        SatelliteParameters satellite = pool.obtain(svid);
+        satellite.setPseudorange(pseudorange);
+        satellite.setSignalStrength(40.0);
+        satellite.setConstellationType(GnssConstants.CONSTELLATION_GPS);
+        return satellite;
+    }
+}
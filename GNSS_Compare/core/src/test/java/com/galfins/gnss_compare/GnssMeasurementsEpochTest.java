@@ -0,0 +1,247 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare;
+
+import com.galfins.gnss_compare.Constellations.Constellation;
+import com.galfins.gnss_compare.Constellations.GnssConstants;
+import com.galfins.gnss_compare.Constellations.GnssMeasurementsEpoch;
+import com.galfins.gnss_compare.Constellations.GpsConstellation;
+import com.galfins.gnss_compare.Constellations.SignalRegistry;
+import com.galfins.gogpsextracts.Constants;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the shared GNSS measurement epoch decoder
+ */
+public class GnssMeasurementsEpochTest {
+
+    private static final long TIME_NANOS = 123456789000L;
+    private static final long FULL_BIAS_NANOS = -1234567890123456789L;
+    private static final double BIAS_NANOS = 0.25;
+
+    private static final int NUMBER_OF_SATELLITES = 12;
+
+    private static void fillEpoch(GnssMeasurementsEpoch.Decoder decoder, int epochIndex) {
+
+        decoder.startEpoch(
+                System.currentTimeMillis(),
+                TIME_NANOS + epochIndex * 1000000000L,
+                FULL_BIAS_NANOS,
+                BIAS_NANOS);
+
+        double gpsTime = TIME_NANOS + epochIndex * 1000000000L - (FULL_BIAS_NANOS + BIAS_NANOS);
+        double weekNumberNanos = Math.floor((-1. * FULL_BIAS_NANOS) / Constants.NUMBER_NANO_SECONDS_PER_WEEK)
+                * Constants.NUMBER_NANO_SECONDS_PER_WEEK;
+
+        for (int svid = 1; svid <= NUMBER_OF_SATELLITES; svid++) {
+            // ~70 ms of signal travel time
+            long receivedSvTimeNanos = (long) (gpsTime - weekNumberNanos) - 70000000L - svid * 100000L;
+
+            decoder.addMeasurement(
+                    svid,
+                    GnssConstants.CONSTELLATION_GPS,
+                    1.57542e9,
+                    receivedSvTimeNanos,
+                    10,
+                    0.0,
+                    GnssConstants.STATE_CODE_LOCK | GnssConstants.STATE_TOW_DECODED,
+                    40.0,
+                    0,
+                    0.0,
+                    100.0);
+
+            decoder.addMeasurement(
+                    svid,
+                    GnssConstants.CONSTELLATION_GALILEO,
+                    1.17645e9,
+                    receivedSvTimeNanos,
+                    10,
+                    0.0,
+                    0,
+                    35.0,
+                    0,
+                    0.0,
+                    100.0);
+        }
+    }
+
+    @Test
+    public void DecodeGpsPseudorangeTest() {
+
+        GnssMeasurementsEpoch.Decoder decoder = new GnssMeasurementsEpoch.Decoder(GnssMeasurementsEpoch.Decoder.TOW_KNOWN_API_LEVEL);
+        fillEpoch(decoder, 0);
+        GnssMeasurementsEpoch epoch = decoder.finishEpoch();
+
+        assertEquals(2 * NUMBER_OF_SATELLITES, epoch.size());
+
+        double expectedPseudorange = (70000000L + 100000L) / 1.0E9 * Constants.SPEED_OF_LIGHT;
+
+        assertEquals(1, epoch.getSvid(0));
+        assertEquals(GnssMeasurementsEpoch.BAND_L1, epoch.getBand(0));
+        assertTrue(epoch.matches(0, GnssConstants.CONSTELLATION_GPS, GnssMeasurementsEpoch.BAND_L1));
+        assertTrue(epoch.hasPseudorange(0));
+        assertEquals(expectedPseudorange, epoch.getPseudorangeMeters(0), 1.0);
+
+        // Galileo E5a measurement without any valid state
+        assertEquals(GnssMeasurementsEpoch.BAND_L5, epoch.getBand(1));
+        assertFalse(epoch.hasPseudorange(1));
+    }
+
+    @Test
+    public void FirstFullBiasIsKeptTest() {
+
+        GnssMeasurementsEpoch.Decoder decoder = new GnssMeasurementsEpoch.Decoder(GnssMeasurementsEpoch.Decoder.TOW_KNOWN_API_LEVEL);
+
+        decoder.startEpoch(0, TIME_NANOS, FULL_BIAS_NANOS, BIAS_NANOS);
+        decoder.finishEpoch();
+        decoder.startEpoch(0, TIME_NANOS, FULL_BIAS_NANOS + 1000, BIAS_NANOS);
+        GnssMeasurementsEpoch epoch = decoder.finishEpoch();
+
+        assertEquals(FULL_BIAS_NANOS, epoch.getFirstFullBiasNanos());
+        assertEquals(FULL_BIAS_NANOS + 1000, epoch.getFullBiasNanos());
+        assertEquals(0, epoch.size());
+    }
+
+    @Test
+    public void ClockDiscontinuityTest() {
+
+        GnssMeasurementsEpoch.Decoder decoder = new GnssMeasurementsEpoch.Decoder(GnssMeasurementsEpoch.Decoder.TOW_KNOWN_API_LEVEL);
+
+        decoder.startEpoch(0, TIME_NANOS, FULL_BIAS_NANOS, BIAS_NANOS, 2);
+        decoder.finishEpoch();
+        decoder.startEpoch(0, TIME_NANOS, FULL_BIAS_NANOS + 1000, BIAS_NANOS, 2);
+        assertEquals(FULL_BIAS_NANOS, decoder.finishEpoch().getFirstFullBiasNanos());
+
+        // the hardware clock restarted, its new FullBiasNanos is kept
+        decoder.startEpoch(0, TIME_NANOS, FULL_BIAS_NANOS + 5000, BIAS_NANOS, 3);
+        assertEquals(FULL_BIAS_NANOS + 5000, decoder.finishEpoch().getFirstFullBiasNanos());
+        decoder.startEpoch(0, TIME_NANOS, FULL_BIAS_NANOS + 6000, BIAS_NANOS, 3);
+        assertEquals(FULL_BIAS_NANOS + 5000, decoder.finishEpoch().getFirstFullBiasNanos());
+    }
+
+    @Test
+    public void BandOfTest() {
+        assertEquals(GnssMeasurementsEpoch.BAND_L1, GnssMeasurementsEpoch.bandOf(Double.NaN));
+        assertEquals(GnssMeasurementsEpoch.BAND_L1, GnssMeasurementsEpoch.bandOf(1.57542e9));
+        assertEquals(GnssMeasurementsEpoch.BAND_L5, GnssMeasurementsEpoch.bandOf(1.17645e9));
+        assertEquals(GnssMeasurementsEpoch.BAND_UNKNOWN, GnssMeasurementsEpoch.bandOf(2.492e9));
+    }
+
+    @Test
+    public void SignalGroupingTest() {
+
+        GnssMeasurementsEpoch.Decoder decoder = new GnssMeasurementsEpoch.Decoder(GnssMeasurementsEpoch.Decoder.TOW_KNOWN_API_LEVEL);
+        fillEpoch(decoder, 0);
+        GnssMeasurementsEpoch epoch = decoder.finishEpoch();
+
+        assertEquals(NUMBER_OF_SATELLITES, epoch.getSignalSize(SignalRegistry.GPS_L1));
+        assertEquals(NUMBER_OF_SATELLITES, epoch.getSignalSize(SignalRegistry.GALILEO_E5A));
+        assertEquals(0, epoch.getSignalSize(SignalRegistry.GPS_L5));
+        assertEquals(0, epoch.getSignalSize(SignalRegistry.NO_SIGNAL));
+
+        // measurements keep the reported order within a signal
+        for (int n = 0; n < NUMBER_OF_SATELLITES; n++) {
+            int i = epoch.getSignalMeasurement(SignalRegistry.GALILEO_E5A, n);
+            assertEquals(GnssConstants.CONSTELLATION_GALILEO, epoch.getConstellationType(i));
+            assertEquals(n + 1, epoch.getSvid(i));
+            assertEquals(SignalRegistry.GALILEO_E5A, epoch.getSignal(i));
+        }
+    }
+
+    @Test
+    public void SignalRegistryTest() {
+        assertEquals(SignalRegistry.GPS_L5,
+                SignalRegistry.signalOf(GnssConstants.CONSTELLATION_GPS, GnssMeasurementsEpoch.BAND_L5));
+        assertEquals(SignalRegistry.NO_SIGNAL,
+                SignalRegistry.signalOf(GnssConstants.CONSTELLATION_GPS, GnssMeasurementsEpoch.BAND_UNKNOWN));
+        assertEquals(SignalRegistry.NO_SIGNAL, SignalRegistry.signalOf(-1, GnssMeasurementsEpoch.BAND_L1));
+
+        // registering an existing signal returns it
+        assertEquals(SignalRegistry.GALILEO_E1, SignalRegistry.register(
+                GnssConstants.CONSTELLATION_GALILEO,
+                GnssMeasurementsEpoch.BAND_L1,
+                SignalRegistry.PSEUDORANGE_GALILEO_E1));
+
+        // a new signal is routed without changes to the decoder
+        int qzssL1 = SignalRegistry.register(
+                GnssConstants.CONSTELLATION_QZSS,
+                GnssMeasurementsEpoch.BAND_L1,
+                SignalRegistry.PSEUDORANGE_GPS);
+
+        GnssMeasurementsEpoch.Decoder decoder = new GnssMeasurementsEpoch.Decoder(GnssMeasurementsEpoch.Decoder.TOW_KNOWN_API_LEVEL);
+        decoder.startEpoch(0, TIME_NANOS, FULL_BIAS_NANOS, BIAS_NANOS);
+        decoder.addMeasurement(193, GnssConstants.CONSTELLATION_QZSS, 1.57542e9, 0, 10, 0.0, 0, 30.0, 0, 0.0, 0.0);
+        GnssMeasurementsEpoch epoch = decoder.finishEpoch();
+
+        assertEquals(1, epoch.getSignalSize(qzssL1));
+        assertEquals(0, epoch.getSignalMeasurement(qzssL1, 0));
+    }
+
+    @Test
+    public void BandBinsTest() {
+        assertEquals(GnssMeasurementsEpoch.BAND_L1, SignalRegistry.bandOf(1.57542e9 + 0.09e9));
+        assertEquals(GnssMeasurementsEpoch.BAND_L1, SignalRegistry.bandOf(1.602e9));
+        assertEquals(GnssMeasurementsEpoch.BAND_L5, SignalRegistry.bandOf(1.20714e9));
+        assertEquals(GnssMeasurementsEpoch.BAND_UNKNOWN, SignalRegistry.bandOf(1.37e9));
+        assertEquals(GnssMeasurementsEpoch.BAND_UNKNOWN, SignalRegistry.bandOf(-1.0));
+    }
+
+    /**
+     * An epoch decoded once and shared by several modules gives each of them the same
+     * satellites as decoding it separately for each module
+     */
+    @Test
+    public void SharedEpochTest() {
+
+        final int numberOfModules = 4;
+        final int epochs = 10;
+
+        List<Constellation> sharedConstellations = new ArrayList<>();
+        List<Constellation> separateConstellations = new ArrayList<>();
+        for (int i = 0; i < numberOfModules; i++) {
+            sharedConstellations.add(new GpsConstellation());
+            separateConstellations.add(new GpsConstellation());
+        }
+
+        GnssMeasurementsEpoch.Decoder decoder = new GnssMeasurementsEpoch.Decoder(GnssMeasurementsEpoch.Decoder.TOW_KNOWN_API_LEVEL);
+
+        for (int epochIndex = 0; epochIndex < epochs; epochIndex++) {
+
+            fillEpoch(decoder, epochIndex);
+            GnssMeasurementsEpoch epoch = decoder.finishEpoch();
+            for (Constellation constellation : sharedConstellations)
+                constellation.updateMeasurements(epoch);
+
+            for (Constellation constellation : separateConstellations) {
+                fillEpoch(decoder, epochIndex);
+                constellation.updateMeasurements(decoder.finishEpoch());
+            }
+
+            for (int i = 0; i < numberOfModules; i++) {
+                assertEquals(NUMBER_OF_SATELLITES, sharedConstellations.get(i).getUsedConstellationSize());
+                assertEquals(separateConstellations.get(i).getUsedConstellationSize(),
+                        sharedConstellations.get(i).getUsedConstellationSize());
+            }
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare;
+
+import com.galfins.gnss_compare.Corrections.IonoCorrection;
+import com.galfins.gnss_compare.Corrections.KlobucharModel;
+import com.galfins.gogpsextracts.Constants;
+import com.galfins.gogpsextracts.Coordinates;
+import com.galfins.gogpsextracts.EpochGeometry;
+import com.galfins.gogpsextracts.IonoGalileo;
+import com.galfins.gogpsextracts.IonoGps;
+import com.galfins.gogpsextracts.NavigationProducer;
+import com.galfins.gogpsextracts.Observations;
+import com.galfins.gogpsextracts.SatellitePosition;
+import com.galfins.gogpsextracts.Time;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the epoch cache of the Klobuchar coefficients
+ */
+public class KlobucharModelTest {
+
+    private static final float[] ALPHA = {1.1176e-8f, 7.4506e-9f, -5.9605e-8f, -5.9605e-8f};
+    private static final float[] BETA = {90112f, 16384f, -196610f, -65536f};
+
+    /**
+     * Navigation producer returning fixed coefficients and counting the lookups
+     */
+    private static class CountingProducer implements NavigationProducer {
+        IonoGps iono;
+        int lookups = 0;
+
+        CountingProducer(IonoGps iono) {
+            this.iono = iono;
+        }
+
+        @Override
+        public SatellitePosition getGpsSatPosition(Observations obs, int satID, char satType, double receiverClockError) {
+            return null;
+        }
+
+        @Override
+        public IonoGps getIono(long unixTime, Coordinates initialLocation) {
+            lookups++;
+            return iono;
+        }
+
+        @Override
+        public IonoGalileo getIonoNeQuick(long unixTime, Coordinates initialLocation) {
+            return null;
+        }
+
+        @Override
+        public void init() {
+        }
+
+        @Override
+        public void release(boolean waitForThread, long timeoutMs) {
+        }
+    }
+
+    @Test
+    public void DelayTest() {
+        KlobucharModel model = new KlobucharModel();
+        Time time = new Time(1520000000000L);
+
+        model.update(time, new CountingProducer(createIono(ALPHA, BETA)), null, 52.0, 4.4);
+
+        for (double elevation = 5; elevation <= 90; elevation += 7.3) {
+            for (double azimuth = -180; azimuth <= 180; azimuth += 23.0) {
+                assertEquals(
+                        klobuchar(ALPHA, BETA, time.getGpsTime(), elevation, azimuth, 52.0, 4.4),
+                        model.getDelay(elevation, azimuth),
+                        1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void CachingTest() {
+        CountingProducer producer = new CountingProducer(createIono(ALPHA, BETA));
+        IonoCorrection correction = new IonoCorrection();
+
+        Coordinates receiver = Coordinates.globalXYZInstance(3904174.0, 301788.0, 5017699.0);
+        EpochGeometry geometry = new EpochGeometry();
+        geometry.reset(receiver);
+        SatellitePosition[] positions = {
+                new SatellitePosition(0, 1, 'G', 1.5e7, 2.0e7, 0.5e7),
+                new SatellitePosition(0, 2, 'G', 2.2e7, -1.0e7, 1.0e7),
+                new SatellitePosition(0, 3, 'G', 0.9e7, 0.3e7, 2.4e7)};
+        for (SatellitePosition position : positions)
+            geometry.add(position);
+
+        double[] corrections = new double[positions.length];
+
+        // one lookup per epoch, for the batch and the per-satellite interface
+        Time time = new Time(1520000000000L);
+        correction.calculateCorrections(time, receiver, producer, receiver, geometry, positions, corrections);
+        for (int i = 0; i < positions.length; i++) {
+            correction.calculateCorrection(time, receiver, positions[i], producer, receiver, geometry, i);
+            assertEquals(corrections[i], correction.getCorrection(), 0.0);
+            assertTrue(corrections[i] > 0);
+        }
+        assertEquals(1, producer.lookups);
+        assertEquals(1, correction.getCoefficientRefreshCount());
+
+        // same coefficients in the next epoch, looked up but not refreshed
+        correction.calculateCorrections(new Time(1520000001000L), receiver, producer, receiver, geometry, positions, corrections);
+        assertEquals(2, producer.lookups);
+        assertEquals(1, correction.getCoefficientRefreshCount());
+
+        producer.iono = createIono(ALPHA, new float[]{94208f, 16384f, -196610f, -65536f});
+        correction.calculateCorrections(new Time(1520000002000L), receiver, producer, receiver, geometry, positions, corrections);
+        assertEquals(2, correction.getCoefficientRefreshCount());
+
+        // no coefficients, no correction
+        producer.iono = null;
+        correction.calculateCorrection(new Time(1520000003000L), receiver, positions[0], producer, receiver, geometry, 0);
+        assertEquals(0.0, correction.getCorrection(), 0.0);
+    }
+
+    private static IonoGps createIono(float[] alpha, float[] beta) {
+        IonoGps iono = new IonoGps();
+        iono.setAlpha(alpha.clone());
+        iono.setBeta(beta.clone());
+        return iono;
+    }
+
+    /**
+     * Direct evaluation of the Klobuchar model
+     */
+    private static double klobuchar(float[] alpha, float[] beta, double gpsTime, double elevation, double azimuth, double latitude, double longitude) {
+        double lon = longitude / 180;
+        double lat = latitude / 180;
+        azimuth = azimuth / 180;
+        elevation = Math.abs(elevation) / 180;
+
+        double f = 1 + 16 * Math.pow((0.53 - elevation), 3);
+        double psi = 0.0137 / (elevation + 0.11) - 0.022;
+        double phi = Math.max(-0.416, Math.min(0.416, lat + psi * Math.cos(azimuth * Math.PI)));
+        double lambda = lon + (psi * Math.sin(azimuth * Math.PI)) / Math.cos(phi * Math.PI);
+        double ro = phi + 0.064 * Math.cos((lambda - 1.617) * Math.PI);
+
+        double t = lambda * 43200 + gpsTime;
+        while (t >= 86400)
+            t = t - 86400;
+        while (t < 0)
+            t = t + 86400;
+
+        double p = Math.max(72000, beta[0] + beta[1] * ro + beta[2] * Math.pow(ro, 2) + beta[3] * Math.pow(ro, 3));
+        double a = Math.max(0, alpha[0] + alpha[1] * ro + alpha[2] * Math.pow(ro, 2) + alpha[3] * Math.pow(ro, 3));
+        double x = (2 * Math.PI * (t - 50400)) / p;
+
+        if (Math.abs(x) < 1.57)
+            return Constants.SPEED_OF_LIGHT * f * (5e-9 + a * (1 - (Math.pow(x, 2)) / 2 + (Math.pow(x, 4)) / 24));
+        return Constants.SPEED_OF_LIGHT * f * 5e-9;
+    }
+}
@@ -0,0 +1,372 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare;
+
+import com.galfins.gnss_compare.Corrections.NeQuickCorrection;
+import com.galfins.gnss_compare.Corrections.NeQuickData;
+import com.galfins.gnss_compare.Corrections.NeQuickG;
+import com.galfins.gogpsextracts.Constants;
+import com.galfins.gogpsextracts.Coordinates;
+import com.galfins.gogpsextracts.EpochGeometry;
+import com.galfins.gogpsextracts.IonoGalileo;
+import com.galfins.gogpsextracts.IonoGps;
+import com.galfins.gogpsextracts.NavigationProducer;
+import com.galfins.gogpsextracts.Observations;
+import com.galfins.gogpsextracts.SatellitePosition;
+import com.galfins.gogpsextracts.Time;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.URISyntaxException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the NeQuick-G model on synthetic maps: foF2 and M(3000)F2 constant in space and
+ * time, with foF2 growing with the solar activity, and a MODIP equal to the latitude.
+ *
+ * The reference test compares slant TECs with validation.csv, with the lines: month, UT, ai0,
+ * ai1, ai2, receiver longitude, latitude, height, satellite longitude, latitude, height, STEC.
+ * It runs on the fixture maps and vectors of the nequick test resources, or on the ITU-R maps
+ * and the vectors of the Galileo ionospheric correction algorithm when their directory is given
+ * with -Dnequick.dataDir.
+ */
+public class NeQuickGTest {
+
+    private static final double[] FOF2 = {8.0, 12.0};
+    private static final double M3000 = 3.0;
+
+    private File dataDirectory = null;
+
+    /**
+     * Navigation producer returning fixed NeQuick-G coefficients
+     */
+    private static class NeQuickProducer implements NavigationProducer {
+        IonoGalileo iono;
+
+        NeQuickProducer(IonoGalileo iono) {
+            this.iono = iono;
+        }
+
+        @Override
+        public SatellitePosition getGpsSatPosition(Observations obs, int satID, char satType, double receiverClockError) {
+            return null;
+        }
+
+        @Override
+        public IonoGps getIono(long unixTime, Coordinates initialLocation) {
+            return null;
+        }
+
+        @Override
+        public IonoGalileo getIonoNeQuick(long unixTime, Coordinates initialLocation) {
+            return iono;
+        }
+
+        @Override
+        public void init() {
+        }
+
+        @Override
+        public void release(boolean waitForThread, long timeoutMs) {
+        }
+    }
+
+    @After
+    public void tearDown() {
+        NeQuickData.setDataDirectory(null);
+        if (dataDirectory != null) {
+            File[] files = dataDirectory.listFiles();
+            if (files != null)
+                for (File file : files)
+                    file.delete();
+            dataDirectory.delete();
+        }
+    }
+
+    @Test
+    public void ModipInterpolationTest() {
+        double[][] modip = new double[NeQuickData.MODIP_ROWS][NeQuickData.MODIP_COLUMNS];
+        for (int row = 0; row < modip.length; row++)
+            for (int column = 0; column < modip[row].length; column++)
+                modip[row][column] = cubic(-95 + 5 * row, -190 + 10 * column);
+
+        NeQuickData data = new NeQuickData(null, null, modip);
+
+        // third order interpolation is exact for a cubic grid
+        for (double latitude = -84.3; latitude < 85; latitude += 7.9)
+            for (double longitude = -179.1; longitude < 180; longitude += 13.7)
+                assertEquals(cubic(latitude, longitude), data.getModip(latitude, longitude), 1e-9);
+
+        assertEquals(data.getModip(10.0, -170.0), data.getModip(10.0, 190.0), 1e-9);
+    }
+
+    @Test
+    public void VerticalIntegrationTest() {
+        NeQuickG model = createModel(createData());
+        model.prepare(4, 12.0, 80.0, 0.0, 0.0, 45.0, 10.0);
+
+        // trapezoidal integration of the profile with a fine step
+        double expected = 0;
+        double step = 0.25;
+        for (double height = 0; height < 20000; height += step) {
+            if (height >= 2000)
+                step = 2;
+            expected += (model.getElectronDensity(45.0, 10.0, height)
+                    + model.getElectronDensity(45.0, 10.0, height + step)) / 2 * step * 1000 / 1e16;
+        }
+
+        double verticalTec = model.getSlantTec(45.0, 10.0, 0.0, 45.0, 10.0, 20000e3);
+        assertEquals(expected, verticalTec, 0.005 * expected);
+
+        // a ray a few meters away from the vertical
+        assertEquals(verticalTec, model.getSlantTec(45.0, 10.0, 0.0, 45.0 + 2e-5, 10.0, 20000e3), 0.005 * verticalTec);
+    }
+
+    @Test
+    public void SlantIntegrationTest() {
+        NeQuickG model = createModel(createData());
+        model.prepare(10, 6.0, 80.0, 0.0, 0.0, 40.0, 20.0);
+
+        double verticalTec = model.getSlantTec(40.0, 20.0, 100.0, 40.0, 20.0, 23222e3);
+        double previousTec = verticalTec;
+
+        // lower satellites cross more ionosphere
+        for (double distance : new double[]{5, 20, 40, 60}) {
+            double slantTec = model.getSlantTec(40.0, 20.0, 100.0, 40.0 + distance, 20.0, 23222e3);
+            assertTrue(slantTec > previousTec);
+            assertTrue(slantTec < 4 * verticalTec);
+            previousTec = slantTec;
+        }
+
+        // the model depends on the coefficients only through the effective ionisation level
+        model.prepare(10, 6.0, 200.0, 0.0, 0.0, 40.0, 20.0);
+        assertEquals(200.0, model.getEffectiveIonisationLevel(), 1e-12);
+    }
+
+    @Test
+    public void CorrectionCachingTest() throws IOException {
+        dataDirectory = writeData(createData());
+        NeQuickData.setDataDirectory(dataDirectory);
+        assertTrue(NeQuickData.isInstalled());
+
+        NeQuickProducer producer = new NeQuickProducer(createIono(80.0f));
+
+        Coordinates receiver = Coordinates.globalXYZInstance(3904174.0, 301788.0, 5017699.0);
+        EpochGeometry geometry = new EpochGeometry();
+        geometry.reset(receiver);
+        SatellitePosition[] positions = {
+                new SatellitePosition(0, 1, 'E', 1.5e7, 2.0e7, 1.5e7),
+                new SatellitePosition(0, 2, 'E', 2.6e7, -1.0e7, 1.0e7),
+                new SatellitePosition(0, 3, 'E', 0.9e7, 0.3e7, 2.9e7),
+                new SatellitePosition(0, 4, 'E', 1.2e7, 1.9e7, 2.2e7)};
+        for (SatellitePosition position : positions)
+            geometry.add(position);
+
+        NeQuickCorrection correction = new NeQuickCorrection();
+        double[] corrections = new double[positions.length];
+
+        Time time = new Time(1520000000000L);
+        correction.calculateCorrections(time, receiver, producer, receiver, geometry, positions, corrections);
+        assertEquals(positions.length, correction.getIntegrationCount());
+
+        // the epoch integrations match the per-satellite ones of a new correction
+        NeQuickCorrection serialCorrection = new NeQuickCorrection();
+        for (int i = 0; i < positions.length; i++) {
+            assertTrue(corrections[i] > 0);
+            serialCorrection.calculateCorrection(time, receiver, positions[i], producer, receiver, geometry, i);
+            assertEquals(corrections[i], serialCorrection.getCorrection(), 0.0);
+        }
+
+        // same rays in the next epoch, the TECs are reused
+        double[] nextCorrections = new double[positions.length];
+        correction.calculateCorrections(new Time(1520000001000L), receiver, producer, receiver, geometry, positions, nextCorrections);
+        assertEquals(positions.length, correction.getIntegrationCount());
+        assertArrayEquals(corrections, nextCorrections, 0.0);
+
+        // too old
+        correction.calculateCorrections(new Time(1520000000000L + NeQuickCorrection.MAX_TEC_AGE + 1000), receiver, producer, receiver, geometry, positions, nextCorrections);
+        assertEquals(2 * positions.length, correction.getIntegrationCount());
+
+        // new coefficients
+        producer.iono = createIono(120.0f);
+        correction.calculateCorrections(new Time(1520000000000L + NeQuickCorrection.MAX_TEC_AGE + 2000), receiver, producer, receiver, geometry, positions, nextCorrections);
+        assertEquals(3 * positions.length, correction.getIntegrationCount());
+        for (int i = 0; i < positions.length; i++)
+            assertTrue(nextCorrections[i] > corrections[i]);
+
+        // no coefficients, no correction
+        producer.iono = null;
+        correction.calculateCorrections(new Time(1520000100000L), receiver, producer, receiver, geometry, positions, nextCorrections);
+        assertArrayEquals(new double[positions.length], nextCorrections, 0.0);
+    }
+
+    @Test
+    public void CarrierFrequencyTest() throws IOException {
+        dataDirectory = writeData(createData());
+        NeQuickData.setDataDirectory(dataDirectory);
+
+        NeQuickProducer producer = new NeQuickProducer(createIono(80.0f));
+        Coordinates receiver = Coordinates.globalXYZInstance(3904174.0, 301788.0, 5017699.0);
+        SatellitePosition position = new SatellitePosition(0, 1, 'E', 1.5e7, 2.0e7, 1.5e7);
+        Time time = new Time(1520000000000L);
+
+        NeQuickCorrection e1Correction = new NeQuickCorrection();
+        e1Correction.calculateCorrection(time, receiver, position, producer, receiver);
+
+        NeQuickCorrection e5aCorrection = new NeQuickCorrection();
+        e5aCorrection.setCarrierFrequency(Constants.FE5a);
+        e5aCorrection.calculateCorrection(time, receiver, position, producer, receiver);
+
+        // the delay is inversely proportional to the square of the frequency
+        double ratio = (Constants.FE1 / Constants.FE5a) * (Constants.FE1 / Constants.FE5a);
+        assertTrue(e1Correction.getCorrection() > 0);
+        assertEquals(ratio * e1Correction.getCorrection(), e5aCorrection.getCorrection(), 1e-9);
+    }
+
+    @Test
+    public void MissingDataTest() {
+        NeQuickData.setDataDirectory(new File(System.getProperty("java.io.tmpdir"), "nequick-missing"));
+        assertFalse(NeQuickData.isInstalled());
+
+        Coordinates receiver = Coordinates.globalXYZInstance(3904174.0, 301788.0, 5017699.0);
+        SatellitePosition position = new SatellitePosition(0, 1, 'E', 1.5e7, 2.0e7, 1.5e7);
+
+        NeQuickCorrection correction = new NeQuickCorrection();
+        correction.calculateCorrection(new Time(1520000000000L), receiver, position, new NeQuickProducer(createIono(80.0f)), receiver);
+        assertEquals(0.0, correction.getCorrection(), 0.0);
+    }
+
+    @Test
+    public void ReferenceTest() throws IOException, URISyntaxException {
+        File directory;
+        if (System.getProperty("nequick.dataDir") != null)
+            directory = new File(System.getProperty("nequick.dataDir"));
+        else
+            directory = new File(NeQuickGTest.class.getResource("/nequick/validation.csv").toURI()).getParentFile();
+
+        NeQuickG model = new NeQuickG(NeQuickData.load(directory));
+
+        int tests = 0;
+
+        BufferedReader reader = new BufferedReader(new FileReader(new File(directory, "validation.csv")));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.trim().split("[,\\s]+");
+                if (fields.length < 12 || fields[0].startsWith("#"))
+                    continue;
+
+                double[] values = new double[fields.length];
+                for (int i = 0; i < fields.length; i++)
+                    values[i] = Double.parseDouble(fields[i]);
+
+                model.prepare((int) values[0], values[1], values[2], values[3], values[4], values[6], values[5]);
+                double slantTec = model.getSlantTec(values[6], values[5], values[7], values[9], values[8], values[10]);
+
+                assertEquals(values[11], slantTec, Math.max(0.01 * values[11], 0.1));
+                tests++;
+            }
+        } finally {
+            reader.close();
+        }
+
+        assertTrue("No reference vectors in validation.csv", tests > 0);
+    }
+
+    private static double cubic(double latitude, double longitude) {
+        return 0.5 * latitude - 2e-4 * latitude * latitude + 1e-6 * latitude * latitude * latitude
+                + 0.01 * longitude - 3e-7 * longitude * longitude * longitude;
+    }
+
+    private static NeQuickG createModel(NeQuickData data) {
+        return new NeQuickG(data);
+    }
+
+    /**
+     * foF2 and M(3000)F2 constant in space and time, MODIP equal to the latitude
+     */
+    private static NeQuickData createData() {
+        double[][][][] f2 = new double[NeQuickData.MONTHS][2][NeQuickData.F2_COEFFICIENTS][NeQuickData.F2_HARMONICS];
+        double[][][][] fm3 = new double[NeQuickData.MONTHS][2][NeQuickData.FM3_COEFFICIENTS][NeQuickData.FM3_HARMONICS];
+        double[][] modip = new double[NeQuickData.MODIP_ROWS][NeQuickData.MODIP_COLUMNS];
+
+        for (int month = 0; month < NeQuickData.MONTHS; month++) {
+            for (int activity = 0; activity < 2; activity++) {
+                f2[month][activity][0][0] = FOF2[activity];
+                fm3[month][activity][0][0] = M3000;
+            }
+        }
+
+        for (int row = 0; row < modip.length; row++)
+            for (int column = 0; column < modip[row].length; column++)
+                modip[row][column] = Math.max(-90, Math.min(90, -95 + 5 * row));
+
+        return new NeQuickData(f2, fm3, modip);
+    }
+
+    /**
+     * Writes the maps in the format of the files distributed with the model
+     */
+    private static File writeData(NeQuickData data) throws IOException {
+        File directory = File.createTempFile("nequick", "");
+        if (!directory.delete() || !directory.mkdir())
+            throw new IOException("Cannot create " + directory);
+
+        for (int month = 1; month <= NeQuickData.MONTHS; month++) {
+            PrintWriter writer = new PrintWriter(new FileWriter(new File(directory, "ccir" + (month + 10) + ".asc")));
+            try {
+                for (double[][] activity : data.getF2(month))
+                    for (double[] coefficient : activity)
+                        for (double value : coefficient)
+                            writer.println(String.format("%16.8E", value).replace('E', 'D'));
+                for (double[][] activity : data.getFm3(month))
+                    for (double[] coefficient : activity)
+                        for (double value : coefficient)
+                            writer.println(value);
+            } finally {
+                writer.close();
+            }
+        }
+
+        PrintWriter writer = new PrintWriter(new FileWriter(new File(directory, "modipNeQG_wrapped.asc")));
+        try {
+            for (int row = 0; row < NeQuickData.MODIP_ROWS; row++) {
+                for (int column = 0; column < NeQuickData.MODIP_COLUMNS; column++)
+                    writer.print(Math.max(-90, Math.min(90, -95 + 5 * row)) + " ");
+                writer.println();
+            }
+        } finally {
+            writer.close();
+        }
+
+        return directory;
+    }
+
+    private static IonoGalileo createIono(float ai0) {
+        IonoGalileo iono = new IonoGalileo();
+        iono.setAlpha(new float[]{ai0, 0.0f, 0.0f});
+        return iono;
+    }
+}
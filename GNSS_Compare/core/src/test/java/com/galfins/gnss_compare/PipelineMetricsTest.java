@@ -0,0 +1,78 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the pipeline latency metrics
+ */
+public class PipelineMetricsTest {
+
+    @Test
+    public void HistogramBucketsTest() {
+        long previousUpperBound = -1;
+        for (long value = 0; value < 1L << 40; value = value * 3 / 2 + 1) {
+            int index = PipelineMetrics.LatencyHistogram.indexOf(value);
+            long upperBound = PipelineMetrics.LatencyHistogram.upperBoundOf(index);
+
+            assertTrue(upperBound >= value);
+            assertTrue(upperBound >= previousUpperBound);
+            // relative error below 1/32
+            assertTrue(upperBound - value <= value / 32 + 1);
+
+            previousUpperBound = upperBound;
+        }
+    }
+
+    @Test
+    public void PercentilesTest() {
+        PipelineMetrics.LatencyHistogram histogram = new PipelineMetrics.LatencyHistogram();
+
+        for (long i = 1; i <= 1000; i++)
+            histogram.record(i * 1000);
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000000, histogram.getMax());
+        assertEquals(500000, histogram.getPercentile(0.50), 500000 / 32);
+        assertEquals(990000, histogram.getPercentile(0.99), 990000 / 32);
+        assertEquals(1000000, histogram.getPercentile(1.0));
+    }
+
+    @Test
+    public void DisabledMetricsTest() {
+        PipelineMetrics.setEnabled(false);
+        PipelineMetrics.ModuleMetrics module = PipelineMetrics.getModule("DisabledMetricsTest");
+
+        module.getStage(PipelineMetrics.STAGE_PVT).record(PipelineMetrics.startTimer());
+        module.increment(PipelineMetrics.COUNTER_EPOCHS);
+
+        assertEquals(0, module.getStage(PipelineMetrics.STAGE_PVT).getCount());
+        assertEquals(0, module.getCounter(PipelineMetrics.COUNTER_EPOCHS));
+
+        PipelineMetrics.setEnabled(true);
+        module.getStage(PipelineMetrics.STAGE_PVT).record(PipelineMetrics.startTimer());
+        module.increment(PipelineMetrics.COUNTER_EPOCHS);
+        PipelineMetrics.setEnabled(false);
+
+        assertEquals(1, module.getStage(PipelineMetrics.STAGE_PVT).getCount());
+        assertEquals(1, module.getCounter(PipelineMetrics.COUNTER_EPOCHS));
+        assertTrue(PipelineMetrics.dump().contains("DisabledMetricsTest"));
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare;
+
+import com.galfins.gnss_compare.Constellations.GpsConstellation;
+import com.galfins.gnss_compare.Corrections.Correction;
+import com.galfins.gnss_compare.Corrections.CorrectionCache;
+import com.galfins.gnss_compare.FileLoggers.SimpleFileLogger;
+import com.galfins.gnss_compare.PvtMethods.StaticExtendedKalmanFilter;
+import com.galfins.gogpsextracts.NavigationProducer;
+import com.galfins.gogpsextracts.NavigationProviders;
+import com.galfins.gogpsextracts.RinexNavigationGalileo;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the separation of the state of the calculation modules of different processings
+ */
+public class ProcessingContextTest {
+
+    @Test
+    public void SharedContextTest() {
+        ProcessingContext shared = ProcessingContext.getShared();
+
+        assertSame(CorrectionCache.getInstance(), shared.getCorrectionCache());
+        assertSame(PipelineMetrics.getModule("SharedContextTest"), shared.getMetrics("SharedContextTest"));
+        assertSame(NavigationProviders.getGps(), shared.getNavigationProvider(NavigationProviders.GPS));
+
+        try {
+            shared.setNavigationProvider(NavigationProviders.GPS, NavigationProviders.getGps());
+            fail("The shared providers can't be replaced");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void SeparateStateTest() {
+        ProcessingContext first = new ProcessingContext();
+        ProcessingContext second = new ProcessingContext();
+
+        assertNotSame(first.getCorrectionCache(), second.getCorrectionCache());
+        assertNotSame(CorrectionCache.getInstance(), first.getCorrectionCache());
+
+        PipelineMetrics.ModuleMetrics metrics = first.getMetrics("Module");
+        assertSame(metrics, first.getMetrics("Module"));
+        assertNotSame(metrics, second.getMetrics("Module"));
+        assertNotSame(PipelineMetrics.getModule("Module"), metrics);
+
+        PipelineMetrics.setEnabled(true);
+        metrics.increment(PipelineMetrics.COUNTER_EPOCHS);
+        PipelineMetrics.setEnabled(false);
+
+        assertEquals(1, metrics.getCounter(PipelineMetrics.COUNTER_EPOCHS));
+        assertEquals(0, second.getMetrics("Module").getCounter(PipelineMetrics.COUNTER_EPOCHS));
+    }
+
+    @Test
+    public void NavigationProviderTest() {
+        ProcessingContext context = new ProcessingContext();
+        NavigationProducer galileo = new RinexNavigationGalileo(NavigationProviders.GALILEO_URL_TEMPLATE);
+
+        context.setNavigationProvider(NavigationProviders.GALILEO, galileo);
+
+        assertSame(galileo, context.getNavigationProvider(NavigationProviders.GALILEO));
+        assertSame(NavigationProviders.getGps(), context.getNavigationProvider(NavigationProviders.GPS));
+        assertSame(NavigationProviders.getGalileo(),
+                ProcessingContext.getShared().getNavigationProvider(NavigationProviders.GALILEO));
+    }
+
+    @Test
+    public void ModuleContextTest() {
+        ProcessingContext context = new ProcessingContext();
+
+        CalculationModule module = CalculationModule.createUnregistered(
+                "ModuleContextTest",
+                GpsConstellation.class,
+                new ArrayList<Class<? extends Correction>>(),
+                StaticExtendedKalmanFilter.class,
+                SimpleFileLogger.class,
+                context);
+
+        assertSame(context, module.getProcessingContext());
+        assertSame(context, module.getConstellation().getProcessingContext());
+        assertSame(context.getMetrics("ModuleContextTest"), module.getMetrics());
+        assertNotSame(PipelineMetrics.getModule("ModuleContextTest"), module.getMetrics());
+
+        CalculationModule live = CalculationModule.createUnregistered(
+                "ModuleContextTest",
+                GpsConstellation.class,
+                new ArrayList<Class<? extends Correction>>(),
+                StaticExtendedKalmanFilter.class,
+                SimpleFileLogger.class);
+
+        assertSame(ProcessingContext.getShared(), live.getConstellation().getProcessingContext());
+        assertSame(PipelineMetrics.getModule("ModuleContextTest"), live.getMetrics());
+    }
+}
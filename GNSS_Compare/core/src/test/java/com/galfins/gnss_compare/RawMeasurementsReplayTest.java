@@ -0,0 +1,120 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare;
+
+import com.galfins.gnss_compare.Constellations.GnssMeasurementsEpoch;
+import com.galfins.gogpsextracts.GnssTime;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests of the replay of RawMeasurementsFileLogger files
+ */
+public class RawMeasurementsReplayTest {
+
+    private static final String LOG =
+            "# Raw,ElapsedRealtimeMillis,TimeNanos,LeapSecond,TimeUncertaintyNanos,FullBiasNanos,"
+                    + "BiasNanos,BiasUncertaintyNanos,DriftNanosPerSecond,DriftUncertaintyNanosPerSecond,"
+                    + "HardwareClockDiscontinuityCount,Svid,TimeOffsetNanos,State,ReceivedSvTimeNanos,"
+                    + "ReceivedSvTimeUncertaintyNanos,Cn0DbHz,PseudorangeRateMetersPerSecond,"
+                    + "PseudorangeRateUncertaintyMetersPerSecond,"
+                    + "AccumulatedDeltaRangeState,AccumulatedDeltaRangeMeters,"
+                    + "AccumulatedDeltaRangeUncertaintyMeters,CarrierFrequencyHz,CarrierCycles,"
+                    + "CarrierPhase,CarrierPhaseUncertainty,MultipathIndicator,SnrInDb,"
+                    + "ConstellationType,AgcDb,CarrierFrequencyHz\n"
+                    + "#\n"
+                    + "Fix,fused,52.0,4.3,10.0,0.0,5.0,1542357299000\n"
+                    + "Raw,1000,2000000000,,,-1226433299123456789,0.5,,,,0,5,0.0,16399,123,10,40.0,100.0,0.1,0,0.0,0.0,1.57542E9,,,,0,,1,,1.57542E9\n"
+                    + "Raw,1000,2000000000,,,-1226433299123456789,0.5,,,,0,7,0.0,16399,124,10,35.0,100.0,0.1,0,0.0,0.0,,,,,0,,6,,\n"
+                    + "Raw,2000,3000000000,,,-1226433299123456789,0.5,,,,0,5,0.0,16399,125,10,41.0,100.0,0.1,0,0.0,0.0,1.17645E9,,,,0,,1,,1.17645E9\n";
+
+    @Test
+    public void ReplayEpochsAndFixesTest() throws Exception {
+
+        CalculationModule module = mock(CalculationModule.class);
+        CalculationModulesArrayList modules = new CalculationModulesArrayList();
+        modules.add(module);
+
+        RawMeasurementsReplay replay = new RawMeasurementsReplay(modules);
+        replay.replay(new StringReader(LOG));
+
+        assertEquals(2, replay.getProcessedEpochs());
+        assertEquals(1, replay.getProcessedFixes());
+
+        verify(module).updateReferencePosition(52.0, 4.3, 10.0);
+
+        ArgumentCaptor<GnssMeasurementsEpoch> epochs = ArgumentCaptor.forClass(GnssMeasurementsEpoch.class);
+        verify(module, times(2)).updateMeasurements(epochs.capture());
+
+        List<GnssMeasurementsEpoch> decoded = epochs.getAllValues();
+
+        assertEquals(2, decoded.get(0).size());
+        assertEquals(5, decoded.get(0).getSvid(0));
+        assertEquals(-1226433299123456789L, decoded.get(0).getFullBiasNanos());
+        assertEquals(GnssMeasurementsEpoch.BAND_L1, decoded.get(0).getBand(0));
+        assertFalse(decoded.get(0).hasCarrierFrequencyHz(1));
+        assertEquals(6, decoded.get(0).getConstellationType(1));
+
+        assertEquals(1, decoded.get(1).size());
+        assertEquals(GnssMeasurementsEpoch.BAND_L5, decoded.get(1).getBand(0));
+        assertEquals(41.0, decoded.get(1).getCn0DbHz(0), 1e-9);
+    }
+
+    /**
+     * A measurement with the code lock and only STATE_TOW_KNOWN (16385) has a pseudorange,
+     * whatever the API level of the JVM running the replay
+     */
+    @Test
+    public void TowKnownOnlyMeasurementKeptTest() throws Exception {
+
+        // received 70 ms before the receiver time of week (503701.123456789 s)
+        String log = "Raw,1000,2000000000,,,-1226433299123456789,0.5,,,,0,5,0.0,16385,"
+                + "503701053456789,10,40.0,100.0,0.1,0,0.0,0.0,1.57542E9,,,,0,,1,\n";
+
+        final List<GnssMeasurementsEpoch> decoded = new ArrayList<>();
+
+        RawMeasurementsReplay replay = new RawMeasurementsReplay(new RawMeasurementsReplay.ReplayListener() {
+            @Override
+            public void onFix(double latitude, double longitude, double altitude, long timeMillis) {
+            }
+
+            @Override
+            public void onEpoch(GnssMeasurementsEpoch epoch) {
+                decoded.add(epoch);
+            }
+        });
+        replay.replay(new StringReader(log));
+
+        assertEquals(1, decoded.size());
+        assertTrue(decoded.get(0).hasPseudorange(0));
+        assertEquals(0.07 * 299792458.0, decoded.get(0).getPseudorangeMeters(0), 100.0);
+
+        assertEquals(
+                GnssTime.fromGpsNanos(2000000000L + 1226433299123456789L).getUtcMillis(),
+                decoded.get(0).getReceivedMillis());
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare;
+
+import com.galfins.gnss_compare.Constellations.GnssConstants;
+import com.galfins.gnss_compare.Constellations.GnssMeasurementsEpoch;
+import com.galfins.gnss_compare.Constellations.GpsConstellation;
+import com.galfins.gnss_compare.Constellations.SatelliteKey;
+import com.galfins.gnss_compare.Constellations.SatelliteParameters;
+import com.galfins.gnss_compare.Constellations.SatellitePool;
+import com.galfins.gogpsextracts.Constants;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the packed satellite keys and of the reuse of the pooled satellites
+ */
+public class SatellitePoolTest {
+
+    private static final long TIME_NANOS = 123456789000L;
+    private static final long FULL_BIAS_NANOS = -1234567890123456789L;
+
+    @Test
+    public void KeyPackingTest() {
+        int key = SatelliteKey.pack(GnssConstants.CONSTELLATION_GALILEO, SatelliteKey.SIGNAL_L5, 36);
+
+        assertEquals(GnssConstants.CONSTELLATION_GALILEO, SatelliteKey.getConstellationType(key));
+        assertEquals(SatelliteKey.SIGNAL_L5, SatelliteKey.getSignal(key));
+        assertEquals(36, SatelliteKey.getSvid(key));
+        assertTrue(key != SatelliteKey.pack(GnssConstants.CONSTELLATION_GALILEO, SatelliteKey.SIGNAL_L1, 36));
+        assertTrue(key != SatelliteKey.pack(GnssConstants.CONSTELLATION_GPS, SatelliteKey.SIGNAL_L5, 36));
+    }
+
+    @Test
+    public void DisplayStringTest() {
+        assertEquals("G5_L1", SatelliteKey.toString(
+                SatelliteKey.pack(GnssConstants.CONSTELLATION_GPS, SatelliteKey.SIGNAL_L1, 5)));
+        assertEquals("G12_L5", SatelliteKey.toString(
+                SatelliteKey.pack(GnssConstants.CONSTELLATION_GPS, SatelliteKey.SIGNAL_L5, 12)));
+        assertEquals("E3_E1", SatelliteKey.toString(
+                SatelliteKey.pack(GnssConstants.CONSTELLATION_GALILEO, SatelliteKey.SIGNAL_L1, 3)));
+        assertEquals("E30_E5a", SatelliteKey.toString(
+                SatelliteKey.pack(GnssConstants.CONSTELLATION_GALILEO, SatelliteKey.SIGNAL_L5, 30)));
+        assertEquals("E30_IF", SatelliteKey.toString(
+                SatelliteKey.pack(GnssConstants.CONSTELLATION_GALILEO, SatelliteKey.SIGNAL_IONO_FREE, 30)));
+    }
+
+    @Test
+    public void PoolReuseTest() {
+        SatellitePool pool = new SatellitePool(GnssConstants.CONSTELLATION_GPS, SatelliteKey.SIGNAL_L1);
+
+        pool.startEpoch();
+        SatelliteParameters satellite = pool.obtain(7);
+        satellite.setPseudorange(2.1e7);
+        satellite.setSignalStrength(42.0);
+        assertNull(pool.obtain(7));
+        assertEquals("G7_L1", satellite.getUniqueSatId());
+
+        // the same slot is handed out in the next epoch, cleared
+        pool.startEpoch();
+        SatelliteParameters next = pool.obtain(7);
+        assertSame(satellite, next);
+        assertNull(next.getPseudorangeObject());
+        assertEquals(0.0, next.getSignalStrength(), 0.0);
+        assertNull(next.getSatellitePosition());
+        assertEquals(7, next.getSatId());
+
+        next.setPseudorange(2.2e7);
+        assertEquals(2.2e7, next.getPseudorange(), 0.0);
+
+        // svids beyond the initial size
+        assertEquals(200, pool.obtain(200).getSatId());
+    }
+
+    @Test
+    public void ConstellationReusesSatellitesTest() {
+        GpsConstellation constellation = new GpsConstellation();
+        GnssMeasurementsEpoch.Decoder decoder = new GnssMeasurementsEpoch.Decoder(GnssMeasurementsEpoch.Decoder.TOW_KNOWN_API_LEVEL);
+
+        fillEpoch(decoder, 0);
+        constellation.updateMeasurements(decoder.finishEpoch());
+        SatelliteParameters first = constellation.getSatellite(0);
+        double firstPseudorange = first.getPseudorange();
+
+        fillEpoch(decoder, 1);
+        constellation.updateMeasurements(decoder.finishEpoch());
+
+        assertEquals(3, constellation.getUsedConstellationSize());
+        assertSame(first, constellation.getSatellite(0));
+        assertEquals(firstPseudorange + 0.001 * Constants.SPEED_OF_LIGHT, first.getPseudorange(), 1e-3);
+        assertEquals("G1_L1", first.getUniqueSatId());
+    }
+
+    private static void fillEpoch(GnssMeasurementsEpoch.Decoder decoder, int epochIndex) {
+        decoder.startEpoch(0, TIME_NANOS + epochIndex * 1000000000L, FULL_BIAS_NANOS, 0.0);
+
+        double gpsTime = TIME_NANOS - FULL_BIAS_NANOS;
+        double weekNumberNanos = Math.floor((-1. * FULL_BIAS_NANOS) / Constants.NUMBER_NANO_SECONDS_PER_WEEK)
+                * Constants.NUMBER_NANO_SECONDS_PER_WEEK;
+
+        for (int svid = 1; svid <= 3; svid++) {
+            // 1 ms longer travel time each epoch
+            long receivedSvTimeNanos = (long) (gpsTime - weekNumberNanos) - 70000000L
+                    + epochIndex * (1000000000L - 1000000L);
+
+            decoder.addMeasurement(
+                    svid,
+                    GnssConstants.CONSTELLATION_GPS,
+                    1.57542e9,
+                    receivedSvTimeNanos,
+                    10,
+                    0.0,
+                    GnssConstants.STATE_CODE_LOCK | GnssConstants.STATE_TOW_DECODED,
+                    40.0,
+                    0,
+                    0.0,
+                    100.0);
+        }
+    }
+}
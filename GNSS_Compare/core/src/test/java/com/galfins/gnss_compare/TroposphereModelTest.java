@@ -0,0 +1,135 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.galfins.gnss_compare;
+
+import com.galfins.gnss_compare.Corrections.MappingTable;
+import com.galfins.gnss_compare.Corrections.SaastamoinenModel;
+import com.galfins.gnss_compare.Corrections.TroposphereModel;
+import com.galfins.gnss_compare.Corrections.Unb3mModel;
+import com.galfins.gogpsextracts.Constants;
+import com.galfins.gogpsextracts.Time;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the cached troposphere models and of the mapping function tables
+ */
+public class TroposphereModelTest {
+
+    private static final Time TIME = new Time(1520000000000L);
+
+    @Test
+    public void MappingTableTest() {
+        MappingTable table = new MappingTable(new MappingTable.MappingFunction() {
+            @Override
+            public double evaluate(double elevation) {
+                return 1.0 / Math.sin(Math.toRadians(elevation));
+            }
+        });
+
+        for (double elevation = 0.5; elevation <= 90; elevation += 0.37) {
+            double expected = 1.0 / Math.sin(Math.toRadians(elevation));
+            assertEquals(expected, table.get(elevation), 5e-4 * expected);
+        }
+
+        assertEquals(table.get(30), table.get(-30), 0.0);
+        assertEquals(1.0, table.get(90), 1e-12);
+    }
+
+    @Test
+    public void SaastamoinenTest() {
+        TroposphereModel model = new SaastamoinenModel();
+
+        for (double height : new double[]{-20, 0, 120, 1750, 4999}) {
+            model.update(TIME, 52.0, height);
+            for (double elevation = 5; elevation <= 90; elevation += 0.53)
+                assertEquals(saastamoinen(height, elevation), model.getDelay(elevation), 1e-3);
+        }
+
+        model.update(TIME, 52.0, 5200);
+        assertEquals(0.0, model.getDelay(45), 0.0);
+    }
+
+    @Test
+    public void CachingTest() {
+        TroposphereModel model = new SaastamoinenModel();
+
+        model.update(TIME, 52.0, 100.0);
+        double delay = model.getDelay(30);
+
+        // below the threshold the zenith terms are kept
+        model.update(TIME, 52.0, 100.0 + TroposphereModel.HEIGHT_THRESHOLD / 2);
+        assertEquals(delay, model.getDelay(30), 0.0);
+
+        model.update(TIME, 52.0, 100.0 + 100 * TroposphereModel.HEIGHT_THRESHOLD);
+        assertTrue(model.getDelay(30) < delay);
+    }
+
+    @Test
+    public void Unb3mTest() {
+        TroposphereModel model = new Unb3mModel();
+
+        model.update(TIME, 45.0, 0.0);
+
+        // zenith delay of a mid-latitude receiver at sea level
+        assertEquals(2.4, model.getDelay(90), 0.15);
+
+        // the Niell mapping functions are close to 1/sin(E) at high elevations
+        double zenith = model.getDelay(90);
+        assertEquals(zenith / Math.sin(Math.toRadians(30)), model.getDelay(30), 0.03);
+
+        double delayLow = model.getDelay(5);
+        assertTrue(delayLow > 9 * zenith && delayLow < 12 * zenith);
+
+        // lower delay for a receiver in the mountains
+        model.update(TIME, 45.0, 2000.0);
+        assertTrue(model.getDelay(90) < 0.85 * zenith);
+    }
+
+    /**
+     * Direct evaluation of the Saastamoinen model
+     */
+    private static double saastamoinen(double height, double elevation) {
+        final double hr = 50.0;
+        final int[] ha = {0, 500, 1000, 1500, 2000, 2500, 3000, 4000, 5000 };
+        final double[] ba = { 1.156, 1.079, 1.006, 0.938, 0.874, 0.813, 0.757, 0.654, 0.563 };
+
+        elevation = Math.toRadians(elevation);
+
+        double P = Constants.STANDARD_PRESSURE * Math.pow((1 - 0.0000226 * height), 5.225);
+        double T = Constants.STANDARD_TEMPERATURE - 0.0065 * height;
+        double H = hr * Math.exp(-0.0006396 * height);
+
+        double B = ba[0];
+        if (height >= 0) {
+            int i = 1;
+            while (height > ha[i]) {
+                i++;
+            }
+            double m = (ba[i] - ba[i - 1]) / (ha[i] - ha[i - 1]);
+            B = ba[i - 1] + m * (height - ha[i - 1]);
+        }
+
+        double e = 0.01 * H * Math.exp(-37.2465 + 0.213166 * T - 0.000256908 * Math.pow(T, 2));
+
+        return ((0.002277 / Math.sin(elevation))
+                * (P - (B / Math.pow(Math.tan(elevation), 2))) + (0.002277 / Math.sin(elevation))
+                * (1255 / T + 0.05) * e);
+    }
+}